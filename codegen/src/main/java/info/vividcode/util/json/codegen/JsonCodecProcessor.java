@@ -0,0 +1,728 @@
+package info.vividcode.util.json.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * {@code info.vividcode.util.json.JsonCodec} を付けたクラスについて, JSON との変換処理を行うクラスを生成する
+ * アノテーションプロセッサー.
+ * <p>
+ * 生成されるクラスは読み込みに {@code JsonEventReader} を, 書き出しに {@code JsonWriter} を使用する.
+ * つまり {@code JsonParser} と同じトークナイザーでトークンに分割し, {@code JsonSerializer} と同じ方法でエスケープする.
+ * フィールドは直接読み書きし, メンバーの名前は String オブジェクトを生成せずに比較する.
+ * <p>
+ * 生成されるクラスは次の public static メソッドを持つ (<code>Foo</code> は対象のクラス).
+ * <ul>
+ * <li><code>Foo read(JsonEventReader reader)</code>: 直前のイベントが表す object を読む</li>
+ * <li><code>Foo fromJson(String json)</code>: JSON 文字列を読む</li>
+ * <li><code>void write(Foo value, JsonWriter writer)</code>: object として書き出す</li>
+ * <li><code>String toJson(Foo value)</code>: JSON 文字列に変換する. value が null の場合は NullPointerException を投げる</li>
+ * </ul>
+ */
+public class JsonCodecProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION_NAME = "info.vividcode.util.json.JsonCodec";
+    private static final String JSON_PACKAGE = "info.vividcode.util.json";
+    private static final String EVENT = "JsonEventReader.Event";
+
+    /** 対象のクラスのフィールドの型として使用できない型の場合に投げる */
+    private static class UnsupportedTypeException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedTypeException(String message) {
+            super(message);
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION_NAME);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION_NAME);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (e.getKind() != ElementKind.CLASS) {
+                error("@JsonCodec is only applicable to classes", e);
+                continue;
+            }
+            TypeElement type = (TypeElement) e;
+            try {
+                String source = new CodecGenerator(type).generate();
+                Writer w = processingEnv.getFiler().createSourceFile(codecName(type), type).openWriter();
+                try {
+                    w.write(source);
+                } finally {
+                    w.close();
+                }
+            } catch (UnsupportedTypeException err) {
+                error(err.getMessage(), type);
+            } catch (IOException err) {
+                error("Failed to write the codec: " + err, type);
+            }
+        }
+        return true;
+    }
+
+    private void error(String message, Element e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+
+    private String packageName(TypeElement type) {
+        return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    }
+
+    /** 生成するクラスの単純名. 入れ子のクラスの場合は外側のクラスの名前を "_" でつなげる. */
+    private String codecSimpleName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        for (Element e = type.getEnclosingElement(); !(e instanceof PackageElement); e = e.getEnclosingElement()) {
+            name = e.getSimpleName() + "_" + name;
+        }
+        return name + "JsonCodec";
+    }
+
+    /** 生成するクラスの完全修飾名 */
+    private String codecName(TypeElement type) {
+        String pkg = packageName(type);
+        return (pkg.length() == 0 ? "" : pkg + ".") + codecSimpleName(type);
+    }
+
+    private static boolean hasCodecAnnotation(Element e) {
+        for (AnnotationMirror a : e.getAnnotationMirrors()) {
+            if (((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 1 つのクラスについてのソースコードの生成.
+     */
+    private class CodecGenerator {
+        private final TypeElement mType;
+        private final String mTypeName;
+        /** enum の型の名前と, その定数の配列を保持するフィールドの名前 */
+        private final Map<String, String> mEnumFields = new LinkedHashMap<String, String>();
+        private int mVarCount;
+
+        CodecGenerator(TypeElement type) {
+            mType = type;
+            mTypeName = type.getQualifiedName().toString();
+        }
+
+        String generate() throws UnsupportedTypeException {
+            checkInstantiable();
+            List<VariableElement> fields = collectFields();
+
+            SourceBuilder read = new SourceBuilder(1);
+            read.line("/**");
+            read.line(" * 直前のイベントが表す object を読む. 直前のイベントが VALUE_NULL の場合は null を返す.");
+            read.line(" */");
+            read.open("public static " + mTypeName + " read(JsonEventReader r) throws IOException");
+            read.line("if (r.getEvent() == " + EVENT + ".VALUE_NULL) return null;");
+            read.line("expect(r, " + EVENT + ".START_OBJECT, \"" + mTypeName + "\");");
+            read.line(mTypeName + " o = new " + mTypeName + "();");
+            read.open("while (r.next() == " + EVENT + ".FIELD_NAME)");
+            String keyword = "if";
+            for (VariableElement f : fields) {
+                read.open(keyword + " (r.stringEquals(" + literal(f.getSimpleName().toString()) + "))");
+                read.line("r.next();");
+                emitRead(read, f.asType(), "o." + f.getSimpleName(), true, f);
+                read.close(null);
+                keyword = "} else if";
+            }
+            if (fields.isEmpty()) {
+                read.line("r.next();");
+                read.line("r.skipValue();");
+            } else {
+                read.open("} else");
+                read.line("r.next();");
+                read.line("r.skipValue();");
+                read.close();
+            }
+            read.close();
+            read.line("return o;");
+            read.close();
+
+            SourceBuilder write = new SourceBuilder(1);
+            write.line("/**");
+            write.line(" * object として書き出す. value が null の場合は JSON の null を書き出す.");
+            write.line(" */");
+            write.open("public static void write(" + mTypeName + " value, JsonWriter w) throws IOException");
+            write.open("if (value == null)");
+            write.line("w.nullValue();");
+            write.line("return;");
+            write.close();
+            write.line("w.beginObject();");
+            for (VariableElement f : fields) {
+                write.line("w.name(" + literal(f.getSimpleName().toString()) + ");");
+                emitWrite(write, f.asType(), "value." + f.getSimpleName(), f);
+            }
+            write.line("w.endObject();");
+            write.close();
+
+            return assemble(read.toString(), write.toString());
+        }
+
+        private String assemble(String readMethod, String writeMethod) {
+            String pkg = packageName(mType);
+            String name = codecSimpleName(mType);
+            StringBuilder sb = new StringBuilder();
+            sb.append("// Generated by ").append(JsonCodecProcessor.class.getName()).append(". Do not edit.\n");
+            if (pkg.length() != 0) sb.append("package ").append(pkg).append(";\n");
+            sb.append("\n");
+            sb.append("import java.io.IOException;\n");
+            sb.append("import java.io.StringReader;\n");
+            sb.append("import java.math.BigDecimal;\n");
+            sb.append("\n");
+            for (String c : new String[] { "InvalidJsonException", "JsonEventReader", "JsonValue", "JsonWriter" }) {
+                sb.append("import ").append(JSON_PACKAGE).append('.').append(c).append(";\n");
+            }
+            sb.append("\n");
+            sb.append("/**\n");
+            sb.append(" * {@link ").append(mTypeName).append("} と JSON の相互変換を行う.\n");
+            sb.append(" */\n");
+            sb.append("public final class ").append(name).append(" {\n\n");
+            for (Map.Entry<String, String> e : mEnumFields.entrySet()) {
+                sb.append("    private static final ").append(e.getKey()).append("[] ").append(e.getValue())
+                        .append(" = ").append(e.getKey()).append(".values();\n");
+            }
+            if (!mEnumFields.isEmpty()) sb.append("\n");
+            sb.append("    private ").append(name).append("() {\n    }\n\n");
+            sb.append("    /**\n");
+            sb.append("     * JSON 文字列を読む.\n");
+            sb.append("     */\n");
+            sb.append("    public static ").append(mTypeName).append(" fromJson(String json) {\n");
+            sb.append("        JsonEventReader r = new JsonEventReader(new StringReader(json));\n");
+            sb.append("        try {\n");
+            sb.append("            r.next();\n");
+            sb.append("            ").append(mTypeName).append(" o = read(r);\n");
+            sb.append("            // 最上位の値の後に余分なトークンがないことを確かめる\n");
+            sb.append("            r.next();\n");
+            sb.append("            return o;\n");
+            sb.append("        } catch (IOException err) {\n");
+            sb.append("            throw new IllegalStateException(err);\n");
+            sb.append("        }\n");
+            sb.append("    }\n\n");
+            sb.append(readMethod).append("\n");
+            sb.append("    /**\n");
+            sb.append("     * JSON 文字列に変換する.\n");
+            sb.append("     * JSON テキストの最上位の値は object か array でなければならないため, value は null であってはならない.\n");
+            sb.append("     * @throws NullPointerException value が null の場合\n");
+            sb.append("     */\n");
+            sb.append("    public static String toJson(").append(mTypeName).append(" value) {\n");
+            sb.append("        if (value == null) {\n");
+            sb.append("            throw new NullPointerException(\"`value` must not be null: the top-level value must be an object\");\n");
+            sb.append("        }\n");
+            sb.append("        StringBuilder sb = new StringBuilder();\n");
+            sb.append("        try {\n");
+            sb.append("            write(value, new JsonWriter(sb));\n");
+            sb.append("        } catch (IOException err) {\n");
+            sb.append("            throw new IllegalStateException(err);\n");
+            sb.append("        }\n");
+            sb.append("        return sb.toString();\n");
+            sb.append("    }\n\n");
+            sb.append(writeMethod).append("\n");
+            sb.append(HELPERS);
+            sb.append("}\n");
+            return sb.toString();
+        }
+
+        private void checkInstantiable() throws UnsupportedTypeException {
+            Set<Modifier> mods = mType.getModifiers();
+            if (mods.contains(Modifier.ABSTRACT) || mods.contains(Modifier.PRIVATE)) {
+                throw new UnsupportedTypeException("@JsonCodec class must not be abstract or private");
+            }
+            if (mType.getNestingKind() == NestingKind.MEMBER && !mods.contains(Modifier.STATIC)) {
+                throw new UnsupportedTypeException("@JsonCodec class must be a top-level or static nested class");
+            }
+            if (mType.getNestingKind() == NestingKind.LOCAL || mType.getNestingKind() == NestingKind.ANONYMOUS) {
+                throw new UnsupportedTypeException("@JsonCodec class must be a top-level or static nested class");
+            }
+            for (ExecutableElement c : ElementFilter.constructorsIn(mType.getEnclosedElements())) {
+                if (c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE)) return;
+            }
+            throw new UnsupportedTypeException("@JsonCodec class must have a non-private no-arg constructor");
+        }
+
+        /** スーパークラスのものを先にして, 対象のフィールドを並べる. 同じ名前のフィールドはサブクラスのものを使う. */
+        private List<VariableElement> collectFields() throws UnsupportedTypeException {
+            List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+            for (TypeElement t = mType; t != null; ) {
+                if (t.getQualifiedName().contentEquals("java.lang.Object")) break;
+                hierarchy.add(0, t);
+                TypeMirror s = t.getSuperclass();
+                t = (s.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) s).asElement() : null);
+            }
+            Map<String, VariableElement> fields = new LinkedHashMap<String, VariableElement>();
+            for (TypeElement t : hierarchy) {
+                for (VariableElement f : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                    Set<Modifier> mods = f.getModifiers();
+                    if (mods.contains(Modifier.STATIC) || mods.contains(Modifier.TRANSIENT)) continue;
+                    if (mods.contains(Modifier.PRIVATE) || mods.contains(Modifier.FINAL)) {
+                        throw new UnsupportedTypeException("Field must not be private or final [" +
+                                t.getSimpleName() + "#" + f.getSimpleName() + "]");
+                    }
+                    fields.put(f.getSimpleName().toString(), f);
+                }
+            }
+            return new ArrayList<VariableElement>(fields.values());
+        }
+
+        /* ==== 読み込み ==== */
+
+        /**
+         * 直前のイベントが表す値を読んで target に代入する文を出力する.
+         * @param skipNull true の場合, プリミティブ型で値が null のときは何もしない. false の場合は例外とする
+         */
+        private void emitRead(SourceBuilder o, TypeMirror t, String target, boolean skipNull, Element f)
+                throws UnsupportedTypeException {
+            if (t.getKind().isPrimitive()) {
+                String expr = scalarRead(t, f);
+                if (skipNull) {
+                    o.line("if (r.getEvent() != " + EVENT + ".VALUE_NULL) " + target + " = " + expr + ";");
+                } else {
+                    o.line(target + " = " + expr + ";");
+                }
+                return;
+            }
+            o.open("if (r.getEvent() == " + EVENT + ".VALUE_NULL)");
+            o.line(target + " = null;");
+            o.reopen("} else");
+            emitReadNonNull(o, t, target, f);
+            o.close();
+        }
+
+        private void emitReadNonNull(SourceBuilder o, TypeMirror t, String target, Element f)
+                throws UnsupportedTypeException {
+            String container = containerKind(t);
+            if (container == null) {
+                o.line(target + " = " + scalarRead(t, f) + ";");
+                return;
+            }
+            int n = mVarCount++;
+            if (container.equals("map")) {
+                TypeMirror v = typeArgument(t, 1, f);
+                o.line("expect(r, " + EVENT + ".START_OBJECT, \"Map\");");
+                o.line("java.util.LinkedHashMap<String, " + v + "> m" + n + " = new java.util.LinkedHashMap<String, " +
+                        v + ">();");
+                o.open("while (r.next() == " + EVENT + ".FIELD_NAME)");
+                o.line("String k" + n + " = r.getString();");
+                o.line("r.next();");
+                o.line(v + " v" + n + ";");
+                emitRead(o, v, "v" + n, false, f);
+                o.line("m" + n + ".put(k" + n + ", v" + n + ");");
+                o.close();
+                o.line(target + " = m" + n + ";");
+                return;
+            }
+            TypeMirror e;
+            String collection;
+            if (container.equals("array")) {
+                e = ((ArrayType) t).getComponentType();
+                if (e.getKind() == TypeKind.DECLARED && !((DeclaredType) e).getTypeArguments().isEmpty()) {
+                    throw unsupported(t, f);
+                }
+                collection = "java.util.ArrayList<" + boxed(e) + ">";
+            } else {
+                e = typeArgument(t, 0, f);
+                collection = (container.equals("set") ? "java.util.LinkedHashSet<" : "java.util.ArrayList<") + e + ">";
+            }
+            o.line("expect(r, " + EVENT + ".START_ARRAY, \"" + (container.equals("array") ? "array" : "Collection") +
+                    "\");");
+            o.line(collection + " c" + n + " = new " + collection + "();");
+            o.open("while (r.next() != " + EVENT + ".END_ARRAY)");
+            o.line(e + " e" + n + ";");
+            emitRead(o, e, "e" + n, false, f);
+            o.line("c" + n + ".add(e" + n + ");");
+            o.close();
+            if (container.equals("array")) {
+                // int[][] の場合は new int[size][] とする
+                String base = e.toString();
+                String dims = "";
+                while (base.endsWith("[]")) {
+                    base = base.substring(0, base.length() - 2);
+                    dims += "[]";
+                }
+                o.line(e + "[] a" + n + " = new " + base + "[c" + n + ".size()]" + dims + ";");
+                o.line("for (int i" + n + " = 0; i" + n + " < a" + n + ".length; i" + n + "++) a" + n + "[i" + n +
+                        "] = c" + n + ".get(i" + n + ");");
+                o.line(target + " = a" + n + ";");
+            } else {
+                o.line(target + " = c" + n + ";");
+            }
+        }
+
+        /** 1 つのイベントで表される値 (または入れ子の @JsonCodec のクラス) を読む式 */
+        private String scalarRead(TypeMirror t, Element f) throws UnsupportedTypeException {
+            switch (t.getKind()) {
+                case INT:
+                    return "(int) readInteger(r, Integer.MIN_VALUE, Integer.MAX_VALUE, \"int\")";
+                case LONG:
+                    return "readInteger(r, Long.MIN_VALUE, Long.MAX_VALUE, \"long\")";
+                case SHORT:
+                    return "(short) readInteger(r, Short.MIN_VALUE, Short.MAX_VALUE, \"short\")";
+                case BYTE:
+                    return "(byte) readInteger(r, Byte.MIN_VALUE, Byte.MAX_VALUE, \"byte\")";
+                case DOUBLE:
+                    return "readDouble(r)";
+                case FLOAT:
+                    return "readFloat(r)";
+                case BOOLEAN:
+                    return "readBoolean(r)";
+                case DECLARED:
+                    break;
+                default:
+                    throw unsupported(t, f);
+            }
+            TypeElement te = (TypeElement) ((DeclaredType) t).asElement();
+            String name = te.getQualifiedName().toString();
+            if (name.equals("java.lang.Integer")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.Long")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.Short")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.Byte")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.Double")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.Float")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.Boolean")) return scalarRead(unboxed(t), f);
+            if (name.equals("java.lang.String")) return "readString(r)";
+            if (name.equals("java.math.BigDecimal")) return "readNumber(r)";
+            if (name.equals("java.math.BigInteger")) return "readBigInteger(r)";
+            if (te.getKind() == ElementKind.ENUM) return "readEnum(r, " + enumField(name) + ")";
+            if (isJsonValue(t)) return "readJsonValue(r, " + name + ".class)";
+            if (hasCodecAnnotation(te)) return codecName(te) + ".read(r)";
+            throw unsupported(t, f);
+        }
+
+        private String enumField(String enumName) {
+            String field = mEnumFields.get(enumName);
+            if (field == null) {
+                field = "ENUM_" + mEnumFields.size();
+                mEnumFields.put(enumName, field);
+            }
+            return field;
+        }
+
+        /* ==== 書き出し ==== */
+
+        /** 式 expr の値を書き出す文を出力する */
+        private void emitWrite(SourceBuilder o, TypeMirror t, String expr, Element f) throws UnsupportedTypeException {
+            switch (t.getKind()) {
+                case INT:
+                case LONG:
+                case SHORT:
+                case BYTE:
+                    o.line("w.value((long) " + expr + ");");
+                    return;
+                case DOUBLE:
+                case BOOLEAN:
+                    o.line("w.value(" + expr + ");");
+                    return;
+                case FLOAT:
+                    o.line("writeFloat(w, " + expr + ");");
+                    return;
+                default:
+                    break;
+            }
+            if (t.getKind() == TypeKind.DECLARED) {
+                TypeElement te = (TypeElement) ((DeclaredType) t).asElement();
+                String name = te.getQualifiedName().toString();
+                // JsonWriter や生成したクラスが null を扱うもの
+                if (name.equals("java.lang.String") || name.equals("java.math.BigDecimal")) {
+                    o.line("w.value(" + expr + ");");
+                    return;
+                }
+                if (isJsonValue(t)) {
+                    o.line("w.value((JsonValue) " + expr + ");");
+                    return;
+                }
+                if (hasCodecAnnotation(te)) {
+                    o.line(codecName(te) + ".write(" + expr + ", w);");
+                    return;
+                }
+            }
+            int n = mVarCount++;
+            String v = "v" + n;
+            o.open("");
+            o.line(t + " " + v + " = " + expr + ";");
+            o.open("if (" + v + " == null)");
+            o.line("w.nullValue();");
+            o.reopen("} else");
+            emitWriteNonNull(o, t, v, n, f);
+            o.close();
+            o.close();
+        }
+
+        private void emitWriteNonNull(SourceBuilder o, TypeMirror t, String v, int n, Element f)
+                throws UnsupportedTypeException {
+            String container = containerKind(t);
+            if (container == null) {
+                TypeElement te = (TypeElement) ((DeclaredType) t).asElement();
+                String name = te.getQualifiedName().toString();
+                if (name.equals("java.math.BigInteger")) {
+                    o.line("w.value(new BigDecimal(" + v + "));");
+                } else if (te.getKind() == ElementKind.ENUM) {
+                    o.line("w.value(" + v + ".name());");
+                } else if (name.startsWith("java.lang.")) {
+                    // ラッパークラス
+                    TypeMirror p = unboxed(t);
+                    if (p == null) throw unsupported(t, f);
+                    emitWrite(o, p, v + "." + p + "Value()", f);
+                } else {
+                    throw unsupported(t, f);
+                }
+            } else if (container.equals("map")) {
+                TypeMirror vt = typeArgument(t, 1, f);
+                o.line("w.beginObject();");
+                o.open("for (java.util.Map.Entry<String, " + vt + "> e" + n + " : " + v + ".entrySet())");
+                o.line("w.name(e" + n + ".getKey());");
+                emitWrite(o, vt, "e" + n + ".getValue()", f);
+                o.close();
+                o.line("w.endObject();");
+            } else if (container.equals("array")) {
+                TypeMirror e = ((ArrayType) t).getComponentType();
+                o.line("w.beginArray();");
+                o.open("for (int i" + n + " = 0; i" + n + " < " + v + ".length; i" + n + "++)");
+                emitWrite(o, e, v + "[i" + n + "]", f);
+                o.close();
+                o.line("w.endArray();");
+            } else {
+                TypeMirror e = typeArgument(t, 0, f);
+                o.line("w.beginArray();");
+                o.open("for (" + e + " e" + n + " : " + v + ")");
+                emitWrite(o, e, "e" + n, f);
+                o.close();
+                o.line("w.endArray();");
+            }
+        }
+
+        /* ==== 型の判定 ==== */
+
+        /** "list", "set", "map", "array" のいずれか. コンテナでない場合は null */
+        private String containerKind(TypeMirror t) {
+            if (t.getKind() == TypeKind.ARRAY) return "array";
+            if (t.getKind() != TypeKind.DECLARED) return null;
+            String name = ((TypeElement) ((DeclaredType) t).asElement()).getQualifiedName().toString();
+            if (name.equals("java.util.List") || name.equals("java.util.Collection") ||
+                    name.equals("java.util.ArrayList")) {
+                return "list";
+            }
+            if (name.equals("java.util.Set") || name.equals("java.util.LinkedHashSet")) return "set";
+            if (name.equals("java.util.Map") || name.equals("java.util.LinkedHashMap")) return "map";
+            return null;
+        }
+
+        /** コンテナの型引数. Map の場合はキーが String であることも確かめる. */
+        private TypeMirror typeArgument(TypeMirror t, int i, Element f) throws UnsupportedTypeException {
+            List<? extends TypeMirror> args = ((DeclaredType) t).getTypeArguments();
+            if (args.size() <= i || args.get(i).getKind() != TypeKind.DECLARED && args.get(i).getKind() != TypeKind.ARRAY) {
+                throw unsupported(t, f);
+            }
+            if (i == 1 && !args.get(0).toString().equals("java.lang.String")) {
+                throw unsupported(t, f);
+            }
+            return args.get(i);
+        }
+
+        private boolean isJsonValue(TypeMirror t) {
+            TypeElement jsonValue = processingEnv.getElementUtils().getTypeElement(JSON_PACKAGE + ".JsonValue");
+            return jsonValue != null && processingEnv.getTypeUtils().isAssignable(t, jsonValue.asType());
+        }
+
+        private TypeMirror unboxed(TypeMirror t) {
+            try {
+                return processingEnv.getTypeUtils().unboxedType(t);
+            } catch (IllegalArgumentException err) {
+                return null;
+            }
+        }
+
+        private String boxed(TypeMirror t) {
+            if (!t.getKind().isPrimitive()) return t.toString();
+            return processingEnv.getTypeUtils().boxedClass(
+                    processingEnv.getTypeUtils().getPrimitiveType(t.getKind())).getQualifiedName().toString();
+        }
+
+        private UnsupportedTypeException unsupported(TypeMirror t, Element f) {
+            return new UnsupportedTypeException("Unsupported field type " + t + " [" +
+                    f.getEnclosingElement().getSimpleName() + "#" + f.getSimpleName() + "]");
+        }
+    }
+
+    /** Java の文字列リテラル */
+    static String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || 0x7E < c) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** インデントを管理しながらソースコードの行を組み立てる */
+    private static class SourceBuilder {
+        private final StringBuilder mSb = new StringBuilder();
+        private int mIndent;
+
+        SourceBuilder(int indent) {
+            mIndent = indent;
+        }
+
+        void line(String line) {
+            for (int i = 0; i < mIndent; i++) mSb.append("    ");
+            mSb.append(line).append('\n');
+        }
+
+        /** ブロックを開始する. header が空の場合は単独のブロックとなる. */
+        void open(String header) {
+            line(header.length() == 0 ? "{" : header + " {");
+            mIndent++;
+        }
+
+        /** 現在のブロックを閉じ, "} else {" などで次のブロックを開始する. */
+        void reopen(String header) {
+            mIndent--;
+            line(header + " {");
+            mIndent++;
+        }
+
+        void close() {
+            close("}");
+        }
+
+        /** 現在のブロックを閉じる. closing が null の場合は閉じ括弧を出力しない (続けて reopen する場合). */
+        void close(String closing) {
+            mIndent--;
+            if (closing != null) line(closing);
+        }
+
+        @Override
+        public String toString() {
+            return mSb.toString();
+        }
+    }
+
+    /** 生成するクラスに含める補助メソッド */
+    private static final String HELPERS =
+            "    private static InvalidJsonException mismatch(JsonEventReader r, String type) {\n" +
+            "        return new InvalidJsonException(\"unexpected value for the type \" + type + \" [event:\" + r.getEvent() + \"]\");\n" +
+            "    }\n" +
+            "\n" +
+            "    private static void expect(JsonEventReader r, " + EVENT + " event, String type) {\n" +
+            "        if (r.getEvent() != event) throw mismatch(r, type);\n" +
+            "    }\n" +
+            "\n" +
+            "    private static long readInteger(JsonEventReader r, long min, long max, String type) {\n" +
+            "        expect(r, " + EVENT + ".VALUE_NUMBER, type);\n" +
+            "        long v;\n" +
+            "        try {\n" +
+            "            v = r.getLong();\n" +
+            "        } catch (ArithmeticException err) {\n" +
+            "            throw new InvalidJsonException(\"number is not an integer in range of the type \" + type + \" [\" + r.getString() + \"]\");\n" +
+            "        }\n" +
+            "        if (v < min || max < v) {\n" +
+            "            throw new InvalidJsonException(\"number is not an integer in range of the type \" + type + \" [\" + r.getString() + \"]\");\n" +
+            "        }\n" +
+            "        return v;\n" +
+            "    }\n" +
+            "\n" +
+            "    private static double readDouble(JsonEventReader r) {\n" +
+            "        expect(r, " + EVENT + ".VALUE_NUMBER, \"double\");\n" +
+            "        return r.getDouble();\n" +
+            "    }\n" +
+            "\n" +
+            "    private static float readFloat(JsonEventReader r) {\n" +
+            "        expect(r, " + EVENT + ".VALUE_NUMBER, \"float\");\n" +
+            "        return Float.parseFloat(r.getString());\n" +
+            "    }\n" +
+            "\n" +
+            "    private static boolean readBoolean(JsonEventReader r) {\n" +
+            "        if (r.getEvent() == " + EVENT + ".VALUE_TRUE) return true;\n" +
+            "        if (r.getEvent() == " + EVENT + ".VALUE_FALSE) return false;\n" +
+            "        throw mismatch(r, \"boolean\");\n" +
+            "    }\n" +
+            "\n" +
+            "    private static String readString(JsonEventReader r) {\n" +
+            "        expect(r, " + EVENT + ".VALUE_STRING, \"String\");\n" +
+            "        return r.getString();\n" +
+            "    }\n" +
+            "\n" +
+            "    private static BigDecimal readNumber(JsonEventReader r) {\n" +
+            "        expect(r, " + EVENT + ".VALUE_NUMBER, \"BigDecimal\");\n" +
+            "        return r.getNumber();\n" +
+            "    }\n" +
+            "\n" +
+            "    private static java.math.BigInteger readBigInteger(JsonEventReader r) {\n" +
+            "        expect(r, " + EVENT + ".VALUE_NUMBER, \"BigInteger\");\n" +
+            "        try {\n" +
+            "            return r.getNumber().toBigIntegerExact();\n" +
+            "        } catch (ArithmeticException err) {\n" +
+            "            throw new InvalidJsonException(\"number is not an integer [\" + r.getString() + \"]\");\n" +
+            "        }\n" +
+            "    }\n" +
+            "\n" +
+            "    private static <E extends Enum<E>> E readEnum(JsonEventReader r, E[] constants) {\n" +
+            "        if (r.getEvent() == " + EVENT + ".VALUE_STRING) {\n" +
+            "            for (E e : constants) {\n" +
+            "                if (r.stringEquals(e.name())) return e;\n" +
+            "            }\n" +
+            "        }\n" +
+            "        throw mismatch(r, \"enum\");\n" +
+            "    }\n" +
+            "\n" +
+            "    private static <V extends JsonValue> V readJsonValue(JsonEventReader r, Class<V> type) throws IOException {\n" +
+            "        JsonValue v = r.readValue();\n" +
+            "        if (!type.isInstance(v)) throw mismatch(r, type.getSimpleName());\n" +
+            "        return type.cast(v);\n" +
+            "    }\n" +
+            "\n" +
+            "    private static void writeFloat(JsonWriter w, float v) throws IOException {\n" +
+            "        if (Float.isInfinite(v) || Float.isNaN(v)) {\n" +
+            "            throw new InvalidJsonException(\"Infinite or NaN can't be serialized\");\n" +
+            "        }\n" +
+            "        // double に変換すると桁が増えるので, float としての表記を使う\n" +
+            "        w.value(new BigDecimal(Float.toString(v)));\n" +
+            "    }\n" +
+            "\n";
+
+}
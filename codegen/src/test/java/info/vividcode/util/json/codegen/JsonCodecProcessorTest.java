@@ -0,0 +1,163 @@
+package info.vividcode.util.json.codegen;
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import info.vividcode.util.json.InvalidJsonException;
+
+import org.junit.Test;
+
+public class JsonCodecProcessorTest {
+
+    private static final String SAMPLE_SOURCE =
+            "package p;\n" +
+            "import info.vividcode.util.json.*;\n" +
+            "import java.math.*;\n" +
+            "import java.util.*;\n" +
+            "@JsonCodec\n" +
+            "public class Sample {\n" +
+            "    enum Kind { A, B }\n" +
+            "    @JsonCodec\n" +
+            "    static class Child { String name; }\n" +
+            "    long id; int age; short s; byte b; double d; float f; boolean flag;\n" +
+            "    Integer boxed; String str; BigDecimal dec; BigInteger big; Kind kind;\n" +
+            "    int[] codes; int[][] grid; List<String> tags; Set<Long> ids; Map<String, List<Integer>> m;\n" +
+            "    Child child; List<Child> children; JsonObject extra;\n" +
+            "    transient int skip;\n" +
+            "}\n";
+
+    /** 生成したクラスをコンパイルした結果 */
+    private static class Compiled {
+        final boolean success;
+        final String diagnostics;
+        final ClassLoader loader;
+
+        Compiled(boolean success, String diagnostics, ClassLoader loader) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.loader = loader;
+        }
+    }
+
+    private static Compiled compile(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull( "JDK is required", compiler );
+        File dir = File.createTempFile("codegen", "");
+        dir.delete();
+        File srcFile = new File(dir, className.replace('.', '/') + ".java");
+        File outDir = new File(dir, "out");
+        srcFile.getParentFile().mkdirs();
+        outDir.mkdirs();
+        Writer w = new OutputStreamWriter(new FileOutputStream(srcFile), "UTF-8");
+        try {
+            w.write(source);
+        } finally {
+            w.close();
+        }
+        StringWriter diagnostics = new StringWriter();
+        Boolean success = compiler.getTask(diagnostics, null, null, Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"), "-d", outDir.getPath(), "-encoding", "UTF-8",
+                "-processor", JsonCodecProcessor.class.getName()),
+                null, compiler.getStandardFileManager(null, null, null).getJavaFileObjects(srcFile)).call();
+        ClassLoader loader = new URLClassLoader(new URL[] { outDir.toURI().toURL() },
+                JsonCodecProcessorTest.class.getClassLoader());
+        return new Compiled(success, diagnostics.toString(), loader);
+    }
+
+    private static Object invoke(Class<?> c, String name, Class<?> paramType, Object arg) throws Exception {
+        Method m = c.getMethod(name, paramType);
+        try {
+            return m.invoke(null, arg);
+        } catch (InvocationTargetException err) {
+            throw (Exception) err.getCause();
+        }
+    }
+
+    private static int intField(Object obj, String name) throws Exception {
+        Field f = obj.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        return f.getInt(obj);
+    }
+
+    /**
+     * 生成したコーデックで読んだ結果を書き出すと, 同じ内容の JSON テキストになることを確認する.
+     */
+    @Test
+    public void testGeneratedCodec() throws Exception {
+        Compiled c = compile("p.Sample", SAMPLE_SOURCE);
+        assertTrue( c.diagnostics, c.success );
+        Class<?> type = c.loader.loadClass("p.Sample");
+        Class<?> codec = c.loader.loadClass("p.SampleJsonCodec");
+        assertNotNull( c.loader.loadClass("p.Sample_ChildJsonCodec") );
+
+        String json = "{\"id\":-9223372036854775808,\"age\":20,\"s\":-3,\"b\":7,\"d\":1.5,\"f\":0.1,\"flag\":true," +
+                "\"boxed\":null,\"str\":\"\u3042\\n\",\"dec\":1.50,\"big\":123456789012345678901234567890," +
+                "\"kind\":\"B\",\"codes\":[3,1],\"grid\":[[1],null,[]],\"tags\":[\"a\",null],\"ids\":[1,2]," +
+                "\"m\":{\"k\":[1,null]},\"child\":{\"name\":\"c\"},\"children\":[null,{\"name\":null}]," +
+                "\"extra\":{\"x\":[true]}}";
+        Object sample = invoke(codec, "fromJson", String.class, "{ \"unknown\" : [ {} ], \"skip\" : 1, " + json.substring(1));
+        assertEquals( 20, intField(sample, "age") );
+        assertEquals( 0, intField(sample, "skip") );
+        assertEquals( json, invoke(codec, "toJson", type, sample) );
+
+        Object empty = invoke(codec, "fromJson", String.class, "{ \"age\" : null }");
+        assertEquals( 0, intField(empty, "age") );
+        // 最上位の値は null にできない
+        try {
+            invoke(codec, "toJson", type, null);
+            fail();
+        } catch (NullPointerException err) {
+            // ok
+        }
+
+        String[] invalidJsons = {
+                "{ \"age\" : \"1\" }", "{ \"age\" : 2147483648 }", "{ \"b\" : 1.5 }", "{ \"flag\" : 1 }",
+                "{ \"kind\" : \"C\" }", "{ \"codes\" : [ null ] }", "{ \"extra\" : [] }", "[]", "{} {}",
+        };
+        for (String invalid : invalidJsons) {
+            try {
+                invoke(codec, "fromJson", String.class, invalid);
+                fail( invalid );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+    }
+
+    /**
+     * 使用できない型のフィールドや private なフィールドがある場合に, コンパイルエラーとなることを確認する.
+     */
+    @Test
+    public void testUnsupported() throws IOException {
+        String[] bodies = {
+                "Object any;", "private int age;", "char c;", "List<?> list;", "Map<Integer, String> m;",
+                "Thread t;",
+        };
+        for (String body : bodies) {
+            Compiled c = compile("q.Bad", "package q;\nimport java.util.*;\n" +
+                    "@info.vividcode.util.json.JsonCodec\nclass Bad { " + body + " }\n");
+            assertFalse( body, c.success );
+            assertTrue( c.diagnostics, c.diagnostics.contains("Bad") );
+        }
+        Compiled c = compile("q.NoConstructor", "package q;\n" +
+                "@info.vividcode.util.json.JsonCodec\nclass NoConstructor { NoConstructor(int a) {} }\n");
+        assertFalse( c.success );
+    }
+
+}
@@ -0,0 +1,40 @@
+package info.vividcode.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Base64EncoderBenchmark {
+
+    @Param({ EncoderPayloads.ASCII, EncoderPayloads.NON_ASCII, EncoderPayloads.BINARY })
+    public String payload;
+
+    private byte[] mBytes;
+
+    @Setup
+    public void setUp() {
+        mBytes = EncoderPayloads.generateBytes(payload);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base64Encoder.encode(mBytes);
+    }
+
+}
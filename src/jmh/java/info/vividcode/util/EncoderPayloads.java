@@ -0,0 +1,49 @@
+package info.vividcode.util;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates texts and byte sequences used by the benchmarks of encoders.
+ */
+public final class EncoderPayloads {
+
+    private EncoderPayloads() {}
+
+    /** A short ASCII text, such as an OAuth parameter value. */
+    public static final String ASCII = "ascii";
+    /** A short text which consists mostly of non-ASCII characters. */
+    public static final String NON_ASCII = "nonAscii";
+    /** Random bytes of 64 KB, such as an uploaded image. */
+    public static final String BINARY = "binary";
+
+    /**
+     * Returns the bytes specified by name.
+     * @param name One of {@link #ASCII}, {@link #NON_ASCII}, and {@link #BINARY}.
+     * @return The generated bytes.
+     */
+    public static byte[] generateBytes(String name) {
+        if (BINARY.equals(name)) {
+            byte[] bytes = new byte[64 * 1024];
+            new Random(20141120L).nextBytes(bytes);
+            return bytes;
+        }
+        return generateText(name).getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Returns the text specified by name.
+     * @param name One of {@link #ASCII} and {@link #NON_ASCII}.
+     * @return The generated text.
+     */
+    public static String generateText(String name) {
+        if (ASCII.equals(name)) {
+            return "Hello Ladies + Gentlemen, a signed OAuth request! (status_id=530000000000000000&count=200)";
+        } else if (NON_ASCII.equals(name)) {
+            return "ウェブサービスのクライアントから署名付きリクエストを送信します。Ünïcödé テスト 😀🍣𠮷";
+        } else {
+            throw new IllegalArgumentException("Unknown payload: " + name);
+        }
+    }
+
+}
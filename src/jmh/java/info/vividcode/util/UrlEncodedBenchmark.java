@@ -0,0 +1,48 @@
+package info.vividcode.util;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlEncodedBenchmark {
+
+    @Param({ EncoderPayloads.ASCII, EncoderPayloads.NON_ASCII, EncoderPayloads.BINARY })
+    public String payload;
+
+    private byte[] mBytes;
+    private byte[] mSerializedBytes;
+
+    @Setup
+    public void setUp() {
+        mBytes = EncoderPayloads.generateBytes(payload);
+        mSerializedBytes = UrlEncoded.serializeComponent(mBytes).getBytes(Charset.forName("US-ASCII"));
+    }
+
+    @Benchmark
+    public String serializeComponent() {
+        return UrlEncoded.serializeComponent(mBytes);
+    }
+
+    @Benchmark
+    public byte[] deserializeComponent() {
+        return UrlEncoded.deserializeComponent(mSerializedBytes);
+    }
+
+}
@@ -0,0 +1,108 @@
+package info.vividcode.util.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBinderBenchmark {
+
+    /** Mirrors the statuses generated by {@link JsonPayloads}. */
+    public static class Status {
+        long id;
+        String id_str;
+        String created_at;
+        String text;
+        boolean truncated;
+        Long in_reply_to_status_id;
+        int retweet_count;
+        int favorite_count;
+        double score;
+        double[] coordinates;
+        User user;
+        JsonObject entities;
+    }
+
+    public static class User {
+        long id;
+        String name;
+        String screen_name;
+        String description;
+        int followers_count;
+        boolean verified;
+    }
+
+    // the deep payload doesn't consist of statuses
+    @Param({ JsonPayloads.SMALL, JsonPayloads.TIMELINE, JsonPayloads.NON_ASCII })
+    public String payload;
+
+    private String mJson;
+    private JsonValue mTree;
+    private List<Status> mStatuses;
+    private JsonBinder<Status> mBinder;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJson = JsonPayloads.generate(payload);
+        mTree = JsonParser.parse(mJson);
+        mBinder = JsonBinder.of(Status.class);
+        mStatuses = bind();
+    }
+
+    @Benchmark
+    public JsonValue parseTree() {
+        return JsonParser.parse(mJson);
+    }
+
+    @Benchmark
+    public List<Status> bind() throws IOException {
+        List<Status> statuses = new ArrayList<Status>();
+        JsonEventReader reader = new JsonEventReader(new JsonTokenizer(CodePointIterator.forString(mJson)));
+        if (reader.next() == JsonEventReader.Event.START_OBJECT) {
+            statuses.add(mBinder.read(reader));
+        } else {
+            while (reader.next() == JsonEventReader.Event.START_OBJECT) {
+                statuses.add(mBinder.read(reader));
+            }
+        }
+        return statuses;
+    }
+
+    @Benchmark
+    public String serializeTree() {
+        return JsonSerializer.serialize(mTree);
+    }
+
+    @Benchmark
+    public String writeBound() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if (mTree.valueType() == JsonValue.ValueType.OBJECT_VALUE) {
+            mBinder.write(mStatuses.get(0), sb);
+        } else {
+            JsonWriter w = new JsonWriter(sb);
+            w.beginArray();
+            for (Status s : mStatuses) mBinder.write(s, w);
+            w.endArray();
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,65 @@
+package info.vividcode.util.json;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the CBOR round trip with the textual one for the same trees:
+ * UTF-8 bytes for JSON text versus CBOR bytes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonCborBenchmark {
+
+    @Param({ JsonPayloads.SMALL, JsonPayloads.TIMELINE, JsonPayloads.DEEP, JsonPayloads.NON_ASCII })
+    public String payload;
+
+    private JsonValue mTree;
+    private byte[] mJsonBytes;
+    private byte[] mCborBytes;
+
+    @Setup
+    public void setUp() {
+        mTree = JsonParser.parse(JsonPayloads.generate(payload));
+        mJsonBytes = JsonSerializer.serialize(mTree).getBytes(Charset.forName("UTF-8"));
+        mCborBytes = JsonCbor.encode(mTree);
+        System.out.println("\n" + payload + ": JSON " + mJsonBytes.length + " bytes, CBOR " + mCborBytes.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return JsonSerializer.serialize(mTree).getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() {
+        return JsonCbor.encode(mTree);
+    }
+
+    @Benchmark
+    public JsonValue parseJson() {
+        return JsonParser.parse(mJsonBytes, 0, mJsonBytes.length);
+    }
+
+    @Benchmark
+    public JsonValue decodeCbor() {
+        return JsonCbor.decode(mCborBytes);
+    }
+
+}
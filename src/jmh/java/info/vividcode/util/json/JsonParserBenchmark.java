@@ -0,0 +1,153 @@
+package info.vividcode.util.json;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonParserBenchmark {
+
+    @Param({ JsonPayloads.SMALL, JsonPayloads.TIMELINE, JsonPayloads.DEEP, JsonPayloads.NON_ASCII })
+    public String payload;
+
+    private String mJson;
+    private byte[] mJsonBytes;
+    private JsonKeyCache mKeyCache;
+    private ReusableJsonParser mReusableParser;
+    private ExecutorService mExecutor;
+    private JsonPointer mPointer;
+    private JsonProjection mProjection;
+
+    @Setup
+    public void setUp() {
+        mJson = JsonPayloads.generate(payload);
+        mJsonBytes = mJson.getBytes(Charset.forName("UTF-8"));
+        mKeyCache = new JsonKeyCache();
+        mReusableParser = new ReusableJsonParser(new JsonKeyCache());
+        mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        // a field in the middle of the document
+        mPointer = JsonPointer.compile(JsonPayloads.SMALL.equals(payload) ? "/id" :
+                JsonPayloads.DEEP.equals(payload) ? "/child/1" : "/100/id");
+        mProjection = JsonPayloads.SMALL.equals(payload) ? JsonProjection.compile("/id", "/text", "/retweet_count") :
+                JsonPayloads.DEEP.equals(payload) ? JsonProjection.compile("/child/0", "/child/1/child/0") :
+                JsonProjection.compile("/0/id", "/100/text", "/150/retweet_count");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Benchmark
+    public JsonValue parse() {
+        return JsonParser.parse(mJson);
+    }
+
+    @Benchmark
+    public JsonValue parseUtf8Bytes() {
+        return JsonParser.parse(mJsonBytes, 0, mJsonBytes.length);
+    }
+
+    @Benchmark
+    public JsonValue parseIndexed() {
+        return JsonParser.parseIndexed(mJsonBytes, 0, mJsonBytes.length);
+    }
+
+    @Benchmark
+    public JsonValue parseWithKeyCache() {
+        return JsonParser.parse(mJson, mKeyCache);
+    }
+
+    /** One parser instance (with its own key cache) reused across invocations. */
+    @Benchmark
+    public JsonValue parseReusedInstance() {
+        return mReusableParser.parse(mJsonBytes, 0, mJsonBytes.length);
+    }
+
+    /** Builds the off-heap tape; allocation is the transient build array plus the direct buffer. */
+    @Benchmark
+    public JsonTape parseTape() {
+        return JsonParser.parseTape(mJsonBytes, 0, mJsonBytes.length);
+    }
+
+    @Benchmark
+    public JsonValue parseParallel() throws InterruptedException {
+        return JsonParser.parseParallel(mJson, mExecutor);
+    }
+
+    /** パースした後, 最上位の最初の要素 (またはメンバー) だけを参照する. */
+    @Benchmark
+    public JsonValue parseSparseAccess() {
+        return first(JsonParser.parse(mJsonBytes, 0, mJsonBytes.length));
+    }
+
+    @Benchmark
+    public JsonValue parseLazySparseAccess() {
+        return first(JsonParser.parseLazy(mJsonBytes, 0, mJsonBytes.length));
+    }
+
+    private static JsonValue first(JsonValue v) {
+        if (v.valueType() == JsonValue.ValueType.ARRAY_VALUE) {
+            return v.arrayValue().get(0);
+        }
+        return v.objectValue().values().iterator().next();
+    }
+
+    @Benchmark
+    public JsonValue parseAndEvaluatePointer() {
+        return mPointer.evaluate(JsonParser.parse(mJsonBytes, 0, mJsonBytes.length));
+    }
+
+    @Benchmark
+    public JsonValue extractPointer() {
+        return JsonParser.extract(mJsonBytes, 0, mJsonBytes.length, mPointer);
+    }
+
+    @Benchmark
+    public JsonObject projectFields() {
+        return mProjection.project(mJsonBytes, 0, mJsonBytes.length);
+    }
+
+    /** Feeds the document in 8 KB fragments, collecting each element of the top-level value. */
+    @Benchmark
+    public int pushParseFragments() {
+        final int[] count = new int[1];
+        JsonPushParser parser = new JsonPushParser(new JsonPushParser.Handler() {
+            @Override
+            public void event(JsonPushParser p, JsonEventReader.Event event) {
+                if (p.getDepth() == 2 || (p.getDepth() == 1 && event.name().startsWith("VALUE_"))) {
+                    p.collectValue();
+                }
+            }
+            @Override
+            public void value(JsonPushParser p, JsonValue value) {
+                count[0]++;
+            }
+        });
+        for (int i = 0; i < mJsonBytes.length; i += 8192) {
+            parser.feed(mJsonBytes, i, Math.min(8192, mJsonBytes.length - i));
+        }
+        parser.end();
+        return count[0];
+    }
+
+}
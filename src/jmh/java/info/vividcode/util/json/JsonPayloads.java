@@ -0,0 +1,110 @@
+package info.vividcode.util.json;
+
+import java.util.Random;
+
+/**
+ * Generates JSON documents used by the benchmarks.
+ * Documents are generated from a fixed seed, so every run measures the same input.
+ */
+public final class JsonPayloads {
+
+    private JsonPayloads() {}
+
+    /** A single status object, which is similar to a response of a typical REST API. */
+    public static final String SMALL = "small";
+    /** An array of statuses, whose size is about 1 MB. */
+    public static final String TIMELINE = "timeline";
+    /** Objects and arrays nested 256 levels deep. */
+    public static final String DEEP = "deep";
+    /** Objects whose string values consist mostly of non-ASCII characters. */
+    public static final String NON_ASCII = "nonAscii";
+
+    private static final String[] WORDS = {
+        "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "web", "service",
+        "client", "request", "response", "token", "signature", "timeline", "status",
+    };
+    private static final String[] NON_ASCII_WORDS = {
+        "日本語", "テスト", "改行も", "ウェブサービス", "クライアント", "署名", "タイムライン",
+        "Ünïcödé", "Ελληνικά", "русский", "😀", "🍣", "𠮷",
+    };
+
+    /**
+     * Returns the JSON document specified by name.
+     * @param name One of {@link #SMALL}, {@link #TIMELINE}, {@link #DEEP}, and {@link #NON_ASCII}.
+     * @return The generated JSON document.
+     */
+    public static String generate(String name) {
+        Random rand = new Random(20141120L);
+        StringBuilder sb = new StringBuilder();
+        if (SMALL.equals(name)) {
+            appendStatus(sb, rand, 1, WORDS);
+        } else if (TIMELINE.equals(name)) {
+            sb.append('[');
+            for (int i = 0; sb.length() < 1024 * 1024; i++) {
+                if (i != 0) sb.append(',');
+                appendStatus(sb, rand, i, WORDS);
+            }
+            sb.append(']');
+        } else if (DEEP.equals(name)) {
+            int depth = 256;
+            for (int i = 0; i < depth; i++) {
+                sb.append(i % 2 == 0 ? "{\"child\":" : "[" + i + ",");
+            }
+            sb.append("null");
+            for (int i = depth - 1; 0 <= i; i--) {
+                sb.append(i % 2 == 0 ? "}" : "]");
+            }
+        } else if (NON_ASCII.equals(name)) {
+            sb.append('[');
+            for (int i = 0; i < 200; i++) {
+                if (i != 0) sb.append(',');
+                appendStatus(sb, rand, i, NON_ASCII_WORDS);
+            }
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Unknown payload: " + name);
+        }
+        return sb.toString();
+    }
+
+    private static void appendStatus(StringBuilder sb, Random rand, int index, String[] words) {
+        long id = 530000000000000000L + index * 7919L;
+        sb.append("{\"id\":").append(id);
+        sb.append(",\"id_str\":\"").append(id).append('"');
+        sb.append(",\"created_at\":\"Thu Nov 20 12:34:").append(10 + index % 50).append(" +0000 2014\"");
+        sb.append(",\"text\":\"");
+        appendSentence(sb, rand, words, 8 + rand.nextInt(16));
+        sb.append("\\n\\\"quoted\\\"\"");
+        sb.append(",\"truncated\":").append(rand.nextBoolean());
+        sb.append(",\"in_reply_to_status_id\":null");
+        sb.append(",\"retweet_count\":").append(rand.nextInt(10000));
+        sb.append(",\"favorite_count\":").append(rand.nextInt(10000));
+        sb.append(",\"score\":").append(rand.nextInt(1000)).append('.').append(rand.nextInt(1000));
+        sb.append(",\"coordinates\":[").append(rand.nextDouble() * 180 - 90).append(',')
+                .append(rand.nextDouble() * 360 - 180).append(']');
+        sb.append(",\"user\":{\"id\":").append(rand.nextInt(1000000));
+        sb.append(",\"name\":\"");
+        appendSentence(sb, rand, words, 2);
+        sb.append("\",\"screen_name\":\"user").append(rand.nextInt(100000)).append('"');
+        sb.append(",\"description\":\"");
+        appendSentence(sb, rand, words, 12);
+        sb.append("\",\"followers_count\":").append(rand.nextInt(100000));
+        sb.append(",\"verified\":false}");
+        sb.append(",\"entities\":{\"hashtags\":[");
+        int numTags = rand.nextInt(4);
+        for (int i = 0; i < numTags; i++) {
+            if (i != 0) sb.append(',');
+            sb.append("{\"text\":\"").append(words[rand.nextInt(words.length)])
+                    .append("\",\"indices\":[").append(i * 10).append(',').append(i * 10 + 8).append("]}");
+        }
+        sb.append("],\"urls\":[]}}");
+    }
+
+    private static void appendSentence(StringBuilder sb, Random rand, String[] words, int numWords) {
+        for (int i = 0; i < numWords; i++) {
+            if (i != 0) sb.append(' ');
+            sb.append(words[rand.nextInt(words.length)]);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package info.vividcode.util.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializerBenchmark {
+
+    @Param({ JsonPayloads.SMALL, JsonPayloads.TIMELINE, JsonPayloads.DEEP, JsonPayloads.NON_ASCII })
+    public String payload;
+
+    private JsonValue mValue;
+    private JsonSerializer mSerializer;
+
+    @Setup
+    public void setUp() {
+        mValue = JsonParser.parse(JsonPayloads.generate(payload));
+        mSerializer = new JsonSerializer(false, 1000);
+    }
+
+    @Benchmark
+    public String serializeCompact() {
+        return JsonSerializer.serialize(mValue, false);
+    }
+
+    @Benchmark
+    public String serializeIndented() {
+        return JsonSerializer.serialize(mValue, true);
+    }
+
+    @Benchmark
+    public String serializeCompactDepthLimited() {
+        return JsonSerializer.serialize(mValue, false, 1000);
+    }
+
+    @Benchmark
+    public String serializeReusedInstance() {
+        return mSerializer.toJsonString(mValue);
+    }
+
+    @Benchmark
+    public void serializeToOutputStream(final Blackhole bh) throws IOException {
+        JsonSerializer.serialize(mValue, new OutputStream() {
+            @Override
+            public void write(int b) {
+                bh.consume(b);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bh.consume(b);
+            }
+        });
+    }
+
+}
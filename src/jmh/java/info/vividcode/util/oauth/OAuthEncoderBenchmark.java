@@ -0,0 +1,42 @@
+package info.vividcode.util.oauth;
+
+import info.vividcode.util.EncoderPayloads;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OAuthEncoderBenchmark {
+
+    @Param({ EncoderPayloads.ASCII, EncoderPayloads.NON_ASCII })
+    public String payload;
+
+    private String mText;
+
+    @Setup
+    public void setUp() {
+        mText = EncoderPayloads.generateText(payload);
+    }
+
+    @Benchmark
+    public String encode() {
+        return OAuthEncoder.encode(mText);
+    }
+
+}
@@ -0,0 +1,67 @@
+package info.vividcode.util.oauth;
+
+import info.vividcode.util.EncoderPayloads;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OAuthRequestHelperBenchmark {
+
+    @Param({ EncoderPayloads.ASCII, EncoderPayloads.NON_ASCII })
+    public String payload;
+
+    private OAuthRequestHelper.ParamList mOAuthParams;
+    private OAuthRequestHelper.ParamList mQueryParams;
+    private OAuthRequestHelper.ParamList mBodyParams;
+    private OAuthRequestHelper mHelper;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        mOAuthParams = OAuthRequestHelper.ParamList.fromArray(new String[][]{
+            { "oauth_consumer_key", "xvz1evFS4wEEPTGEFPHBog" },
+            { "oauth_nonce", "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg" },
+            { "oauth_signature_method", "HMAC-SHA1" },
+            { "oauth_timestamp", "1318622958" },
+            { "oauth_token", "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb" },
+            { "oauth_version", "1.0" },
+        });
+        mQueryParams = OAuthRequestHelper.ParamList.fromArray(new String[][]{
+            { "include_entities", "true" },
+        });
+        mBodyParams = OAuthRequestHelper.ParamList.fromArray(new String[][]{
+            { "status", EncoderPayloads.generateText(payload) },
+        });
+        mHelper = sign();
+    }
+
+    @Benchmark
+    public OAuthRequestHelper sign() throws GeneralSecurityException {
+        return new OAuthRequestHelper("https://api.twitter.com/1/statuses/update.json", "POST",
+                "kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw&LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE",
+                mOAuthParams, mQueryParams, mBodyParams);
+    }
+
+    @Benchmark
+    public String authorizationHeaderString() {
+        return mHelper.getAuthorizationHeaderString("");
+    }
+
+}
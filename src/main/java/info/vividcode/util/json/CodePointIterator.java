@@ -0,0 +1,375 @@
+package info.vividcode.util.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * JSON テキストを先頭から 1 code point ずつ読み進めるためのクラス.
+ * 入力の種類 (String, UTF-8 のバイト列, Reader) ごとにサブクラスがある.
+ */
+abstract class CodePointIterator {
+
+    /**
+     * 次の code point が存在するかどうかを返す.
+     */
+    abstract boolean hasNext();
+
+    /**
+     * 次の code point を返し, 位置を進める.
+     * @return 次の code point. 終端に達している場合は -1
+     */
+    abstract int next();
+
+    /**
+     * 直前に {@link #next()} で読んだ code point の分だけ位置を戻す.
+     * @param cp 直前に読んだ code point. -1 (終端) の場合は何もしない
+     */
+    abstract void prev(int cp);
+
+    /**
+     * 位置を進めずに次の code point を返す.
+     * @return 次の code point. 終端に達している場合は -1
+     */
+    abstract int viewNext();
+
+    /**
+     * 現在の位置から始まる, '"' と '\' を含まない文字の並びの長さ (char 単位) を返す.
+     * string の内容をまとめてコピーするために使用する.
+     * 効率よく求められない場合は 0 を返してよく, その場合は {@link #next()} で読み進められる.
+     */
+    abstract int plainCharsLength();
+
+    /**
+     * 現在の位置から指定の数の char を dst にコピーし, 位置を進める.
+     * num は直前の {@link #plainCharsLength()} の戻り値以下でなければならない.
+     */
+    abstract void readPlainChars(char[] dst, int dstPos, int num);
+
+    static CodePointIterator forString(String str) {
+        return new StringCodePointIterator(str, 0, str.length());
+    }
+
+    /** 文字列の begin から end (含まない) までの範囲を読み進める. */
+    static CodePointIterator forString(String str, int begin, int end) {
+        if (begin < 0 || end < begin || str.length() < end) {
+            throw new IndexOutOfBoundsException(
+                    "begin: " + begin + ", end: " + end + ", length: " + str.length());
+        }
+        return new StringCodePointIterator(str, begin, end);
+    }
+
+    static CodePointIterator forUtf8(byte[] bytes, int offset, int length) {
+        checkRange(bytes, offset, length);
+        return new ByteArrayUtf8CodePointIterator(bytes, offset, offset + length);
+    }
+
+    static void checkRange(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || bytes.length - length < offset) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+        }
+    }
+
+    static CodePointIterator forUtf8(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            int offset = buf.arrayOffset();
+            return new ByteArrayUtf8CodePointIterator(
+                    buf.array(), offset + buf.position(), offset + buf.limit());
+        }
+        return new ByteBufferUtf8CodePointIterator(buf);
+    }
+
+    static CodePointIterator forReader(Reader reader) {
+        return new ReaderCodePointIterator(reader);
+    }
+
+    /**
+     * Reader からの読み込みで発生した IOException を非検査例外として伝えるための例外.
+     * 受け取った側で {@link #getCause()} を投げ直す.
+     */
+    static final class IORuntimeException extends RuntimeException {
+        private static final long serialVersionUID = -3218127401744531546L;
+        IORuntimeException(IOException cause) {
+            super(cause);
+        }
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * ASCII の文字 (正確にはサロゲートでない文字) は charAt だけで読む.
+     * string の内容は indexOf で終端を探し, getChars でまとめてコピーする.
+     */
+    static final class StringCodePointIterator extends CodePointIterator {
+        private String str;
+        /** 読み進める範囲の終わり (含まない) */
+        private int limit;
+        private int index;
+        /** index 以降で最初の '\' の位置. 未計算の場合は index より小さい値, 存在しない場合は limit. */
+        private int nextBackslashIndex = -1;
+        StringCodePointIterator(String str, int begin, int end) {
+            reset(str, begin, end);
+        }
+        /** 別の文字列を読み進めるように状態を初期化する. オブジェクトを再利用するために使用する. */
+        void reset(String str, int begin, int end) {
+            this.str = str;
+            this.index = begin;
+            this.limit = end;
+            this.nextBackslashIndex = -1;
+        }
+        @Override
+        boolean hasNext() {
+            return index < limit;
+        }
+        @Override
+        int next() {
+            if (limit <= index) {
+                return -1;
+            }
+            char c = str.charAt(index);
+            if (!Character.isHighSurrogate(c)) {
+                index++;
+                return c;
+            }
+            int cp = (index + 1 < limit ? str.codePointAt(index) : c);
+            index += Character.charCount(cp);
+            return cp;
+        }
+        @Override
+        void prev(int cp) {
+            if (cp == -1) return;
+            index -= (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT ? 1 : 2);
+        }
+        @Override
+        int viewNext() {
+            if (limit <= index) {
+                return -1;
+            }
+            char c = str.charAt(index);
+            return Character.isHighSurrogate(c) && index + 1 < limit ? str.codePointAt(index) : c;
+        }
+        @Override
+        int plainCharsLength() {
+            int quoteIndex = str.indexOf('"', index);
+            if (quoteIndex < 0 || limit < quoteIndex) quoteIndex = limit;
+            // '\' は string 中にしか現れないことが多いので, 見つけた位置を覚えておき
+            // 毎回 (場合によっては文書の終わりまで) 探しなおさないようにする
+            if (nextBackslashIndex < index) {
+                nextBackslashIndex = str.indexOf('\\', index);
+                if (nextBackslashIndex < 0 || limit < nextBackslashIndex) nextBackslashIndex = limit;
+            }
+            return Math.min(quoteIndex, nextBackslashIndex) - index;
+        }
+        @Override
+        void readPlainChars(char[] dst, int dstPos, int num) {
+            str.getChars(index, index + num, dst, dstPos);
+            index += num;
+        }
+    }
+
+    /**
+     * UTF-8 のバイト列を decode しながら読み進める.
+     * 不正なバイト列 (冗長な表現やサロゲートの code point を含む) は {@link InvalidJsonException} とする.
+     */
+    private static abstract class Utf8CodePointIterator extends CodePointIterator {
+        protected int index;
+        protected int limit;
+        Utf8CodePointIterator(int index, int limit) {
+            this.index = index;
+            this.limit = limit;
+        }
+
+        /** 指定位置のバイトを 0x00-0xFF の値として返す. */
+        protected abstract int byteAt(int i);
+
+        @Override
+        boolean hasNext() {
+            return index < limit;
+        }
+        @Override
+        int next() {
+            if (limit <= index) {
+                return -1;
+            }
+            int b = byteAt(index);
+            if (b < 0x80) {
+                index++;
+                return b;
+            }
+            int cp;
+            int len;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                cp = b & 0x1F; len = 2; min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                cp = b & 0x0F; len = 3; min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                cp = b & 0x07; len = 4; min = 0x10000;
+            } else {
+                throw invalidByteSequence();
+            }
+            if (limit - index < len) throw invalidByteSequence();
+            for (int i = 1; i < len; i++) {
+                int c = byteAt(index + i);
+                if ((c & 0xC0) != 0x80) throw invalidByteSequence();
+                cp = (cp << 6) | (c & 0x3F);
+            }
+            if (cp < min || 0x10FFFF < cp || (0xD800 <= cp && cp <= 0xDFFF)) {
+                throw invalidByteSequence();
+            }
+            index += len;
+            return cp;
+        }
+        @Override
+        void prev(int cp) {
+            if (cp == -1) return;
+            index -= (cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4);
+        }
+        @Override
+        int viewNext() {
+            int i = index;
+            int cp = next();
+            index = i;
+            return cp;
+        }
+        @Override
+        int plainCharsLength() {
+            int i = index;
+            while (i < limit) {
+                int b = byteAt(i);
+                if (0x80 <= b || b == 0x22 || b == 0x5C) break;
+                i++;
+            }
+            return i - index;
+        }
+        @Override
+        void readPlainChars(char[] dst, int dstPos, int num) {
+            for (int i = 0; i < num; i++) {
+                dst[dstPos + i] = (char) byteAt(index + i);
+            }
+            index += num;
+        }
+        private InvalidJsonException invalidByteSequence() {
+            return new InvalidJsonException("Invalid UTF-8 byte sequence [index:" + index + "]");
+        }
+    }
+
+    static final class ByteArrayUtf8CodePointIterator extends Utf8CodePointIterator {
+        private byte[] bytes;
+        ByteArrayUtf8CodePointIterator(byte[] bytes, int index, int limit) {
+            super(index, limit);
+            this.bytes = bytes;
+        }
+        /** 別のバイト列の index から limit (含まない) までを読み進めるように状態を初期化する. */
+        void reset(byte[] bytes, int index, int limit) {
+            this.bytes = bytes;
+            this.index = index;
+            this.limit = limit;
+        }
+        @Override
+        protected int byteAt(int i) {
+            return bytes[i] & 0xFF;
+        }
+    }
+
+    /** direct buffer のように配列を持たない ByteBuffer 用. 絶対位置で読むため, バッファの位置は変更しない. */
+    private static class ByteBufferUtf8CodePointIterator extends Utf8CodePointIterator {
+        private final ByteBuffer buf;
+        ByteBufferUtf8CodePointIterator(ByteBuffer buf) {
+            super(buf.position(), buf.limit());
+            this.buf = buf;
+        }
+        @Override
+        protected int byteAt(int i) {
+            return buf.get(i) & 0xFF;
+        }
+    }
+
+    /**
+     * Reader から固定長のバッファに読み込みながら読み進める.
+     * {@link #prev(int)} で戻れるように, バッファを詰め直すときは直前の 2 文字を残す.
+     */
+    private static class ReaderCodePointIterator extends CodePointIterator {
+        private static final int NUM_KEPT_CHARS = 2;
+        private final Reader reader;
+        private final char[] buf = new char[8192];
+        private int index;
+        private int end;
+        private boolean eof;
+        ReaderCodePointIterator(Reader reader) {
+            this.reader = reader;
+        }
+        /** 読み込み済みで未読の文字が指定の数以上になるまで読み込む. */
+        private boolean fill(int num) {
+            while (end - index < num && !eof) {
+                if (end == buf.length) {
+                    int from = Math.max(0, index - NUM_KEPT_CHARS);
+                    System.arraycopy(buf, from, buf, 0, end - from);
+                    end -= from;
+                    index -= from;
+                }
+                int n;
+                try {
+                    n = reader.read(buf, end, buf.length - end);
+                } catch (IOException err) {
+                    throw new IORuntimeException(err);
+                }
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    end += n;
+                }
+            }
+            return num <= end - index;
+        }
+        @Override
+        boolean hasNext() {
+            return fill(1);
+        }
+        @Override
+        int next() {
+            if (!fill(1)) {
+                return -1;
+            }
+            char c = buf[index];
+            if (Character.isHighSurrogate(c) && fill(2) && Character.isLowSurrogate(buf[index + 1])) {
+                int cp = Character.toCodePoint(c, buf[index + 1]);
+                index += 2;
+                return cp;
+            }
+            index++;
+            return c;
+        }
+        @Override
+        void prev(int cp) {
+            if (cp == -1) return;
+            index -= Character.charCount(cp);
+        }
+        @Override
+        int viewNext() {
+            int cp = next();
+            prev(cp);
+            return cp;
+        }
+        @Override
+        int plainCharsLength() {
+            if (!fill(1)) return 0;
+            int i = index;
+            while (i < end) {
+                char c = buf[i];
+                if (c == '"' || c == '\\') break;
+                i++;
+            }
+            return i - index;
+        }
+        @Override
+        void readPlainChars(char[] dst, int dstPos, int num) {
+            System.arraycopy(buf, index, dst, dstPos, num);
+            index += num;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package info.vividcode.util.json;
+
+import java.util.Collection;
+
+/**
+ * 変更できない JSON の array を表すクラス.
+ * <p>
+ * 要素を変更するメソッド ({@link #add(JsonValue)} や {@link #set(int, JsonValue)},
+ * 反復子を介した変更を含む) はすべて {@link UnsupportedOperationException} を投げる.
+ * 要素として含まれる JsonObject や JsonArray もすべて変更できないもの
+ * ({@link ImmutableJsonObject}, {@link ImmutableJsonArray}) である.
+ * <p>
+ * 要素を追加, 置換, 削除した結果は {@link #withAdded(JsonValue)}, {@link #with(int, JsonValue)},
+ * {@link #without(int)} で新しいインスタンスとして得られる.
+ * その際, 要素の JSON オブジェクトはコピーせずに共有する.
+ * <p>
+ * 生成後に内容が変わることはないため, 同期を行わずに複数のスレッドから読むことができる.
+ * ただし, 他のスレッドへは安全な方法 (スレッドセーフなキャッシュに格納するなど) で渡すこと.
+ *
+ * @see JsonParser#parseImmutable(String)
+ */
+public final class ImmutableJsonArray extends JsonArray {
+
+    private static final long serialVersionUID = 5471364829376307760L;
+
+    /** 何も含まない ImmutableJsonArray オブジェクト */
+    public static final ImmutableJsonArray EMPTY = new ImmutableJsonArray(new JsonValue[0], 0);
+
+    /**
+     * 指定の配列の先頭 size 個を要素とする ImmutableJsonArray オブジェクトを生成する.
+     * 配列はコピーせずにそのまま使用し, 要素は変更できないものでなければならない.
+     */
+    ImmutableJsonArray(JsonValue[] elements, int size) {
+        super(elements, size);
+    }
+
+    /**
+     * 指定のコレクションと同じ要素を持つ ImmutableJsonArray オブジェクトを返す.
+     * 要素に含まれる変更可能な JsonObject や JsonArray は再帰的に変更できないものに変換し,
+     * 既に変更できないものはそのまま共有する.
+     * @param c 要素をコピーするコレクション
+     * @return c が ImmutableJsonArray の場合は c 自身, そうでない場合は新しいインスタンス
+     */
+    public static ImmutableJsonArray copyOf(Collection<? extends JsonValue> c) {
+        if (c instanceof ImmutableJsonArray) {
+            return (ImmutableJsonArray) c;
+        }
+        JsonValue[] elements = c.toArray(new JsonValue[c.size()]);
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = ImmutableJsonObject.toImmutable(elements[i]);
+        }
+        return new ImmutableJsonArray(elements, elements.length);
+    }
+
+    /**
+     * 常に, 例外 {@link UnsupportedOperationException} が投げられる.
+     */
+    @Override
+    void checkMutable() {
+        throw new UnsupportedOperationException("This JsonArray is immutable");
+    }
+
+    /**
+     * 常に, 例外 {@link UnsupportedOperationException} が投げられる.
+     */
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        checkMutable();
+    }
+
+    /**
+     * 常に, 例外 {@link UnsupportedOperationException} が投げられる.
+     */
+    @Override
+    public void trimToSize() {
+        checkMutable();
+    }
+
+    /**
+     * 末尾に要素を加えた ImmutableJsonArray オブジェクトを返す.
+     * このオブジェクト自体は変更されない.
+     * @param value 加える要素. 変更可能な JsonObject や JsonArray の場合は変更できないものに変換する
+     * @return 新しい ImmutableJsonArray オブジェクト
+     */
+    public ImmutableJsonArray withAdded(JsonValue value) {
+        int size = size();
+        JsonValue[] elements = copyElements(size + 1);
+        elements[size] = ImmutableJsonObject.toImmutable(value);
+        return new ImmutableJsonArray(elements, size + 1);
+    }
+
+    /**
+     * 指定の位置の要素を置き換えた ImmutableJsonArray オブジェクトを返す.
+     * このオブジェクト自体は変更されない.
+     * @param index 置き換える要素の位置
+     * @param value 新しい要素. 変更可能な JsonObject や JsonArray の場合は変更できないものに変換する
+     * @return 新しい ImmutableJsonArray オブジェクト
+     * @throws IndexOutOfBoundsException index が範囲外の場合
+     */
+    public ImmutableJsonArray with(int index, JsonValue value) {
+        int size = size();
+        if (index < 0 || size <= index) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        JsonValue[] elements = copyElements(size);
+        elements[index] = ImmutableJsonObject.toImmutable(value);
+        return new ImmutableJsonArray(elements, size);
+    }
+
+    /**
+     * 指定の位置の要素を取り除いた ImmutableJsonArray オブジェクトを返す.
+     * このオブジェクト自体は変更されない.
+     * @param index 取り除く要素の位置
+     * @return 新しい ImmutableJsonArray オブジェクト
+     * @throws IndexOutOfBoundsException index が範囲外の場合
+     */
+    public ImmutableJsonArray without(int index) {
+        int size = size();
+        if (index < 0 || size <= index) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        JsonValue[] elements = new JsonValue[size - 1];
+        for (int j = 0, k = 0; j < size; j++) {
+            if (j != index) elements[k++] = get(j);
+        }
+        return new ImmutableJsonArray(elements, size - 1);
+    }
+
+    /**
+     * 自分自身を返す. 変更できないため, コピーする必要はない.
+     */
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+}
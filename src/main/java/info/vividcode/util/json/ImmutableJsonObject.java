@@ -0,0 +1,136 @@
+package info.vividcode.util.json;
+
+import java.util.Map;
+
+/**
+ * 変更できない JSON の object を表すクラス.
+ * <p>
+ * 要素を変更するメソッド ({@link #put(String, JsonValue)} や {@link #remove(Object)},
+ * 反復子や {@link java.util.Map.Entry} を介した変更を含む) はすべて
+ * {@link UnsupportedOperationException} を投げる.
+ * 値として含まれる JsonObject や JsonArray もすべて変更できないもの
+ * ({@link ImmutableJsonObject}, {@link ImmutableJsonArray}) である.
+ * <p>
+ * 要素を追加, 削除した結果は {@link #with(String, JsonValue)} や {@link #without(String)}
+ * で新しいインスタンスとして得られる. その際, 値として含まれる JSON オブジェクトはコピーせずに共有する.
+ * <p>
+ * 生成後に内容が変わることはないため, 同期を行わずに複数のスレッドから読むことができる.
+ * ただし, 他のスレッドへは安全な方法 (スレッドセーフなキャッシュに格納するなど) で渡すこと.
+ *
+ * @see JsonParser#parseImmutable(String)
+ */
+public final class ImmutableJsonObject extends JsonObject {
+
+    private static final long serialVersionUID = -2437398812646393011L;
+
+    /** 何も含まない ImmutableJsonObject オブジェクト */
+    public static final ImmutableJsonObject EMPTY =
+            new ImmutableJsonObject(new String[0], new JsonValue[0], 0);
+
+    /**
+     * 指定の配列の先頭 size 個をキーと値とする ImmutableJsonObject オブジェクトを生成する.
+     * 配列はコピーせずにそのまま使用し, 値は変更できないものでなければならない.
+     */
+    ImmutableJsonObject(String[] keys, JsonValue[] values, int size) {
+        super(keys, values, size);
+    }
+
+    /**
+     * 指定の Map と同じ要素を持つ ImmutableJsonObject オブジェクトを返す.
+     * 値に含まれる変更可能な JsonObject や JsonArray は再帰的に変更できないものに変換し,
+     * 既に変更できないものはそのまま共有する.
+     * @param m 要素をコピーする Map
+     * @return m が ImmutableJsonObject の場合は m 自身, そうでない場合は新しいインスタンス
+     */
+    public static ImmutableJsonObject copyOf(Map<String,? extends JsonValue> m) {
+        if (m instanceof ImmutableJsonObject) {
+            return (ImmutableJsonObject) m;
+        }
+        int size = m.size();
+        String[] keys = new String[size];
+        JsonValue[] values = new JsonValue[size];
+        int i = 0;
+        for (Map.Entry<String,? extends JsonValue> e : m.entrySet()) {
+            keys[i] = e.getKey();
+            values[i] = toImmutable(e.getValue());
+            i++;
+        }
+        return new ImmutableJsonObject(keys, values, size);
+    }
+
+    /**
+     * JSON オブジェクトを変更できないものに変換する.
+     * JsonObject と JsonArray 以外の値はもともと変更できないので, そのまま返す.
+     */
+    static JsonValue toImmutable(JsonValue value) {
+        if (value instanceof JsonObject) {
+            return copyOf((JsonObject) value);
+        } else if (value instanceof JsonArray) {
+            return ImmutableJsonArray.copyOf((JsonArray) value);
+        }
+        return value;
+    }
+
+    /**
+     * 常に, 例外 {@link UnsupportedOperationException} が投げられる.
+     */
+    @Override
+    void checkMutable() {
+        throw new UnsupportedOperationException("This JsonObject is immutable");
+    }
+
+    /**
+     * 指定のキーと値の組を加えた ImmutableJsonObject オブジェクトを返す.
+     * 既に同じキーが存在する場合は, 同じ位置で値を置き換える. このオブジェクト自体は変更されない.
+     * @param key キー
+     * @param value 値. 変更可能な JsonObject や JsonArray の場合は変更できないものに変換する
+     * @return 新しい ImmutableJsonObject オブジェクト
+     */
+    public ImmutableJsonObject with(String key, JsonValue value) {
+        value = toImmutable(value);
+        int size = size();
+        int i = indexOf(key);
+        if (i >= 0) {
+            JsonValue[] values = copyValues(size);
+            values[i] = value;
+            return new ImmutableJsonObject(copyKeys(size), values, size);
+        }
+        String[] keys = copyKeys(size + 1);
+        JsonValue[] values = copyValues(size + 1);
+        keys[size] = key;
+        values[size] = value;
+        return new ImmutableJsonObject(keys, values, size + 1);
+    }
+
+    /**
+     * 指定のキーを取り除いた ImmutableJsonObject オブジェクトを返す.
+     * このオブジェクト自体は変更されない.
+     * @param key 取り除くキー
+     * @return 新しい ImmutableJsonObject オブジェクト. キーが存在しない場合はこのオブジェクト自身
+     */
+    public ImmutableJsonObject without(String key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return this;
+        }
+        int size = size();
+        String[] keys = new String[size - 1];
+        JsonValue[] values = new JsonValue[size - 1];
+        for (int j = 0, k = 0; j < size; j++) {
+            if (j == i) continue;
+            keys[k] = keyAt(j);
+            values[k] = valueAt(j);
+            k++;
+        }
+        return new ImmutableJsonObject(keys, values, size - 1);
+    }
+
+    /**
+     * 自分自身を返す. 変更できないため, コピーする必要はない.
+     */
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+}
@@ -0,0 +1,231 @@
+package info.vividcode.util.json;
+
+/**
+ * {@link JsonStructuralIndex} を辿ってトークンを読む JsonTokenizer.
+ * 2 段階でパースする際の 2 段階目であり, 空白を 1 文字ずつ読み飛ばしたり,
+ * 1 文字ごとにトークンの種類を判定したりせずに, 次の区切りの位置へ直接進む.
+ * <p>
+ * 構造インデックスは string の外の文字を大まかに分類しただけのものなので,
+ * number やリテラルの内容の検証と, string の内容の decode (UTF-8 の検証を含む) はここで行う.
+ */
+class IndexedJsonTokenizer extends JsonTokenizer {
+
+    private final JsonStructuralIndex mIndex;
+    private final byte[] mBytes;
+    private final int mLimit;
+    /** 次に読む区切りの, 一覧上の位置 */
+    private int mNext;
+
+    IndexedJsonTokenizer(JsonStructuralIndex index) {
+        this(index, null);
+    }
+
+    IndexedJsonTokenizer(JsonStructuralIndex index, JsonKeyCache keyCache) {
+        super(null, keyCache);
+        mIndex = index;
+        mBytes = index.bytes;
+        mLimit = index.limit;
+    }
+
+    /** 構造インデックスを返す. */
+    JsonStructuralIndex index() {
+        return mIndex;
+    }
+
+    /** 直前に読んだトークンの, 一覧上の位置を返す. */
+    int tokenPosition() {
+        return mNext - 1;
+    }
+
+    /** 次に読むトークンの一覧上の位置を設定する. 遅延パースで入れ子の部分から読み始める際に使用する. */
+    void seek(int next) {
+        mNext = next;
+    }
+
+    /**
+     * 現在のトークンが "[" または "{" の場合に, 対応する終わりの括弧の直前まで読み飛ばす.
+     * 次の {@link #next()} は終わりの括弧を返す.
+     */
+    void skipToContainerEnd() {
+        mNext = mIndex.findMatchingEnd(mNext - 1);
+    }
+
+    @Override
+    TokenType readNextToken() {
+        if (mIndex.count <= mNext) {
+            return null;
+        }
+        int pos = mIndex.positions[mNext++];
+        int b = mBytes[pos];
+        switch (b) {
+            case '[':
+                return TokenType.BEGIN_ARRAY;
+            case '{':
+                return TokenType.BEGIN_OBJECT;
+            case ']':
+                return TokenType.END_ARRAY;
+            case '}':
+                return TokenType.END_OBJECT;
+            case ':':
+                return TokenType.NAME_SEPARATER;
+            case ',':
+                return TokenType.VALUE_SEPARATER;
+            case '"':
+                readString(pos + 1);
+                return TokenType.STRING;
+            case 'f':
+                checkLiteral(pos, "false");
+                return TokenType.FALSE;
+            case 'n':
+                checkLiteral(pos, "null");
+                return TokenType.NULL;
+            case 't':
+                checkLiteral(pos, "true");
+                return TokenType.TRUE;
+        }
+        if (b == '-' || ('0' <= b && b <= '9')) {
+            readNumber(pos);
+            return TokenType.NUMBER;
+        }
+        throw new InvalidJsonException("unexpected character [index:" + pos + "]");
+    }
+
+    private void readString(int i) {
+        while (true) {
+            // エスケープされていない ASCII の文字の並びはまとめてコピーする
+            int start = i;
+            int b = 0;
+            while (i < mLimit && (b = mBytes[i]) >= 0 && b != '"' && b != '\\') i++;
+            if (start < i) appendAscii(mBytes, start, i - start);
+            if (mLimit <= i) {
+                throw new InvalidJsonException("string の終端 (\") が見つかりません");
+            }
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                if (mLimit <= i + 1) {
+                    throw new InvalidJsonException("string の終端 (\") が見つかりません");
+                }
+                i = readEscape(i + 1);
+            } else {
+                i = readUtf8(i);
+            }
+        }
+    }
+
+    /** \ に続くエスケープを decode してバッファに追加し, 次の位置を返す. */
+    private int readEscape(int i) {
+        int b = mBytes[i];
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+                appendChar((char) b); return i + 1;
+            case 'b':
+                appendChar('\b'); return i + 1;
+            case 'f':
+                appendChar('\f'); return i + 1;
+            case 'n':
+                appendChar('\n'); return i + 1;
+            case 'r':
+                appendChar('\r'); return i + 1;
+            case 't':
+                appendChar('\t'); return i + 1;
+            case 'u':
+                if (mLimit - i < 5) {
+                    throw new InvalidJsonException("string の終端 (\") が見つかりません");
+                }
+                int c = 0;
+                for (int j = 1; j <= 4; j++) c = (c << 4) | hexDigitValue(mBytes[i + j]);
+                appendChar((char) c);
+                return i + 5;
+            default:
+                throw new InvalidJsonException("invalid escape sequence [code point:" + b + "]");
+        }
+    }
+
+    /** ASCII でない文字を UTF-8 として decode してバッファに追加し, 次の位置を返す. */
+    private int readUtf8(int i) {
+        int b = mBytes[i] & 0xFF;
+        int cp;
+        int len;
+        int min;
+        if ((b & 0xE0) == 0xC0) {
+            cp = b & 0x1F; len = 2; min = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+            cp = b & 0x0F; len = 3; min = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+            cp = b & 0x07; len = 4; min = 0x10000;
+        } else {
+            throw invalidByteSequence(i);
+        }
+        if (mLimit - i < len) throw invalidByteSequence(i);
+        for (int j = 1; j < len; j++) {
+            int c = mBytes[i + j];
+            if ((c & 0xC0) != 0x80) throw invalidByteSequence(i);
+            cp = (cp << 6) | (c & 0x3F);
+        }
+        if (cp < min || 0x10FFFF < cp || (0xD800 <= cp && cp <= 0xDFFF)) {
+            throw invalidByteSequence(i);
+        }
+        appendCodePoint(cp);
+        return i + len;
+    }
+
+    private static InvalidJsonException invalidByteSequence(int i) {
+        return new InvalidJsonException("Invalid UTF-8 byte sequence [index:" + i + "]");
+    }
+
+    private void readNumber(int start) {
+        // number = [minus] int [frac] [exp]
+        int i = start;
+        if (i < mLimit && mBytes[i] == '-') i++;
+        if (i < mLimit && mBytes[i] == '0') {
+            i++;
+        } else {
+            i = skipDigits(i);
+        }
+        if (i < mLimit && mBytes[i] == '.') {
+            i = skipDigits(i + 1);
+        }
+        if (i < mLimit && (mBytes[i] == 'e' || mBytes[i] == 'E')) {
+            i++;
+            if (i < mLimit && (mBytes[i] == '+' || mBytes[i] == '-')) i++;
+            i = skipDigits(i);
+        }
+        checkDelimiter(i);
+        appendAscii(mBytes, start, i - start);
+    }
+
+    /** 1 つ以上の数字の並びを読み飛ばし, 次の位置を返す. */
+    private int skipDigits(int i) {
+        int start = i;
+        while (i < mLimit && '0' <= mBytes[i] && mBytes[i] <= '9') i++;
+        if (i == start) throw new InvalidJsonException("unexpected character [index:" + i + "]");
+        return i;
+    }
+
+    private void checkLiteral(int i, String literal) {
+        int len = literal.length();
+        if (mLimit - i < len) throw new InvalidJsonException("unexpected token");
+        for (int j = 1; j < len; j++) {
+            if (mBytes[i + j] != literal.charAt(j)) throw new InvalidJsonException("unexpected token");
+        }
+        checkDelimiter(i + len);
+    }
+
+    /** number やリテラルの直後が, 入力の終わりか空白か構造上の区切りであることを確かめる. */
+    private void checkDelimiter(int i) {
+        if (mLimit <= i) return;
+        switch (mBytes[i]) {
+            case ' ': case '\t': case '\n': case '\r':
+            case ',': case ']': case '}': case ':':
+            case '[': case '{': case '"':
+                return;
+            default:
+                throw new InvalidJsonException("unexpected character [index:" + i + "]");
+        }
+    }
+
+}
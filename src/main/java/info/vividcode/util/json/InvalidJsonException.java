@@ -10,7 +10,12 @@ public class InvalidJsonException extends RuntimeException {
 
     private static final long serialVersionUID = 7931499555717836599L;
 
-    InvalidJsonException(String message) {
+    /**
+     * 指定のメッセージを持つ例外を生成する.
+     * {@link JsonCodec} によって生成されるコードなど, パッケージの外で JSON テキストを解釈する処理から使用する.
+     * @param message 詳細メッセージ
+     */
+    public InvalidJsonException(String message) {
         super(message);
     }
 
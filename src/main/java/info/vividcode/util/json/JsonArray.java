@@ -1,28 +1,252 @@
 package info.vividcode.util.json;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
 
 /**
  * JSON の array を表すためのクラスであり, JsonValue オブジェクトを格納するための
  * {@link java.util.List} でもある.
+ * <p>
+ * 要素は配列で保持しており, {@link java.util.ArrayList} と同様に位置による参照は定数時間で行える.
+ * <p>
+ * <strong>互換性に関する注意:</strong> バージョン 0.2.1.1 までは {@link java.util.ArrayList} を継承していたが,
+ * 0.2.2 からは {@link java.util.AbstractList} を継承する. {@link #ensureCapacity(int)} と {@link #trimToSize()} は
+ * 引き続き使用できるが, JsonArray を ArrayList 型の変数や引数として扱っていたコードは,
+ * {@link java.util.List} 型を使用するか, <code>new ArrayList&lt;JsonValue&gt;(jarray)</code> でコピーすること.
+ * ({@link ImmutableJsonArray} などの派生クラスでの変更をすべて 1 か所で禁止できるようにするため,
+ * ArrayList が独自に実装しているメソッドを持たない AbstractList を継承する.)
+ * シリアライズした形式も変わり serialVersionUID も異なるため, 0.2.1.1 以前でシリアライズしたものを復元することはできない
+ * ({@link java.io.InvalidClassException} が発生する).
  *
  * @author nobuoka
  *
  */
-public class JsonArray extends ArrayList<JsonValue> implements JsonValue {
+public class JsonArray extends AbstractList<JsonValue>
+        implements JsonValue, RandomAccess, Cloneable, Serializable {
 
-    private static final long serialVersionUID = -8694573603186652059L;
+    /** ArrayList を継承していた 0.2.1.1 以前の形式 (-8694573603186652059L) とは互換性がない */
+    private static final long serialVersionUID = 1327502180532372106L;
     private static final String CLASS_NAME  = "JsonArray";
     private static final String METHOD_NAME = "arrayValue()";
-    final Object ID;
+    private static final JsonValue[] EMPTY_ELEMENTS = new JsonValue[0];
+
+    private transient JsonValue[] mElements;
+    private transient int mSize;
 
     /**
      * 何も含まない状態の JsonArray オブジェクトを生成する.
      */
     public JsonArray() {
         super();
-        ID = new Object();
+        mElements = EMPTY_ELEMENTS;
+    }
+
+    /**
+     * 何も含まない状態の JsonArray オブジェクトを, 指定の要素数を格納できる大きさで生成する.
+     * @param initialCapacity 初期容量
+     */
+    public JsonArray(int initialCapacity) {
+        super();
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        mElements = new JsonValue[initialCapacity];
+    }
+
+    /**
+     * 指定のコレクションの要素を, その反復順に含む JsonArray オブジェクトを生成する.
+     * @param c 要素をコピーするコレクション
+     */
+    public JsonArray(Collection<? extends JsonValue> c) {
+        super();
+        mElements = c.toArray(new JsonValue[c.size()]);
+        mSize = mElements.length;
+    }
+
+    /**
+     * 指定の配列の先頭 size 個を要素とする JsonArray オブジェクトを生成する.
+     * 配列はコピーせずにそのまま使用する.
+     */
+    JsonArray(JsonValue[] elements, int size) {
+        super();
+        mElements = elements;
+        mSize = size;
+    }
+
+    /**
+     * 要素を変更する操作の前に呼ばれる.
+     * 変更できない場合は例外を投げる.
+     */
+    void checkMutable() {
+        // 変更可能
+    }
+
+    /**
+     * 要素を参照または変更する操作の前に呼ばれる.
+     * 内容を遅延して読み込む派生クラスは, ここで読み込みを行う.
+     */
+    void ensureLoaded() {
+        // 読み込み済み
+    }
+
+    @Override
+    public int size() {
+        ensureLoaded();
+        return mSize;
+    }
+
+    @Override
+    public JsonValue get(int index) {
+        ensureLoaded();
+        if (mSize <= index) throw outOfBounds(index);
+        return mElements[index];
+    }
+
+    @Override
+    public JsonValue set(int index, JsonValue element) {
+        checkMutable();
+        ensureLoaded();
+        if (mSize <= index) throw outOfBounds(index);
+        JsonValue old = mElements[index];
+        mElements[index] = element;
+        return old;
+    }
+
+    @Override
+    public boolean add(JsonValue element) {
+        checkMutable();
+        ensureLoaded();
+        if (mSize == mElements.length) grow(mSize + 1);
+        mElements[mSize++] = element;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, JsonValue element) {
+        checkMutable();
+        ensureLoaded();
+        if (index < 0 || mSize < index) throw outOfBounds(index);
+        if (mSize == mElements.length) grow(mSize + 1);
+        System.arraycopy(mElements, index, mElements, index + 1, mSize - index);
+        mElements[index] = element;
+        mSize++;
+        modCount++;
+    }
+
+    @Override
+    public JsonValue remove(int index) {
+        checkMutable();
+        ensureLoaded();
+        if (mSize <= index) throw outOfBounds(index);
+        JsonValue old = mElements[index];
+        int numMoved = mSize - index - 1;
+        if (numMoved > 0) System.arraycopy(mElements, index + 1, mElements, index, numMoved);
+        mElements[--mSize] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        checkMutable();
+        ensureLoaded();
+        for (int i = 0; i < mSize; i++) mElements[i] = null;
+        mSize = 0;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends JsonValue> c) {
+        checkMutable();
+        ensureLoaded();
+        Object[] a = c.toArray();
+        if (mElements.length - mSize < a.length) grow(mSize + a.length);
+        System.arraycopy(a, 0, mElements, mSize, a.length);
+        mSize += a.length;
+        modCount++;
+        return a.length != 0;
+    }
+
+    /**
+     * 少なくとも指定の要素数を格納できるよう, 必要に応じて容量を増やす.
+     * @param minCapacity 必要な容量
+     */
+    public void ensureCapacity(int minCapacity) {
+        ensureLoaded();
+        if (mElements.length < minCapacity) grow(minCapacity);
+    }
+
+    /**
+     * 容量を現在の要素数まで減らす.
+     */
+    public void trimToSize() {
+        ensureLoaded();
+        if (mSize < mElements.length) {
+            JsonValue[] elements = new JsonValue[mSize];
+            System.arraycopy(mElements, 0, elements, 0, mSize);
+            mElements = elements;
+        }
+    }
+
+    /**
+     * 浅いコピーを返す. 要素の JsonValue オブジェクトは共有される.
+     */
+    @Override
+    public Object clone() {
+        ensureLoaded();
+        JsonArray a;
+        try {
+            a = (JsonArray) super.clone();
+        } catch (CloneNotSupportedException err) {
+            throw new AssertionError(err);
+        }
+        a.mElements = mElements.clone();
+        a.modCount = 0;
+        return a;
+    }
+
+    /** 要素の配列をコピーして返す. 派生クラスで新しいインスタンスを作るために使用する. */
+    JsonValue[] copyElements(int capacity) {
+        ensureLoaded();
+        JsonValue[] elements = new JsonValue[capacity];
+        System.arraycopy(mElements, 0, elements, 0, Math.min(mSize, capacity));
+        return elements;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = mElements.length + (mElements.length >> 1);
+        if (capacity < minCapacity) capacity = Math.max(minCapacity, 4);
+        JsonValue[] elements = new JsonValue[capacity];
+        System.arraycopy(mElements, 0, elements, 0, mSize);
+        mElements = elements;
+    }
+
+    private IndexOutOfBoundsException outOfBounds(int index) {
+        return new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureLoaded();
+        out.defaultWriteObject();
+        out.writeInt(mSize);
+        for (int i = 0; i < mSize; i++) out.writeObject(mElements[i]);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        if (size < 0) throw new InvalidObjectException("Illegal size: " + size);
+        mElements = new JsonValue[size];
+        for (int i = 0; i < size; i++) mElements[i] = (JsonValue) in.readObject();
+        mSize = size;
     }
 
     /**
@@ -0,0 +1,850 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.JsonEventReader.Event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON の object と Java のオブジェクト (POJO) を直接相互に変換するデータバインダー.
+ * <pre><code>  JsonBinder&lt;User&gt; binder = JsonBinder.of( User.class );
+ *  // JsonObject を生成せずに, JSON テキストから直接 User オブジェクトを生成する
+ *  User user = binder.read( jsonStr );
+ *  // User オブジェクトを JSON テキストに変換する
+ *  String json = binder.toJson( user );</code></pre>
+ * <p>
+ * クラスのフィールド (static と transient のものを除く. スーパークラスのものを含む) を
+ * フィールド名と同じ名前の object のメンバーに対応付ける.
+ * クラスは引数のないコンストラクタ (private でもよい) を持たなければならない.
+ * フィールドの型として使用できるのは次のものである.
+ * <ul>
+ * <li>プリミティブ型 (char を除く) とそのラッパークラス, String, BigDecimal, BigInteger, enum</li>
+ * <li>JsonValue とそのサブクラス (対応する値をそのまま保持する)</li>
+ * <li>要素の型が使用できるものである配列, List, Set, Collection と, 値の型が使用できるものである Map&lt;String, V&gt;</li>
+ * <li>これらの条件を満たすほかのクラス</li>
+ * </ul>
+ * <p>
+ * クラスの構造の解析は JsonBinder オブジェクトの生成時に 1 度だけ行い, 結果 (アクセス可能にした Field と
+ * 型ごとの変換処理) を保持しておく. 読み込みでは {@link JsonEventReader} のイベントから
+ * 直接フィールドの値を設定し, メンバーの名前と JsonString や JsonNumber などの中間のオブジェクトは生成しない.
+ * 書き出しは {@link JsonWriter} を通して行うため, エスケープと number の表記は {@link JsonSerializer} と同じである.
+ * <p>
+ * JSON テキスト中の対応するフィールドがないメンバーは読み飛ばす. プリミティブ型のフィールドに対応するメンバーの値が
+ * null の場合は, フィールドの値を変更しない. インスタンスは同期を行わずに複数のスレッドで共有できる.
+ */
+public final class JsonBinder<T> {
+
+    /**
+     * クラスごとの JsonBinder オブジェクト. アプリケーションサーバーなどでクラスローダーごと破棄された
+     * クラスを保持し続けないよう, キーのクラスも値の JsonBinder (クラスを参照している) も弱参照で保持する.
+     * 使用する側で JsonBinder オブジェクトを保持している間は, 同じオブジェクトが返される.
+     */
+    private static final Map<Class<?>, WeakReference<JsonBinder<?>>> sBinders =
+            new WeakHashMap<Class<?>, WeakReference<JsonBinder<?>>>();
+
+    private final Class<T> mType;
+    private final Constructor<T> mConstructor;
+    private final Property[] mProperties;
+
+    private JsonBinder(Class<T> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isArray() ||
+                type.isPrimitive() || type.isEnum()) {
+            throw new IllegalArgumentException("Can't bind to the type [" + type.getName() + "]");
+        }
+        try {
+            mConstructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException err) {
+            throw new IllegalArgumentException("No-arg constructor is required [" + type.getName() + "]");
+        }
+        mConstructor.setAccessible(true);
+        mType = type;
+        mProperties = createProperties(type);
+    }
+
+    /**
+     * 指定のクラスについての JsonBinder オブジェクトを返す.
+     * 生成したオブジェクトはキャッシュされ, 使用する側で保持している間は同じオブジェクトが返される.
+     * キャッシュは弱参照であるため, 繰り返し使用する場合は返されたオブジェクトを (static フィールドなどに) 保持しておくとよい.
+     * @param type 対応付けるクラス
+     * @return JsonBinder オブジェクト
+     * @throws IllegalArgumentException 引数のないコンストラクタがない場合や, 使用できない型のフィールドがある場合
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonBinder<T> of(Class<T> type) {
+        JsonBinder<?> binder = cachedBinder(type);
+        if (binder == null) {
+            // クラスの解析はロックの外で行う. 同時に生成された場合は先に登録されたものを使う
+            JsonBinder<?> created = new JsonBinder<T>(type);
+            synchronized (sBinders) {
+                binder = cachedBinder(type);
+                if (binder == null) {
+                    binder = created;
+                    sBinders.put(type, new WeakReference<JsonBinder<?>>(binder));
+                }
+            }
+        }
+        return (JsonBinder<T>) binder;
+    }
+
+    private static JsonBinder<?> cachedBinder(Class<?> type) {
+        synchronized (sBinders) {
+            WeakReference<JsonBinder<?>> ref = sBinders.get(type);
+            return (ref == null ? null : ref.get());
+        }
+    }
+
+    /**
+     * JSON 文字列を読み, 新しいオブジェクトを生成して返す.
+     * @param jsonStr 最上位の値が object である JSON 文字列
+     * @return 生成したオブジェクト
+     * @throws InvalidJsonException JSON 文字列が不正な場合や, 値の型がフィールドの型と合わない場合
+     */
+    public T read(String jsonStr) {
+        return readWhole(new JsonEventReader(new JsonTokenizer(CodePointIterator.forString(jsonStr))));
+    }
+
+    /**
+     * UTF-8 でエンコードされた JSON テキストを読み, 新しいオブジェクトを生成して返す.
+     * @see #read(String)
+     */
+    public T read(byte[] bytes, int offset, int length) {
+        return readWhole(new JsonEventReader(new JsonTokenizer(CodePointIterator.forUtf8(bytes, offset, length))));
+    }
+
+    /**
+     * 直前のイベントが {@link Event#START_OBJECT} の場合に, 対応する {@link Event#END_OBJECT} まで読み進め,
+     * その間の内容から新しいオブジェクトを生成して返す. 直前のイベントが {@link Event#VALUE_NULL} の場合は null を返す.
+     * 巨大な array の要素をひとつずつオブジェクトに変換する場合に使用する.
+     * <pre><code>  reader.next();
+     *  while ( reader.next() == JsonEventReader.Event.START_OBJECT ) {
+     *      User user = binder.read( reader );
+     *  }</code></pre>
+     * @param reader 読み込みに使用する JsonEventReader
+     * @return 生成したオブジェクト
+     * @throws InvalidJsonException JSON テキストが不正な場合や, 値の型がフィールドの型と合わない場合
+     * @throws IOException 入力の読み込みに失敗した場合
+     */
+    public T read(JsonEventReader reader) throws IOException {
+        if (reader.getEvent() == Event.VALUE_NULL) {
+            return null;
+        }
+        if (reader.getEvent() != Event.START_OBJECT) {
+            throw mismatch(reader, mType);
+        }
+        T bean = newInstance();
+        Property[] props = mProperties;
+        // メンバーがフィールドと同じ順に並んでいることが多いので, 前に一致したものの次から探す
+        int next = 0;
+        while (reader.next() == Event.FIELD_NAME) {
+            Property prop = null;
+            for (int i = 0, n = props.length; i < n; i++) {
+                Property p = props[next + i < n ? next + i : next + i - n];
+                if (reader.stringEquals(p.name)) {
+                    prop = p;
+                    break;
+                }
+            }
+            reader.next();
+            if (prop == null) {
+                reader.skipValue();
+                continue;
+            }
+            try {
+                prop.read(bean, reader);
+            } catch (IllegalAccessException err) {
+                throw new IllegalStateException(err);
+            }
+            next = (prop.index + 1 < props.length ? prop.index + 1 : 0);
+        }
+        return bean;
+    }
+
+    private T readWhole(JsonEventReader reader) {
+        try {
+            reader.next();
+            T bean = read(reader);
+            // 最上位の値の後に余分なトークンがないことを確かめる
+            reader.next();
+            return bean;
+        } catch (IOException err) {
+            // String やバイト配列からの読み込みでは発生しない
+            throw new IllegalStateException(err);
+        }
+    }
+
+    /**
+     * オブジェクトを JSON の object として書き出す.
+     * JsonWriter の状態は値を書き出せるものでなければならない.
+     * @param value 書き出すオブジェクト. null の場合は JSON の null を書き出す
+     * @param writer 書き出しに使用する JsonWriter
+     * @throws InvalidJsonException フィールドの値に無限大や NaN がある場合
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public void write(T value, JsonWriter writer) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        try {
+            for (Property prop : mProperties) {
+                writer.name(prop.name);
+                prop.write(value, writer);
+            }
+        } catch (IllegalAccessException err) {
+            throw new IllegalStateException(err);
+        }
+        writer.endObject();
+    }
+
+    /**
+     * オブジェクトを JSON テキストとして, 指定の Appendable (Writer や StringBuilder など) に書き出す.
+     * @param value 書き出すオブジェクト. JSON テキストの最上位の値は object か array でなければならないため, null は不可
+     * @param out 書き出し先
+     * @throws NullPointerException value が null の場合
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public void write(T value, Appendable out) throws IOException {
+        checkRootValue(value);
+        write(value, new JsonWriter(out));
+    }
+
+    /**
+     * オブジェクトを UTF-8 でエンコードした JSON テキストとして, 指定の OutputStream に書き出す.
+     * @param value 書き出すオブジェクト. null は不可
+     * @param out 書き出し先
+     * @throws NullPointerException value が null の場合
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public void write(T value, OutputStream out) throws IOException {
+        checkRootValue(value);
+        write(value, new JsonWriter(out));
+    }
+
+    /**
+     * オブジェクトを JSON 文字列に変換する.
+     * @param value 変換するオブジェクト. null は不可
+     * @return JSON 文字列
+     * @throws NullPointerException value が null の場合
+     */
+    public String toJson(T value) {
+        checkRootValue(value);
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(value, sb);
+        } catch (IOException err) {
+            // StringBuilder への書き出しでは発生しない
+            throw new IllegalStateException(err);
+        }
+        return sb.toString();
+    }
+
+    /** JSON テキストの最上位の値として書き出すオブジェクトが null でないことを確認する. */
+    private static void checkRootValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("`value` must not be null: the top-level value must be an object");
+        }
+    }
+
+    private T newInstance() {
+        try {
+            return mConstructor.newInstance();
+        } catch (InvocationTargetException err) {
+            Throwable cause = err.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InstantiationException err) {
+            throw new IllegalStateException(err);
+        } catch (IllegalAccessException err) {
+            throw new IllegalStateException(err);
+        }
+    }
+
+    private static InvalidJsonException mismatch(JsonEventReader reader, Type type) {
+        return new InvalidJsonException("unexpected value for the type " + type + " [event:" + reader.getEvent() + "]");
+    }
+
+    /* ==== フィールドとの対応付け ==== */
+
+    private static Property[] createProperties(Class<?> type) {
+        // スーパークラスのフィールドを先に並べる. 同じ名前のフィールドはサブクラスのものを使う
+        List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        Map<String, Field> fields = new LinkedHashMap<String, Field>();
+        for (Class<?> c : hierarchy) {
+            for (Field f : c.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic()) continue;
+                fields.put(f.getName(), f);
+            }
+        }
+        Property[] props = new Property[fields.size()];
+        int i = 0;
+        for (Field f : fields.values()) {
+            f.setAccessible(true);
+            props[i] = createProperty(f, i);
+            i++;
+        }
+        return props;
+    }
+
+    private static Property createProperty(Field f, int index) {
+        Class<?> t = f.getType();
+        if (t == int.class) return new IntProperty(f, index);
+        if (t == long.class) return new LongProperty(f, index);
+        if (t == double.class) return new DoubleProperty(f, index);
+        if (t == boolean.class) return new BooleanProperty(f, index);
+        try {
+            return new ObjectProperty(f, index, codecFor(f.getGenericType()));
+        } catch (IllegalArgumentException err) {
+            throw new IllegalArgumentException(
+                    "Unsupported field type [" + f.getDeclaringClass().getName() + "#" + f.getName() + "]", err);
+        }
+    }
+
+    /**
+     * フィールドとメンバーの対応. int, long, double, boolean のフィールドは
+     * ボクシングを避けるため, 型ごとのサブクラスで値を読み書きする.
+     */
+    private static abstract class Property {
+        final String name;
+        final Field field;
+        final int index;
+
+        Property(Field field, int index) {
+            this.name = field.getName();
+            this.field = field;
+            this.index = index;
+        }
+
+        /** 直前のイベントが表す値をフィールドに設定する. */
+        abstract void read(Object bean, JsonEventReader r) throws IOException, IllegalAccessException;
+
+        abstract void write(Object bean, JsonWriter w) throws IOException, IllegalAccessException;
+    }
+
+    private static final class IntProperty extends Property {
+        IntProperty(Field f, int index) {
+            super(f, index);
+        }
+
+        @Override
+        void read(Object bean, JsonEventReader r) throws IllegalAccessException {
+            if (r.getEvent() == Event.VALUE_NULL) return;
+            field.setInt(bean, (int) readInteger(r, Integer.MIN_VALUE, Integer.MAX_VALUE, int.class));
+        }
+
+        @Override
+        void write(Object bean, JsonWriter w) throws IOException, IllegalAccessException {
+            w.value(field.getInt(bean));
+        }
+    }
+
+    private static final class LongProperty extends Property {
+        LongProperty(Field f, int index) {
+            super(f, index);
+        }
+
+        @Override
+        void read(Object bean, JsonEventReader r) throws IllegalAccessException {
+            if (r.getEvent() == Event.VALUE_NULL) return;
+            field.setLong(bean, readInteger(r, Long.MIN_VALUE, Long.MAX_VALUE, long.class));
+        }
+
+        @Override
+        void write(Object bean, JsonWriter w) throws IOException, IllegalAccessException {
+            w.value(field.getLong(bean));
+        }
+    }
+
+    private static final class DoubleProperty extends Property {
+        DoubleProperty(Field f, int index) {
+            super(f, index);
+        }
+
+        @Override
+        void read(Object bean, JsonEventReader r) throws IllegalAccessException {
+            if (r.getEvent() == Event.VALUE_NULL) return;
+            if (r.getEvent() != Event.VALUE_NUMBER) throw mismatch(r, double.class);
+            field.setDouble(bean, r.getDouble());
+        }
+
+        @Override
+        void write(Object bean, JsonWriter w) throws IOException, IllegalAccessException {
+            w.value(field.getDouble(bean));
+        }
+    }
+
+    private static final class BooleanProperty extends Property {
+        BooleanProperty(Field f, int index) {
+            super(f, index);
+        }
+
+        @Override
+        void read(Object bean, JsonEventReader r) throws IllegalAccessException {
+            if (r.getEvent() == Event.VALUE_NULL) return;
+            field.setBoolean(bean, readBoolean(r));
+        }
+
+        @Override
+        void write(Object bean, JsonWriter w) throws IOException, IllegalAccessException {
+            w.value(field.getBoolean(bean));
+        }
+    }
+
+    private static final class ObjectProperty extends Property {
+        private final Codec mCodec;
+        private final boolean mIsPrimitive;
+
+        ObjectProperty(Field f, int index, Codec codec) {
+            super(f, index);
+            mCodec = codec;
+            mIsPrimitive = f.getType().isPrimitive();
+        }
+
+        @Override
+        void read(Object bean, JsonEventReader r) throws IOException, IllegalAccessException {
+            if (r.getEvent() == Event.VALUE_NULL) {
+                if (!mIsPrimitive) field.set(bean, null);
+                return;
+            }
+            field.set(bean, mCodec.read(r));
+        }
+
+        @Override
+        void write(Object bean, JsonWriter w) throws IOException, IllegalAccessException {
+            Object value = field.get(bean);
+            if (value == null) {
+                w.nullValue();
+            } else {
+                mCodec.write(value, w);
+            }
+        }
+    }
+
+    private static long readInteger(JsonEventReader r, long min, long max, Type type) {
+        if (r.getEvent() != Event.VALUE_NUMBER) throw mismatch(r, type);
+        long v;
+        try {
+            v = r.getLong();
+        } catch (ArithmeticException err) {
+            // 整数でない場合や long の範囲外の場合
+            throw outOfRange(r, type);
+        }
+        if (v < min || max < v) throw outOfRange(r, type);
+        return v;
+    }
+
+    private static InvalidJsonException outOfRange(JsonEventReader r, Type type) {
+        return new InvalidJsonException("number is not an integer in range of the type " + type +
+                " [" + r.getString() + "]");
+    }
+
+    private static boolean readBoolean(JsonEventReader r) {
+        if (r.getEvent() == Event.VALUE_TRUE) return true;
+        if (r.getEvent() == Event.VALUE_FALSE) return false;
+        throw mismatch(r, boolean.class);
+    }
+
+    /* ==== 型ごとの変換処理 ==== */
+
+    /**
+     * 値の型ごとの変換処理. JSON の null は呼び出し側で扱うため, read には null 以外の値のイベントが,
+     * write には null 以外のオブジェクトが渡される.
+     */
+    private static abstract class Codec {
+        /** 直前のイベントが表す値を読み, 対応するオブジェクトを返す. */
+        abstract Object read(JsonEventReader r) throws IOException;
+
+        abstract void write(Object value, JsonWriter w) throws IOException;
+    }
+
+    private static Codec codecFor(Type type) {
+        if (type instanceof Class) {
+            Class<?> c = (Class<?>) type;
+            Codec codec = SIMPLE_CODECS.get(c);
+            if (codec != null) return codec;
+            if (c.isEnum()) return new EnumCodec(c);
+            if (JsonValue.class.isAssignableFrom(c)) return new JsonValueCodec(c);
+            if (c.isArray()) return new ArrayCodec(c.getComponentType(), codecFor(c.getComponentType()));
+            if (c.isPrimitive() || c.isInterface() || Modifier.isAbstract(c.getModifiers()) ||
+                    c.getName().startsWith("java.")) {
+                throw new IllegalArgumentException("Unsupported type [" + c.getName() + "]");
+            }
+            return new BeanCodec(c);
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType pt = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) pt.getRawType();
+            Type[] args = pt.getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw)) {
+                if (raw.isAssignableFrom(ArrayList.class)) return new CollectionCodec(false, codecFor(args[0]));
+                if (raw.isAssignableFrom(LinkedHashSet.class)) return new CollectionCodec(true, codecFor(args[0]));
+            } else if (Map.class.isAssignableFrom(raw) && raw.isAssignableFrom(LinkedHashMap.class) &&
+                    args[0] == String.class) {
+                return new MapCodec(codecFor(args[1]));
+            }
+        } else if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            Class<?> raw = (Class<?>) (component instanceof ParameterizedType ?
+                    ((ParameterizedType) component).getRawType() : component);
+            return new ArrayCodec(raw, codecFor(component));
+        }
+        throw new IllegalArgumentException("Unsupported type [" + type + "]");
+    }
+
+    private static final Map<Class<?>, Codec> SIMPLE_CODECS = new ConcurrentHashMap<Class<?>, Codec>();
+    static {
+        Codec stringCodec = new Codec() {
+            @Override
+            Object read(JsonEventReader r) {
+                if (r.getEvent() != Event.VALUE_STRING) throw mismatch(r, String.class);
+                return r.getString();
+            }
+
+            @Override
+            void write(Object value, JsonWriter w) throws IOException {
+                w.value((String) value);
+            }
+        };
+        Codec intCodec = new IntegerCodec(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.class) {
+            @Override
+            Object box(long v) {
+                return Integer.valueOf((int) v);
+            }
+        };
+        Codec longCodec = new IntegerCodec(Long.MIN_VALUE, Long.MAX_VALUE, Long.class) {
+            @Override
+            Object box(long v) {
+                return Long.valueOf(v);
+            }
+        };
+        Codec shortCodec = new IntegerCodec(Short.MIN_VALUE, Short.MAX_VALUE, Short.class) {
+            @Override
+            Object box(long v) {
+                return Short.valueOf((short) v);
+            }
+        };
+        Codec byteCodec = new IntegerCodec(Byte.MIN_VALUE, Byte.MAX_VALUE, Byte.class) {
+            @Override
+            Object box(long v) {
+                return Byte.valueOf((byte) v);
+            }
+        };
+        Codec doubleCodec = new Codec() {
+            @Override
+            Object read(JsonEventReader r) {
+                if (r.getEvent() != Event.VALUE_NUMBER) throw mismatch(r, Double.class);
+                return Double.valueOf(r.getDouble());
+            }
+
+            @Override
+            void write(Object value, JsonWriter w) throws IOException {
+                w.value(((Double) value).doubleValue());
+            }
+        };
+        Codec floatCodec = new Codec() {
+            @Override
+            Object read(JsonEventReader r) {
+                if (r.getEvent() != Event.VALUE_NUMBER) throw mismatch(r, Float.class);
+                return Float.valueOf(r.getString());
+            }
+
+            @Override
+            void write(Object value, JsonWriter w) throws IOException {
+                Float f = (Float) value;
+                if (f.isInfinite() || f.isNaN()) {
+                    throw new InvalidJsonException("Infinite or NaN can't be serialized");
+                }
+                // double に変換すると桁が増えるので, float としての表記を使う
+                w.value(new BigDecimal(f.toString()));
+            }
+        };
+        Codec booleanCodec = new Codec() {
+            @Override
+            Object read(JsonEventReader r) {
+                return Boolean.valueOf(readBoolean(r));
+            }
+
+            @Override
+            void write(Object value, JsonWriter w) throws IOException {
+                w.value(((Boolean) value).booleanValue());
+            }
+        };
+        Codec bigDecimalCodec = new Codec() {
+            @Override
+            Object read(JsonEventReader r) {
+                if (r.getEvent() != Event.VALUE_NUMBER) throw mismatch(r, BigDecimal.class);
+                return r.getNumber();
+            }
+
+            @Override
+            void write(Object value, JsonWriter w) throws IOException {
+                w.value((BigDecimal) value);
+            }
+        };
+        Codec bigIntegerCodec = new Codec() {
+            @Override
+            Object read(JsonEventReader r) {
+                if (r.getEvent() != Event.VALUE_NUMBER) throw mismatch(r, BigInteger.class);
+                try {
+                    return r.getNumber().toBigIntegerExact();
+                } catch (ArithmeticException err) {
+                    throw new InvalidJsonException("number is not an integer [" + r.getString() + "]");
+                }
+            }
+
+            @Override
+            void write(Object value, JsonWriter w) throws IOException {
+                w.value(new BigDecimal((BigInteger) value));
+            }
+        };
+        SIMPLE_CODECS.put(String.class, stringCodec);
+        SIMPLE_CODECS.put(int.class, intCodec);
+        SIMPLE_CODECS.put(Integer.class, intCodec);
+        SIMPLE_CODECS.put(long.class, longCodec);
+        SIMPLE_CODECS.put(Long.class, longCodec);
+        SIMPLE_CODECS.put(short.class, shortCodec);
+        SIMPLE_CODECS.put(Short.class, shortCodec);
+        SIMPLE_CODECS.put(byte.class, byteCodec);
+        SIMPLE_CODECS.put(Byte.class, byteCodec);
+        SIMPLE_CODECS.put(double.class, doubleCodec);
+        SIMPLE_CODECS.put(Double.class, doubleCodec);
+        SIMPLE_CODECS.put(float.class, floatCodec);
+        SIMPLE_CODECS.put(Float.class, floatCodec);
+        SIMPLE_CODECS.put(boolean.class, booleanCodec);
+        SIMPLE_CODECS.put(Boolean.class, booleanCodec);
+        SIMPLE_CODECS.put(BigDecimal.class, bigDecimalCodec);
+        SIMPLE_CODECS.put(BigInteger.class, bigIntegerCodec);
+    }
+
+    private static abstract class IntegerCodec extends Codec {
+        private final long mMin;
+        private final long mMax;
+        private final Class<?> mType;
+
+        IntegerCodec(long min, long max, Class<?> type) {
+            mMin = min;
+            mMax = max;
+            mType = type;
+        }
+
+        abstract Object box(long v);
+
+        @Override
+        Object read(JsonEventReader r) {
+            return box(readInteger(r, mMin, mMax, mType));
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            w.value(((Number) value).longValue());
+        }
+    }
+
+    private static final class EnumCodec extends Codec {
+        private final Map<String, Object> mConstants = new LinkedHashMap<String, Object>();
+
+        EnumCodec(Class<?> type) {
+            for (Object e : type.getEnumConstants()) mConstants.put(((Enum<?>) e).name(), e);
+        }
+
+        @Override
+        Object read(JsonEventReader r) {
+            if (r.getEvent() == Event.VALUE_STRING) {
+                Object e = mConstants.get(r.getString());
+                if (e != null) return e;
+            }
+            throw new InvalidJsonException("unexpected value for the enum type [event:" + r.getEvent() + "]");
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            w.value(((Enum<?>) value).name());
+        }
+    }
+
+    private static final class JsonValueCodec extends Codec {
+        private final Class<?> mType;
+
+        JsonValueCodec(Class<?> type) {
+            mType = type;
+        }
+
+        @Override
+        Object read(JsonEventReader r) throws IOException {
+            JsonValue v = r.readValue();
+            if (!mType.isInstance(v)) throw mismatch(r, mType);
+            return v;
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            w.value((JsonValue) value);
+        }
+    }
+
+    private static final class CollectionCodec extends Codec {
+        private final boolean mIsSet;
+        private final Codec mElementCodec;
+
+        CollectionCodec(boolean isSet, Codec elementCodec) {
+            mIsSet = isSet;
+            mElementCodec = elementCodec;
+        }
+
+        @Override
+        Object read(JsonEventReader r) throws IOException {
+            if (r.getEvent() != Event.START_ARRAY) throw mismatch(r, Collection.class);
+            Collection<Object> c = (mIsSet ? new LinkedHashSet<Object>() : new ArrayList<Object>());
+            while (r.next() != Event.END_ARRAY) {
+                c.add(r.getEvent() == Event.VALUE_NULL ? null : mElementCodec.read(r));
+            }
+            return c;
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            w.beginArray();
+            for (Object e : (Collection<?>) value) {
+                if (e == null) {
+                    w.nullValue();
+                } else {
+                    mElementCodec.write(e, w);
+                }
+            }
+            w.endArray();
+        }
+    }
+
+    private static final class ArrayCodec extends Codec {
+        private final Class<?> mComponentType;
+        private final Class<?> mArrayType;
+        private final Codec mElementCodec;
+
+        ArrayCodec(Class<?> componentType, Codec elementCodec) {
+            mComponentType = componentType;
+            mArrayType = Array.newInstance(componentType, 0).getClass();
+            mElementCodec = elementCodec;
+        }
+
+        @Override
+        Object read(JsonEventReader r) throws IOException {
+            if (r.getEvent() != Event.START_ARRAY) throw mismatch(r, mArrayType);
+            List<Object> elements = new ArrayList<Object>();
+            while (r.next() != Event.END_ARRAY) {
+                if (r.getEvent() == Event.VALUE_NULL) {
+                    if (mComponentType.isPrimitive()) throw mismatch(r, mComponentType);
+                    elements.add(null);
+                } else {
+                    elements.add(mElementCodec.read(r));
+                }
+            }
+            Object array = Array.newInstance(mComponentType, elements.size());
+            for (int i = 0; i < elements.size(); i++) Array.set(array, i, elements.get(i));
+            return array;
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            w.beginArray();
+            for (int i = 0, n = Array.getLength(value); i < n; i++) {
+                Object e = Array.get(value, i);
+                if (e == null) {
+                    w.nullValue();
+                } else {
+                    mElementCodec.write(e, w);
+                }
+            }
+            w.endArray();
+        }
+    }
+
+    private static final class MapCodec extends Codec {
+        private final Codec mValueCodec;
+
+        MapCodec(Codec valueCodec) {
+            mValueCodec = valueCodec;
+        }
+
+        @Override
+        Object read(JsonEventReader r) throws IOException {
+            if (r.getEvent() != Event.START_OBJECT) throw mismatch(r, Map.class);
+            Map<String, Object> m = new LinkedHashMap<String, Object>();
+            while (r.next() == Event.FIELD_NAME) {
+                String key = r.getString();
+                r.next();
+                m.put(key, r.getEvent() == Event.VALUE_NULL ? null : mValueCodec.read(r));
+            }
+            return m;
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            w.beginObject();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                w.name((String) e.getKey());
+                if (e.getValue() == null) {
+                    w.nullValue();
+                } else {
+                    mValueCodec.write(e.getValue(), w);
+                }
+            }
+            w.endObject();
+        }
+    }
+
+    /**
+     * 入れ子のオブジェクト. 再帰的な型を扱えるように, 対応する JsonBinder は最初に使用するときに取得する.
+     */
+    private static final class BeanCodec extends Codec {
+        private final Class<?> mType;
+        private volatile JsonBinder<?> mBinder;
+
+        BeanCodec(Class<?> type) {
+            mType = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        private JsonBinder<Object> binder() {
+            JsonBinder<?> binder = mBinder;
+            if (binder == null) {
+                binder = JsonBinder.of(mType);
+                mBinder = binder;
+            }
+            return (JsonBinder<Object>) binder;
+        }
+
+        @Override
+        Object read(JsonEventReader r) throws IOException {
+            return binder().read(r);
+        }
+
+        @Override
+        void write(Object value, JsonWriter w) throws IOException {
+            binder().write(value, w);
+        }
+    }
+
+}
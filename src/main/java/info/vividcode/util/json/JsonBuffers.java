@@ -0,0 +1,76 @@
+package info.vividcode.util.json;
+
+/**
+ * パーサーとシリアライザーが使用する作業用のバッファを, スレッドごとに 1 つずつ保持しておくプール.
+ * <p>
+ * 使用する側は 1 回のパースやシリアライズの間だけバッファを借り (acquire), 終わったら返す (release).
+ * 借りている間はプールから取り除かれるため, 同じスレッドで入れ子に使用された場合
+ * (JsonWriter で書き出している途中に JsonSerializer.serialize を呼んだ場合など) は,
+ * 内側の使用には新たに生成したバッファが渡される. 例外などで返されなかったバッファは単に捨てられる.
+ * <p>
+ * 大きな string のパースなどで大きくなったトークン用のバッファは, メモリを保持し続けないように返されても捨てる.
+ */
+final class JsonBuffers {
+
+    /** シリアライザーの出力用のバッファの大きさ (char 単位) */
+    static final int OUTPUT_CHARS = 4096;
+    /** OUTPUT_CHARS 文字を UTF-8 でエンコードした結果と, 保留していたサロゲートペアが収まる大きさ */
+    static final int OUTPUT_BYTES = OUTPUT_CHARS * 3 + 4;
+    /** トークン用のバッファの初期の大きさ */
+    private static final int TOKEN_CHARS = 64;
+    /** プールに戻すトークン用のバッファの大きさの上限 */
+    private static final int MAX_POOLED_TOKEN_CHARS = 16 * 1024;
+
+    private static final ThreadLocal<JsonBuffers> sPool = new ThreadLocal<JsonBuffers>() {
+        @Override
+        protected JsonBuffers initialValue() {
+            return new JsonBuffers();
+        }
+    };
+
+    private char[] mTokenChars;
+    private char[] mOutputChars;
+    private byte[] mOutputBytes;
+
+    private JsonBuffers() {}
+
+    /** トークンの内容を書き込むためのバッファを借りる. 大きさは不定である. */
+    static char[] acquireTokenChars() {
+        JsonBuffers pool = sPool.get();
+        char[] buf = pool.mTokenChars;
+        if (buf == null) return new char[TOKEN_CHARS];
+        pool.mTokenChars = null;
+        return buf;
+    }
+
+    static void releaseTokenChars(char[] buf) {
+        if (buf.length <= MAX_POOLED_TOKEN_CHARS) sPool.get().mTokenChars = buf;
+    }
+
+    /** 大きさが {@link #OUTPUT_CHARS} の出力用のバッファを借りる. */
+    static char[] acquireOutputChars() {
+        JsonBuffers pool = sPool.get();
+        char[] buf = pool.mOutputChars;
+        if (buf == null) return new char[OUTPUT_CHARS];
+        pool.mOutputChars = null;
+        return buf;
+    }
+
+    static void releaseOutputChars(char[] buf) {
+        sPool.get().mOutputChars = buf;
+    }
+
+    /** 大きさが {@link #OUTPUT_BYTES} の出力用のバッファを借りる. */
+    static byte[] acquireOutputBytes() {
+        JsonBuffers pool = sPool.get();
+        byte[] buf = pool.mOutputBytes;
+        if (buf == null) return new byte[OUTPUT_BYTES];
+        pool.mOutputBytes = null;
+        return buf;
+    }
+
+    static void releaseOutputBytes(byte[] buf) {
+        sPool.get().mOutputBytes = buf;
+    }
+
+}
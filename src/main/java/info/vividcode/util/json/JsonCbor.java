@@ -0,0 +1,902 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.JsonValue.ValueType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *JSON オブジェクトを CBOR (RFC 7049) のバイト列に変換し, また CBOR のバイト列から JSON オブジェクトを生成するクラス.
+ *<p>
+ *JSON テキストと比べて, string は長さを前置して UTF-8 のバイト列をそのまま格納し, number は整数なら
+ *可変長の整数として, double の値は 8 バイトの浮動小数点数として格納するため, エスケープの処理や
+ *数値の表記の変換が不要であり, JsonSerializer や JsonParser より高速に変換できる.
+ *<pre><code>  byte[] cbor = JsonCbor.encode( JsonParser.parse( jsonStr ) );
+ *  ...
+ *  JsonValue v = JsonCbor.decode( cbor );</code></pre>
+ *<p>
+ *生成するバイト列の形式は次のとおりであり, 一般的な CBOR のライブラリで読むことができる.
+ *<ul>
+ *<li>全体を stringref の名前空間 (タグ 256) とし, 2 回目以降に現れる string (object のキーを含む) は
+ *    最初に現れた string への参照 (タグ 25) として格納する. (http://cbor.schmorp.de/stringref)
+ *    decode の結果では, 同じ参照から生成した string は同一の String オブジェクトを共有する.
+ *    CBOR の text string は正しい UTF-8 でなければならないため, 対になっていないサロゲートを含む string
+ *    (JsonParser は <code>"&#92;uD800"</code> のようなエスケープから生成する) は encode できず,
+ *    {@link InvalidJsonException} が投げられる.</li>
+ *<li>long の範囲に収まる整数は major type 0 または 1 の整数, double の値から生成した number は倍精度浮動小数点数,
+ *    それ以外の number は decimal fraction (タグ 4) とする. 仮数が long の範囲に収まらない場合は
+ *    bignum (タグ 2, 3) とする. decode の結果の numberValue() は, 元の値と scale も含めて等しい.</li>
+ *</ul>
+ *decode では, 上記に加えて長さを前置しない array と object, 単精度と半精度の浮動小数点数を受け付ける.
+ *その他のタグは無視して内容の値を使用する. byte string や長さを前置しない string など,
+ *JSON の値として表せないものや対応していないものが含まれる場合は {@link InvalidJsonException} が投げられる.
+ *array, map, タグの入れ子の深さが 1000 を超える場合も, 不正なデータとして同様に扱う.
+ */
+public class JsonCbor {
+
+    private JsonCbor() {}
+
+    /* CBOR の major type */
+    private static final int MT_UNSIGNED = 0;
+    private static final int MT_NEGATIVE = 1;
+    private static final int MT_BYTES = 2;
+    private static final int MT_TEXT = 3;
+    private static final int MT_ARRAY = 4;
+    private static final int MT_MAP = 5;
+    private static final int MT_TAG = 6;
+    // 7 は浮動小数点数と単純値 (true, false, null など)
+
+    /* 使用するタグ */
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL_FRACTION = 4;
+    private static final int TAG_STRINGREF = 25;
+    private static final int TAG_STRINGREF_NAMESPACE = 256;
+
+    /**
+     * decode で受け付ける, array, map, タグの入れ子の深さの上限.
+     * これを超えるデータは不正なものとして {@link InvalidJsonException} を投げる.
+     */
+    static final int MAX_NESTING_DEPTH = 1000;
+
+    private static final int INFO_INDEFINITE = 31;
+    private static final int BREAK = 0xFF;
+
+    /**
+     *JSON オブジェクトを CBOR のバイト列に変換する.
+     *@param jvalue 変換する JSON オブジェクト. object や array 以外でもよい
+     *@return 変換結果のバイト列
+     *@throws InvalidJsonException jvalue が再帰的な構造を持つ場合や, 対になっていないサロゲートを含む string がある場合
+     */
+    static public byte[] encode(JsonValue jvalue) {
+        Encoder e = new Encoder(null);
+        try {
+            e.writeRoot(jvalue);
+            return e.toByteArray();
+        } catch (IOException err) {
+            // バイト配列に書き出す場合は発生しない
+            throw new AssertionError(err);
+        } finally {
+            e.release();
+        }
+    }
+
+    /**
+     *JSON オブジェクトを CBOR のバイト列に変換して, OutputStream に書き出す.
+     *結果全体のバイト列は生成しない. OutputStream の flush や close は行わない.
+     *@param jvalue 変換する JSON オブジェクト. object や array 以外でもよい
+     *@param out 書き出し先
+     *@throws InvalidJsonException jvalue が再帰的な構造を持つ場合や, 対になっていないサロゲートを含む string がある場合
+     *@throws IOException 書き出しに失敗した場合
+     */
+    static public void encode(JsonValue jvalue, OutputStream out) throws IOException {
+        Encoder e = new Encoder(out);
+        try {
+            e.writeRoot(jvalue);
+            e.flush();
+        } finally {
+            e.release();
+        }
+    }
+
+    /**
+     *CBOR のバイト列を JSON オブジェクトに変換する.
+     *@param bytes 変換する CBOR のバイト列. 1 つの値 (data item) だけを含まなければならない
+     *@return 変換結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正なバイト列の場合や JSON の値として表せない値を含む場合
+     */
+    static public JsonValue decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     *CBOR のバイト列を JSON オブジェクトに変換する.
+     *@param bytes 変換する CBOR のバイト列を含むバイト配列
+     *@param offset 変換対象の先頭の位置
+     *@param length 変換対象のバイト数. 1 つの値 (data item) だけを含まなければならない
+     *@return 変換結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正なバイト列の場合や JSON の値として表せない値を含む場合
+     */
+    static public JsonValue decode(byte[] bytes, int offset, int length) {
+        CodePointIterator.checkRange(bytes, offset, length);
+        return new Decoder(bytes, offset, offset + length).readRoot();
+    }
+
+    /**
+     *CBOR のバイト列を JSON オブジェクトに変換する.
+     *バッファの position から limit までのバイト列を変換する. バッファの position や limit は変更されない.
+     *direct buffer の場合は, 内容をいったんバイト配列にコピーする.
+     *@param buf 変換する CBOR のバイト列を含むバッファ
+     *@return 変換結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正なバイト列の場合や JSON の値として表せない値を含む場合
+     */
+    static public JsonValue decode(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            int offset = buf.arrayOffset();
+            return new Decoder(buf.array(), offset + buf.position(), offset + buf.limit()).readRoot();
+        }
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return new Decoder(bytes, 0, bytes.length).readRoot();
+    }
+
+    /**
+     * stringref の名前空間で, 表の大きさが tableSize のときに長さ byteLength の string が表に追加されるかどうか.
+     * 参照の方が短くなる場合にのみ追加される. encode と decode で同じ規則を使用しなければならない.
+     */
+    private static boolean isReferable(int byteLength, int tableSize) {
+        if (tableSize < 24) return 3 <= byteLength;
+        if (tableSize < 0x100) return 4 <= byteLength;
+        if (tableSize < 0x10000) return 5 <= byteLength;
+        return 7 <= byteLength;
+    }
+
+    /**
+     * encode 時に, stringref の表に追加された string からその位置を引くためのハッシュ表.
+     * 位置をボクシングせずに保持するため, HashMap ではなく開番地法の表とする.
+     */
+    private static final class StringTable {
+        private String[] mKeys = new String[64];
+        private int[] mIndexes = new int[64];
+        private int mKeyCount;
+        /** 表に追加された string の数. 参照されない byte string も数える. */
+        private int mSize;
+
+        int size() {
+            return mSize;
+        }
+
+        /** 表に追加されている場合はその位置を, そうでなければ -1 を返す. */
+        int indexOf(String str) {
+            String[] keys = mKeys;
+            int mask = keys.length - 1;
+            for (int i = hash(str) & mask; ; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (key == null) return -1;
+                if (key == str || key.equals(str)) return mIndexes[i];
+            }
+        }
+
+        void add(String str) {
+            if (mKeys.length <= mKeyCount * 2) rehash();
+            String[] keys = mKeys;
+            int mask = keys.length - 1;
+            int i = hash(str) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = str;
+            mIndexes[i] = mSize++;
+            mKeyCount++;
+        }
+
+        /** 参照することのない string (bignum の byte string) が表に追加されたことを記録する. */
+        void skip() {
+            mSize++;
+        }
+
+        private void rehash() {
+            String[] oldKeys = mKeys;
+            int[] oldIndexes = mIndexes;
+            mKeys = new String[oldKeys.length * 2];
+            mIndexes = new int[oldKeys.length * 2];
+            int mask = mKeys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                String key = oldKeys[j];
+                if (key == null) continue;
+                int i = hash(key) & mask;
+                while (mKeys[i] != null) i = (i + 1) & mask;
+                mKeys[i] = key;
+                mIndexes[i] = oldIndexes[j];
+            }
+        }
+
+        private static int hash(String str) {
+            int h = str.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * CBOR のバイト列を書き出す.
+     * 書き出し先が OutputStream の場合は, JsonBuffers から借りたバッファがいっぱいになるたびに書き出す.
+     * そうでない場合は, バッファを大きくしながら全体を溜める.
+     */
+    private static final class Encoder {
+        private final OutputStream mOut;
+        private final byte[] mPooledBuf;
+        private byte[] mBuf;
+        private int mPos;
+        private final StringTable mStrings = new StringTable();
+        /** 再帰的な構造を検出するための, 書き出し中の object と array */
+        private Object[] mAncestors = new Object[16];
+        private int mDepth;
+
+        Encoder(OutputStream out) {
+            mOut = out;
+            mPooledBuf = JsonBuffers.acquireOutputBytes();
+            mBuf = mPooledBuf;
+        }
+
+        void release() {
+            JsonBuffers.releaseOutputBytes(mPooledBuf);
+            mBuf = null;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBuf, mPos);
+        }
+
+        void flush() throws IOException {
+            if (mPos != 0) {
+                mOut.write(mBuf, 0, mPos);
+                mPos = 0;
+            }
+        }
+
+        /**
+         * n バイトを書き込める空きを作る. OutputStream に書き出す場合に,
+         * バッファ全体より大きな空きは作れないので false を返す.
+         */
+        private boolean makeRoom(int n) throws IOException {
+            if (mOut != null) {
+                flush();
+                return n <= mBuf.length;
+            }
+            mBuf = Arrays.copyOf(mBuf, Math.max(mBuf.length * 2, mPos + n));
+            return true;
+        }
+
+        private void putByte(int b) throws IOException {
+            if (mPos == mBuf.length) makeRoom(1);
+            mBuf[mPos++] = (byte) b;
+        }
+
+        /** major type と引数 (0 以上の値) から成る先頭部分を書き出す. */
+        private void writeHead(int majorType, long value) throws IOException {
+            if (mBuf.length - mPos < 9) makeRoom(9);
+            byte[] buf = mBuf;
+            int pos = mPos;
+            int mt = majorType << 5;
+            if (value < 24) {
+                buf[pos++] = (byte) (mt | (int) value);
+            } else if (value < 0x100) {
+                buf[pos++] = (byte) (mt | 24);
+                buf[pos++] = (byte) value;
+            } else if (value < 0x10000) {
+                buf[pos++] = (byte) (mt | 25);
+                buf[pos++] = (byte) (value >> 8);
+                buf[pos++] = (byte) value;
+            } else if (value < 0x100000000L) {
+                buf[pos++] = (byte) (mt | 26);
+                for (int shift = 24; shift >= 0; shift -= 8) buf[pos++] = (byte) (value >> shift);
+            } else {
+                buf[pos++] = (byte) (mt | 27);
+                for (int shift = 56; shift >= 0; shift -= 8) buf[pos++] = (byte) (value >> shift);
+            }
+            mPos = pos;
+        }
+
+        void writeRoot(JsonValue jvalue) throws IOException {
+            writeHead(MT_TAG, TAG_STRINGREF_NAMESPACE);
+            writeValue(jvalue);
+        }
+
+        private void writeValue(JsonValue jvalue) throws IOException {
+            switch (jvalue.valueType()) {
+                case NULL_VALUE:
+                    putByte(0xF6);
+                    break;
+                case BOOLEAN_VALUE:
+                    putByte(jvalue.booleanValue().booleanValue() ? 0xF5 : 0xF4);
+                    break;
+                case NUMBER_VALUE:
+                    writeNumber((JsonNumber) jvalue);
+                    break;
+                case STRING_VALUE:
+                    writeString(jvalue.stringValue());
+                    break;
+                case ARRAY_VALUE:
+                    writeArray(jvalue.arrayValue());
+                    break;
+                case OBJECT_VALUE:
+                    writeObject(jvalue.objectValue());
+                    break;
+            }
+        }
+
+        private void writeLong(long v) throws IOException {
+            if (v < 0) {
+                // -1 - n として表す
+                writeHead(MT_NEGATIVE, ~v);
+            } else {
+                writeHead(MT_UNSIGNED, v);
+            }
+        }
+
+        private void writeNumber(JsonNumber jnumber) throws IOException {
+            if (jnumber.holdsLong()) {
+                writeLong(jnumber.longValue());
+            } else if (jnumber.holdsDouble()) {
+                if (mBuf.length - mPos < 9) makeRoom(9);
+                long bits = Double.doubleToLongBits(jnumber.doubleValue());
+                mBuf[mPos++] = (byte) 0xFB;
+                for (int shift = 56; shift >= 0; shift -= 8) mBuf[mPos++] = (byte) (bits >> shift);
+            } else {
+                BigDecimal d = jnumber.numberValue();
+                if (d.scale() != 0) {
+                    // [ exponent, mantissa ]
+                    writeHead(MT_TAG, TAG_DECIMAL_FRACTION);
+                    writeHead(MT_ARRAY, 2);
+                    writeLong(-(long) d.scale());
+                }
+                writeInteger(d.unscaledValue());
+            }
+        }
+
+        private void writeInteger(BigInteger v) throws IOException {
+            if (v.bitLength() < 64) {
+                writeLong(v.longValue());
+                return;
+            }
+            boolean negative = (v.signum() < 0);
+            writeHead(MT_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_POSITIVE_BIGNUM);
+            byte[] bytes = (negative ? v.not() : v).toByteArray();
+            // 符号のための先頭の 0 は含めない
+            int offset = (bytes[0] == 0 ? 1 : 0);
+            int length = bytes.length - offset;
+            if (isReferable(length, mStrings.size())) mStrings.skip();
+            writeHead(MT_BYTES, length);
+            if (mBuf.length - mPos < length && !makeRoom(length)) {
+                mOut.write(bytes, offset, length);
+                return;
+            }
+            System.arraycopy(bytes, offset, mBuf, mPos, length);
+            mPos += length;
+        }
+
+        private void writeString(String str) throws IOException {
+            int byteLength = utf8Length(str);
+            if (3 <= byteLength) {
+                int index = mStrings.indexOf(str);
+                if (index >= 0) {
+                    writeHead(MT_TAG, TAG_STRINGREF);
+                    writeHead(MT_UNSIGNED, index);
+                    return;
+                }
+                if (isReferable(byteLength, mStrings.size())) mStrings.add(str);
+            }
+            writeHead(MT_TEXT, byteLength);
+            if (mBuf.length - mPos < byteLength && !makeRoom(byteLength)) {
+                writeUtf8Chunked(str);
+            } else {
+                mPos = writeUtf8(str, 0, str.length(), mBuf, mPos);
+            }
+        }
+
+        /** バッファより長い string を, バッファがいっぱいになるたびに書き出しながら書き込む. */
+        private void writeUtf8Chunked(String str) throws IOException {
+            int len = str.length();
+            // 1 文字は最大 3 バイト (サロゲートペアは 2 文字で 4 バイト) なので, 空きの 1/3 ずつ書き込む
+            int chunk = mBuf.length / 3 - 1;
+            for (int i = 0; i < len; ) {
+                int end = Math.min(len, i + chunk);
+                // サロゲートペアを分けない
+                if (end < len && Character.isHighSurrogate(str.charAt(end - 1))) end--;
+                flush();
+                mPos = writeUtf8(str, i, end, mBuf, mPos);
+                i = end;
+            }
+        }
+
+        private void writeArray(JsonArray jarray) throws IOException {
+            enterContainer(jarray);
+            int size = jarray.size();
+            writeHead(MT_ARRAY, size);
+            for (int i = 0; i < size; i++) {
+                writeValue(jarray.get(i));
+            }
+            leaveContainer();
+        }
+
+        private void writeObject(JsonObject jobject) throws IOException {
+            enterContainer(jobject);
+            // 追加された順に, Map.Entry を生成せずに位置で参照する
+            int size = jobject.size();
+            writeHead(MT_MAP, size);
+            for (int i = 0; i < size; i++) {
+                writeString(jobject.keyAt(i));
+                writeValue(jobject.valueAt(i));
+            }
+            leaveContainer();
+        }
+
+        private void enterContainer(Object container) {
+            // 先祖に自分自身が存在するかどうかチェック (equals ではなく同一性で比較する)
+            for (int i = 0; i < mDepth; i++) {
+                if (mAncestors[i] == container) {
+                    throw new InvalidJsonException("Can't encode a recursive JSON structure");
+                }
+            }
+            if (mDepth == mAncestors.length) {
+                mAncestors = Arrays.copyOf(mAncestors, mDepth * 2);
+            }
+            mAncestors[mDepth++] = container;
+        }
+
+        private void leaveContainer() {
+            mAncestors[--mDepth] = null;
+        }
+    }
+
+    /**
+     * string を UTF-8 でエンコードした場合のバイト数を返す.
+     * CBOR の text string は正しい UTF-8 でなければならないため, 対になっていないサロゲートがある場合は例外を投げる.
+     * (別の文字に置き換えると, decode の結果が元の string と等しくならない.)
+     */
+    private static int utf8Length(String str) {
+        int len = str.length();
+        int n = len;
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                n += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                n += 2;
+                i++;
+            } else if (!isSurrogate(c)) {
+                n += 2;
+            } else {
+                throw unpairedSurrogate(str, i);
+            }
+        }
+        return n;
+    }
+
+    private static InvalidJsonException unpairedSurrogate(String str, int index) {
+        return new InvalidJsonException("Can't encode an unpaired surrogate [" +
+                Integer.toHexString(str.charAt(index)) + "] at index " + index + " of a string");
+    }
+
+    /**
+     * str の begin から end までを UTF-8 で buf の pos 以降に書き込み, 書き込み後の位置を返す.
+     * buf には十分な空きがなければならない. str は {@link #utf8Length(String)} で検査済みでなければならない.
+     */
+    private static int writeUtf8(String str, int begin, int end, byte[] buf, int pos) {
+        int i = begin;
+        // ASCII だけの部分をまとめて処理する
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+            if (c >= 0x80) break;
+            buf[pos++] = (byte) c;
+        }
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!isSurrogate(c)) {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                throw unpairedSurrogate(str, i);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * CBOR のバイト列を読み進めて JSON オブジェクトを生成する.
+     */
+    private static final class Decoder {
+        private final byte[] mBytes;
+        private int mPos;
+        private final int mLimit;
+        /** stringref の表. 名前空間の外では null. byte string は byte[] として保持する. */
+        private Object[] mStrings;
+        private int mStringCount;
+        /** UTF-8 を decode するための作業用のバッファ */
+        private char[] mChars;
+        /** 読み込み中の array, map, タグの入れ子の深さ */
+        private int mDepth;
+
+        Decoder(byte[] bytes, int begin, int end) {
+            mBytes = bytes;
+            mPos = begin;
+            mLimit = end;
+        }
+
+        JsonValue readRoot() {
+            mChars = JsonBuffers.acquireTokenChars();
+            try {
+                JsonValue v = readValue();
+                if (mPos != mLimit) {
+                    throw new InvalidJsonException("Unexpected data after the top-level value at " + mPos);
+                }
+                return v;
+            } finally {
+                JsonBuffers.releaseTokenChars(mChars);
+                mChars = null;
+            }
+        }
+
+        private int readByte() {
+            if (mPos == mLimit) {
+                throw new InvalidJsonException("Unexpected end of CBOR data");
+            }
+            return mBytes[mPos++] & 0xFF;
+        }
+
+        private int peekByte() {
+            if (mPos == mLimit) {
+                throw new InvalidJsonException("Unexpected end of CBOR data");
+            }
+            return mBytes[mPos] & 0xFF;
+        }
+
+        private int readInt() {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        private long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        /**
+         * 先頭部分の引数を読む. 引数が long の範囲に収まらない場合は負の値 (符号なしとして解釈した値) を返す.
+         */
+        private long readArgument(int info) {
+            if (info < 24) return info;
+            switch (info) {
+                case 24: return readByte();
+                case 25: return (readByte() << 8) | readByte();
+                case 26: return readInt() & 0xFFFFFFFFL;
+                case 27: return readLong();
+                default:
+                    throw new InvalidJsonException("Unexpected additional information [" + info + "] at " + (mPos - 1));
+            }
+        }
+
+        /**
+         * 長さや要素数を読む. 1 つの要素が少なくとも minBytes バイトを占めるとして, 残りのバイト数を超える場合は例外とする.
+         * (不正なデータによって巨大な配列を生成しないように.)
+         */
+        private int readLength(int info, int minBytes) {
+            long n = readArgument(info);
+            if (n < 0 || (mLimit - mPos) / minBytes < n) {
+                throw new InvalidJsonException("Length [" + n + "] exceeds the remaining data at " + mPos);
+            }
+            return (int) n;
+        }
+
+        private JsonValue readValue() {
+            int ib = readByte();
+            int info = ib & 0x1F;
+            switch (ib >>> 5) {
+                case MT_UNSIGNED: {
+                    long n = readArgument(info);
+                    if (n >= 0) return new JsonNumber(n);
+                    return new JsonNumber(new BigDecimal(unsigned(n)));
+                }
+                case MT_NEGATIVE: {
+                    long n = readArgument(info);
+                    if (n >= 0) return new JsonNumber(-1 - n);
+                    return new JsonNumber(new BigDecimal(unsigned(n).not()));
+                }
+                case MT_BYTES:
+                    throw new InvalidJsonException("Byte strings can't be converted to JSON values at " + (mPos - 1));
+                case MT_TEXT:
+                    return new JsonString(readText(info));
+                case MT_ARRAY: {
+                    enterNested();
+                    JsonArray jarray = readArray(info);
+                    mDepth--;
+                    return jarray;
+                }
+                case MT_MAP: {
+                    enterNested();
+                    JsonObject jobject = readObject(info);
+                    mDepth--;
+                    return jobject;
+                }
+                case MT_TAG: {
+                    enterNested();
+                    JsonValue v = readTagged(readArgument(info));
+                    mDepth--;
+                    return v;
+                }
+                default:
+                    return readSimple(info);
+            }
+        }
+
+        /**
+         * array, map, タグの内容を読む前に呼ぶ. 入れ子が深すぎる場合は例外を投げる.
+         * (不正なデータによってスタックオーバーフローが発生しないように.)
+         */
+        private void enterNested() {
+            if (MAX_NESTING_DEPTH < ++mDepth) {
+                throw new InvalidJsonException("The nesting depth exceeds the limit [" + MAX_NESTING_DEPTH + "] at " + (mPos - 1));
+            }
+        }
+
+        private JsonArray readArray(int info) {
+            if (info == INFO_INDEFINITE) {
+                JsonArray jarray = new JsonArray();
+                while (peekByte() != BREAK) {
+                    jarray.add(readValue());
+                }
+                mPos++;
+                return jarray;
+            }
+            int size = readLength(info, 1);
+            JsonValue[] elements = new JsonValue[size];
+            for (int i = 0; i < size; i++) {
+                elements[i] = readValue();
+            }
+            return new JsonArray(elements, size);
+        }
+
+        private JsonObject readObject(int info) {
+            if (info == INFO_INDEFINITE) {
+                JsonObject jobject = new JsonObject();
+                while (peekByte() != BREAK) {
+                    jobject.put(readKey(), readValue());
+                }
+                mPos++;
+                return jobject;
+            }
+            int size = readLength(info, 2);
+            // キーが重複している場合は後のものを使用する
+            JsonObject jobject = new JsonObject(size);
+            for (int i = 0; i < size; i++) {
+                jobject.put(readKey(), readValue());
+            }
+            return jobject;
+        }
+
+        private String readKey() {
+            int ib = readByte();
+            int info = ib & 0x1F;
+            switch (ib >>> 5) {
+                case MT_TEXT:
+                    return readText(info);
+                case MT_TAG:
+                    if (readArgument(info) == TAG_STRINGREF) {
+                        Object ref = readStringRef();
+                        if (ref instanceof String) return (String) ref;
+                    }
+                    break;
+            }
+            throw new InvalidJsonException("The key of a map must be a text string at " + (mPos - 1));
+        }
+
+        private JsonValue readTagged(long tag) {
+            if (tag == TAG_STRINGREF) {
+                Object ref = readStringRef();
+                if (ref instanceof String) return new JsonString((String) ref);
+                throw new InvalidJsonException("Byte strings can't be converted to JSON values at " + mPos);
+            } else if (tag == TAG_STRINGREF_NAMESPACE) {
+                Object[] outerStrings = mStrings;
+                int outerCount = mStringCount;
+                mStrings = new Object[16];
+                mStringCount = 0;
+                JsonValue v = readValue();
+                mStrings = outerStrings;
+                mStringCount = outerCount;
+                return v;
+            } else if (tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+                BigInteger n = new BigInteger(1, readBignumBytes());
+                return new JsonNumber(new BigDecimal(tag == TAG_NEGATIVE_BIGNUM ? n.not() : n));
+            } else if (tag == TAG_DECIMAL_FRACTION) {
+                return readDecimalFraction();
+            } else {
+                // 他のタグ (self-describe CBOR のタグ 55799 など) は無視する
+                return readValue();
+            }
+        }
+
+        /** [ exponent, mantissa ] の array を読む. */
+        private JsonNumber readDecimalFraction() {
+            int ib = readByte();
+            if (ib >>> 5 != MT_ARRAY || readArgument(ib & 0x1F) != 2) {
+                throw new InvalidJsonException("A decimal fraction must be an array of two integers at " + (mPos - 1));
+            }
+            JsonValue exponent = readValue();
+            JsonValue mantissa = readValue();
+            if (!isInteger(exponent) || !isInteger(mantissa)) {
+                throw new InvalidJsonException("A decimal fraction must be an array of two integers at " + mPos);
+            }
+            JsonNumber e = (JsonNumber) exponent;
+            if (!e.holdsLong() || e.longValue() <= Integer.MIN_VALUE || Integer.MAX_VALUE < e.longValue()) {
+                throw new InvalidJsonException("The exponent of a decimal fraction is out of range at " + mPos);
+            }
+            int scale = -(int) e.longValue();
+            JsonNumber m = (JsonNumber) mantissa;
+            if (m.holdsLong()) {
+                return new JsonNumber(BigDecimal.valueOf(m.longValue(), scale));
+            }
+            return new JsonNumber(new BigDecimal(m.numberValue().unscaledValue(), scale));
+        }
+
+        private boolean isInteger(JsonValue v) {
+            if (v.valueType() != ValueType.NUMBER_VALUE) return false;
+            JsonNumber n = (JsonNumber) v;
+            return n.holdsLong() || (!n.holdsDouble() && n.numberValue().scale() == 0);
+        }
+
+        private byte[] readBignumBytes() {
+            int ib = readByte();
+            int info = ib & 0x1F;
+            if (ib >>> 5 == MT_BYTES && info != INFO_INDEFINITE) {
+                int length = readLength(info, 1);
+                byte[] bytes = Arrays.copyOfRange(mBytes, mPos, mPos + length);
+                mPos += length;
+                addString(bytes, length);
+                return bytes;
+            }
+            if (ib >>> 5 == MT_TAG && readArgument(info) == TAG_STRINGREF) {
+                Object ref = readStringRef();
+                if (ref instanceof byte[]) return (byte[]) ref;
+            }
+            throw new InvalidJsonException("The content of a bignum must be a byte string at " + mPos);
+        }
+
+        private Object readStringRef() {
+            int ib = readByte();
+            if (ib >>> 5 != MT_UNSIGNED) {
+                throw new InvalidJsonException("The index of a stringref must be an unsigned integer at " + (mPos - 1));
+            }
+            long index = readArgument(ib & 0x1F);
+            if (mStrings == null || index < 0 || mStringCount <= index) {
+                throw new InvalidJsonException("Invalid stringref [" + index + "] at " + mPos);
+            }
+            return mStrings[(int) index];
+        }
+
+        private void addString(Object str, int byteLength) {
+            if (mStrings != null && isReferable(byteLength, mStringCount)) {
+                if (mStringCount == mStrings.length) {
+                    mStrings = Arrays.copyOf(mStrings, mStringCount * 2);
+                }
+                mStrings[mStringCount++] = str;
+            }
+        }
+
+        private JsonValue readSimple(int info) {
+            switch (info) {
+                case 20: return JsonBoolean.FALSE;
+                case 21: return JsonBoolean.TRUE;
+                case 22: return JsonNull.VALUE;
+                case 25: return readDouble(halfToDouble((readByte() << 8) | readByte()));
+                case 26: return readDouble(Float.intBitsToFloat(readInt()));
+                case 27: return readDouble(Double.longBitsToDouble(readLong()));
+                case INFO_INDEFINITE:
+                    throw new InvalidJsonException("Unexpected break at " + (mPos - 1));
+                default:
+                    throw new InvalidJsonException("Unsupported simple value [" + info + "] at " + (mPos - 1));
+            }
+        }
+
+        private JsonNumber readDouble(double v) {
+            if (Double.isInfinite(v) || Double.isNaN(v)) {
+                throw new InvalidJsonException("Infinity and NaN can't be converted to JSON numbers at " + mPos);
+            }
+            return new JsonNumber(v);
+        }
+
+        /** text string の内容を UTF-8 として decode する. */
+        private String readText(int info) {
+            if (info == INFO_INDEFINITE) {
+                throw new InvalidJsonException("Indefinite-length strings are not supported at " + (mPos - 1));
+            }
+            int length = readLength(info, 1);
+            // UTF-16 の長さは UTF-8 のバイト数を超えない
+            char[] chars = mChars;
+            if (chars.length < length) {
+                chars = mChars = new char[Math.max(length, chars.length * 2)];
+            }
+            byte[] bytes = mBytes;
+            int pos = mPos;
+            int end = pos + length;
+            int n = 0;
+            // ASCII だけの部分をまとめて処理する
+            while (pos < end && bytes[pos] >= 0) {
+                chars[n++] = (char) bytes[pos++];
+            }
+            while (pos < end) {
+                int b = bytes[pos++];
+                if (b >= 0) {
+                    chars[n++] = (char) b;
+                } else if ((b & 0xE0) == 0xC0) {
+                    int cp = ((b & 0x1F) << 6) | continuation(pos++, end);
+                    if (cp < 0x80) throw malformedUtf8(pos);
+                    chars[n++] = (char) cp;
+                } else if ((b & 0xF0) == 0xE0) {
+                    int cp = ((b & 0x0F) << 12) | (continuation(pos++, end) << 6) | continuation(pos++, end);
+                    if (cp < 0x800 || isSurrogate((char) cp)) throw malformedUtf8(pos);
+                    chars[n++] = (char) cp;
+                } else if ((b & 0xF8) == 0xF0) {
+                    int cp = ((b & 0x07) << 18) | (continuation(pos++, end) << 12) |
+                            (continuation(pos++, end) << 6) | continuation(pos++, end);
+                    if (cp < 0x10000 || Character.MAX_CODE_POINT < cp) throw malformedUtf8(pos);
+                    n += Character.toChars(cp, chars, n);
+                } else {
+                    throw malformedUtf8(pos);
+                }
+            }
+            mPos = end;
+            String str = new String(chars, 0, n);
+            addString(str, length);
+            return str;
+        }
+
+        private int continuation(int pos, int end) {
+            if (pos == end) throw malformedUtf8(pos);
+            int b = mBytes[pos];
+            if ((b & 0xC0) != 0x80) throw malformedUtf8(pos);
+            return b & 0x3F;
+        }
+
+        private static InvalidJsonException malformedUtf8(int pos) {
+            return new InvalidJsonException("Malformed UTF-8 in a text string at " + pos);
+        }
+    }
+
+    private static boolean isSurrogate(char c) {
+        return Character.MIN_SURROGATE <= c && c <= Character.MAX_SURROGATE;
+    }
+
+    /** long の値を 64 ビットの符号なし整数として解釈した値を返す. */
+    private static BigInteger unsigned(long n) {
+        return BigInteger.valueOf(n & Long.MAX_VALUE).setBit(63);
+    }
+
+    /** 半精度浮動小数点数のビット表現を double の値に変換する. */
+    private static double halfToDouble(int bits) {
+        int exp = (bits >> 10) & 0x1F;
+        int mant = bits & 0x3FF;
+        double v;
+        if (exp == 0) {
+            v = Math.scalb((double) mant, -24);
+        } else if (exp != 31) {
+            v = Math.scalb((double) (mant | 0x400), exp - 25);
+        } else {
+            v = (mant == 0 ? Double.POSITIVE_INFINITY : Double.NaN);
+        }
+        return (bits & 0x8000) != 0 ? -v : v;
+    }
+
+}
@@ -0,0 +1,32 @@
+package info.vividcode.util.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * コンパイル時に JSON との変換処理 (コーデック) を生成するクラスであることを示すアノテーション.
+ * <p>
+ * wscutils-codegen のアノテーションプロセッサーをコンパイル時に使用すると, このアノテーションを付けたクラス
+ * <code>Foo</code> について, 同じパッケージに <code>FooJsonCodec</code> クラスが生成される
+ * (入れ子のクラス <code>Outer.Inner</code> の場合は <code>Outer_InnerJsonCodec</code>).
+ * 生成されるクラスは {@link JsonBinder} と同様にフィールドとメンバーを対応付けるが,
+ * リフレクションを使用せずにフィールドを直接読み書きするため, 実行時の初期化処理がない.
+ * <pre><code>  &#64;JsonCodec
+ *  class User {
+ *      long id;
+ *      String name;
+ *  }
+ *
+ *  User user = UserJsonCodec.fromJson( jsonStr );
+ *  String json = UserJsonCodec.toJson( user );</code></pre>
+ * フィールドは private であってはならず, クラスは private でない引数のないコンストラクタを持たなければならない.
+ * フィールドの型として使用できるのは JsonBinder と同じもの (ただし, ほかのクラスはこのアノテーションを付けたものに限る) である.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonCodec {
+}
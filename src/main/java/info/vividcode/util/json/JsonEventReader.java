@@ -0,0 +1,430 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.JsonTokenizer.TokenType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ *JSON テキストを先頭から読み進め, その構造をイベントの列として返すストリーミングパーサー.
+ *<p>
+ *{@link JsonParser} と異なり全体の木構造を生成しないため, 使用するメモリは
+ *入れ子の深さと最も長いトークンの長さにのみ依存する.
+ *巨大な配列の要素をひとつずつ処理する場合などに使用する.
+ *<pre><code>  JsonEventReader reader = new JsonEventReader( inputStream );
+ *  try {
+ *      // 最上位の配列の開始
+ *      reader.next();
+ *      while ( reader.next() == JsonEventReader.Event.START_OBJECT ) {
+ *          // 要素をひとつずつ JsonObject として読む
+ *          JsonObject record = reader.readValue().objectValue();
+ *      }
+ *  } finally {
+ *      reader.close();
+ *  }</code></pre>
+ *このクラスのオブジェクトはスレッドセーフではない.
+ */
+public class JsonEventReader implements Closeable {
+
+    /**
+     * {@link JsonEventReader#next()} が返すイベントの種類.
+     */
+    public enum Event {
+        /** object の開始 ("{") */
+        START_OBJECT,
+        /** object の終了 ("}") */
+        END_OBJECT,
+        /** array の開始 ("[") */
+        START_ARRAY,
+        /** array の終了 ("]") */
+        END_ARRAY,
+        /** object のメンバーの名前. 名前は {@link JsonEventReader#getString()} で取得できる */
+        FIELD_NAME,
+        /** string. 値は {@link JsonEventReader#getString()} で取得できる */
+        VALUE_STRING,
+        /** number. 値は {@link JsonEventReader#getNumber()} で取得できる */
+        VALUE_NUMBER,
+        /** true */
+        VALUE_TRUE,
+        /** false */
+        VALUE_FALSE,
+        /** null */
+        VALUE_NULL,
+    }
+
+    /* 次に読むトークンについての状態 */
+    private static final int STATE_ROOT = 0;
+    private static final int STATE_ARRAY_START = 1;
+    private static final int STATE_ARRAY_VALUE_DONE = 2;
+    private static final int STATE_OBJECT_START = 3;
+    private static final int STATE_OBJECT_NAME_DONE = 4;
+    private static final int STATE_OBJECT_VALUE_DONE = 5;
+    private static final int STATE_ROOT_DONE = 6;
+    private static final int STATE_END = 7;
+
+    private final Reader mReader;
+    private final JsonTokenizer mTokenizer;
+    /** 入れ子の状態のスタック. object の場合は true, array の場合は false. */
+    private boolean[] mContainerStack = new boolean[16];
+    private int mDepth;
+    private int mState;
+    private Event mEvent;
+    /** {@link #getString()} で生成した String オブジェクト. 必要になるまで生成しない. */
+    private String mString;
+
+    /**
+     * 指定の Reader から JSON テキストを読む JsonEventReader オブジェクトを生成する.
+     * Reader はこのオブジェクト内部でバッファリングされるため, BufferedReader で包む必要はない.
+     * @param reader JSON テキストを読み込む Reader
+     */
+    public JsonEventReader(Reader reader) {
+        mReader = reader;
+        mTokenizer = new JsonTokenizer(CodePointIterator.forReader(reader));
+        mState = STATE_ROOT;
+    }
+
+    /**
+     * 指定の InputStream から UTF-8 でエンコードされた JSON テキストを読む
+     * JsonEventReader オブジェクトを生成する.
+     * 不正な UTF-8 のバイト列は, 読み込み時に {@link java.nio.charset.MalformedInputException} となる.
+     * @param in JSON テキストを読み込む InputStream
+     */
+    public JsonEventReader(InputStream in) {
+        this(new InputStreamReader(in, Charset.forName("UTF-8").newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)));
+    }
+
+    /**
+     * 指定の JsonTokenizer からトークンを読む JsonEventReader オブジェクトを生成する.
+     * String やバイト配列から読む場合に使用する. {@link #close()} は何もしない.
+     */
+    JsonEventReader(JsonTokenizer tokenizer) {
+        mReader = null;
+        mTokenizer = tokenizer;
+        mState = STATE_ROOT;
+    }
+
+    /**
+     * 次のイベントを読む.
+     * @return 次のイベント. 最上位の値の終わりまで読み終わっている場合は null
+     * @throws InvalidJsonException JSON テキストが不正な場合
+     * @throws IOException 入力の読み込みに失敗した場合
+     */
+    public Event next() throws IOException {
+        mString = null;
+        try {
+            mEvent = nextEvent();
+        } catch (CodePointIterator.IORuntimeException err) {
+            throw err.getCause();
+        }
+        return mEvent;
+    }
+
+    /**
+     * 直前に {@link #next()} で読んだイベントを返す.
+     * @return 直前のイベント. まだ読んでいない場合や終わりまで読み終わっている場合は null
+     */
+    public Event getEvent() {
+        return mEvent;
+    }
+
+    /**
+     * 直前のイベントが {@link Event#FIELD_NAME} の場合はメンバーの名前を,
+     * {@link Event#VALUE_STRING} の場合は string の値を, {@link Event#VALUE_NUMBER}
+     * の場合は number の JSON テキスト上の表記を返す.
+     * @throws IllegalStateException 直前のイベントが上記以外の場合
+     */
+    public String getString() {
+        if (mEvent != Event.FIELD_NAME && mEvent != Event.VALUE_STRING && mEvent != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("Current event is not FIELD_NAME, VALUE_STRING, or VALUE_NUMBER [" + mEvent + "]");
+        }
+        if (mString == null) {
+            mString = mTokenizer.getText();
+        }
+        return mString;
+    }
+
+    /**
+     * 直前のイベントが {@link Event#FIELD_NAME} または {@link Event#VALUE_STRING} の場合に,
+     * その名前または値が指定の文字列と等しいかどうかを, String オブジェクトを生成せずに判定する.
+     * メンバーの名前によって処理を振り分ける場合に使用する.
+     * @param str 比較する文字列
+     * @return 等しい場合は true
+     * @throws IllegalStateException 直前のイベントが上記以外の場合
+     */
+    public boolean stringEquals(String str) {
+        if (mEvent != Event.FIELD_NAME && mEvent != Event.VALUE_STRING) {
+            throw new IllegalStateException("Current event is not FIELD_NAME or VALUE_STRING [" + mEvent + "]");
+        }
+        return JsonParser.textEquals(mTokenizer, str);
+    }
+
+    /**
+     * 直前のイベントが {@link Event#VALUE_NUMBER} の場合に, その値を long として返す.
+     * 表記が long の範囲の整数であれば, BigDecimal オブジェクトを生成しない.
+     * @throws IllegalStateException 直前のイベントが VALUE_NUMBER ではない場合
+     * @throws ArithmeticException 値が long の範囲の整数でない場合
+     */
+    public long getLong() {
+        if (mEvent != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("Current event is not VALUE_NUMBER [" + mEvent + "]");
+        }
+        char[] text = mTokenizer.getTextBuffer();
+        int len = mTokenizer.getTextLength();
+        boolean negative = (text[0] == '-');
+        int i = (negative ? 1 : 0);
+        long v = 0;
+        for (; i < len; i++) {
+            int d = text[i] - '0';
+            // 負の方向に累積して, Long.MIN_VALUE も扱えるようにする
+            if (d < 0 || 9 < d || v < (Long.MIN_VALUE + d) / 10) break;
+            v = v * 10 - d;
+        }
+        if (i == len && (negative || v != Long.MIN_VALUE)) {
+            return (negative ? v : -v);
+        }
+        // "1e3" のような表記や範囲外の値
+        return getNumber().longValueExact();
+    }
+
+    /**
+     * 直前のイベントが {@link Event#VALUE_NUMBER} の場合に, その値を double として返す.
+     * @throws IllegalStateException 直前のイベントが VALUE_NUMBER ではない場合
+     */
+    public double getDouble() {
+        return Double.parseDouble(getString());
+    }
+
+    /**
+     * 直前のイベントが {@link Event#VALUE_NUMBER} の場合に, その値を返す.
+     * @throws IllegalStateException 直前のイベントが VALUE_NUMBER ではない場合
+     */
+    public BigDecimal getNumber() {
+        if (mEvent != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("Current event is not VALUE_NUMBER [" + mEvent + "]");
+        }
+        return new BigDecimal(mTokenizer.getTextBuffer(), 0, mTokenizer.getTextLength());
+    }
+
+    /**
+     * 現在の入れ子の深さを返す.
+     * 最上位の object や array の中では 1 であり, その外では 0 である.
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * 直前のイベントが表す値を JsonValue として読む.
+     * 直前のイベントが {@link Event#START_OBJECT} や {@link Event#START_ARRAY} の場合は,
+     * 対応する終了のイベントまで読み進め, その間の値をすべて含む JsonObject または JsonArray を返す.
+     * 読み終わった後の直前のイベントは, 対応する終了のイベントとなる.
+     * @return 直前のイベントが表す値
+     * @throws IllegalStateException 直前のイベントが値を表すものではない場合
+     * @throws IOException 入力の読み込みに失敗した場合
+     */
+    public JsonValue readValue() throws IOException {
+        if (mEvent == null) {
+            throw new IllegalStateException("No current event");
+        }
+        switch (mEvent) {
+            case START_OBJECT: {
+                JsonObject jobject = new JsonObject();
+                while (next() == Event.FIELD_NAME) {
+                    String key = getString();
+                    next();
+                    jobject.put(key, readValue());
+                }
+                return jobject;
+            }
+            case START_ARRAY: {
+                JsonArray jarray = new JsonArray();
+                while (next() != Event.END_ARRAY) {
+                    jarray.add(readValue());
+                }
+                return jarray;
+            }
+            case VALUE_STRING:
+                return new JsonString(getString());
+            case VALUE_NUMBER:
+                return JsonNumber.fromText(mTokenizer.getTextBuffer(), 0, mTokenizer.getTextLength());
+            case VALUE_TRUE:
+                return JsonBoolean.TRUE;
+            case VALUE_FALSE:
+                return JsonBoolean.FALSE;
+            case VALUE_NULL:
+                return JsonNull.VALUE;
+            default:
+                throw new IllegalStateException("Current event does not represent a value [" + mEvent + "]");
+        }
+    }
+
+    /**
+     * 直前のイベントが {@link Event#START_OBJECT} や {@link Event#START_ARRAY} の場合に,
+     * 対応する終了のイベントまで読み飛ばす. それ以外の場合は何もしない.
+     * @throws IOException 入力の読み込みに失敗した場合
+     */
+    public void skipValue() throws IOException {
+        if (mEvent != Event.START_OBJECT && mEvent != Event.START_ARRAY) {
+            return;
+        }
+        int depth = mDepth;
+        while (depth <= mDepth) {
+            next();
+        }
+    }
+
+    /**
+     * 入力元の Reader または InputStream を閉じる.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mReader != null) mReader.close();
+    }
+
+    private Event nextEvent() {
+        TokenType type;
+        switch (mState) {
+            case STATE_ROOT:
+                type = mTokenizer.next();
+                if (type == null) {
+                    throw new InvalidJsonException("invalid JSON text (empty)");
+                }
+                if (type != TokenType.BEGIN_ARRAY && type != TokenType.BEGIN_OBJECT) {
+                    throw new InvalidJsonException(
+                            "The top-level value must be an object or an array [token type:" + type + "]");
+                }
+                return valueEvent(type);
+            case STATE_ARRAY_START:
+                type = nextTokenInContainer();
+                if (type == TokenType.END_ARRAY) {
+                    return endContainer(Event.END_ARRAY);
+                }
+                return valueEvent(type);
+            case STATE_ARRAY_VALUE_DONE:
+                type = nextTokenInContainer();
+                if (type == TokenType.END_ARRAY) {
+                    return endContainer(Event.END_ARRAY);
+                }
+                if (type != TokenType.VALUE_SEPARATER) {
+                    throw unexpectedToken(type);
+                }
+                return valueEvent(nextTokenInContainer());
+            case STATE_OBJECT_START:
+                type = nextTokenInContainer();
+                if (type == TokenType.END_OBJECT) {
+                    return endContainer(Event.END_OBJECT);
+                }
+                return nameEvent(type);
+            case STATE_OBJECT_NAME_DONE:
+                type = nextTokenInContainer();
+                if (type != TokenType.NAME_SEPARATER) {
+                    throw unexpectedToken(type);
+                }
+                return valueEvent(nextTokenInContainer());
+            case STATE_OBJECT_VALUE_DONE:
+                type = nextTokenInContainer();
+                if (type == TokenType.END_OBJECT) {
+                    return endContainer(Event.END_OBJECT);
+                }
+                if (type != TokenType.VALUE_SEPARATER) {
+                    throw unexpectedToken(type);
+                }
+                return nameEvent(nextTokenInContainer());
+            case STATE_ROOT_DONE:
+                type = mTokenizer.next();
+                if (type != null) {
+                    throw new InvalidJsonException(
+                            "unexpected token after the top-level value [token type:" + type + "]");
+                }
+                mState = STATE_END;
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private TokenType nextTokenInContainer() {
+        TokenType type = mTokenizer.next();
+        if (type == null) {
+            throw new InvalidJsonException("unexpected end of JSON text");
+        }
+        return type;
+    }
+
+    private Event nameEvent(TokenType type) {
+        if (type != TokenType.STRING) {
+            throw unexpectedToken(type);
+        }
+        mState = STATE_OBJECT_NAME_DONE;
+        return Event.FIELD_NAME;
+    }
+
+    private Event valueEvent(TokenType type) {
+        switch (type) {
+            case BEGIN_ARRAY:
+                pushContainer(false);
+                mState = STATE_ARRAY_START;
+                return Event.START_ARRAY;
+            case BEGIN_OBJECT:
+                pushContainer(true);
+                mState = STATE_OBJECT_START;
+                return Event.START_OBJECT;
+            default:
+                break;
+        }
+        Event event;
+        switch (type) {
+            case STRING:
+                event = Event.VALUE_STRING;
+                break;
+            case NUMBER:
+                event = Event.VALUE_NUMBER;
+                break;
+            case TRUE:
+                event = Event.VALUE_TRUE;
+                break;
+            case FALSE:
+                event = Event.VALUE_FALSE;
+                break;
+            case NULL:
+                event = Event.VALUE_NULL;
+                break;
+            default:
+                throw unexpectedToken(type);
+        }
+        mState = mContainerStack[mDepth - 1] ? STATE_OBJECT_VALUE_DONE : STATE_ARRAY_VALUE_DONE;
+        return event;
+    }
+
+    private void pushContainer(boolean isObject) {
+        if (mDepth == mContainerStack.length) {
+            boolean[] stack = new boolean[mDepth * 2];
+            System.arraycopy(mContainerStack, 0, stack, 0, mDepth);
+            mContainerStack = stack;
+        }
+        mContainerStack[mDepth++] = isObject;
+    }
+
+    private Event endContainer(Event event) {
+        --mDepth;
+        if (mDepth == 0) {
+            mState = STATE_ROOT_DONE;
+        } else {
+            mState = mContainerStack[mDepth - 1] ? STATE_OBJECT_VALUE_DONE : STATE_ARRAY_VALUE_DONE;
+        }
+        return event;
+    }
+
+    private static InvalidJsonException unexpectedToken(TokenType type) {
+        return new InvalidJsonException("unexpected token [token type:" + type + "]");
+    }
+
+}
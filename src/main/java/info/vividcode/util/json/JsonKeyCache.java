@@ -0,0 +1,92 @@
+package info.vividcode.util.json;
+
+/**
+ * JSON の object のキーとして現れる文字列を使いまわすためのキャッシュ.
+ * {@link JsonParser#parse(String, JsonKeyCache)} などに渡して使用する.
+ * <p>
+ * 同じキーが何度も現れる JSON テキストをパースする場合に, キーごとに String オブジェクトを
+ * 生成する代わりに, キャッシュ済みの String オブジェクトを返す.
+ * パース結果の木構造が保持するキーの String オブジェクトが共有されるため, メモリ使用量も減る.
+ * <p>
+ * キャッシュは固定長の表であり, 文字列のハッシュ値で決まる位置に 1 つの String オブジェクトを格納する.
+ * 位置が衝突した場合は新しい文字列で上書きするため, 大きさが上限を超えることはない.
+ * 同期を行わずに複数のスレッドから同時に使用できる
+ * (String オブジェクトは不変であるため, 他のスレッドが格納したものを読んでも問題ない).
+ */
+public class JsonKeyCache {
+
+    /** デフォルトの表の大きさ */
+    private static final int DEFAULT_SIZE = 1024;
+    /** デフォルトのキャッシュ対象のキーの最大長 */
+    private static final int DEFAULT_MAX_KEY_LENGTH = 64;
+
+    private final String[] mTable;
+    private final int mMask;
+    private final int mMaxKeyLength;
+
+    /**
+     * デフォルトの大きさ (1024 要素) で, 64 文字以下のキーをキャッシュするインスタンスを生成する.
+     */
+    public JsonKeyCache() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+    /**
+     * @param size 表の大きさ. 2 の累乗に切り上げられる
+     * @param maxKeyLength キャッシュ対象とするキーの最大長 (char 単位). これより長いキーは毎回生成する
+     */
+    public JsonKeyCache(int size, int maxKeyLength) {
+        if (size <= 0 || (1 << 30) < size) {
+            throw new IllegalArgumentException("Illegal size: " + size);
+        }
+        if (maxKeyLength < 0) {
+            throw new IllegalArgumentException("Illegal max key length: " + maxKeyLength);
+        }
+        int len = 1;
+        while (len < size) len <<= 1;
+        mTable = new String[len];
+        mMask = len - 1;
+        mMaxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * 指定の文字の並びと等しい String オブジェクトを返す.
+     * キャッシュに存在すればそれを返し, 存在しなければ生成してキャッシュに格納する.
+     */
+    String get(char[] buf, int offset, int length) {
+        if (mMaxKeyLength < length) {
+            return new String(buf, offset, length);
+        }
+        // String#hashCode と同じ計算方法
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + buf[i];
+        }
+        int slot = (h ^ (h >>> 16)) & mMask;
+        String cached = mTable[slot];
+        if (cached != null && cached.hashCode() == h && equalsChars(cached, buf, offset, length)) {
+            return cached;
+        }
+        String str = new String(buf, offset, length);
+        mTable[slot] = str;
+        return str;
+    }
+
+    private static boolean equalsChars(String str, char[] buf, int offset, int length) {
+        if (str.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) != buf[offset + i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * キャッシュの内容をすべて破棄する.
+     */
+    public void clear() {
+        for (int i = 0; i < mTable.length; i++) {
+            mTable[i] = null;
+        }
+    }
+
+}
@@ -7,6 +7,11 @@ import java.math.BigDecimal;
  *
  * 対応する Java の値は {@link BigDecimal} であり, {@link JsonNumber#numberValue()}
  * メソッドで取得できる.
+ * ただし, long や double の値から生成したオブジェクトや {@link JsonParser} が生成するオブジェクトは
+ * 内部で BigDecimal オブジェクトを保持せず, long や double の値, または JSON テキスト上の表記を保持する.
+ * そのような場合, BigDecimal オブジェクトは numberValue() が呼ばれたときに初めて生成される.
+ * BigDecimal が不要な場合は {@link #longValue()}, {@link #intValue()},
+ * {@link #doubleValue()} を使用するとよい.
  *
  * @author nobuoka
  *
@@ -16,23 +21,113 @@ public class JsonNumber implements JsonValue {
     private static final String CLASS_NAME  = "JsonNumber";
     private static final String METHOD_NAME = "numberValue()";
 
-    private BigDecimal val;
+    /** mRef がこのオブジェクトの場合, mBits は double の値のビット表現である. */
+    private static final Object DOUBLE_MARKER = new Object();
+
+    /*
+     * 値の保持の仕方は mRef によって決まる. オブジェクトを小さく保つため, 種類を表すフィールドは持たない.
+     *   null          : mBits が long の値
+     *   DOUBLE_MARKER : mBits が double の値のビット表現
+     *   String        : JSON テキスト上の表記. numberValue() の結果は mDecimalCache にキャッシュする
+     *   BigDecimal    : 値そのもの
+     * 値を決めるフィールドは final とし, 同期なしに他のスレッドに渡されても正しく読めるようにする.
+     */
+    private final long mBits;
+    private final Object mRef;
+    private BigDecimal mDecimalCache;
+
+    private JsonNumber(long bits, Object ref) {
+        mBits = bits;
+        mRef = ref;
+    }
 
     /**
      * 指定の BigDecimal オブジェクトに対応する JsonNumber オブジェクトを生成する.
      * @param val JsonNumber に対応する BigDecimal オブジェクト
      */
     public JsonNumber(BigDecimal val) {
-        this.val = val;
+        this(0, val);
+        if (val == null) throw new NullPointerException("`val` must not be null.");
+    }
+
+    /**
+     * 指定の long 型の数値に対応する JsonNumber オブジェクトを生成する.
+     * BigDecimal オブジェクトは生成しない.
+     * @param val JsonNumber に対応する数値
+     */
+    public JsonNumber(long val) {
+        this(val, null);
     }
 
     /**
      * 指定の double 型の数値に対応する JsonNumber オブジェクトを生成する.
-     * 内部で BigDecimal オブジェクトを生成する.
+     * BigDecimal オブジェクトは生成せず, {@link #numberValue()} は
+     * <code>new BigDecimal(val)</code> に等しい値を返す.
      * @param val JsonNumber に対応する数値
+     * @throws NumberFormatException val が無限大か NaN の場合
      */
     public JsonNumber(double val) {
-        this.val = new BigDecimal(val);
+        this(Double.doubleToLongBits(val), DOUBLE_MARKER);
+        if (Double.isInfinite(val) || Double.isNaN(val)) {
+            throw new NumberFormatException("Infinite or NaN");
+        }
+    }
+
+    /**
+     * JSON テキスト上の number の表記から JsonNumber オブジェクトを生成する.
+     * 整数で long の範囲に収まる場合は long の値として保持し, それ以外の場合は表記を保持する.
+     * (double で保持すると numberValue() が表記どおりの scale を返せないため, 表記を保持する.)
+     * 表記は JSON の number の文法に従っていなければならない.
+     */
+    static JsonNumber fromText(char[] text, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        boolean negative = (text[i] == '-');
+        if (negative) i++;
+        long v = 0;
+        for (; i < end; i++) {
+            int d = text[i] - '0';
+            if (d < 0 || 9 < d || (Long.MAX_VALUE - d) / 10 < v) break;
+            v = v * 10 + d;
+        }
+        if (i == end) {
+            return new JsonNumber(negative ? -v : v, null);
+        }
+        return new JsonNumber(0, new String(text, offset, length));
+    }
+
+    /**
+     * {@link #fromText(char[], int, int)} で表記を保持することになる number (整数で long の範囲に収まらないもの) の
+     * 表記から JsonNumber オブジェクトを生成する. 表記は JSON の number の文法に従っていなければならない.
+     */
+    static JsonNumber fromNonLongText(String text) {
+        return new JsonNumber(0, text);
+    }
+
+    /**
+     * JSON テキスト上の表記を sb に追加する.
+     * BigDecimal を保持している場合以外は, BigDecimal オブジェクトを生成しない.
+     */
+    void appendTo(StringBuilder sb) {
+        Object ref = mRef;
+        if (ref == null) {
+            sb.append(mBits);
+        } else if (ref == DOUBLE_MARKER) {
+            // Double.toString の結果 (例えば "1.0E10") は JSON の number の文法にも従う
+            sb.append(Double.longBitsToDouble(mBits));
+        } else {
+            sb.append(ref.toString());
+        }
+    }
+
+    /** long の値を保持している場合に true を返す. 値は {@link #longValue()} で取得できる. */
+    boolean holdsLong() {
+        return mRef == null;
+    }
+
+    /** double の値を保持している場合に true を返す. 値は {@link #doubleValue()} で取得できる. */
+    boolean holdsDouble() {
+        return mRef == DOUBLE_MARKER;
     }
 
     /**
@@ -66,10 +161,72 @@ public class JsonNumber implements JsonValue {
 
     /**
      * 対応する BigDecimal オブジェクトを返す.
+     * long や double の値を保持している場合は, 呼び出しのたびに BigDecimal オブジェクトを生成する.
      */
     @Override
     public BigDecimal numberValue() {
-        return val;
+        Object ref = mRef;
+        if (ref == null) {
+            return BigDecimal.valueOf(mBits);
+        } else if (ref == DOUBLE_MARKER) {
+            return new BigDecimal(Double.longBitsToDouble(mBits));
+        } else if (ref instanceof String) {
+            // BigDecimal は不変なので, 複数のスレッドから同時に呼ばれて複数回生成されても問題ない
+            BigDecimal v = mDecimalCache;
+            if (v == null) {
+                v = new BigDecimal((String) ref);
+                mDecimalCache = v;
+            }
+            return v;
+        } else {
+            return (BigDecimal) ref;
+        }
+    }
+
+    /**
+     * 値を long として返す.
+     * 値の保持の仕方によらず, {@link #numberValue()} の {@link BigDecimal#longValue()} と同じ値を返す
+     * (long の範囲に収まらない場合は上位のビットが切り捨てられる).
+     * long の値を保持している場合や, long の範囲に収まる double の値を保持している場合は BigDecimal オブジェクトを生成しない.
+     */
+    public long longValue() {
+        Object ref = mRef;
+        if (ref == null) {
+            return mBits;
+        } else if (ref == DOUBLE_MARKER) {
+            double d = Double.longBitsToDouble(mBits);
+            // キャストは範囲外の値を飽和させるため, 範囲外の場合は BigDecimal と同じく切り捨てる
+            if (-0x1p63 <= d && d < 0x1p63) return (long) d;
+            return new BigDecimal(d).longValue();
+        } else {
+            return numberValue().longValue();
+        }
+    }
+
+    /**
+     * 値を int として返す.
+     * {@link #longValue()} の結果を int にキャストした値に等しい.
+     */
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    /**
+     * 値を double として返す.
+     * BigDecimal オブジェクトを保持している場合以外は, BigDecimal オブジェクトを生成しない.
+     */
+    public double doubleValue() {
+        Object ref = mRef;
+        if (ref == null) {
+            return mBits;
+        } else if (ref == DOUBLE_MARKER) {
+            return Double.longBitsToDouble(mBits);
+        } else if (ref instanceof String) {
+            // JSON の number の文法は Double.parseDouble が受け付ける文法に含まれる
+            return Double.parseDouble((String) ref);
+        } else {
+            return ((BigDecimal) ref).doubleValue();
+        }
     }
 
     /**
@@ -99,13 +256,17 @@ public class JsonNumber implements JsonValue {
      */
     @Override
     public String toString() {
-        return "[JSON number : " + val.toString() + "]";
+        return "[JSON number : " + numberValue().toString() + "]";
     }
 
     /**
      * 指定されたオブジェクトがこのオブジェクトと同値かどうかチェックする.
-     * 指定されたオブジェクトが, このオブジェクトが内包する BigDecimal オブジェクトと同値の
-     * BigDecimal オブジェクトをラップする JsonNumber オブジェクトの場合に true を返す.
+     * 指定されたオブジェクトが, このオブジェクトの {@link #numberValue()} と同値の
+     * BigDecimal オブジェクトを numberValue() が返す JsonNumber オブジェクトの場合に true を返す.
+     * 値の保持の仕方によらず numberValue() どうしを比較した結果に等しい.
+     * (double の値から生成したものは <code>new BigDecimal(val)</code> の値で比較されるため,
+     * 例えば <code>new JsonNumber(0.1)</code> とパースした <code>0.1</code> は等しくない.)
+     * 両方が long の値を保持している場合や, 両方が double の値を保持している場合は BigDecimal オブジェクトを生成しない.
      * それ以外の場合は false.
      * @param o 比較対象のオブジェクト
      */
@@ -113,7 +274,14 @@ public class JsonNumber implements JsonValue {
     public boolean equals(Object o) {
         if (o instanceof JsonNumber) {
             JsonNumber oo = (JsonNumber) o;
-            return this.val.equals(oo.val);
+            if (this.mRef == null && oo.mRef == null) {
+                return this.mBits == oo.mBits;
+            }
+            if (this.mRef == DOUBLE_MARKER && oo.mRef == DOUBLE_MARKER) {
+                // new BigDecimal(0.0) と new BigDecimal(-0.0) は等しいので, == で比較すればよい
+                return Double.longBitsToDouble(this.mBits) == Double.longBitsToDouble(oo.mBits);
+            }
+            return this.numberValue().equals(oo.numberValue());
         } else {
             return false;
         }
@@ -1,28 +1,453 @@
 package info.vividcode.util.json;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * JSON の object を表すためのクラスであり, String オブジェクトと JsonValue
  * オブジェクトの関係を保持する {@link java.util.Map} でもある.
+ * <p>
+ * 要素は追加した順に保持され, 反復やシリアライズもその順に行われる.
+ * 内部ではキーと値をそれぞれ配列に並べて保持しており, 要素数が少ない間は線形探索でキーを探す.
+ * 要素数が {@value #INDEX_THRESHOLD} を超えるとオープンアドレス法のハッシュ表 (配列上の位置を格納する)
+ * を併用する. HashMap と異なり, 要素ごとのオブジェクトは生成しない.
+ * <p>
+ * <strong>互換性に関する注意:</strong> バージョン 0.2.1.1 までは {@link java.util.HashMap} を継承していたが,
+ * 0.2.2 からは {@link java.util.AbstractMap} を継承する. JsonObject を HashMap 型の変数や引数として扱っていたコードは,
+ * {@link java.util.Map} 型を使用するか, <code>new HashMap&lt;String,JsonValue&gt;(jobject)</code> でコピーすること.
+ * ({@link java.util.HashMap} を継承したまま内部の保持の仕方を変えると, HashMap が独自に実装している
+ * メソッドが HashMap 自身の (空の) 表を参照してしまうため, 継承をやめた.)
+ * シリアライズした形式も変わり serialVersionUID も異なるため, 0.2.1.1 以前でシリアライズしたものを復元することはできない
+ * ({@link java.io.InvalidClassException} が発生する).
  *
  * @author nobuoka
  *
  */
-public class JsonObject extends HashMap<String,JsonValue> implements JsonValue {
+public class JsonObject extends AbstractMap<String,JsonValue>
+        implements JsonValue, Cloneable, Serializable {
 
-    private static final long serialVersionUID = -898362213984847287L;
+    /** HashMap を継承していた 0.2.1.1 以前の形式 (-898362213984847287L) とは互換性がない */
+    private static final long serialVersionUID = 4613420862245208329L;
     private static final String CLASS_NAME  = "JsonObject";
     private static final String METHOD_NAME = "objectValue()";
-    final Object ID;
+
+    /** この数を超える要素を持つ場合にハッシュ表を使用する */
+    static final int INDEX_THRESHOLD = 8;
+    private static final String[] EMPTY_KEYS = new String[0];
+    private static final JsonValue[] EMPTY_VALUES = new JsonValue[0];
+
+    private transient String[] mKeys;
+    private transient JsonValue[] mValues;
+    private transient int mSize;
+    /**
+     * キーのハッシュ値から配列上の位置 + 1 を引くための表 (0 は空きを表す).
+     * 要素数が INDEX_THRESHOLD 以下の場合は null.
+     */
+    private transient int[] mIndex;
+    private transient int mModCount;
+    private transient Set<Map.Entry<String,JsonValue>> mEntrySet;
 
     /**
      * 何も含まない状態の JsonObject オブジェクトを生成する.
      */
     public JsonObject() {
         super();
-        ID = new Object();
+        mKeys = EMPTY_KEYS;
+        mValues = EMPTY_VALUES;
+    }
+
+    /**
+     * 何も含まない状態の JsonObject オブジェクトを, 指定の要素数を格納できる大きさで生成する.
+     * @param initialCapacity 初期容量
+     */
+    public JsonObject(int initialCapacity) {
+        super();
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        mKeys = new String[initialCapacity];
+        mValues = new JsonValue[initialCapacity];
+    }
+
+    /**
+     * 指定の Map と同じ要素を持つ JsonObject オブジェクトを生成する.
+     * @param m 要素をコピーする Map
+     */
+    public JsonObject(Map<? extends String,? extends JsonValue> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    /**
+     * 指定の配列の先頭 size 個をキーと値とする JsonObject オブジェクトを生成する.
+     * 配列はコピーせずにそのまま使用する. キーは重複していてはならない.
+     */
+    JsonObject(String[] keys, JsonValue[] values, int size) {
+        super();
+        mKeys = keys;
+        mValues = values;
+        mSize = size;
+        if (INDEX_THRESHOLD < size) rebuildIndex();
+    }
+
+    /**
+     * 要素を変更する操作の前に呼ばれる.
+     * 変更できない場合は例外を投げる.
+     */
+    void checkMutable() {
+        // 変更可能
+    }
+
+    /**
+     * 要素を参照または変更する操作の前に呼ばれる.
+     * 内容を遅延して読み込む派生クラスは, ここで読み込みを行う.
+     */
+    void ensureLoaded() {
+        // 読み込み済み
+    }
+
+    @Override
+    public int size() {
+        ensureLoaded();
+        return mSize;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        ensureLoaded();
+        for (int i = 0; i < mSize; i++) {
+            if (eq(value, mValues[i])) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public JsonValue get(Object key) {
+        int i = indexOf(key);
+        return (i < 0 ? null : mValues[i]);
+    }
+
+    /**
+     * 要素を追加する. 既に同じキーが存在する場合は値を置き換え, 順序は変えない.
+     */
+    @Override
+    public JsonValue put(String key, JsonValue value) {
+        checkMutable();
+        int i = indexOf(key);
+        if (i >= 0) {
+            JsonValue old = mValues[i];
+            mValues[i] = value;
+            return old;
+        }
+        if (mSize == mKeys.length) {
+            grow();
+        }
+        mKeys[mSize] = key;
+        mValues[mSize] = value;
+        mSize++;
+        mModCount++;
+        if (mIndex != null) {
+            if (mIndex.length < mSize * 2) {
+                rebuildIndex();
+            } else {
+                addToIndex(mSize - 1);
+            }
+        } else if (INDEX_THRESHOLD < mSize) {
+            rebuildIndex();
+        }
+        return null;
+    }
+
+    @Override
+    public JsonValue remove(Object key) {
+        checkMutable();
+        int i = indexOf(key);
+        if (i < 0) return null;
+        JsonValue old = mValues[i];
+        removeAt(i);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        checkMutable();
+        ensureLoaded();
+        for (int i = 0; i < mSize; i++) {
+            mKeys[i] = null;
+            mValues[i] = null;
+        }
+        mSize = 0;
+        mIndex = null;
+        mModCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<String,JsonValue>> entrySet() {
+        ensureLoaded();
+        Set<Map.Entry<String,JsonValue>> es = mEntrySet;
+        if (es == null) {
+            es = new EntrySet();
+            mEntrySet = es;
+        }
+        return es;
+    }
+
+    /**
+     * 浅いコピーを返す. 値の JsonValue オブジェクトは共有される.
+     */
+    @Override
+    public Object clone() {
+        ensureLoaded();
+        JsonObject o;
+        try {
+            o = (JsonObject) super.clone();
+        } catch (CloneNotSupportedException err) {
+            throw new AssertionError(err);
+        }
+        o.mKeys = mKeys.clone();
+        o.mValues = mValues.clone();
+        o.mIndex = (mIndex == null ? null : mIndex.clone());
+        o.mModCount = 0;
+        o.mEntrySet = null;
+        return o;
+    }
+
+    /** 指定の位置 (追加された順番) のキーを返す. シリアライザーが使用する. */
+    String keyAt(int i) {
+        ensureLoaded();
+        return mKeys[i];
+    }
+
+    /** 指定の位置 (追加された順番) の値を返す. シリアライザーが使用する. */
+    JsonValue valueAt(int i) {
+        ensureLoaded();
+        return mValues[i];
+    }
+
+    /** キーの配列をコピーして返す. 派生クラスで新しいインスタンスを作るために使用する. */
+    String[] copyKeys(int capacity) {
+        ensureLoaded();
+        String[] keys = new String[capacity];
+        System.arraycopy(mKeys, 0, keys, 0, Math.min(mSize, capacity));
+        return keys;
+    }
+
+    /** 値の配列をコピーして返す. 派生クラスで新しいインスタンスを作るために使用する. */
+    JsonValue[] copyValues(int capacity) {
+        ensureLoaded();
+        JsonValue[] values = new JsonValue[capacity];
+        System.arraycopy(mValues, 0, values, 0, Math.min(mSize, capacity));
+        return values;
+    }
+
+    /**
+     * 指定のキーの位置 (追加された順番) を返す.
+     * @return キーの位置. 存在しない場合は -1
+     */
+    int indexOf(Object key) {
+        ensureLoaded();
+        if (mIndex == null) {
+            for (int i = 0; i < mSize; i++) {
+                if (eq(key, mKeys[i])) return i;
+            }
+            return -1;
+        }
+        int mask = mIndex.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int e = mIndex[slot];
+            if (e == 0) return -1;
+            if (eq(key, mKeys[e - 1])) return e - 1;
+        }
+    }
+
+    private void removeAt(int i) {
+        checkMutable();
+        int numMoved = mSize - i - 1;
+        if (numMoved > 0) {
+            System.arraycopy(mKeys, i + 1, mKeys, i, numMoved);
+            System.arraycopy(mValues, i + 1, mValues, i, numMoved);
+        }
+        mSize--;
+        mKeys[mSize] = null;
+        mValues[mSize] = null;
+        mModCount++;
+        // 位置がずれるのでハッシュ表は作り直す
+        if (mIndex != null) {
+            if (INDEX_THRESHOLD < mSize) {
+                rebuildIndex();
+            } else {
+                mIndex = null;
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = (mKeys.length < 4 ? 4 : mKeys.length + (mKeys.length >> 1));
+        String[] keys = new String[capacity];
+        JsonValue[] values = new JsonValue[capacity];
+        System.arraycopy(mKeys, 0, keys, 0, mSize);
+        System.arraycopy(mValues, 0, values, 0, mSize);
+        mKeys = keys;
+        mValues = values;
+    }
+
+    /** 負荷率が 1/2 以下になる大きさでハッシュ表を作り直す. */
+    private void rebuildIndex() {
+        int len = 16;
+        while (len < mSize * 4) len <<= 1;
+        mIndex = new int[len];
+        for (int i = 0; i < mSize; i++) addToIndex(i);
+    }
+
+    private void addToIndex(int i) {
+        int mask = mIndex.length - 1;
+        int slot = hash(mKeys[i]) & mask;
+        while (mIndex[slot] != 0) slot = (slot + 1) & mask;
+        mIndex[slot] = i + 1;
+    }
+
+    private static int hash(Object key) {
+        if (key == null) return 0;
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return (a == null ? b == null : a.equals(b));
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String,JsonValue>> {
+        @Override
+        public Iterator<Map.Entry<String,JsonValue>> iterator() {
+            return new EntryIterator();
+        }
+        @Override
+        public int size() {
+            return mSize;
+        }
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            int i = indexOf(e.getKey());
+            return i >= 0 && eq(e.getValue(), mValues[i]);
+        }
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) return false;
+            removeAt(indexOf(((Map.Entry<?,?>) o).getKey()));
+            return true;
+        }
+        @Override
+        public void clear() {
+            JsonObject.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String,JsonValue>> {
+        private int mNext = 0;
+        private int mLast = -1;
+        private int mExpectedModCount = mModCount;
+        @Override
+        public boolean hasNext() {
+            return mNext < mSize;
+        }
+        @Override
+        public Map.Entry<String,JsonValue> next() {
+            if (mModCount != mExpectedModCount) throw new ConcurrentModificationException();
+            if (mSize <= mNext) throw new NoSuchElementException();
+            mLast = mNext++;
+            return new Entry(mLast);
+        }
+        @Override
+        public void remove() {
+            if (mLast < 0) throw new IllegalStateException();
+            if (mModCount != mExpectedModCount) throw new ConcurrentModificationException();
+            removeAt(mLast);
+            mNext = mLast;
+            mLast = -1;
+            mExpectedModCount = mModCount;
+        }
+    }
+
+    /** 配列上の位置を指す Map.Entry. 値の変更は JsonObject に反映される. */
+    private final class Entry implements Map.Entry<String,JsonValue> {
+        private final int mPos;
+        Entry(int pos) {
+            mPos = pos;
+        }
+        @Override
+        public String getKey() {
+            return mKeys[mPos];
+        }
+        @Override
+        public JsonValue getValue() {
+            return mValues[mPos];
+        }
+        @Override
+        public JsonValue setValue(JsonValue value) {
+            checkMutable();
+            JsonValue old = mValues[mPos];
+            mValues[mPos] = value;
+            return old;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            return eq(getKey(), e.getKey()) && eq(getValue(), e.getValue());
+        }
+        @Override
+        public int hashCode() {
+            String k = getKey();
+            JsonValue v = getValue();
+            return (k == null ? 0 : k.hashCode()) ^ (v == null ? 0 : v.hashCode());
+        }
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureLoaded();
+        out.defaultWriteObject();
+        out.writeInt(mSize);
+        for (int i = 0; i < mSize; i++) {
+            out.writeObject(mKeys[i]);
+            out.writeObject(mValues[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        if (size < 0) throw new InvalidObjectException("Illegal size: " + size);
+        mKeys = new String[size];
+        mValues = new JsonValue[size];
+        // 変更できない派生クラスでも復元できるよう, put を使わずに配列に格納する
+        for (int i = 0; i < size; i++) {
+            mKeys[i] = (String) in.readObject();
+            mValues[i] = (JsonValue) in.readObject();
+        }
+        mSize = size;
+        if (INDEX_THRESHOLD < size) rebuildIndex();
     }
 
     /**
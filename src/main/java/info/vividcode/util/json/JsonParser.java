@@ -1,6 +1,14 @@
 package info.vividcode.util.json;
 
-import java.math.BigDecimal;
+import info.vividcode.util.json.JsonTokenizer.TokenType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  *JSON 文字列をパースする機能を提供するクラス.
@@ -16,300 +24,6 @@ public class JsonParser {
 
     private JsonParser() {}
 
-    private static class CodePointIterator {
-        private String str;
-        private int index;
-        //private int numCP;
-        private int length;
-        public CodePointIterator(String str) {
-            this.str = str;
-            this.index = 0;
-            //this.numCP = str.codePointCount( 0, str.length() );
-            this.length = str.length();
-        }
-        public boolean hasNext() {
-            //return index < numCP;
-            return index < length;
-        }
-        public int next() {
-            if (length <= index) {
-                return -1;
-            }
-            int cp = str.codePointAt(index);
-            index += Character.charCount(cp);
-            return cp;
-        }
-        public int prev(int cp) {
-            index -= Character.charCount(cp);
-            return str.codePointAt(index);
-        }
-        public int viewNext() {
-            return str.codePointAt(index);
-        }
-    }
-
-    private static class Token {
-        public TokenType type;
-        public String tokenString;
-        enum TokenType {
-            BEGIN_ARRAY, // "["
-            END_ARRAY, // "]"
-            BEGIN_OBJECT, // "{"
-            END_OBJECT, // "}"
-            NAME_SEPARATER, // ":"
-            VALUE_SEPARATER, // ","
-            STRING,
-            NUMBER,
-            FALSE,
-            TRUE,
-            NULL,
-        }
-        private Token(TokenType type, String str) {
-            this.type = type;
-            this.tokenString = str;
-        }
-        static final public Token BEGIN_ARRAY = new Token(TokenType.BEGIN_ARRAY, null);
-        static final public Token END_ARRAY = new Token(TokenType.END_ARRAY, null);
-        static final public Token BEGIN_OBJECT = new Token(TokenType.BEGIN_OBJECT, null);
-        static final public Token END_OBJECT = new Token(TokenType.END_OBJECT, null);
-        static final public Token NAME_SEPARATER = new Token(TokenType.NAME_SEPARATER, null);
-        static final public Token VALUE_SEPARATER = new Token(TokenType.VALUE_SEPARATER, null);
-        static final public Token FALSE = new Token(TokenType.FALSE, null);
-        static final public Token TRUE = new Token(TokenType.TRUE, null);
-        static final public Token NULL = new Token(TokenType.NULL, null);
-        static final public Token newStringToken(String str) {
-            return new Token(TokenType.STRING, str);
-        }
-        static final public Token newNumberToken(String str) {
-            return new Token(TokenType.NUMBER, str);
-        }
-    }
-
-    private static class Tokenizer {
-        private CodePointIterator cpi;
-        public Tokenizer(String str) {
-            cpi = new CodePointIterator(str);
-        }
-        public Token getNextToken() {
-            return getNextTokenInternal(cpi);
-        }
-
-        static final private int[] FALSE_FOLLOWING_CPS = { 0x61, 0x6c, 0x73, 0x65 };
-        static final private int[] TRUE_FOLLOWING_CPS  = { 0x72, 0x75, 0x65  };
-        static final private int[] NULL_FOLLOWING_CPS  = { 0x75, 0x6c, 0x6c  };
-
-        private Token getNextTokenInternal(CodePointIterator cpi) {
-            // 最初の文字の Code point を取得
-            int firstCharCP = -1;
-            while (cpi.hasNext()) {
-                int cp = cpi.next();
-                if (!isWS(cp)) {
-                    firstCharCP = cp;
-                    break;
-                }
-            }
-            // 次のトークンがない場合
-            if (firstCharCP == -1) {
-                return null;
-            }
-            // 最初の文字の CP によって処理を変える
-            switch (firstCharCP) {
-                case 0x5B /* [ */:
-                    return Token.BEGIN_ARRAY;
-                case 0x7B /* { */:
-                    return Token.BEGIN_OBJECT;
-                case 0x5D /* ] */:
-                    return Token.END_ARRAY;
-                case 0x7D /* } */:
-                    return Token.END_OBJECT;
-                case 0x3A /* : */:
-                    return Token.NAME_SEPARATER;
-                case 0x2C /* , */:
-                    return Token.VALUE_SEPARATER;
-                case 0x22 /* " */:
-                    return getNextStringToken( cpi );
-                case 0x66 /* f */:
-                    checkNextLiteralToken( cpi, FALSE_FOLLOWING_CPS );
-                    return Token.FALSE;
-                case 0x6E /* n */:
-                    checkNextLiteralToken( cpi, NULL_FOLLOWING_CPS );
-                    return Token.NULL;
-                case 0x74 /* t */:
-                    checkNextLiteralToken( cpi, TRUE_FOLLOWING_CPS );
-                    return Token.TRUE;
-            }
-
-            /* -, 0-9 */
-            if (firstCharCP == 0x2D || (0x30 <= firstCharCP && firstCharCP <= 0x39)) {
-                return getNextNumberToken(cpi, firstCharCP);
-            }
-
-            // TODO : 例外処理
-            //return sb.toString();
-            return null;
-        }
-
-        private Token getNextStringToken(CodePointIterator cpi) {
-            StringBuilder sb = new StringBuilder();
-            while (cpi.hasNext()) {
-                int cp = cpi.next();
-                if (cp == 0x22 /* " */) {
-                    // end
-                    return Token.newStringToken(sb.toString());
-                }
-                if (cp != 0x5C) {
-                    // unescaped
-                    sb.appendCodePoint(cp);
-                } else {
-                    // escaped
-                    if (!cpi.hasNext()) throw new RuntimeException(); // TODO
-                    cp = cpi.next();
-                    /*
-                    %x22 /          ; "    quotation mark  U+0022
-                    %x5C /          ; \    reverse solidus U+005C
-                    %x2F /          ; /    solidus         U+002F
-                    %x62 /          ; b    backspace       U+0008
-                    %x66 /          ; f    form feed       U+000C
-                    %x6E /          ; n    line feed       U+000A
-                    %x72 /          ; r    carriage return U+000D
-                    %x74 /          ; t    tab             U+0009
-                    %x75 4HEXDIG )  ; uXXXX                U+XXXX
-                    */
-                    switch (cp) {
-                        case 0x22:
-                            sb.append("\""); break;
-                        case 0x5C:
-                            sb.append("\\"); break;
-                        case 0x2F:
-                            sb.append("/"); break;
-                        case 0x62:
-                            sb.appendCodePoint(0x08); break;
-                        case 0x66:
-                            sb.appendCodePoint(0x0C); break;
-                        case 0x6E:
-                            sb.appendCodePoint(0x0A); break;
-                        case 0x72:
-                            sb.appendCodePoint(0x0D); break;
-                        case 0x74:
-                            sb.appendCodePoint(0x09); break;
-                        case 0x75:
-                            StringBuilder sb2 = new StringBuilder();
-                            // TODO : error 処理
-                            for (int i = 0; i < 4; i++) sb2.appendCodePoint(cpi.next());
-                            sb.append( (char)Integer.parseInt(sb2.toString(), 16) );
-                            break;
-                        default:
-                            throw new RuntimeException(); // TODO
-                    }
-                }
-            }
-            throw new RuntimeException("string の終端 (\") が見つかりません"); // TODO
-        }
-
-        private Token getNextNumberToken(CodePointIterator cpi, int cp) {
-            // number = [minus] int [frac] [exp]
-            // minus  = U+002D ; -
-            // plus   = U+002B ; +
-            // int    = zero | non-zero-digit digit*
-            // zero   = U+0030 ; 0
-            // non-zero-digit = U+0031 - U+0039 ; 1 - 9
-            // digit  = zero | non-zero-digit
-            // frac   = decimal-point digit+
-            // decimal-point = U+002E ; .
-            // exp    = e [ minus | plus ] digit+
-            // e      = U+0065 | 0x0045 ; e | E
-            // TODO : cpi.next() の例外処理
-            //int cp = firstCharCP;
-            StringBuilder sb = new StringBuilder();
-            // 先頭が - の場合の処理
-            if (cp == 0x2D) {
-                sb.appendCodePoint(cp);
-                cp = cpi.next();
-            }
-            // cp は int の先頭
-            if (cp == 0x30 /* 0 */) {
-                sb.appendCodePoint(cp);
-                // 0 が先頭ならば, 続くのは数字ではない
-                cp = cpi.next();
-                if (0x30 <= cp && cp <= 0x39) throw new RuntimeException("unexpected character");
-            } else if (0x31 /* 1 */ <= cp && cp <= 0x39 /* 9 */) {
-                while (true) {
-                    if (0x30 <= cp && cp <= 0x39) {
-                        sb.appendCodePoint(cp);
-                        cp = cpi.next();
-                    } else {
-                        break;
-                    }
-                }
-            } else {
-                throw new RuntimeException("unexpected character");
-            }
-            // cp は decimal-point か e か number ではない次のトークンの開始のはず
-            if (cp == 0x2E) {
-                sb.appendCodePoint(cp);
-                cp = cpi.next();
-                // cp は数字のはず
-                if (cp < 0x30 || 0x39 < cp) throw new RuntimeException("unexpected character");
-                while (true) {
-                    if (0x30 <= cp && cp <= 0x39) {
-                        sb.appendCodePoint(cp);
-                        cp = cpi.next();
-                    } else {
-                        break;
-                    }
-                }
-            }
-            // cp は e か number ではない次のトークンの開始のはず
-            if (cp == 0x45 || cp == 0x65) {
-                sb.appendCodePoint(cp);
-                cp = cpi.next();
-                // minus or plus?
-                if (cp == 0x2B || cp == 0x2D) {
-                    sb.appendCodePoint(cp);
-                    cp = cpi.next();
-                }
-                // cp は数字のはず
-                if (cp < 0x30 || 0x39 < cp) throw new RuntimeException("unexpected character");
-                while (true) {
-                    if (0x30 <= cp && cp <= 0x39) {
-                        sb.appendCodePoint(cp);
-                        cp = cpi.next();
-                    } else {
-                        break;
-                    }
-                }
-            }
-            // cp は number ではない次のトークンの開始のはず
-            cpi.prev(cp);
-            // TODO : チェック
-
-            return Token.newNumberToken(sb.toString());
-        }
-
-        private void checkNextLiteralToken(CodePointIterator cpi, int[] cps) {
-            for (int cp : cps) {
-                if (cp != cpi.next()) throw new RuntimeException("unexpected token");
-            }
-            // 続く文字が空白か "]", "}", "," のいずれかであればよい
-            int cp = cpi.viewNext();
-            if (!isWS(cp)) {
-                switch (cp) {
-                    case 0x5D /* ] */:
-                    case 0x7D /* } */:
-                    case 0x2C /* , */:
-                        // ok
-                        break;
-                    default:
-                        throw new RuntimeException("unexpected character [code point:" + cp + "]");
-                }
-            }
-        }
-
-        private boolean isWS(int cp) {
-            return cp == 0x20 || cp == 0x09 || cp == 0x0A || cp == 0x0D;
-        }
-    }
-
     /*
      * s: "[" -> 1, "{" -> 5
      *
@@ -326,16 +40,16 @@ public class JsonParser {
      * vs: "[" -> 1, "{" -> 5, ( string, number, boolean, null ) -> e
      */
 
-    static private JsonValue parseValue(Tokenizer t, Token token) {
-        switch (token.type) {
+    static JsonValue parseValue(JsonTokenizer t, TokenType type, boolean immutable) {
+        switch (type) {
             case BEGIN_ARRAY:
-                return parseArray(t, new JsonArray());
+                return parseArray(t, immutable);
             case BEGIN_OBJECT:
-                return parseObject(t, new JsonObject());
+                return parseObject(t, immutable);
             case STRING:
-                return new JsonString(token.tokenString);
+                return new JsonString(t.getText());
             case NUMBER:
-                return new JsonNumber(new BigDecimal(token.tokenString));
+                return JsonNumber.fromText(t.getTextBuffer(), 0, t.getTextLength());
             case TRUE:
                 return JsonBoolean.TRUE;
             case FALSE:
@@ -343,86 +57,718 @@ public class JsonParser {
             case NULL:
                 return JsonNull.VALUE;
             default:
-                throw new RuntimeException("unexpected token");
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
         }
     }
 
-    static private JsonObject parseObject(Tokenizer t, JsonObject jobject) {
-        Token token = t.getNextToken();
-        if (token.type == Token.TokenType.END_OBJECT) {
-            return jobject;
+    static private JsonObject parseObject(JsonTokenizer t, boolean immutable) {
+        TokenType type = nextToken(t);
+        if (type == TokenType.END_OBJECT) {
+            return (immutable ? ImmutableJsonObject.EMPTY : new JsonObject());
         }
+        JsonObject jobject = new JsonObject();
         while (true) {
             // string
-            if (token.type != Token.TokenType.STRING)
-                throw new RuntimeException("unexpected token");
-            String key = token.tokenString;
+            if (type != TokenType.STRING)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            String key = t.getKeyText();
             // name separater
-            token = t.getNextToken();
-            if (token.type != Token.TokenType.NAME_SEPARATER)
-                throw new RuntimeException("unexpected token");
+            type = nextToken(t);
+            if (type != TokenType.NAME_SEPARATER)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
             // value
-            token = t.getNextToken();
-            JsonValue value = parseValue(t, token);
+            type = nextToken(t);
+            JsonValue value = parseValue(t, type, immutable);
             jobject.put(key, value);
             // "," or "}"?
-            token = t.getNextToken();
-            if (token.type == Token.TokenType.END_OBJECT) {
+            type = nextToken(t);
+            if (type == TokenType.END_OBJECT) {
                 break;
-            } else if (token.type == Token.TokenType.VALUE_SEPARATER) {
-                token = t.getNextToken();
+            } else if (type == TokenType.VALUE_SEPARATER) {
+                type = nextToken(t);
             } else {
-                throw new RuntimeException("unexpected token [token type:" +
-                        token.type + ", token string:" + token.tokenString + "]");
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
             }
         }
+        if (immutable) {
+            // 要素数ちょうどの配列にコピーして, 変更できないものにする
+            int size = jobject.size();
+            return new ImmutableJsonObject(jobject.copyKeys(size), jobject.copyValues(size), size);
+        }
         return jobject;
     }
 
-    static private JsonArray parseArray(Tokenizer t, JsonArray jarray) {
-        Token token = t.getNextToken();
-        if (token.type == Token.TokenType.END_ARRAY) {
-            return jarray;
+    static private JsonArray parseArray(JsonTokenizer t, boolean immutable) {
+        TokenType type = nextToken(t);
+        if (type == TokenType.END_ARRAY) {
+            return (immutable ? ImmutableJsonArray.EMPTY : new JsonArray());
         }
+        JsonArray jarray = new JsonArray();
         while (true) {
             // value
-            JsonValue value = parseValue(t, token);
+            JsonValue value = parseValue(t, type, immutable);
             jarray.add(value);
             // "," or "]"?
-            token = t.getNextToken();
-            if (token.type == Token.TokenType.END_ARRAY) {
+            type = nextToken(t);
+            if (type == TokenType.END_ARRAY) {
                 break;
-            } else if (token.type == Token.TokenType.VALUE_SEPARATER) {
-                token = t.getNextToken();
+            } else if (type == TokenType.VALUE_SEPARATER) {
+                type = nextToken(t);
             } else {
-                throw new RuntimeException("unexpected token");
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
             }
         }
+        if (immutable) {
+            // 要素数ちょうどの配列にコピーして, 変更できないものにする
+            int size = jarray.size();
+            return new ImmutableJsonArray(jarray.copyElements(size), size);
+        }
         return jarray;
     }
 
+    /** object や array の途中で次のトークンを読む. 終端に達した場合は例外を投げる. */
+    static TokenType nextToken(JsonTokenizer t) {
+        TokenType type = t.next();
+        if (type == null) {
+            throw new InvalidJsonException("unexpected end of JSON text");
+        }
+        return type;
+    }
+
     /**
      *JSON 文字列をパースして, 結果を JsonValue として返す.
      *@param jsonStr パース対象の JSON 文字列
      *@return jsonStr をパースした結果の JSON オブジェクト
      */
     static public JsonValue parse(String jsonStr) {
+        return parse(jsonStr, null);
+    }
+
+    /**
+     *キーのキャッシュを使用して JSON 文字列をパースし, 結果を JsonValue として返す.
+     *object のキーのうちキャッシュに存在するものは, 新たに String オブジェクトを生成せずに
+     *キャッシュ済みのものを使用する.
+     *@param jsonStr パース対象の JSON 文字列
+     *@param keyCache object のキーに使用するキャッシュ. null の場合はキャッシュを使用しない
+     *@return jsonStr をパースした結果の JSON オブジェクト
+     */
+    static public JsonValue parse(String jsonStr, JsonKeyCache keyCache) {
+        return parsePooled(CodePointIterator.forString(jsonStr), keyCache, jsonStr, false);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を JsonValue として返す.
+     *String への decode を行わずに, バイト列を直接パースする.
+     *@param bytes パース対象の JSON テキストを含むバイト配列
+     *@param offset パース対象の先頭の位置
+     *@param length パース対象のバイト数
+     *@return パースした結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正な JSON テキストまたは不正な UTF-8 のバイト列の場合
+     */
+    static public JsonValue parse(byte[] bytes, int offset, int length) {
+        return parse(bytes, offset, length, null);
+    }
+
+    /**
+     *キーのキャッシュを使用して, UTF-8 でエンコードされた JSON テキストをパースする.
+     *@param keyCache object のキーに使用するキャッシュ. null の場合はキャッシュを使用しない
+     *@see #parse(byte[], int, int)
+     *@see #parse(String, JsonKeyCache)
+     */
+    static public JsonValue parse(byte[] bytes, int offset, int length, JsonKeyCache keyCache) {
+        return parsePooled(CodePointIterator.forUtf8(bytes, offset, length), keyCache, null, false);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を JsonValue として返す.
+     *バッファの position から limit までのバイト列をパースする.
+     *heap buffer と direct buffer のどちらでもよい. バッファの position や limit は変更されない.
+     *@param buf パース対象の JSON テキストを含むバッファ
+     *@return パースした結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正な JSON テキストまたは不正な UTF-8 のバイト列の場合
+     */
+    static public JsonValue parse(ByteBuffer buf) {
+        return parse(buf, null);
+    }
+
+    /**
+     *キーのキャッシュを使用して, UTF-8 でエンコードされた JSON テキストをパースする.
+     *@param keyCache object のキーに使用するキャッシュ. null の場合はキャッシュを使用しない
+     *@see #parse(ByteBuffer)
+     *@see #parse(String, JsonKeyCache)
+     */
+    static public JsonValue parse(ByteBuffer buf, JsonKeyCache keyCache) {
+        return parsePooled(CodePointIterator.forUtf8(buf), keyCache, null, false);
+    }
+
+    /**
+     *JSON 文字列をパースして, 結果を JsonValue の木構造ではなく {@link JsonTape} として返す.
+     *結果は direct buffer に格納され, 値ごとの Java オブジェクトは生成されない.
+     *@param jsonStr パース対象の JSON 文字列
+     *@return jsonStr をパースした結果の文書
+     */
+    static public JsonTape parseTape(String jsonStr) {
+        return parseTape(CodePointIterator.forString(jsonStr));
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を {@link JsonTape} として返す.
+     *@see #parseTape(String)
+     *@see #parse(byte[], int, int)
+     */
+    static public JsonTape parseTape(byte[] bytes, int offset, int length) {
+        return parseTape(CodePointIterator.forUtf8(bytes, offset, length));
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を {@link JsonTape} として返す.
+     *@see #parseTape(String)
+     *@see #parse(ByteBuffer)
+     */
+    static public JsonTape parseTape(ByteBuffer buf) {
+        return parseTape(CodePointIterator.forUtf8(buf));
+    }
+
+    static private JsonTape parseTape(CodePointIterator cpi) {
+        // 同じキーを 1 度だけ格納するために, キーの String オブジェクトをキャッシュから得る
+        JsonTokenizer t = new JsonTokenizer(cpi, new JsonKeyCache(256, 64), JsonBuffers.acquireTokenChars());
+        try {
+            JsonTape.Builder builder = new JsonTape.Builder();
+            int root = builder.value(t, topLevelToken(t));
+            if (t.next() != null) {
+                throw new InvalidJsonException("Unexpected token after the top-level value");
+            }
+            return builder.build(root);
+        } finally {
+            JsonBuffers.releaseTokenChars(t.getTextBuffer());
+        }
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストを 2 段階でパースして, 結果を JsonValue として返す.
+     *<p>
+     *1 段階目では, 8 バイトずつまとめたビット演算で入力全体を走査し, 構造上の区切り
+     *(括弧, ":", ",", string の開始, number やリテラルの先頭) の位置の一覧を作る.
+     *2 段階目ではその一覧を辿ってパースするため, 空白を 1 文字ずつ読み飛ばしたり,
+     *1 文字ごとにトークンの種類を判定したりしない.
+     *<p>
+     *木構造全体を生成する場合は, 1 段階目の分だけ {@link #parse(byte[], int, int)} より遅くなることが多い.
+     *一覧を辿れば array や object の内容を読まずに読み飛ばせるため, 必要な部分だけを取り出す処理や,
+     *処理を分割する際の区切りを探す処理の土台として使用する.
+     *@see #parse(byte[], int, int)
+     */
+    static public JsonValue parseIndexed(byte[] bytes, int offset, int length) {
+        return parseIndexed(bytes, offset, length, null);
+    }
+
+    /**
+     *キーのキャッシュを使用して, UTF-8 でエンコードされた JSON テキストを 2 段階でパースする.
+     *@param keyCache object のキーに使用するキャッシュ. null の場合はキャッシュを使用しない
+     *@see #parseIndexed(byte[], int, int)
+     */
+    static public JsonValue parseIndexed(byte[] bytes, int offset, int length, JsonKeyCache keyCache) {
+        JsonStructuralIndex index = JsonStructuralIndex.build(bytes, offset, length);
+        return parse(new IndexedJsonTokenizer(index, keyCache), null, false);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストを, 必要になった部分だけをパースする遅延パースのモードで読む.
+     *<p>
+     *最初に {@link #parseIndexed(byte[], int, int)} と同じ構造インデックスを作り, 最上位の array または
+     *object の範囲だけを確かめて返す. 返される JsonObject や JsonArray は, 最初に要素を参照した時点で
+     *その階層だけをパースし, 入れ子の object や array は開始と終わりの位置だけを記録した
+     *未読のものとして保持する. 大きな JSON テキストのうち一部のメンバーだけを参照する場合は,
+     *参照されなかった部分の string や number の decode とオブジェクトの生成が省かれる.
+     *<p>
+     *注意点:
+     *<ul>
+     *<li>未読の部分の不正な内容 (string の終端がないものを除く) は, その部分を参照した時点で
+     *    {@link InvalidJsonException} として報告される.</li>
+     *<li>すべての部分を読み込むまで, 入力のバイト配列と構造インデックスへの参照を保持する.
+     *    バイト配列の内容を変更してはならない.</li>
+     *<li>参照によって内部の状態が変わるため, 同期を行わずに複数のスレッドから参照してはならない.</li>
+     *</ul>
+     *@param bytes パース対象の JSON テキストを含むバイト配列
+     *@param offset パース対象の先頭の位置
+     *@param length パース対象のバイト数
+     *@return 最上位の array または object を表す JSON オブジェクト
+     *@throws InvalidJsonException 最上位の構造が不正な場合
+     */
+    static public JsonValue parseLazy(byte[] bytes, int offset, int length) {
+        JsonStructuralIndex index = JsonStructuralIndex.build(bytes, offset, length);
+        IndexedJsonTokenizer t = new IndexedJsonTokenizer(index);
+        TokenType type = topLevelToken(t);
+        JsonValue val = lazyValue(t, type);
+        if ((type = t.next()) != null) {
+            throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+        }
+        return val;
+    }
+
+    /**
+     *遅延パースで値を 1 つ読む. object や array の場合は内容を読み飛ばして,
+     *未読の {@link LazyJsonObject} または {@link LazyJsonArray} を返す.
+     */
+    static private JsonValue lazyValue(IndexedJsonTokenizer t, TokenType type) {
+        if (type == TokenType.BEGIN_ARRAY) {
+            JsonValue val = new LazyJsonArray(t.index(), t.tokenPosition());
+            t.skipToContainerEnd();
+            if ((type = nextToken(t)) != TokenType.END_ARRAY)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            return val;
+        } else if (type == TokenType.BEGIN_OBJECT) {
+            JsonValue val = new LazyJsonObject(t.index(), t.tokenPosition());
+            t.skipToContainerEnd();
+            if ((type = nextToken(t)) != TokenType.END_OBJECT)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            return val;
+        }
+        return parseValue(t, type, false);
+    }
+
+    /**
+     *"{" の直後から object のメンバーを 1 階層分だけ読み, jobject に追加する.
+     *{@link LazyJsonObject} が最初に参照された際に使用する.
+     */
+    static void loadLazyObject(IndexedJsonTokenizer t, JsonObject jobject) {
+        TokenType type = nextToken(t);
+        if (type == TokenType.END_OBJECT) {
+            return;
+        }
+        while (true) {
+            if (type != TokenType.STRING)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            String key = t.getKeyText();
+            type = nextToken(t);
+            if (type != TokenType.NAME_SEPARATER)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            jobject.put(key, lazyValue(t, nextToken(t)));
+            type = nextToken(t);
+            if (type == TokenType.END_OBJECT) {
+                return;
+            } else if (type == TokenType.VALUE_SEPARATER) {
+                type = nextToken(t);
+            } else {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+        }
+    }
+
+    /**
+     *"[" の直後から array の要素を 1 階層分だけ読み, jarray に追加する.
+     *{@link LazyJsonArray} が最初に参照された際に使用する.
+     */
+    static void loadLazyArray(IndexedJsonTokenizer t, JsonArray jarray) {
+        TokenType type = nextToken(t);
+        if (type == TokenType.END_ARRAY) {
+            return;
+        }
+        while (true) {
+            jarray.add(lazyValue(t, type));
+            type = nextToken(t);
+            if (type == TokenType.END_ARRAY) {
+                return;
+            } else if (type == TokenType.VALUE_SEPARATER) {
+                type = nextToken(t);
+            } else {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+        }
+    }
+
+    /**
+     *JSON 文字列をパースして, 結果を変更できない JSON オブジェクトとして返す.
+     *結果に含まれる object と array はすべて {@link ImmutableJsonObject} または
+     *{@link ImmutableJsonArray} であり, コピーや同期を行わずに複数のスレッドで共有できる.
+     *@param jsonStr パース対象の JSON 文字列
+     *@return jsonStr をパースした結果の JSON オブジェクト
+     */
+    static public JsonValue parseImmutable(String jsonStr) {
+        return parsePooled(CodePointIterator.forString(jsonStr), null, jsonStr, true);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を変更できない JSON オブジェクトとして返す.
+     *@see #parse(byte[], int, int)
+     *@see #parseImmutable(String)
+     */
+    static public JsonValue parseImmutable(byte[] bytes, int offset, int length) {
+        return parsePooled(CodePointIterator.forUtf8(bytes, offset, length), null, null, true);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を変更できない JSON オブジェクトとして返す.
+     *@see #parse(ByteBuffer)
+     *@see #parseImmutable(String)
+     */
+    static public JsonValue parseImmutable(ByteBuffer buf) {
+        return parsePooled(CodePointIterator.forUtf8(buf), null, null, true);
+    }
+
+    /**
+     *JSON 文字列のうち, JSON Pointer (RFC 6901) で指定した位置の値だけを取り出す.
+     *@param jsonStr パース対象の JSON 文字列
+     *@param pointer 取り出す値の位置を表す JSON Pointer の文字列表現 (例: "/statuses/0/id")
+     *@return 指定の位置の値. 存在しない場合は null
+     *@throws IllegalArgumentException pointer が不正な JSON Pointer の場合
+     *@see #extract(String, JsonPointer)
+     */
+    static public JsonValue extract(String jsonStr, String pointer) {
+        return extract(jsonStr, JsonPointer.compile(pointer));
+    }
+
+    /**
+     *JSON 文字列のうち, JSON Pointer (RFC 6901) で指定した位置の値だけを取り出す.
+     *<p>
+     *JSON 文字列を先頭からトークンに分割しながら辿り, 指定の位置に至る経路上にない object のメンバーや
+     *array の要素は, 値のオブジェクトを生成せずに読み飛ばす. 指定の位置の値だけをパースして返し,
+     *その後ろの部分は読まない (不正な内容があっても報告されない).
+     *<p>
+     *object に同じ名前のメンバーが複数ある場合は, 最初のものを返す.
+     *@param jsonStr パース対象の JSON 文字列
+     *@param pointer 取り出す値の位置
+     *@return 指定の位置の値. 存在しない場合は null
+     *@throws InvalidJsonException 指定の位置の値までの部分に不正な内容がある場合
+     */
+    static public JsonValue extract(String jsonStr, JsonPointer pointer) {
+        return extract(new JsonTokenizer(CodePointIterator.forString(jsonStr)), pointer);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストのうち, JSON Pointer (RFC 6901) で指定した位置の値だけを取り出す.
+     *@see #extract(byte[], int, int, JsonPointer)
+     */
+    static public JsonValue extract(byte[] bytes, int offset, int length, String pointer) {
+        return extract(bytes, offset, length, JsonPointer.compile(pointer));
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストのうち, JSON Pointer (RFC 6901) で指定した位置の値だけを取り出す.
+     *@see #extract(String, JsonPointer)
+     */
+    static public JsonValue extract(byte[] bytes, int offset, int length, JsonPointer pointer) {
+        return extract(new JsonTokenizer(CodePointIterator.forUtf8(bytes, offset, length)), pointer);
+    }
+
+    static private JsonValue extract(JsonTokenizer t, JsonPointer pointer) {
+        TokenType type = topLevelToken(t);
+        for (int i = 0; i < pointer.depth(); i++) {
+            if (type == TokenType.BEGIN_OBJECT) {
+                type = findMember(t, pointer.token(i));
+            } else if (type == TokenType.BEGIN_ARRAY) {
+                type = findElement(t, JsonPointer.arrayIndex(pointer.token(i)));
+            } else {
+                // string や number などの内部は参照できない
+                return null;
+            }
+            if (type == null) return null;
+        }
+        return parseValue(t, type, false);
+    }
+
+    /**
+     *"{" の直後から指定の名前のメンバーを探し, 見つかった場合はその値の最初のトークンまで進める.
+     *@return 見つかったメンバーの値の最初のトークンの種類. 見つからない場合は null
+     */
+    static private TokenType findMember(JsonTokenizer t, String name) {
+        TokenType type = nextToken(t);
+        if (type == TokenType.END_OBJECT) {
+            return null;
+        }
+        while (true) {
+            if (type != TokenType.STRING)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            boolean found = textEquals(t, name);
+            type = nextToken(t);
+            if (type != TokenType.NAME_SEPARATER)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            type = nextToken(t);
+            if (found) {
+                return type;
+            }
+            skipValue(t, type);
+            type = nextToken(t);
+            if (type == TokenType.END_OBJECT) {
+                return null;
+            } else if (type == TokenType.VALUE_SEPARATER) {
+                type = nextToken(t);
+            } else {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+        }
+    }
+
+    /**
+     *"[" の直後から指定の位置の要素を探し, 見つかった場合はその最初のトークンまで進める.
+     *@return 見つかった要素の最初のトークンの種類. 見つからない場合 (index が負の場合を含む) は null
+     */
+    static private TokenType findElement(JsonTokenizer t, int index) {
+        if (index < 0) {
+            return null;
+        }
+        TokenType type = nextToken(t);
+        if (type == TokenType.END_ARRAY) {
+            return null;
+        }
+        for (int i = 0; ; i++) {
+            if (i == index) {
+                return type;
+            }
+            skipValue(t, type);
+            type = nextToken(t);
+            if (type == TokenType.END_ARRAY) {
+                return null;
+            } else if (type != TokenType.VALUE_SEPARATER) {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+            type = nextToken(t);
+        }
+    }
+
+    /**
+     *最上位の値の最初のトークンを読み, その種類を返す.
+     *@throws InvalidJsonException 入力が空の場合や, 最上位の値が array または object でない場合
+     */
+    static TokenType topLevelToken(JsonTokenizer t) {
+        TokenType type = t.next();
+        if (type == null) {
+            throw new InvalidJsonException("invalid JSON text (empty)");
+        }
+        if (type != TokenType.BEGIN_ARRAY && type != TokenType.BEGIN_OBJECT) {
+            throw new InvalidJsonException(
+                    "The passed JSON text is invalid [top-level token type:" + type + "]");
+        }
+        return type;
+    }
+
+    /** 値を 1 つ, オブジェクトを生成せずに読み飛ばす. */
+    static void skipValue(JsonTokenizer t, TokenType type) {
+        switch (type) {
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                t.skipContainer();
+                break;
+            case STRING:
+            case NUMBER:
+            case TRUE:
+            case FALSE:
+            case NULL:
+                break;
+            default:
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+        }
+    }
+
+    /** 現在のトークンの内容が指定の文字列と等しいかどうかを, String オブジェクトを生成せずに判定する. */
+    static boolean textEquals(JsonTokenizer t, String str) {
+        int len = t.getTextLength();
+        if (len != str.length()) return false;
+        char[] buf = t.getTextBuffer();
+        for (int i = 0; i < len; i++) {
+            if (buf[i] != str.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** 並列にパースする際の, 1 つのタスクが受け持つ範囲の最小の長さ (char 単位) */
+    static final int MIN_PARALLEL_CHUNK_LENGTH = 64 * 1024;
+
+    /**
+     *最上位が array である巨大な JSON 文字列を, 複数のスレッドで並列にパースする.
+     *<p>
+     *まず文字列を先頭から走査して (string の中の引用符やエスケープを考慮しつつ) 最上位の array の
+     *要素の区切りを見つけ, いくつかの要素ずつの範囲に分ける. 各範囲は executor 上で並列にパースされ,
+     *結果は元の順序で 1 つの JsonArray にまとめられる. 最初の範囲は呼び出したスレッドでパースする.
+     *<p>
+     *最上位が array でない場合や, 文字列が短い場合は {@link #parse(String)} と同様に 1 つのスレッドでパースする.
+     *executor には ForkJoinPool を渡してもよい.
+     *@param jsonStr パース対象の JSON 文字列
+     *@param executor 各範囲のパースを実行する ExecutorService
+     *@return jsonStr をパースした結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正な JSON 文字列の場合
+     *@throws InterruptedException パースの完了を待っている間に割り込まれた場合
+     */
+    static public JsonValue parseParallel(final String jsonStr, ExecutorService executor)
+            throws InterruptedException {
+        int maxChunks = Runtime.getRuntime().availableProcessors() * 4;
+        int chunkLength = Math.max(MIN_PARALLEL_CHUNK_LENGTH, jsonStr.length() / maxChunks);
+        int[] bounds = splitTopLevelArray(jsonStr, chunkLength);
+        if (bounds == null || bounds.length <= 2) {
+            return parse(jsonStr);
+        }
+        // bounds[i] から bounds[i+1] までが 1 つの範囲. 範囲は区切りの "," または終わりの "]" を含む.
+        // (区切りを含めないと, 範囲の最後の要素が null, true, false の場合に
+        // トークナイザーがリテラルの終わりを判定できない.)
+        final int numChunks = bounds.length - 1;
+        List<Future<JsonArray>> futures = new ArrayList<Future<JsonArray>>(numChunks - 1);
+        try {
+            for (int i = 1; i < numChunks; i++) {
+                final int begin = bounds[i];
+                final int end = bounds[i + 1];
+                final boolean last = (i == numChunks - 1);
+                futures.add(executor.submit(new Callable<JsonArray>() {
+                    @Override
+                    public JsonArray call() {
+                        return parseElements(jsonStr, begin, end, last);
+                    }
+                }));
+            }
+            JsonArray result = parseElements(jsonStr, bounds[0], bounds[1], false);
+            for (Future<JsonArray> f : futures) {
+                try {
+                    result.addAll(f.get());
+                } catch (ExecutionException err) {
+                    Throwable cause = err.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+            return result;
+        } finally {
+            // 途中で失敗した場合に残りのタスクを止める (完了済みのものには影響しない)
+            for (Future<JsonArray> f : futures) f.cancel(true);
+        }
+    }
+
+    /**
+     *文字列中の "," で区切られた値の並びをパースし, JsonArray に格納して返す.
+     *並列にパースする際に, 最上位の array の一部の範囲をパースするために使用する.
+     *範囲は, 最後の範囲 (last が true) の場合は終わりの "]" で, それ以外の場合は区切りの "," で終わらなければならない.
+     */
+    static private JsonArray parseElements(String jsonStr, int begin, int end, boolean last) {
+        JsonTokenizer t = new JsonTokenizer(CodePointIterator.forString(jsonStr, begin, end));
+        JsonArray jarray = new JsonArray();
+        TokenType type = nextToken(t);
+        while (true) {
+            jarray.add(parseValue(t, type, false));
+            type = nextToken(t);
+            if (type == TokenType.VALUE_SEPARATER) {
+                type = t.next();
+                if (type == null) {
+                    if (last) throw new InvalidJsonException("unexpected end of JSON text");
+                    break;
+                }
+            } else if (type == TokenType.END_ARRAY && last) {
+                if ((type = t.next()) != null) {
+                    throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+                }
+                break;
+            } else {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+        }
+        return jarray;
+    }
+
+    /**
+     *最上位の array の要素の区切りを探し, おおよそ chunkLength ずつの範囲に分ける.
+     *string の中の括弧や "," は無視し, エスケープされた '"' で string が終わったとみなさないようにする.
+     *構造の細かい検証は行わない (各範囲をパースする際に検証される).
+     *@return 各範囲の開始位置と, 最後に終わりの "]" の位置 + 1 を並べた配列.
+     *        最上位が array でない場合や, 最上位の array が "]" で閉じられていない場合,
+     *        終わりの "]" の後に余計な文字がある場合は null
+     */
+    static private int[] splitTopLevelArray(String jsonStr, int chunkLength) {
+        int length = jsonStr.length();
+        int i = 0;
+        while (i < length && isWhitespace(jsonStr.charAt(i))) i++;
+        if (length <= i || jsonStr.charAt(i) != '[') return null;
+        int[] bounds = new int[16];
+        int numBounds = 0;
+        bounds[numBounds++] = i + 1;
+        int depth = 1;
+        boolean inString = false;
+        for (i = i + 1; i < length; i++) {
+            char c = jsonStr.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    inString = true;
+                    break;
+                case '[':
+                case '{':
+                    depth++;
+                    break;
+                case ']':
+                case '}':
+                    if (--depth == 0) {
+                        // 最上位の array が "}" で閉じられている場合や, 後ろに空白以外がある場合は不正.
+                        // (終わりの "]" より内側の括弧の対応は, 各範囲をパースする際に検証される.)
+                        if (c != ']') return null;
+                        for (int j = i + 1; j < length; j++) {
+                            if (!isWhitespace(jsonStr.charAt(j))) return null;
+                        }
+                        if (numBounds + 1 > bounds.length) bounds = grow(bounds);
+                        bounds[numBounds++] = i + 1;
+                        int[] result = new int[numBounds];
+                        System.arraycopy(bounds, 0, result, 0, numBounds);
+                        return result;
+                    }
+                    break;
+                case ',':
+                    if (depth == 1 && chunkLength <= i + 1 - bounds[numBounds - 1]) {
+                        if (numBounds + 1 > bounds.length) bounds = grow(bounds);
+                        bounds[numBounds++] = i + 1;
+                    }
+                    break;
+            }
+        }
+        return null;
+    }
+
+    static private int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    static private boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     *トークン用のバッファをスレッドごとのプールから借りてパースする.
+     */
+    static private JsonValue parsePooled(CodePointIterator cpi, JsonKeyCache keyCache,
+            String jsonStr, boolean immutable) {
+        JsonTokenizer t = new JsonTokenizer(cpi, keyCache, JsonBuffers.acquireTokenChars());
+        try {
+            return parse(t, jsonStr, immutable);
+        } finally {
+            JsonBuffers.releaseTokenChars(t.getTextBuffer());
+        }
+    }
+
+    /**
+     *@param jsonStr エラーメッセージに含めるための JSON 文字列. バイト列をパースする場合は null
+     */
+    static JsonValue parse(JsonTokenizer t, String jsonStr, boolean immutable) {
         // array or obj?
-        Tokenizer t = new Tokenizer(jsonStr);
-        Token token = t.getNextToken();
-        if (token == null) {
-            throw new InvalidJsonException("invalid JSON string (\"" + jsonStr + "\")");
+        TokenType type = t.next();
+        if (type == null) {
+            throw new InvalidJsonException(jsonStr != null ?
+                    "invalid JSON string (\"" + jsonStr + "\")" : "invalid JSON text (empty)");
         }
         JsonValue val = null;
-        if (token.type == Token.TokenType.BEGIN_ARRAY) {
-            val = parseArray(t, new JsonArray());
-        } else if (token.type == Token.TokenType.BEGIN_OBJECT) {
-            val = parseObject(t, new JsonObject());
+        if (type == TokenType.BEGIN_ARRAY) {
+            val = parseArray(t, immutable);
+        } else if (type == TokenType.BEGIN_OBJECT) {
+            val = parseObject(t, immutable);
         } else {
-            throw new InvalidJsonException("The passed string is invalid [" + jsonStr + "]");
+            throw new InvalidJsonException(jsonStr != null ?
+                    "The passed string is invalid [" + jsonStr + "]" :
+                    "The passed JSON text is invalid [top-level token type:" + type + "]");
         }
-        if ((token = t.getNextToken()) != null) {
-            throw new RuntimeException();
+        if ((type = t.next()) != null) {
+            throw new InvalidJsonException("unexpected token after the top-level value [token type:" + type + "]");
         }
         return val;
     }
@@ -0,0 +1,131 @@
+package info.vividcode.util.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JSON テキスト中の値の位置を表す JSON Pointer (RFC 6901).
+ * <p>
+ * "/statuses/0/id" のように, "/" に続く参照トークンの並びで表す. 参照トークン中の "~" は "~0",
+ * "/" は "~1" とエスケープする. 空文字列は JSON テキスト全体を表す.
+ * <p>
+ * {@link JsonParser#extract(String, JsonPointer)} に渡すと, 木構造を生成せずに JSON テキストから
+ * 指定の位置の値だけを取り出せる. 同じパスを何度も使う場合は, 一度 {@link #compile(String)}
+ * したものを使いまわすとよい. インスタンスは不変であり, 複数のスレッドで共有できる.
+ */
+public final class JsonPointer {
+
+    private final String mPointer;
+    private final String[] mTokens;
+
+    private JsonPointer(String pointer, String[] tokens) {
+        mPointer = pointer;
+        mTokens = tokens;
+    }
+
+    /**
+     * JSON Pointer の文字列表現を解析して JsonPointer オブジェクトを返す.
+     * @param pointer JSON Pointer の文字列表現
+     * @return JsonPointer オブジェクト
+     * @throws IllegalArgumentException 空文字列でなく "/" で始まらない場合や, 不正なエスケープを含む場合
+     */
+    public static JsonPointer compile(String pointer) {
+        if (pointer.length() != 0 && pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("JSON Pointer must start with '/' [" + pointer + "]");
+        }
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= pointer.length(); i++) {
+            char c = (i < pointer.length() ? pointer.charAt(i) : '/');
+            if (c == '/') {
+                tokens.add(sb.toString());
+                sb.setLength(0);
+            } else if (c == '~') {
+                char e = (i + 1 < pointer.length() ? pointer.charAt(++i) : 0);
+                if (e == '0') {
+                    sb.append('~');
+                } else if (e == '1') {
+                    sb.append('/');
+                } else {
+                    throw new IllegalArgumentException("Invalid escape sequence in JSON Pointer [" + pointer + "]");
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return new JsonPointer(pointer, tokens.toArray(new String[tokens.size()]));
+    }
+
+    /** 参照トークンの数を返す. */
+    int depth() {
+        return mTokens.length;
+    }
+
+    /** 指定の位置の参照トークン (エスケープを解除したもの) を返す. */
+    String token(int i) {
+        return mTokens[i];
+    }
+
+    /**
+     * 参照トークンを array の要素の位置として解釈する.
+     * @return 要素の位置. "0" または 0 で始まらない数字の並びでない場合 ("-" を含む) は -1
+     */
+    static int arrayIndex(String token) {
+        int len = token.length();
+        if (len == 0 || 10 < len || (token.charAt(0) == '0' && len != 1)) {
+            return -1;
+        }
+        long index = 0;
+        for (int i = 0; i < len; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || '9' < c) return -1;
+            index = index * 10 + (c - '0');
+        }
+        return (index <= Integer.MAX_VALUE ? (int) index : -1);
+    }
+
+    /**
+     * パース済みの JSON オブジェクトについて, この JSON Pointer が指す値を返す.
+     * @param root JSON テキスト全体に対応する JSON オブジェクト
+     * @return 指定の位置の値. 存在しない場合は null
+     */
+    public JsonValue evaluate(JsonValue root) {
+        JsonValue v = root;
+        for (String token : mTokens) {
+            if (v == null) return null;
+            switch (v.valueType()) {
+                case OBJECT_VALUE:
+                    v = v.objectValue().get(token);
+                    break;
+                case ARRAY_VALUE:
+                    JsonArray a = v.arrayValue();
+                    int i = arrayIndex(token);
+                    v = (0 <= i && i < a.size() ? a.get(i) : null);
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return v;
+    }
+
+    /**
+     * JSON Pointer の文字列表現を返す.
+     */
+    @Override
+    public String toString() {
+        return mPointer;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JsonPointer && Arrays.equals(mTokens, ((JsonPointer) o).mTokens);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mTokens);
+    }
+
+}
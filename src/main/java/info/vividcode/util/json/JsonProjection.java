@@ -0,0 +1,284 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.JsonTokenizer.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON テキストから, 複数の JSON Pointer で指定した値をまとめて取り出すための射影.
+ * <pre><code>  // 一度だけ生成し, 使いまわす
+ *  JsonProjection projection = JsonProjection.compile( "/id", "/user/name", "/entities/urls/0" );
+ *  // 見つかった値を, JSON Pointer の文字列表現をキーとする JsonObject として得る
+ *  JsonObject fields = projection.project( jsonStr );
+ *  BigDecimal id = fields.get( "/id" ).numberValue();</code></pre>
+ * <p>
+ * 生成時に JSON Pointer の集合を参照トークンの木 (トライ) にまとめておく.
+ * 射影の際は JSON テキストを先頭から 1 度だけトークンに分割しながら辿り,
+ * 木に含まれない object のメンバーや array の要素は値のオブジェクトを生成せずに読み飛ばす.
+ * 指定の位置の値だけをパースし, すべての値が見つかった時点で残りの部分を読まずに終了する
+ * (残りの部分に不正な内容があっても報告されない).
+ * <p>
+ * object に同じ名前のメンバーが複数ある場合は, 最初のものを返す.
+ * インスタンスは不変であり, 同期を行わずに複数のスレッドで共有できる.
+ *
+ * @see JsonParser#extract(String, JsonPointer)
+ */
+public final class JsonProjection {
+
+    /**
+     * 射影で見つかった値を受け取るためのインターフェイス.
+     * @see JsonProjection#project(String, Handler)
+     */
+    public interface Handler {
+        /**
+         * 値が見つかるたびに, JSON テキスト上の出現順に呼ばれる.
+         * @param pointer 見つかった値の位置を指定した JSON Pointer
+         * @param value 見つかった値
+         */
+        void value(JsonPointer pointer, JsonValue value);
+    }
+
+    /** 参照トークンの木の節 */
+    private static final class Node {
+        String[] names = new String[0];
+        /** names を array の要素の位置として解釈したもの. 位置として解釈できない場合は -1 */
+        int[] indexes = new int[0];
+        Node[] children = new Node[0];
+        /** この節で終わる JSON Pointer の番号. ない場合は -1 */
+        int target = -1;
+
+        Node childFor(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) return children[i];
+            }
+            int n = names.length;
+            String[] newNames = new String[n + 1];
+            int[] newIndexes = new int[n + 1];
+            Node[] newChildren = new Node[n + 1];
+            System.arraycopy(names, 0, newNames, 0, n);
+            System.arraycopy(indexes, 0, newIndexes, 0, n);
+            System.arraycopy(children, 0, newChildren, 0, n);
+            newNames[n] = name;
+            newIndexes[n] = JsonPointer.arrayIndex(name);
+            newChildren[n] = new Node();
+            names = newNames;
+            indexes = newIndexes;
+            children = newChildren;
+            return newChildren[n];
+        }
+
+        /** 現在のトークンの内容を名前とする子を, String オブジェクトを生成せずに探す. */
+        Node childNamed(JsonTokenizer t) {
+            for (int i = 0; i < names.length; i++) {
+                if (JsonParser.textEquals(t, names[i])) return children[i];
+            }
+            return null;
+        }
+
+        Node childAt(int index) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] == index) return children[i];
+            }
+            return null;
+        }
+    }
+
+    /** 1 回の射影の状態 */
+    private static final class Match {
+        final JsonValue[] values;
+        final Handler handler;
+        int remaining;
+
+        Match(int numTargets, Handler handler) {
+            this.values = new JsonValue[numTargets];
+            this.handler = handler;
+            this.remaining = numTargets;
+        }
+    }
+
+    private final JsonPointer[] mPointers;
+    private final Node mRoot;
+
+    private JsonProjection(JsonPointer[] pointers, Node root) {
+        mPointers = pointers;
+        mRoot = root;
+    }
+
+    /**
+     * JSON Pointer の文字列表現の集合から JsonProjection オブジェクトを生成する.
+     * @param pointers 取り出す値の位置を表す JSON Pointer の文字列表現
+     * @return JsonProjection オブジェクト
+     * @throws IllegalArgumentException 不正な JSON Pointer を含む場合
+     */
+    public static JsonProjection compile(String... pointers) {
+        JsonPointer[] compiled = new JsonPointer[pointers.length];
+        for (int i = 0; i < pointers.length; i++) compiled[i] = JsonPointer.compile(pointers[i]);
+        return compile(compiled);
+    }
+
+    /**
+     * JSON Pointer の集合から JsonProjection オブジェクトを生成する.
+     * 重複する JSON Pointer は 1 つにまとめられる.
+     * @param pointers 取り出す値の位置を表す JSON Pointer
+     * @return JsonProjection オブジェクト
+     */
+    public static JsonProjection compile(JsonPointer... pointers) {
+        Node root = new Node();
+        List<JsonPointer> targets = new ArrayList<JsonPointer>(pointers.length);
+        for (JsonPointer pointer : pointers) {
+            Node node = root;
+            for (int i = 0; i < pointer.depth(); i++) node = node.childFor(pointer.token(i));
+            if (node.target < 0) {
+                node.target = targets.size();
+                targets.add(pointer);
+            }
+        }
+        return new JsonProjection(targets.toArray(new JsonPointer[targets.size()]), root);
+    }
+
+    /**
+     * JSON 文字列から指定の位置の値を取り出し, JSON Pointer の文字列表現をキーとする JsonObject として返す.
+     * JsonObject には見つかった値だけが, {@link #compile(String...)} に渡した順に含まれる.
+     * @param jsonStr パース対象の JSON 文字列
+     * @return 見つかった値を含む JsonObject
+     * @throws InvalidJsonException 最後の値が見つかるまでの部分に不正な内容がある場合
+     */
+    public JsonObject project(String jsonStr) {
+        return toJsonObject(run(new JsonTokenizer(CodePointIterator.forString(jsonStr)), null));
+    }
+
+    /**
+     * UTF-8 でエンコードされた JSON テキストから指定の位置の値を取り出し,
+     * JSON Pointer の文字列表現をキーとする JsonObject として返す.
+     * @see #project(String)
+     */
+    public JsonObject project(byte[] bytes, int offset, int length) {
+        return toJsonObject(run(new JsonTokenizer(CodePointIterator.forUtf8(bytes, offset, length)), null));
+    }
+
+    /**
+     * JSON 文字列から指定の位置の値を取り出し, 見つかるたびに handler に渡す.
+     * JsonObject を生成しないため, 見つかった値をすぐに別の場所へ格納する場合に使用する.
+     * @param jsonStr パース対象の JSON 文字列
+     * @param handler 見つかった値を受け取るハンドラー
+     * @throws InvalidJsonException 最後の値が見つかるまでの部分に不正な内容がある場合
+     */
+    public void project(String jsonStr, Handler handler) {
+        run(new JsonTokenizer(CodePointIterator.forString(jsonStr)), handler);
+    }
+
+    /**
+     * UTF-8 でエンコードされた JSON テキストから指定の位置の値を取り出し, 見つかるたびに handler に渡す.
+     * @see #project(String, Handler)
+     */
+    public void project(byte[] bytes, int offset, int length, Handler handler) {
+        run(new JsonTokenizer(CodePointIterator.forUtf8(bytes, offset, length)), handler);
+    }
+
+    private JsonValue[] run(JsonTokenizer t, Handler handler) {
+        Match m = new Match(mPointers.length, handler);
+        visit(t, JsonParser.topLevelToken(t), mRoot, m);
+        return m.values;
+    }
+
+    private JsonObject toJsonObject(JsonValue[] values) {
+        JsonObject jobject = new JsonObject(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) jobject.put(mPointers[i].toString(), values[i]);
+        }
+        return jobject;
+    }
+
+    /**
+     * type を最初のトークンとする値を, 木の節 node に対応する位置として辿る.
+     * @return すべての値が見つかった場合は true
+     */
+    private boolean visit(JsonTokenizer t, TokenType type, Node node, Match m) {
+        if (node.target >= 0) {
+            // 値全体が必要なのでパースし, 子孫の位置の値はパースした結果から探す
+            found(node, JsonParser.parseValue(t, type, false), m);
+            return m.remaining == 0;
+        }
+        if (type == TokenType.BEGIN_OBJECT) {
+            return visitObject(t, node, m);
+        } else if (type == TokenType.BEGIN_ARRAY) {
+            return visitArray(t, node, m);
+        }
+        // string や number などの内部は参照できない
+        JsonParser.skipValue(t, type);
+        return false;
+    }
+
+    private boolean visitObject(JsonTokenizer t, Node node, Match m) {
+        TokenType type = JsonParser.nextToken(t);
+        if (type == TokenType.END_OBJECT) {
+            return false;
+        }
+        while (true) {
+            if (type != TokenType.STRING)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            Node child = node.childNamed(t);
+            type = JsonParser.nextToken(t);
+            if (type != TokenType.NAME_SEPARATER)
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            type = JsonParser.nextToken(t);
+            if (child == null) {
+                JsonParser.skipValue(t, type);
+            } else if (visit(t, type, child, m)) {
+                return true;
+            }
+            type = JsonParser.nextToken(t);
+            if (type == TokenType.END_OBJECT) {
+                return false;
+            } else if (type == TokenType.VALUE_SEPARATER) {
+                type = JsonParser.nextToken(t);
+            } else {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+        }
+    }
+
+    private boolean visitArray(JsonTokenizer t, Node node, Match m) {
+        TokenType type = JsonParser.nextToken(t);
+        if (type == TokenType.END_ARRAY) {
+            return false;
+        }
+        for (int i = 0; ; i++) {
+            Node child = node.childAt(i);
+            if (child == null) {
+                JsonParser.skipValue(t, type);
+            } else if (visit(t, type, child, m)) {
+                return true;
+            }
+            type = JsonParser.nextToken(t);
+            if (type == TokenType.END_ARRAY) {
+                return false;
+            } else if (type != TokenType.VALUE_SEPARATER) {
+                throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+            type = JsonParser.nextToken(t);
+        }
+    }
+
+    /** 節 node に対応する値とその子孫の位置の値を, まだ見つかっていなければ記録する. */
+    private void found(Node node, JsonValue value, Match m) {
+        if (node.target >= 0 && m.values[node.target] == null) {
+            m.values[node.target] = value;
+            m.remaining--;
+            if (m.handler != null) m.handler.value(mPointers[node.target], value);
+        }
+        for (int i = 0; i < node.children.length; i++) {
+            JsonValue child = null;
+            if (value.valueType() == JsonValue.ValueType.OBJECT_VALUE) {
+                child = value.objectValue().get(node.names[i]);
+            } else if (value.valueType() == JsonValue.ValueType.ARRAY_VALUE) {
+                JsonArray jarray = value.arrayValue();
+                int index = node.indexes[i];
+                if (0 <= index && index < jarray.size()) child = jarray.get(index);
+            }
+            if (child != null) found(node.children[i], child, m);
+        }
+    }
+
+}
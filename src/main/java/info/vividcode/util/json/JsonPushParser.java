@@ -0,0 +1,792 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.JsonEventReader.Event;
+import info.vividcode.util.json.JsonTokenizer.TokenType;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ *UTF-8 でエンコードされた JSON テキストを, 任意の位置で分割された断片として受け取りながらパースする
+ *プッシュ型のパーサー.
+ *<p>
+ *ノンブロッキング I/O などで JSON テキストが少しずつ届く場合に, 全体が揃うのを待たずに処理を始めるために使用する.
+ *断片は {@link #feed(ByteBuffer)} で渡し, 最後に {@link #end()} を呼ぶ.
+ *トークンや UTF-8 の文字の途中で分割されていてもよく, パースの状態は呼び出しをまたいで保持される.
+ *イベントの種類は {@link JsonEventReader} と同じであり, イベントが確定するたびに {@link Handler} に通知される.
+ *<pre><code>  JsonPushParser parser = new JsonPushParser( new JsonPushParser.Handler() {
+ *      public void event( JsonPushParser p, JsonEventReader.Event event ) {
+ *          // 最上位の array の要素をひとつずつ JsonValue として受け取る
+ *          if ( p.getDepth() == 2 &amp;&amp; event == JsonEventReader.Event.START_OBJECT ) p.collectValue();
+ *      }
+ *      public void value( JsonPushParser p, JsonValue value ) {
+ *          JsonObject record = value.objectValue();
+ *      }
+ *  } );
+ *  // データが届くたびに
+ *  parser.feed( byteBuffer );
+ *  // 最後に
+ *  parser.end();</code></pre>
+ *使用するメモリは入れ子の深さと最も長いトークンの長さ (および {@link #collectValue()} で生成する値)
+ *にのみ依存し, 受け取った断片を保持することはない.
+ *<p>
+ *不正な JSON テキストの場合は, その部分を含む断片を渡した時点で {@link InvalidJsonException} が投げられ,
+ *以後このオブジェクトは使用できない. このクラスのオブジェクトはスレッドセーフではない.
+ */
+public class JsonPushParser {
+
+    /**
+     * パースの結果を受け取るためのインターフェイス.
+     */
+    public interface Handler {
+        /**
+         * イベントが確定するたびに呼ばれる.
+         * このメソッドの中では, {@link JsonPushParser#getString()} などでイベントの内容を参照できる.
+         * {@link JsonPushParser#collectValue()} で値の収集を始めた場合は,
+         * その値の内部のイベントについては呼ばれない.
+         * @param parser イベントを通知するパーサー
+         * @param event イベントの種類
+         */
+        void event(JsonPushParser parser, Event event);
+
+        /**
+         * {@link JsonPushParser#collectValue()} で収集を始めた値が完成した時点で呼ばれる.
+         * @param parser 値を通知するパーサー
+         * @param value 完成した値
+         */
+        void value(JsonPushParser parser, JsonValue value);
+    }
+
+    /* 次に受け取るトークンについての状態 */
+    private static final int STATE_ROOT = 0;
+    private static final int STATE_ARRAY_START = 1;
+    private static final int STATE_ARRAY_VALUE = 2;
+    private static final int STATE_ARRAY_VALUE_DONE = 3;
+    private static final int STATE_OBJECT_START = 4;
+    private static final int STATE_OBJECT_NAME = 5;
+    private static final int STATE_OBJECT_NAME_DONE = 6;
+    private static final int STATE_OBJECT_VALUE = 7;
+    private static final int STATE_OBJECT_VALUE_DONE = 8;
+    private static final int STATE_ROOT_DONE = 9;
+    private static final int STATE_END = 10;
+    private static final int STATE_FAILED = 11;
+
+    /* 字句解析の状態 (トークンの途中で断片が終わった場合に, 次の断片で続きから読むためのもの) */
+    private static final int LEX_BETWEEN_TOKENS = 0;
+    private static final int LEX_STRING = 1;
+    private static final int LEX_STRING_ESCAPE = 2;
+    private static final int LEX_STRING_UNICODE_ESCAPE = 3;
+    private static final int LEX_STRING_UTF8 = 4;
+    private static final int LEX_NUMBER = 5;
+    private static final int LEX_LITERAL = 6;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Handler mHandler;
+    private int mState = STATE_ROOT;
+    /** 入れ子の状態のスタック. object の場合は true, array の場合は false. */
+    private boolean[] mContainerStack = new boolean[16];
+    private int mDepth;
+    private Event mEvent;
+    private boolean mInHandler;
+    /** {@link #getString()} で生成した String オブジェクト. 必要になるまで生成しない. */
+    private String mString;
+
+    private int mLexState = LEX_BETWEEN_TOKENS;
+    /** string と number のトークンの内容 */
+    private char[] mText = new char[64];
+    private int mTextLength;
+    /** \\uXXXX の読み終えた桁数, または UTF-8 の残りのバイト数 */
+    private int mPending;
+    /** 読みかけの \\uXXXX の値, または UTF-8 の文字の code point */
+    private int mCodePoint;
+    /** 読みかけの UTF-8 の文字の code point の最小値 (冗長な表現を検出するため) */
+    private int mMinCodePoint;
+    private String mLiteral;
+    private TokenType mLiteralType;
+    private int mLiteralPos;
+    /** direct buffer から読む際の一時的な領域. 必要になるまで生成しない */
+    private byte[] mChunk;
+
+    /* collectValue() で収集中の値のスタック */
+    private JsonValue[] mBuildStack = new JsonValue[16];
+    private String[] mBuildKeys = new String[16];
+    private int mBuildDepth;
+    /** collectValue() で収集した, 通知を待っている string などの値 */
+    private JsonValue mPendingValue;
+
+    /**
+     * 指定のハンドラーに結果を通知する JsonPushParser オブジェクトを生成する.
+     * @param handler パースの結果を受け取るハンドラー
+     */
+    public JsonPushParser(Handler handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler must not be null");
+        }
+        mHandler = handler;
+    }
+
+    /**
+     * JSON テキストの断片を渡す. バッファの position から limit までのバイト列を読み,
+     * position は limit まで進められる. 断片の中で確定したイベントは, このメソッドから戻る前に通知される.
+     * heap buffer と direct buffer のどちらでもよく, このメソッドから戻った後はバッファの内容を変更してよい.
+     * @param buf JSON テキストの断片を含むバッファ
+     * @throws InvalidJsonException JSON テキストが不正な場合
+     * @throws IllegalStateException 既に {@link #end()} が呼ばれている場合や, 不正な JSON テキストを受け取った後の場合
+     */
+    public void feed(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            feed(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            buf.position(buf.limit());
+        } else {
+            if (mChunk == null) {
+                mChunk = new byte[CHUNK_SIZE];
+            }
+            while (buf.hasRemaining()) {
+                int n = Math.min(buf.remaining(), mChunk.length);
+                buf.get(mChunk, 0, n);
+                feed(mChunk, 0, n);
+            }
+        }
+    }
+
+    /**
+     * JSON テキストの断片を渡す.
+     * @param bytes JSON テキストの断片を含むバイト配列
+     * @param offset 断片の先頭の位置
+     * @param length 断片のバイト数
+     * @see #feed(ByteBuffer)
+     */
+    public void feed(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || bytes.length - length < offset) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+        }
+        checkUsable();
+        try {
+            consume(bytes, offset, offset + length);
+        } catch (RuntimeException err) {
+            mState = STATE_FAILED;
+            throw err;
+        }
+    }
+
+    /**
+     * JSON テキストの終わりに達したことを伝える.
+     * 最後の断片の末尾で確定していなかったイベントがあれば, このメソッドから戻る前に通知される.
+     * @throws InvalidJsonException 最上位の値が終わっていない場合
+     * @throws IllegalStateException 既に end() が呼ばれている場合や, 不正な JSON テキストを受け取った後の場合
+     */
+    public void end() {
+        checkUsable();
+        try {
+            if (mLexState == LEX_NUMBER) {
+                mLexState = LEX_BETWEEN_TOKENS;
+                finishNumber();
+            } else if (mLexState != LEX_BETWEEN_TOKENS) {
+                throw new InvalidJsonException("unexpected end of JSON text");
+            }
+            if (mState == STATE_ROOT) {
+                throw new InvalidJsonException("invalid JSON text (empty)");
+            }
+            if (mState != STATE_ROOT_DONE) {
+                throw new InvalidJsonException("unexpected end of JSON text");
+            }
+            mState = STATE_END;
+        } catch (RuntimeException err) {
+            mState = STATE_FAILED;
+            throw err;
+        }
+    }
+
+    /**
+     * 最上位の値の終わりまで受け取ったかどうかを返す.
+     * true を返す場合でも, 後続の空白以外のバイト列を検出するためには {@link #end()} を呼ぶ必要がある.
+     */
+    public boolean isCompleted() {
+        return mState == STATE_ROOT_DONE || mState == STATE_END;
+    }
+
+    /**
+     * 通知中のイベントが {@link Event#FIELD_NAME} の場合はメンバーの名前を,
+     * {@link Event#VALUE_STRING} の場合は string の値を, {@link Event#VALUE_NUMBER}
+     * の場合は number の JSON テキスト上の表記を返す.
+     * {@link Handler#event(JsonPushParser, Event)} の中でのみ呼ぶことができる.
+     * @throws IllegalStateException 通知中のイベントが上記以外の場合
+     */
+    public String getString() {
+        checkInHandler();
+        if (mEvent != Event.FIELD_NAME && mEvent != Event.VALUE_STRING && mEvent != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("Current event is not FIELD_NAME, VALUE_STRING, or VALUE_NUMBER [" + mEvent + "]");
+        }
+        if (mString == null) {
+            mString = new String(mText, 0, mTextLength);
+        }
+        return mString;
+    }
+
+    /**
+     * 通知中のイベントが {@link Event#VALUE_NUMBER} の場合に, その値を返す.
+     * {@link Handler#event(JsonPushParser, Event)} の中でのみ呼ぶことができる.
+     * @throws IllegalStateException 通知中のイベントが VALUE_NUMBER ではない場合
+     */
+    public BigDecimal getNumber() {
+        checkInHandler();
+        if (mEvent != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("Current event is not VALUE_NUMBER [" + mEvent + "]");
+        }
+        return new BigDecimal(mText, 0, mTextLength);
+    }
+
+    /**
+     * 現在の入れ子の深さを返す.
+     * 最上位の object や array の中では 1 であり, その外では 0 である.
+     * {@link Event#START_OBJECT} などのイベントの通知中は, 開始した object や array の中の深さを返す.
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * 通知中のイベントが表す値を JsonValue として収集し, 完成した時点で
+     * {@link Handler#value(JsonPushParser, JsonValue)} に通知するよう指示する.
+     * 通知中のイベントが {@link Event#START_OBJECT} や {@link Event#START_ARRAY} の場合は,
+     * 対応する終了のイベントまでの内容を含む JsonObject または JsonArray を収集し,
+     * その間のイベント (終了のイベントを含む) は {@link Handler#event(JsonPushParser, Event)} に通知しない.
+     * string などの場合は, イベントの通知から戻った直後に値を通知する.
+     * {@link Handler#event(JsonPushParser, Event)} の中でのみ呼ぶことができる.
+     * @throws IllegalStateException 通知中のイベントが値を表すものではない場合
+     */
+    public void collectValue() {
+        checkInHandler();
+        switch (mEvent) {
+            case START_OBJECT:
+                pushBuild(new JsonObject());
+                break;
+            case START_ARRAY:
+                pushBuild(new JsonArray());
+                break;
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+            case VALUE_NULL:
+                mPendingValue = scalarValue(mEvent);
+                break;
+            default:
+                throw new IllegalStateException("Current event does not represent a value [" + mEvent + "]");
+        }
+    }
+
+    private void checkUsable() {
+        if (mState == STATE_END) {
+            throw new IllegalStateException("end() has already been called");
+        }
+        if (mState == STATE_FAILED) {
+            throw new IllegalStateException("This parser has already failed");
+        }
+    }
+
+    private void checkInHandler() {
+        if (!mInHandler) {
+            throw new IllegalStateException("No current event");
+        }
+    }
+
+    // ---- 字句解析 ----
+
+    private void consume(byte[] b, int i, int end) {
+        while (i < end) {
+            switch (mLexState) {
+                case LEX_BETWEEN_TOKENS:
+                    i = lexToken(b, i, end);
+                    break;
+                case LEX_STRING:
+                case LEX_STRING_ESCAPE:
+                case LEX_STRING_UNICODE_ESCAPE:
+                case LEX_STRING_UTF8:
+                    i = lexString(b, i, end);
+                    break;
+                case LEX_NUMBER:
+                    i = lexNumber(b, i, end);
+                    break;
+                case LEX_LITERAL:
+                    i = lexLiteral(b, i, end);
+                    break;
+                default:
+                    throw new AssertionError(mLexState);
+            }
+        }
+    }
+
+    /** 空白を読み飛ばし, 次のトークンの 1 バイト目を読む. */
+    private int lexToken(byte[] b, int i, int end) {
+        int c;
+        do {
+            c = b[i++];
+        } while ((c == ' ' || c == '\t' || c == '\n' || c == '\r') && i < end);
+        switch (c) {
+            case ' ': case '\t': case '\n': case '\r':
+                return i;
+            case '[':
+                onToken(TokenType.BEGIN_ARRAY); return i;
+            case '{':
+                onToken(TokenType.BEGIN_OBJECT); return i;
+            case ']':
+                onToken(TokenType.END_ARRAY); return i;
+            case '}':
+                onToken(TokenType.END_OBJECT); return i;
+            case ':':
+                onToken(TokenType.NAME_SEPARATER); return i;
+            case ',':
+                onToken(TokenType.VALUE_SEPARATER); return i;
+            case '"':
+                mTextLength = 0;
+                mLexState = LEX_STRING;
+                return i;
+            case 't':
+                startLiteral("true", TokenType.TRUE); return i;
+            case 'f':
+                startLiteral("false", TokenType.FALSE); return i;
+            case 'n':
+                startLiteral("null", TokenType.NULL); return i;
+        }
+        if (c == '-' || ('0' <= c && c <= '9')) {
+            mTextLength = 0;
+            appendChar((char) c);
+            mLexState = LEX_NUMBER;
+            return i;
+        }
+        throw new InvalidJsonException("unexpected character [code point:" + (c & 0xFF) + "]");
+    }
+
+    private int lexString(byte[] b, int i, int end) {
+        while (i < end) {
+            switch (mLexState) {
+                case LEX_STRING_ESCAPE:
+                    i = lexEscape(b[i], i);
+                    continue;
+                case LEX_STRING_UNICODE_ESCAPE:
+                    mCodePoint = (mCodePoint << 4) | JsonTokenizer.hexDigitValue(b[i++]);
+                    if (++mPending == 4) {
+                        // サロゲートペアは \\uXXXX が 2 つ続く形で表されるので, char 単位で追加すればよい
+                        appendChar((char) mCodePoint);
+                        mLexState = LEX_STRING;
+                    }
+                    continue;
+                case LEX_STRING_UTF8: {
+                    int c = b[i++];
+                    if ((c & 0xC0) != 0x80) throw invalidByteSequence();
+                    mCodePoint = (mCodePoint << 6) | (c & 0x3F);
+                    if (--mPending == 0) {
+                        int cp = mCodePoint;
+                        if (cp < mMinCodePoint || 0x10FFFF < cp || (0xD800 <= cp && cp <= 0xDFFF)) {
+                            throw invalidByteSequence();
+                        }
+                        appendCodePoint(cp);
+                        mLexState = LEX_STRING;
+                    }
+                    continue;
+                }
+                default:
+                    break;
+            }
+            // エスケープされていない ASCII の文字の並びはまとめてコピーする
+            int start = i;
+            int c = 0;
+            while (i < end && (c = b[i]) >= 0 && c != '"' && c != '\\') i++;
+            if (start < i) appendAscii(b, start, i - start);
+            if (i == end) {
+                return i;
+            }
+            i++;
+            if (c == '"') {
+                mLexState = LEX_BETWEEN_TOKENS;
+                onToken(TokenType.STRING);
+                return i;
+            } else if (c == '\\') {
+                mLexState = LEX_STRING_ESCAPE;
+            } else {
+                c &= 0xFF;
+                if ((c & 0xE0) == 0xC0) {
+                    mCodePoint = c & 0x1F; mPending = 1; mMinCodePoint = 0x80;
+                } else if ((c & 0xF0) == 0xE0) {
+                    mCodePoint = c & 0x0F; mPending = 2; mMinCodePoint = 0x800;
+                } else if ((c & 0xF8) == 0xF0) {
+                    mCodePoint = c & 0x07; mPending = 3; mMinCodePoint = 0x10000;
+                } else {
+                    throw invalidByteSequence();
+                }
+                mLexState = LEX_STRING_UTF8;
+            }
+        }
+        return i;
+    }
+
+    /** \ に続く 1 バイトを読み, 次の位置を返す. */
+    private int lexEscape(int c, int i) {
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                appendChar((char) c); break;
+            case 'b':
+                appendChar('\b'); break;
+            case 'f':
+                appendChar('\f'); break;
+            case 'n':
+                appendChar('\n'); break;
+            case 'r':
+                appendChar('\r'); break;
+            case 't':
+                appendChar('\t'); break;
+            case 'u':
+                mCodePoint = 0;
+                mPending = 0;
+                mLexState = LEX_STRING_UNICODE_ESCAPE;
+                return i + 1;
+            default:
+                throw new InvalidJsonException("invalid escape sequence [code point:" + (c & 0xFF) + "]");
+        }
+        mLexState = LEX_STRING;
+        return i + 1;
+    }
+
+    private int lexNumber(byte[] b, int i, int end) {
+        while (i < end) {
+            int c = b[i];
+            if (('0' <= c && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                appendChar((char) c);
+                i++;
+            } else {
+                // number の直後の文字は, 次のトークンとして読む
+                mLexState = LEX_BETWEEN_TOKENS;
+                finishNumber();
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private void finishNumber() {
+        // number = [minus] int [frac] [exp]
+        char[] t = mText;
+        int len = mTextLength;
+        int i = 0;
+        if (t[i] == '-') i++;
+        if (i < len && t[i] == '0') {
+            i++;
+        } else {
+            i = skipDigits(t, i, len);
+        }
+        if (i < len && t[i] == '.') {
+            i = skipDigits(t, i + 1, len);
+        }
+        if (i < len && (t[i] == 'e' || t[i] == 'E')) {
+            i++;
+            if (i < len && (t[i] == '+' || t[i] == '-')) i++;
+            i = skipDigits(t, i, len);
+        }
+        if (i != len) {
+            throw new InvalidJsonException("invalid number [" + new String(t, 0, len) + "]");
+        }
+        onToken(TokenType.NUMBER);
+    }
+
+    /** 1 つ以上の数字の並びを読み飛ばし, 次の位置を返す. */
+    private int skipDigits(char[] t, int i, int len) {
+        int start = i;
+        while (i < len && '0' <= t[i] && t[i] <= '9') i++;
+        if (i == start) {
+            throw new InvalidJsonException("invalid number [" + new String(t, 0, len) + "]");
+        }
+        return i;
+    }
+
+    private void startLiteral(String literal, TokenType type) {
+        mLiteral = literal;
+        mLiteralType = type;
+        mLiteralPos = 1;
+        mLexState = LEX_LITERAL;
+    }
+
+    private int lexLiteral(byte[] b, int i, int end) {
+        int len = mLiteral.length();
+        while (i < end && mLiteralPos < len) {
+            if (b[i++] != mLiteral.charAt(mLiteralPos++)) {
+                throw new InvalidJsonException("unexpected token");
+            }
+        }
+        if (mLiteralPos == len) {
+            // 直後の文字の検証は, 次のトークンの検証で行われる ("truex" や "true1" は不正なトークンの並びとなる)
+            mLexState = LEX_BETWEEN_TOKENS;
+            onToken(mLiteralType);
+        }
+        return i;
+    }
+
+    private static InvalidJsonException invalidByteSequence() {
+        return new InvalidJsonException("Invalid UTF-8 byte sequence");
+    }
+
+    private void appendChar(char c) {
+        if (mTextLength == mText.length) growText(1);
+        mText[mTextLength++] = c;
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            appendChar((char) cp);
+        } else {
+            if (mText.length - mTextLength < 2) growText(2);
+            Character.toChars(cp, mText, mTextLength);
+            mTextLength += 2;
+        }
+    }
+
+    private void appendAscii(byte[] bytes, int offset, int length) {
+        if (mText.length - mTextLength < length) growText(length);
+        for (int i = 0; i < length; i++) {
+            mText[mTextLength + i] = (char) bytes[offset + i];
+        }
+        mTextLength += length;
+    }
+
+    private void growText(int num) {
+        char[] text = new char[Math.max(mText.length * 2, mTextLength + num)];
+        System.arraycopy(mText, 0, text, 0, mTextLength);
+        mText = text;
+    }
+
+    // ---- 構文解析 ----
+
+    private void onToken(TokenType type) {
+        switch (mState) {
+            case STATE_ROOT:
+                if (type != TokenType.BEGIN_ARRAY && type != TokenType.BEGIN_OBJECT) {
+                    throw new InvalidJsonException(
+                            "The top-level value must be an object or an array [token type:" + type + "]");
+                }
+                valueEvent(type);
+                break;
+            case STATE_ARRAY_START:
+                if (type == TokenType.END_ARRAY) {
+                    endContainer(Event.END_ARRAY);
+                } else {
+                    valueEvent(type);
+                }
+                break;
+            case STATE_ARRAY_VALUE:
+                valueEvent(type);
+                break;
+            case STATE_ARRAY_VALUE_DONE:
+                if (type == TokenType.END_ARRAY) {
+                    endContainer(Event.END_ARRAY);
+                } else if (type == TokenType.VALUE_SEPARATER) {
+                    mState = STATE_ARRAY_VALUE;
+                } else {
+                    throw unexpectedToken(type);
+                }
+                break;
+            case STATE_OBJECT_START:
+                if (type == TokenType.END_OBJECT) {
+                    endContainer(Event.END_OBJECT);
+                } else {
+                    nameEvent(type);
+                }
+                break;
+            case STATE_OBJECT_NAME:
+                nameEvent(type);
+                break;
+            case STATE_OBJECT_NAME_DONE:
+                if (type != TokenType.NAME_SEPARATER) {
+                    throw unexpectedToken(type);
+                }
+                mState = STATE_OBJECT_VALUE;
+                break;
+            case STATE_OBJECT_VALUE:
+                valueEvent(type);
+                break;
+            case STATE_OBJECT_VALUE_DONE:
+                if (type == TokenType.END_OBJECT) {
+                    endContainer(Event.END_OBJECT);
+                } else if (type == TokenType.VALUE_SEPARATER) {
+                    mState = STATE_OBJECT_NAME;
+                } else {
+                    throw unexpectedToken(type);
+                }
+                break;
+            case STATE_ROOT_DONE:
+                throw new InvalidJsonException(
+                        "unexpected token after the top-level value [token type:" + type + "]");
+            default:
+                throw new AssertionError(mState);
+        }
+    }
+
+    private void nameEvent(TokenType type) {
+        if (type != TokenType.STRING) {
+            throw unexpectedToken(type);
+        }
+        mState = STATE_OBJECT_NAME_DONE;
+        emit(Event.FIELD_NAME);
+    }
+
+    private void valueEvent(TokenType type) {
+        switch (type) {
+            case BEGIN_ARRAY:
+                pushContainer(false);
+                mState = STATE_ARRAY_START;
+                emit(Event.START_ARRAY);
+                return;
+            case BEGIN_OBJECT:
+                pushContainer(true);
+                mState = STATE_OBJECT_START;
+                emit(Event.START_OBJECT);
+                return;
+            default:
+                break;
+        }
+        Event event;
+        switch (type) {
+            case STRING:
+                event = Event.VALUE_STRING;
+                break;
+            case NUMBER:
+                event = Event.VALUE_NUMBER;
+                break;
+            case TRUE:
+                event = Event.VALUE_TRUE;
+                break;
+            case FALSE:
+                event = Event.VALUE_FALSE;
+                break;
+            case NULL:
+                event = Event.VALUE_NULL;
+                break;
+            default:
+                throw unexpectedToken(type);
+        }
+        mState = mContainerStack[mDepth - 1] ? STATE_OBJECT_VALUE_DONE : STATE_ARRAY_VALUE_DONE;
+        emit(event);
+    }
+
+    private void pushContainer(boolean isObject) {
+        if (mDepth == mContainerStack.length) {
+            boolean[] stack = new boolean[mDepth * 2];
+            System.arraycopy(mContainerStack, 0, stack, 0, mDepth);
+            mContainerStack = stack;
+        }
+        mContainerStack[mDepth++] = isObject;
+    }
+
+    private void endContainer(Event event) {
+        --mDepth;
+        if (mDepth == 0) {
+            mState = STATE_ROOT_DONE;
+        } else {
+            mState = mContainerStack[mDepth - 1] ? STATE_OBJECT_VALUE_DONE : STATE_ARRAY_VALUE_DONE;
+        }
+        emit(event);
+    }
+
+    private static InvalidJsonException unexpectedToken(TokenType type) {
+        return new InvalidJsonException("unexpected token [token type:" + type + "]");
+    }
+
+    // ---- 通知と値の収集 ----
+
+    private void emit(Event event) {
+        if (mBuildDepth > 0) {
+            build(event);
+            return;
+        }
+        mEvent = event;
+        mString = null;
+        mInHandler = true;
+        try {
+            mHandler.event(this, event);
+        } finally {
+            mInHandler = false;
+            mEvent = null;
+        }
+        if (mPendingValue != null) {
+            JsonValue value = mPendingValue;
+            mPendingValue = null;
+            mHandler.value(this, value);
+        }
+    }
+
+    /** 収集中の値にイベントの内容を加える. */
+    private void build(Event event) {
+        switch (event) {
+            case FIELD_NAME:
+                mBuildKeys[mBuildDepth - 1] = new String(mText, 0, mTextLength);
+                break;
+            case START_OBJECT: {
+                JsonObject jobject = new JsonObject();
+                addToBuild(jobject);
+                pushBuild(jobject);
+                break;
+            }
+            case START_ARRAY: {
+                JsonArray jarray = new JsonArray();
+                addToBuild(jarray);
+                pushBuild(jarray);
+                break;
+            }
+            case END_OBJECT:
+            case END_ARRAY: {
+                JsonValue value = mBuildStack[--mBuildDepth];
+                mBuildStack[mBuildDepth] = null;
+                mBuildKeys[mBuildDepth] = null;
+                if (mBuildDepth == 0) {
+                    mHandler.value(this, value);
+                }
+                break;
+            }
+            default:
+                addToBuild(scalarValue(event));
+                break;
+        }
+    }
+
+    private void pushBuild(JsonValue container) {
+        if (mBuildDepth == mBuildStack.length) {
+            JsonValue[] stack = new JsonValue[mBuildDepth * 2];
+            String[] keys = new String[mBuildDepth * 2];
+            System.arraycopy(mBuildStack, 0, stack, 0, mBuildDepth);
+            System.arraycopy(mBuildKeys, 0, keys, 0, mBuildDepth);
+            mBuildStack = stack;
+            mBuildKeys = keys;
+        }
+        mBuildStack[mBuildDepth++] = container;
+    }
+
+    private void addToBuild(JsonValue value) {
+        JsonValue parent = mBuildStack[mBuildDepth - 1];
+        if (parent instanceof JsonObject) {
+            ((JsonObject) parent).put(mBuildKeys[mBuildDepth - 1], value);
+        } else {
+            ((JsonArray) parent).add(value);
+        }
+    }
+
+    private JsonValue scalarValue(Event event) {
+        switch (event) {
+            case VALUE_STRING:
+                return new JsonString(new String(mText, 0, mTextLength));
+            case VALUE_NUMBER:
+                return JsonNumber.fromText(mText, 0, mTextLength);
+            case VALUE_TRUE:
+                return JsonBoolean.TRUE;
+            case VALUE_FALSE:
+                return JsonBoolean.FALSE;
+            case VALUE_NULL:
+                return JsonNull.VALUE;
+            default:
+                throw new AssertionError(event);
+        }
+    }
+
+}
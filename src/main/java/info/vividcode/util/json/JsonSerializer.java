@@ -1,8 +1,10 @@
 package info.vividcode.util.json;
 
-import java.math.BigDecimal;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 import info.vividcode.util.json.JsonValue.ValueType;
 
@@ -17,156 +19,436 @@ import info.vividcode.util.json.JsonValue.ValueType;
  */
 public class JsonSerializer {
 
-    private boolean mDoIndent;
+    private final boolean mDoIndent;
+    /**
+     * 入れ子の深さの上限. 0 の場合は上限を設けず, 先祖との同一性を調べて再帰的な構造を検出する.
+     */
+    private final int mMaxDepth;
     private int mIndentDepth;
+    /** 現在の書き出し先. シリアライズのたびに設定する. */
+    private Sink mSink;
+    /**
+     * 出力する文字を溜めておくバッファ. いっぱいになると mSink に書き出す.
+     * 書き出しの間だけ {@link JsonBuffers} から借りる.
+     */
+    private char[] mBuf;
+    private int mBufLength;
+    /** number の表記を組み立てるための作業用の StringBuilder */
+    private final StringBuilder mNumberText = new StringBuilder();
+    /**
+     * mMaxDepth が 0 の場合に, 先祖との同一性を調べ始める深さ.
+     * 再帰的な構造では同じ object や array が繰り返し現れ, 入れ子がいくらでも深くなるため,
+     * この深さを超えてから調べても検出できる. 通常の浅い文書では先祖の走査 (深さの 2 乗に比例する) を行わずに済む.
+     */
+    static final int CYCLE_CHECK_DEPTH = 64;
+    /** 現在シリアライズ中の object と array (先祖) のスタック. mMaxDepth が 0 の場合のみ使用する. */
+    private Object[] mAncestors;
+    private int mDepth;
 
-    private JsonSerializer(boolean doIndent) {
+    /**
+     *インデントを行わず, 再帰的な構造を検出するシリアライザーを生成する.
+     *@see #JsonSerializer(boolean, int)
+     */
+    public JsonSerializer() {
+        this(false, 0);
+    }
+
+    /**
+     *再帰的な構造を検出するシリアライザーを生成する.
+     *@param doIndent インデントを行うかどうか
+     *@see #JsonSerializer(boolean, int)
+     */
+    public JsonSerializer(boolean doIndent) {
+        this(doIndent, 0);
+    }
+
+    /**
+     *シリアライザーを生成する.
+     *<p>
+     *出力用のバッファはスレッドごとのプールから借りるため, static メソッドを使用する場合も
+     *バッファは生成されない. インスタンスを繰り返し使用すると, 数値の表記を組み立てるための作業領域なども再利用できる.
+     *スレッドセーフではないため, 複数のスレッドから同時に使用してはならない.
+     *@param doIndent インデントを行うかどうか
+     *@param maxDepth 入れ子の深さの上限. 0 の場合は上限を設けず, 再帰的な構造を検出する
+     *@see #serialize(JsonValue, boolean, int)
+     */
+    public JsonSerializer(boolean doIndent, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        }
         mDoIndent = doIndent;
-        mIndentDepth = 0;
+        mMaxDepth = maxDepth;
+    }
+
+    /**
+     * シリアライズした結果の書き出し先.
+     * シリアライザーの内部のバッファがいっぱいになるたびに, その内容が書き出される.
+     */
+    private static abstract class Sink {
+        abstract void write(char[] buf, int len) throws IOException;
+        /** 最後の書き出しの後に呼ばれる. */
+        void finish() throws IOException {}
+        /** 書き出しの終了時に, 例外が発生した場合も含めて呼ばれる. 借りたバッファを返す. */
+        void release() {}
     }
 
-    private void serializeJObject(StringBuilder sb, JsonObject jobject, Set<Object> ancestorIdSet) {
-        // 先祖に自分自身が存在するかどうかチェック
-        if (ancestorIdSet.contains(jobject.ID)) {
-            throw new InvalidJsonException("Can't serialize a recursive JSON structure");
+    private static class StringBuilderSink extends Sink {
+        private final StringBuilder sb;
+        StringBuilderSink(StringBuilder sb) {
+            this.sb = sb;
         }
-        ancestorIdSet.add(jobject.ID);
-        sb.append("{");
-        String[] keys = jobject.keySet().toArray(new String[0]);
-        if (keys.length != 0) {
-            if (mDoIndent) {
-                ++mIndentDepth;
-                sb.append("\n");
-                for (int c = 0; c < mIndentDepth; ++c) sb.append("  ");
+        @Override
+        void write(char[] buf, int len) {
+            sb.append(buf, 0, len);
+        }
+    }
+
+    private static class WriterSink extends Sink {
+        private final Writer writer;
+        WriterSink(Writer writer) {
+            this.writer = writer;
+        }
+        @Override
+        void write(char[] buf, int len) throws IOException {
+            writer.write(buf, 0, len);
+        }
+    }
+
+    private static class AppendableSink extends Sink {
+        private final Appendable out;
+        private CharBuffer view;
+        AppendableSink(Appendable out) {
+            this.out = out;
+        }
+        @Override
+        void write(char[] buf, int len) throws IOException {
+            if (view == null) view = CharBuffer.wrap(buf);
+            out.append(view, 0, len);
+        }
+    }
+
+    /**
+     * UTF-8 でエンコードして OutputStream に書き出す.
+     * バッファの末尾がサロゲートペアの前半の場合は, 次の書き出しまで保留する.
+     */
+    private static class Utf8StreamSink extends Sink {
+        private final OutputStream out;
+        private byte[] bytes;
+        private char pendingHighSurrogate;
+        Utf8StreamSink(OutputStream out) {
+            this.out = out;
+        }
+        @Override
+        void write(char[] buf, int len) throws IOException {
+            if (bytes == null) bytes = JsonBuffers.acquireOutputBytes();
+            int pos = 0;
+            int i = 0;
+            if (pendingHighSurrogate != 0 && 0 < len) {
+                pos = encode(pendingHighSurrogate, buf[0], pos);
+                pendingHighSurrogate = 0;
+                i = (Character.isLowSurrogate(buf[0]) ? 1 : 0);
             }
-            String key = keys[0];
-            serializeJString(sb, key);
-            if (mDoIndent) {
-                sb.append(" : ");
+            for (; i < len; i++) {
+                char c = buf[i];
+                if (c < 0x80) {
+                    bytes[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c)) {
+                    if (i + 1 == len) {
+                        pendingHighSurrogate = c;
+                    } else {
+                        pos = encode(c, buf[i + 1], pos);
+                        if (Character.isLowSurrogate(buf[i + 1])) i++;
+                    }
+                } else if (Character.isLowSurrogate(c)) {
+                    bytes[pos++] = '?';
+                } else {
+                    bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                    bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            out.write(bytes, 0, pos);
+        }
+        /** サロゲートペアを書き込む. ペアになっていない場合は '?' を書き込む. */
+        private int encode(char high, char low, int pos) {
+            if (!Character.isLowSurrogate(low)) {
+                bytes[pos++] = '?';
+                return pos;
+            }
+            int cp = Character.toCodePoint(high, low);
+            bytes[pos++] = (byte) (0xF0 | (cp >> 18));
+            bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            bytes[pos++] = (byte) (0x80 | (cp & 0x3F));
+            return pos;
+        }
+        @Override
+        void finish() throws IOException {
+            if (pendingHighSurrogate != 0) {
+                pendingHighSurrogate = 0;
+                out.write('?');
+            }
+        }
+        @Override
+        void release() {
+            if (bytes != null) {
+                JsonBuffers.releaseOutputBytes(bytes);
+                bytes = null;
+            }
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (mBufLength == mBuf.length) flushBuffer();
+        mBuf[mBufLength++] = c;
+    }
+
+    private void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    private void write(CharSequence str, int start, int end) throws IOException {
+        while (start < end) {
+            if (mBufLength == mBuf.length) flushBuffer();
+            int n = Math.min(end - start, mBuf.length - mBufLength);
+            if (str instanceof String) {
+                ((String) str).getChars(start, start + n, mBuf, mBufLength);
             } else {
-                sb.append(":");
+                ((StringBuilder) str).getChars(start, start + n, mBuf, mBufLength);
+            }
+            mBufLength += n;
+            start += n;
+        }
+    }
+
+    private void writeIndent() throws IOException {
+        write('\n');
+        for (int c = 0; c < mIndentDepth; ++c) write("  ");
+    }
+
+    private void flushBuffer() throws IOException {
+        if (mBufLength != 0) {
+            mSink.write(mBuf, mBufLength);
+            mBufLength = 0;
+        }
+    }
+
+    /**
+     * object か array の開始時に呼ぶ.
+     * 深さの上限を超える場合や, 先祖に同じオブジェクトが存在する場合は例外を投げる.
+     * 先祖との比較は, 深さが {@link #CYCLE_CHECK_DEPTH} を超えた場合にのみ行う.
+     */
+    private void enterContainer(Object container) {
+        if (mMaxDepth != 0) {
+            // 上限のみをチェックする. 再帰的な構造はいずれ上限を超える
+            if (mMaxDepth < ++mDepth) {
+                throw new InvalidJsonException("The nesting depth exceeds the limit [" + mMaxDepth + "]");
+            }
+            return;
+        }
+        if (mAncestors == null) {
+            mAncestors = new Object[16];
+        } else if (mDepth == mAncestors.length) {
+            Object[] ancestors = new Object[mDepth * 2];
+            System.arraycopy(mAncestors, 0, ancestors, 0, mDepth);
+            mAncestors = ancestors;
+        }
+        if (CYCLE_CHECK_DEPTH <= mDepth) {
+            // 先祖に自分自身が存在するかどうかチェック (equals ではなく同一性で比較する)
+            for (int i = 0; i < mDepth; i++) {
+                if (mAncestors[i] == container) {
+                    throw new InvalidJsonException("Can't serialize a recursive JSON structure");
+                }
+            }
+        }
+        mAncestors[mDepth++] = container;
+    }
+
+    /** object か array の終了時に呼ぶ. */
+    private void leaveContainer() {
+        --mDepth;
+        if (mAncestors != null) mAncestors[mDepth] = null;
+    }
+
+    private void serializeJObject(JsonObject jobject) throws IOException {
+        enterContainer(jobject);
+        write('{');
+        // 追加された順に, Map.Entry を生成せずに位置で参照する
+        int size = jobject.size();
+        if (size != 0) {
+            if (mDoIndent) {
+                ++mIndentDepth;
             }
-            serializeAnyJValue(sb, jobject.get(key), ancestorIdSet);
-            for (int i = 1; i < keys.length; i++) {
-                sb.append(",");
+            for (int i = 0; i < size; i++) {
+                if (i != 0) {
+                    write(',');
+                }
                 if (mDoIndent) {
-                    sb.append("\n");
-                    for (int c = 0; c < mIndentDepth; ++c) sb.append("  ");
+                    writeIndent();
                 }
-                key = keys[i];
-                serializeJString(sb, key);
+                writeJString(jobject.keyAt(i));
                 if (mDoIndent) {
-                    sb.append(" : ");
+                    write(" : ");
                 } else {
-                    sb.append(":");
+                    write(':');
                 }
-                serializeAnyJValue(sb, jobject.get(key), ancestorIdSet);
+                serializeAnyJValue(jobject.valueAt(i));
             }
             if (mDoIndent) {
                 --mIndentDepth;
-                sb.append("\n");
-                for (int c = 0; c < mIndentDepth; ++c) sb.append("  ");
+                writeIndent();
             }
         }
-        sb.append("}");
-        ancestorIdSet.remove(jobject.ID);
+        write('}');
+        leaveContainer();
     }
 
-    private void serializeJArray(StringBuilder sb, JsonArray jarray, Set<Object> ancestorIdSet) {
-        // 先祖に自分自身が存在するかどうかチェック
-        if (ancestorIdSet.contains(jarray.ID)) {
-            throw new InvalidJsonException("Can't serialize a recursive JSON structure");
-        }
-        ancestorIdSet.add(jarray.ID);
-        sb.append("[");
-        JsonValue[] vs = jarray.toArray(new JsonValue[0]);
-        if (vs.length != 0) {
+    private void serializeJArray(JsonArray jarray) throws IOException {
+        enterContainer(jarray);
+        write('[');
+        int size = jarray.size();
+        if (size != 0) {
             if (mDoIndent) {
                 ++mIndentDepth;
-                sb.append("\n");
-                for (int c = 0; c < mIndentDepth; ++c) sb.append("  ");
+                writeIndent();
             }
-            serializeAnyJValue(sb, vs[0], ancestorIdSet);
-            for (int i = 1; i < vs.length; i++) {
-                sb.append(",");
+            serializeAnyJValue(jarray.get(0));
+            for (int i = 1; i < size; i++) {
+                write(',');
                 if (mDoIndent) {
-                    sb.append("\n");
-                    for (int c = 0; c < mIndentDepth; ++c) sb.append("  ");
+                    writeIndent();
                 }
-                serializeAnyJValue(sb, vs[i], ancestorIdSet);
+                serializeAnyJValue(jarray.get(i));
             }
             if (mDoIndent) {
                 --mIndentDepth;
-                sb.append("\n");
-                for (int c = 0; c < mIndentDepth; ++c) sb.append("  ");
+                writeIndent();
             }
         }
-        sb.append("]");
-        ancestorIdSet.remove(jarray.ID);
+        write(']');
+        leaveContainer();
     }
 
+    /**
+     * JSON の string として sb に追加する.
+     * {@link JsonString#toString()} が使用する.
+     */
     static void serializeJString(StringBuilder sb, String str) {
-        sb.append("\"");
+        JsonSerializer s = new JsonSerializer();
+        // 出力用のバッファはプールから借りるため, 例外が発生した場合も含めて必ず endWriting で返す
+        s.beginWriting(sb);
+        try {
+            try {
+                s.writeJString(str);
+            } finally {
+                s.endWriting();
+            }
+        } catch (IOException err) {
+            // StringBuilder への書き出しでは発生しない
+            throw new AssertionError(err);
+        }
+    }
+
+    /** 16 進数の数字 */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * 0x00-0x7F の文字のエスケープ方法.
+     * 0 はエスケープ不要, 'u' は \\uXXXX の形, それ以外は '\\' に続けて書く文字を表す.
+     */
+    private static final char[] ESCAPE_TABLE = new char[0x80];
+    static {
         // unescaped = %x20-21 / %x23-5B / %x5D-10FFFF
-        int numCodePoints = str.codePointCount(0, str.length());
-        // TODO code points の扱いが正しくない
-        for (int i = 0; i < numCodePoints; i++) {
-            int cp = str.codePointAt(i);
-            if (cp == 0x20 || cp == 0x21 || (0x23 <= cp && cp <= 0x5B) ||
-                    (0x5D <= cp && cp <= 0x10FFFF)) {
-                sb.appendCodePoint(cp);
-            } else {
-                if (0x10FFFF < cp) {
-                    // TODO
-                    throw new RuntimeException();
-                }
-                sb.append("\\");
-                switch(cp) {
-                    case 0x22: // "\""
-                    case 0x5C: // "\\"
-                    case 0x2F: // "/" // ここには到達しない
-                        sb.appendCodePoint(cp);
-                        break;
-                    case 0x08: sb.append("b"); break;
-                    case 0x0C: sb.append("f"); break;
-                    case 0x0A: sb.append("n"); break;
-                    case 0x0D: sb.append("r"); break;
-                    case 0x09: sb.append("t"); break;
-                    default:
-                        sb.append( String.format("u%04X", cp) );
-                        break;
+        for (int c = 0; c < 0x20; c++) ESCAPE_TABLE[c] = 'u';
+        ESCAPE_TABLE['"'] = '"';
+        ESCAPE_TABLE['\\'] = '\\';
+        ESCAPE_TABLE['\b'] = 'b';
+        ESCAPE_TABLE['\f'] = 'f';
+        ESCAPE_TABLE['\n'] = 'n';
+        ESCAPE_TABLE['\r'] = 'r';
+        ESCAPE_TABLE['\t'] = 't';
+    }
+
+    /**
+     * JSON の string として書き出す.
+     * エスケープが不要な文字の並びはまとめてコピーする.
+     * サロゲートペアはそのまま書き出し, ペアになっていないサロゲートは \\uXXXX の形で書き出す.
+     */
+    private void writeJString(String str) throws IOException {
+        write('"');
+        int length = str.length();
+        int runStart = 0;
+        int i = 0;
+        while (i < length) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                if (ESCAPE_TABLE[c] == 0) {
+                    i++;
+                    continue;
                 }
+            } else if (c < Character.MIN_SURROGATE || Character.MAX_SURROGATE < c) {
+                i++;
+                continue;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(str.charAt(i + 1))) {
+                i += 2;
+                continue;
+            }
+            // エスケープが必要な文字
+            write(str, runStart, i);
+            write('\\');
+            char esc = (c < 0x80 ? ESCAPE_TABLE[c] : 'u');
+            if (esc == 'u') {
+                write('u');
+                write(HEX_DIGITS[(c >> 12) & 0xF]);
+                write(HEX_DIGITS[(c >> 8) & 0xF]);
+                write(HEX_DIGITS[(c >> 4) & 0xF]);
+                write(HEX_DIGITS[c & 0xF]);
+            } else {
+                write(esc);
             }
+            runStart = ++i;
         }
-        sb.append("\"");
+        write(str, runStart, length);
+        write('"');
     }
 
-    static private void serializeJNumber(StringBuilder sb, BigDecimal dec) {
-        sb.append(dec.toString());
+    private void writeJNumber(JsonValue jvalue) throws IOException {
+        if (jvalue instanceof JsonNumber) {
+            // long や double の値を保持している場合は BigDecimal を経由しない
+            mNumberText.setLength(0);
+            ((JsonNumber) jvalue).appendTo(mNumberText);
+            write(mNumberText, 0, mNumberText.length());
+        } else {
+            write(jvalue.numberValue().toString());
+        }
     }
 
-    private void serializeAnyJValue(StringBuilder sb, JsonValue jvalue, Set<Object> ancestorIdSet) {
+    private void serializeAnyJValue(JsonValue jvalue) throws IOException {
         //if( jvalue == null ) {
-        //    sb.append( "null" );
+        //    write( "null" );
         //} else {
             switch (jvalue.valueType()) {
                 case OBJECT_VALUE:
-                    serializeJObject(sb, jvalue.objectValue(), ancestorIdSet);
+                    serializeJObject(jvalue.objectValue());
                     break;
                 case ARRAY_VALUE:
-                    serializeJArray(sb, jvalue.arrayValue(), ancestorIdSet);
+                    serializeJArray(jvalue.arrayValue());
                     break;
                 case STRING_VALUE:
-                    serializeJString(sb, jvalue.stringValue());
+                    writeJString(jvalue.stringValue());
                     break;
                 case NUMBER_VALUE:
-                    serializeJNumber(sb, jvalue.numberValue());
+                    writeJNumber(jvalue);
                     break;
                 case BOOLEAN_VALUE:
-                    sb.append(jvalue.booleanValue() ? "true" : "false");
+                    write(jvalue.booleanValue() ? "true" : "false");
                     break;
                 case NULL_VALUE:
-                    sb.append("null");
+                    write("null");
                     break;
                 default:
                     // TODO
@@ -194,15 +476,245 @@ public class JsonSerializer {
      *@return jvalue をシリアライズした結果の JSON 文字列
      */
     static public String serialize(JsonValue jvalue, boolean doIndent) {
+        return serialize(jvalue, doIndent, 0);
+    }
+
+    /**
+     *入れ子の深さに上限を設けて JSON オブジェクトをシリアライズし, JSON 文字列を返す.
+     *<p>
+     *上限を指定した場合, 再帰的な構造の検出は行わず, 入れ子の深さだけを数える
+     *(再帰的な構造はいずれ上限を超えるため, 無限ループにはならない).
+     *先祖のオブジェクトとの比較を行わないため, 深い構造では上限を指定しない場合よりも速い.
+     *(上限を指定しない場合も, 深さが一定 (64) を超えるまでは先祖との比較を行わない.)
+     *JsonParser が生成した木構造のように, 再帰的でないことがわかっている場合に使用するとよい.
+     *@param jvalue シリアライズ対象の JSON オブジェクト
+     *@param maxDepth 入れ子の深さの上限. 0 の場合は上限を設けず, 再帰的な構造を検出する
+     *@return jvalue をシリアライズした結果の JSON 文字列
+     *@throws InvalidJsonException 入れ子の深さが上限を超えた場合や, 再帰的な構造を持つ場合
+     */
+    static public String serialize(JsonValue jvalue, boolean doIndent, int maxDepth) {
+        return new JsonSerializer(doIndent, maxDepth).toJsonString(jvalue);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズして Writer に書き出す.
+     *結果の文字列全体をメモリ上に作ることはなく, 一定の大きさのバッファを介して少しずつ書き出す.
+     *書き出し後に out の flush や close は行わない.
+     *@param jvalue シリアライズ対象の JSON オブジェクト
+     *@param out 書き出し先
+     *@throws IOException 書き出しに失敗した場合
+     */
+    static public void serialize(JsonValue jvalue, Writer out) throws IOException {
+        serialize(jvalue, false, out);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズして Writer に書き出す.
+     *@see #serialize(JsonValue, Writer)
+     */
+    static public void serialize(JsonValue jvalue, boolean doIndent, Writer out) throws IOException {
+        new JsonSerializer(doIndent).writeJson(jvalue, out);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズして Appendable に追加する.
+     *out が StringBuilder の場合は直接追加する.
+     *@see #serialize(JsonValue, Writer)
+     */
+    static public void serialize(JsonValue jvalue, Appendable out) throws IOException {
+        serialize(jvalue, false, out);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズして Appendable に追加する.
+     *@see #serialize(JsonValue, Writer)
+     */
+    static public void serialize(JsonValue jvalue, boolean doIndent, Appendable out) throws IOException {
+        serialize(jvalue, doIndent, 0, out);
+    }
+
+    /**
+     *入れ子の深さに上限を設けて JSON オブジェクトをシリアライズし, Appendable に追加する.
+     *@see #serialize(JsonValue, boolean, int)
+     *@see #serialize(JsonValue, Writer)
+     */
+    static public void serialize(JsonValue jvalue, boolean doIndent, int maxDepth, Appendable out)
+            throws IOException {
+        new JsonSerializer(doIndent, maxDepth).writeJson(jvalue, out);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズし, UTF-8 でエンコードして OutputStream に書き出す.
+     *@see #serialize(JsonValue, Writer)
+     */
+    static public void serialize(JsonValue jvalue, OutputStream out) throws IOException {
+        serialize(jvalue, false, out);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズし, UTF-8 でエンコードして OutputStream に書き出す.
+     *@see #serialize(JsonValue, OutputStream)
+     */
+    static public void serialize(JsonValue jvalue, boolean doIndent, OutputStream out) throws IOException {
+        serialize(jvalue, doIndent, 0, out);
+    }
+
+    /**
+     *入れ子の深さに上限を設けて JSON オブジェクトをシリアライズし,
+     *UTF-8 でエンコードして OutputStream に書き出す.
+     *@see #serialize(JsonValue, boolean, int)
+     *@see #serialize(JsonValue, OutputStream)
+     */
+    static public void serialize(JsonValue jvalue, boolean doIndent, int maxDepth, OutputStream out)
+            throws IOException {
+        new JsonSerializer(doIndent, maxDepth).writeJson(jvalue, out);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズして JSON 文字列を返す.
+     *@param jvalue シリアライズ対象の JSON オブジェクト
+     *@return jvalue をシリアライズした結果の JSON 文字列
+     *@see #serialize(JsonValue, boolean, int)
+     */
+    public String toJsonString(JsonValue jvalue) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeJson(jvalue, new StringBuilderSink(sb));
+        } catch (IOException err) {
+            // StringBuilder への書き出しでは発生しない
+            throw new AssertionError(err);
+        }
+        return sb.toString();
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズして Appendable に追加する.
+     *out が Writer や StringBuilder の場合は, それぞれに適した方法で書き出す.
+     *書き出し後に out の flush や close は行わない.
+     *@param jvalue シリアライズ対象の JSON オブジェクト
+     *@param out 書き出し先
+     *@throws IOException 書き出しに失敗した場合
+     */
+    public void writeJson(JsonValue jvalue, Appendable out) throws IOException {
+        Sink sink;
+        if (out instanceof StringBuilder) {
+            sink = new StringBuilderSink((StringBuilder) out);
+        } else if (out instanceof Writer) {
+            sink = new WriterSink((Writer) out);
+        } else {
+            sink = new AppendableSink(out);
+        }
+        writeJson(jvalue, sink);
+    }
+
+    /**
+     *JSON オブジェクトをシリアライズし, UTF-8 でエンコードして OutputStream に書き出す.
+     *書き出し後に out の flush や close は行わない.
+     *@param jvalue シリアライズ対象の JSON オブジェクト
+     *@param out 書き出し先
+     *@throws IOException 書き出しに失敗した場合
+     */
+    public void writeJson(JsonValue jvalue, OutputStream out) throws IOException {
+        writeJson(jvalue, new Utf8StreamSink(out));
+    }
+
+    /*
+     * 以下は JsonWriter が使用する. beginWriting で書き出し先を設定した後, トークンを 1 つずつ書き出し,
+     * 最後に endWriting を呼ぶ. 文字のバッファリングとエスケープの方法はシリアライズと共通である.
+     */
+
+    void beginWriting(Appendable out) {
+        if (out instanceof StringBuilder) {
+            beginWriting(new StringBuilderSink((StringBuilder) out));
+        } else if (out instanceof Writer) {
+            beginWriting(new WriterSink((Writer) out));
+        } else {
+            beginWriting(new AppendableSink(out));
+        }
+    }
+
+    void beginWriting(OutputStream out) {
+        beginWriting(new Utf8StreamSink(out));
+    }
+
+    private void beginWriting(Sink sink) {
+        mSink = sink;
+        mBuf = JsonBuffers.acquireOutputChars();
+        mBufLength = 0;
+        mIndentDepth = 0;
+        mDepth = 0;
+        if (mAncestors != null) Arrays.fill(mAncestors, null);
+    }
+
+    void writeToken(char c) throws IOException {
+        write(c);
+    }
+
+    void writeToken(String literal) throws IOException {
+        write(literal);
+    }
+
+    void writeStringToken(String str) throws IOException {
+        writeJString(str);
+    }
+
+    void writeNumberToken(long value) throws IOException {
+        mNumberText.setLength(0);
+        mNumberText.append(value);
+        write(mNumberText, 0, mNumberText.length());
+    }
+
+    void writeNumberToken(double value) throws IOException {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new InvalidJsonException("Infinite or NaN can't be serialized");
+        }
+        // Double.toString の結果 (例えば "1.0E10") は JSON の number の文法にも従う
+        mNumberText.setLength(0);
+        mNumberText.append(value);
+        write(mNumberText, 0, mNumberText.length());
+    }
+
+    void writeValueToken(JsonValue jvalue) throws IOException {
+        serializeAnyJValue(jvalue);
+    }
+
+    /** 内部のバッファの内容を書き出し先に書き出す. */
+    void flushWriting() throws IOException {
+        flushBuffer();
+    }
+
+    void endWriting() throws IOException {
+        try {
+            flushBuffer();
+            mSink.finish();
+        } finally {
+            releaseBuffers();
+        }
+    }
+
+    private void releaseBuffers() {
+        mSink.release();
+        mSink = null;
+        JsonBuffers.releaseOutputChars(mBuf);
+        mBuf = null;
+    }
+
+    private void writeJson(JsonValue jvalue, Sink sink) throws IOException {
         // array か object でなければいけない
         if (jvalue.valueType() != ValueType.ARRAY_VALUE &&
                 jvalue.valueType() != ValueType.OBJECT_VALUE) {
             // TODO
             throw new InvalidJsonException(ERRMSG_NOT_OBJ_OR_ARR_SERIALIZATION);
         }
-        StringBuilder sb = new StringBuilder();
-        new JsonSerializer(doIndent).serializeAnyJValue(sb, jvalue, new HashSet<Object>());
-        return sb.toString();
+        // 前回のシリアライズが例外で中断された場合に備えて状態を初期化する
+        beginWriting(sink);
+        try {
+            serializeAnyJValue(jvalue);
+            flushBuffer();
+            sink.finish();
+        } finally {
+            releaseBuffers();
+        }
     }
 
 }
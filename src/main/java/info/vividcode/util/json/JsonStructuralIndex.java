@@ -0,0 +1,188 @@
+package info.vividcode.util.json;
+
+/**
+ * UTF-8 の JSON テキスト中の構造上の区切りの位置の一覧 (構造インデックス).
+ * 2 段階でパースする際の 1 段階目として, {@link IndexedJsonTokenizer} が使用する.
+ * <p>
+ * 一覧に含まれるのは, string の外にある "{", "}", "[", "]", ":", ","
+ * と string の開始の '"', および number やリテラル (true, false, null) の先頭の位置である.
+ * <p>
+ * 入力を 64 バイトずつ処理し, 各バイトが特定の種類の文字かどうかを 64 ビットのマスクで表す.
+ * 8 バイトを 1 つの long として読み, 各バイトの比較をまとめて行う (SWAR: SIMD within a register).
+ * エスケープされた '"' の判定と string の内側の判定もビット演算で行うため,
+ * 1 文字ごとの分岐は起きない (simdjson と同様の手法).
+ */
+final class JsonStructuralIndex {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long EVEN_BITS = 0x5555555555555555L;
+
+    private static final long QUOTE = '"' * ONES;
+    private static final long BACKSLASH = '\\' * ONES;
+    private static final long BEGIN_ARRAY = '[' * ONES;
+    private static final long END_ARRAY = ']' * ONES;
+    private static final long COLON = ':' * ONES;
+    private static final long COMMA = ',' * ONES;
+    private static final long SPACE = ' ' * ONES;
+    private static final long LF = '\n' * ONES;
+    private static final long CR = '\r' * ONES;
+
+    final byte[] bytes;
+    final int offset;
+    final int limit;
+    /** 構造上の区切りの位置 (bytes 上の位置) */
+    final int[] positions;
+    /** positions の有効な要素数 */
+    final int count;
+
+    private JsonStructuralIndex(byte[] bytes, int offset, int limit, int[] positions, int count) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.limit = limit;
+        this.positions = positions;
+        this.count = count;
+    }
+
+    /**
+     * バイト列の offset から length バイトの範囲の構造インデックスを作る.
+     * @throws InvalidJsonException string が終わらないまま入力が終わっている場合
+     */
+    static JsonStructuralIndex build(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || bytes.length - length < offset) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + ", length: " + length + ", array length: " + bytes.length);
+        }
+        int limit = offset + length;
+        // 最後の 64 バイトに満たない部分は, 空白で埋めた一時的な領域にコピーして処理する
+        byte[] tail = null;
+        int[] positions = new int[Math.max(16, length / 8)];
+        int count = 0;
+
+        long prevEscaped = 0; // 前のブロックの最後の文字が '\' で, 次の文字をエスケープするなら 1
+        long prevInString = 0; // 前のブロックの終わりで string の内側にいるなら -1
+        long prevScalar = 0; // 前のブロックの最後の文字が number やリテラルの一部なら 1
+        for (int base = offset; base < limit; base += 64) {
+            byte[] src = bytes;
+            int p = base;
+            if (limit - base < 64) {
+                tail = new byte[64];
+                System.arraycopy(bytes, base, tail, 0, limit - base);
+                for (int i = limit - base; i < 64; i++) tail[i] = ' ';
+                src = tail;
+                p = 0;
+            }
+            long backslash = 0;
+            long quote = 0;
+            long op = 0;
+            long ws = 0;
+            for (int b = 0; b < 8; b++, p += 8) {
+                long x = (src[p] & 0xFFL) | (src[p + 1] & 0xFFL) << 8 |
+                        (src[p + 2] & 0xFFL) << 16 | (src[p + 3] & 0xFFL) << 24 |
+                        (src[p + 4] & 0xFFL) << 32 | (src[p + 5] & 0xFFL) << 40 |
+                        (src[p + 6] & 0xFFL) << 48 | (src[p + 7] & 0xFFL) << 56;
+                int shift = b * 8;
+                backslash |= movemask(eq(x, BACKSLASH)) << shift;
+                quote |= movemask(eq(x, QUOTE)) << shift;
+                // '{' と '[', '}' と ']' は 0x20 のビットだけが異なる
+                long y = x & ~(0x20 * ONES);
+                op |= movemask(~(ne(y, BEGIN_ARRAY) & ne(y, END_ARRAY) & ne(x, COLON) & ne(x, COMMA) | LOW7))
+                        << shift;
+                // '\t' (0x09) と '\r' (0x0D) は 0x04 のビットだけが異なる
+                ws |= movemask(~(ne(x, SPACE) & ne(x | (0x04 * ONES), CR) & ne(x, LF) | LOW7)) << shift;
+            }
+
+            // エスケープされている文字を求める (奇数個の '\' の並びの直後の文字)
+            backslash &= ~prevEscaped;
+            long followsEscape = (backslash << 1) | prevEscaped;
+            long oddSequenceStarts = backslash & ~EVEN_BITS & ~followsEscape;
+            long sequencesStartingOnEvenBits = oddSequenceStarts + backslash;
+            prevEscaped = ((oddSequenceStarts & backslash) |
+                    ((oddSequenceStarts | backslash) & ~sequencesStartingOnEvenBits)) >>> 63;
+            long escaped = (EVEN_BITS ^ (sequencesStartingOnEvenBits << 1)) & followsEscape;
+
+            // string の内側 (開始の '"' を含み, 終わりの '"' を含まない)
+            quote &= ~escaped;
+            long inString = prefixXor(quote) ^ prevInString;
+            prevInString = inString >> 63;
+
+            // number やリテラルの先頭 (直前が number やリテラルの一部でない位置)
+            long scalar = ~(op | ws | quote | inString);
+            long scalarStart = scalar & ~((scalar << 1) | prevScalar);
+            prevScalar = scalar >>> 63;
+
+            long structurals = (op & ~inString) | (quote & inString) | scalarStart;
+            // 範囲外 (一時的な領域の空白) には区切りはないので, そのまま位置を書き出せばよい
+            if (positions.length - count < 64) {
+                int[] newPositions = new int[Math.max(positions.length * 2, count + 64)];
+                System.arraycopy(positions, 0, newPositions, 0, count);
+                positions = newPositions;
+            }
+            while (structurals != 0) {
+                positions[count++] = base + Long.numberOfTrailingZeros(structurals);
+                structurals &= structurals - 1;
+            }
+        }
+        if (prevInString != 0) {
+            throw new InvalidJsonException("string の終端 (\") が見つかりません");
+        }
+        return new JsonStructuralIndex(bytes, offset, limit, positions, count);
+    }
+
+    /**
+     * 8 バイトのうち, pattern の対応するバイトと等しいバイトの最上位ビットだけを立てた値を返す.
+     */
+    private static long eq(long x, long pattern) {
+        return ~(ne(x, pattern) | LOW7);
+    }
+
+    /**
+     * 8 バイトのうち, pattern の対応するバイトと異なるバイトの最上位ビットを立てた値を返す
+     * (最上位ビット以外のビットは不定). 複数の比較の結果をまとめるときは,
+     * ne の結果の論理積をとってから最後に反転する方が演算が少ない.
+     */
+    private static long ne(long x, long pattern) {
+        long y = x ^ pattern;
+        return ((y & LOW7) + LOW7) | y;
+    }
+
+    /**
+     * 各バイトの最上位ビットを集めて, 下位 8 ビットに並べる (i 番目のバイトが i ビット目).
+     */
+    private static long movemask(long m) {
+        return ((m >>> 7) * 0x0102040810204080L) >>> 56;
+    }
+
+    /**
+     * 各ビットを, そのビット以下のすべてのビットの排他的論理和にする.
+     */
+    private static long prefixXor(long x) {
+        x ^= x << 1;
+        x ^= x << 2;
+        x ^= x << 4;
+        x ^= x << 8;
+        x ^= x << 16;
+        x ^= x << 32;
+        return x;
+    }
+
+    /**
+     * 指定の位置 ("[" または "{") に対応する終わりの "]" または "}" の, 一覧上の位置を返す.
+     * バイト列を読み直さずに, 一覧だけを辿って入れ子の深さを数える.
+     * @param i 開始の括弧の一覧上の位置
+     * @return 対応する終わりの括弧の一覧上の位置. 見つからない場合は count
+     */
+    int findMatchingEnd(int i) {
+        int depth = 0;
+        for (; i < count; i++) {
+            byte b = bytes[positions[i]];
+            if (b == '[' || b == '{') {
+                depth++;
+            } else if (b == ']' || b == '}') {
+                if (--depth == 0) return i;
+            }
+        }
+        return count;
+    }
+
+}
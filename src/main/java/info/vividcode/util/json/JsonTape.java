@@ -0,0 +1,653 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.JsonTokenizer.TokenType;
+import info.vividcode.util.json.JsonValue.ValueType;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *JSON テキストをパースした結果を, JSON オブジェクトの木構造ではなく 1 つの ByteBuffer 上に保持する読み取り専用の文書.
+ *<p>
+ *{@link JsonParser#parseTape(String)} などで生成する. 値 (ノード) はバッファ上の位置を表す int のハンドルで参照し,
+ *ノードごとの Java オブジェクトは生成しない. バッファは direct buffer であり, 内容は Java ヒープの外に置かれるため,
+ *大量の文書をキャッシュしても GC の対象になるオブジェクトはほとんど増えない.
+ *<pre><code>  JsonTape tape = JsonParser.parseTape( bytes, 0, bytes.length );
+ *  int statuses = tape.root();
+ *  for ( int i = 0; i &lt; tape.size( statuses ); i++ ) {
+ *      int status = tape.element( statuses, i );
+ *      long id = tape.longValue( tape.member( status, "id" ) );
+ *      String text = tape.stringValue( tape.member( status, "text" ) );
+ *  }</code></pre>
+ *{@link #asReadOnlyBuffer()} で取得したバッファの内容をファイルなどに保存しておき,
+ *{@link #wrap(ByteBuffer)} で (メモリマップしたファイルなどから) 再び開くことができる.
+ *<p>
+ *string は UTF-8 で格納し, {@link #stringValue(int)} を呼んだ時点で String オブジェクトを生成する.
+ *object のキーは文書内で共有して 1 度だけ格納する. object のメンバーを名前で探す操作は, メンバーの数に比例する時間がかかる.
+ *キーが重複している object では, JsonObject と同様に後のメンバーの値を返す.
+ *<p>
+ *このクラスのオブジェクトは不変であり, 複数のスレッドから同時に使用できる.
+ *ハンドルは同じ JsonTape オブジェクトから得たものでなければならず, そうでない場合の結果は不定である.
+ */
+public final class JsonTape {
+
+    /** 値が存在しないことを表すハンドル. */
+    public static final int NONE = -1;
+
+    /*
+     * バッファの形式 (数値はすべて big endian)
+     *   ヘッダー : int MAGIC, int 全体のバイト数, int 最上位の値のハンドル
+     *   ノード   : 種類を表す 1 バイトの後に, 種類ごとの内容が続く. ハンドルはノードの先頭の位置である.
+     *     NULL, TRUE, FALSE : なし
+     *     LONG              : long の値
+     *     NUMBER            : JSON テキスト上の表記 (long に収まらない number) の文字列エントリー
+     *     STRING            : 文字列エントリー
+     *     ARRAY             : int 要素数, int[要素数] 各要素のハンドル
+     *     OBJECT            : int 要素数, (int キーの文字列エントリーの位置, int 値のハンドル)[要素数]
+     *   文字列エントリー : int UTF-8 のバイト数, UTF-8 のバイト列
+     * 子のノードは親のノードより前に置かれ, 最上位の値が最後に置かれる.
+     * 対になっていないサロゲートも, パース結果と同じ文字列に戻せるように 3 バイトで表す.
+     */
+    private static final int MAGIC = 0x4A545031; // "JTP1"
+    private static final int HEADER_SIZE = 12;
+    /** 補助文字の code point を 10 ビット右シフトした値に加えると上位サロゲートになる値 */
+    private static final int HIGH_SURROGATE_OFFSET =
+            Character.MIN_HIGH_SURROGATE - (Character.MIN_SUPPLEMENTARY_CODE_POINT >>> 10);
+
+    private static final byte T_NULL = 0;
+    private static final byte T_TRUE = 1;
+    private static final byte T_FALSE = 2;
+    private static final byte T_LONG = 3;
+    private static final byte T_NUMBER = 4;
+    private static final byte T_STRING = 5;
+    private static final byte T_ARRAY = 6;
+    private static final byte T_OBJECT = 7;
+
+    private final ByteBuffer mBuf;
+    private final int mRoot;
+
+    private JsonTape(ByteBuffer buf) {
+        mBuf = buf;
+        mRoot = buf.getInt(8);
+    }
+
+    /**
+     *{@link #asReadOnlyBuffer()} で取得したものと同じ内容のバッファから JsonTape オブジェクトを生成する.
+     *バッファの position から始まる内容を, コピーせずに使用する. バッファの position や limit は変更されない.
+     *@param buf 文書の内容を含むバッファ
+     *@return 生成した JsonTape オブジェクト
+     *@throws IllegalArgumentException バッファの内容が JsonTape の形式でない場合
+     */
+    public static JsonTape wrap(ByteBuffer buf) {
+        ByteBuffer b = buf.slice();
+        if (b.remaining() < HEADER_SIZE || b.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("The buffer doesn't contain a JsonTape");
+        }
+        int length = b.getInt(4);
+        int root = b.getInt(8);
+        if (length < HEADER_SIZE || b.remaining() < length || root < HEADER_SIZE || length <= root) {
+            throw new IllegalArgumentException("The buffer doesn't contain a whole JsonTape");
+        }
+        b.limit(length);
+        return new JsonTape(b.slice());
+    }
+
+    /**
+     *文書の内容を表すバッファを返す. 内容を保存して {@link #wrap(ByteBuffer)} で再び開くために使用する.
+     *@return 読み取り専用のバッファ. position は 0, limit は文書のバイト数である
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return mBuf.asReadOnlyBuffer();
+    }
+
+    /**
+     *最上位の値 (object または array) のハンドルを返す.
+     */
+    public int root() {
+        return mRoot;
+    }
+
+    /**
+     *指定のノードの値の種類を返す.
+     *@param node ノードのハンドル
+     */
+    public ValueType valueType(int node) {
+        switch (mBuf.get(node)) {
+            case T_NULL:
+                return ValueType.NULL_VALUE;
+            case T_TRUE:
+            case T_FALSE:
+                return ValueType.BOOLEAN_VALUE;
+            case T_LONG:
+            case T_NUMBER:
+                return ValueType.NUMBER_VALUE;
+            case T_STRING:
+                return ValueType.STRING_VALUE;
+            case T_ARRAY:
+                return ValueType.ARRAY_VALUE;
+            default:
+                return ValueType.OBJECT_VALUE;
+        }
+    }
+
+    /**
+     *array の要素数または object のメンバー数を返す.
+     *@param node array または object のノードのハンドル
+     *@throws UnsupportedOperationException node が array でも object でもない場合
+     */
+    public int size(int node) {
+        byte type = mBuf.get(node);
+        if (type != T_ARRAY && type != T_OBJECT) {
+            throw unsupported(node, "array or object");
+        }
+        return mBuf.getInt(node + 1);
+    }
+
+    /**
+     *array の指定の位置の要素のハンドルを返す.
+     *@param array array のノードのハンドル
+     *@param index 要素の位置
+     *@throws UnsupportedOperationException array が array のノードでない場合
+     *@throws IndexOutOfBoundsException index が範囲外の場合
+     */
+    public int element(int array, int index) {
+        checkType(array, T_ARRAY, "array");
+        checkIndex(array, index);
+        return mBuf.getInt(array + 5 + index * 4);
+    }
+
+    /**
+     *object の指定の名前のメンバーの値のハンドルを返す.
+     *@param object object のノードのハンドル
+     *@param name メンバーの名前
+     *@return 値のハンドル. 存在しない場合は {@link #NONE}
+     *@throws UnsupportedOperationException object が object のノードでない場合
+     */
+    public int member(int object, String name) {
+        checkType(object, T_OBJECT, "object");
+        int byteLength = utf8Length(name);
+        int size = mBuf.getInt(object + 1);
+        for (int i = size - 1; i >= 0; i--) {
+            int entry = mBuf.getInt(object + 5 + i * 8);
+            if (mBuf.getInt(entry) == byteLength && entryEquals(entry, name)) {
+                return mBuf.getInt(object + 9 + i * 8);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     *object の指定の位置 (JSON テキスト上の順番) のメンバーの名前を返す.
+     *@throws UnsupportedOperationException object が object のノードでない場合
+     *@throws IndexOutOfBoundsException index が範囲外の場合
+     */
+    public String key(int object, int index) {
+        checkType(object, T_OBJECT, "object");
+        checkIndex(object, index);
+        return entryString(mBuf.getInt(object + 5 + index * 8));
+    }
+
+    /**
+     *object の指定の位置 (JSON テキスト上の順番) のメンバーの値のハンドルを返す.
+     *@throws UnsupportedOperationException object が object のノードでない場合
+     *@throws IndexOutOfBoundsException index が範囲外の場合
+     */
+    public int value(int object, int index) {
+        checkType(object, T_OBJECT, "object");
+        checkIndex(object, index);
+        return mBuf.getInt(object + 9 + index * 8);
+    }
+
+    /**
+     *JSON Pointer (RFC 6901) で指定した位置の値のハンドルを返す.
+     *@param pointer 最上位の値からの位置
+     *@return 値のハンドル. 存在しない場合は {@link #NONE}
+     */
+    public int find(JsonPointer pointer) {
+        int node = mRoot;
+        for (int i = 0; i < pointer.depth(); i++) {
+            byte type = mBuf.get(node);
+            if (type == T_OBJECT) {
+                node = member(node, pointer.token(i));
+                if (node == NONE) return NONE;
+            } else if (type == T_ARRAY) {
+                int index = JsonPointer.arrayIndex(pointer.token(i));
+                if (index < 0 || mBuf.getInt(node + 1) <= index) return NONE;
+                node = mBuf.getInt(node + 5 + index * 4);
+            } else {
+                return NONE;
+            }
+        }
+        return node;
+    }
+
+    /**
+     *string の値を返す.
+     *@throws UnsupportedOperationException node が string のノードでない場合
+     */
+    public String stringValue(int node) {
+        checkType(node, T_STRING, "string");
+        return entryString(node + 1);
+    }
+
+    /**
+     *string の値が指定の文字列と等しいかどうかを, String オブジェクトを生成せずに判定する.
+     *@throws UnsupportedOperationException node が string のノードでない場合
+     */
+    public boolean stringEquals(int node, String str) {
+        checkType(node, T_STRING, "string");
+        return entryEquals(node + 1, str);
+    }
+
+    /**
+     *number の値を BigDecimal として返す. {@link JsonNumber#numberValue()} と同じ値を返す.
+     *@throws UnsupportedOperationException node が number のノードでない場合
+     */
+    public BigDecimal numberValue(int node) {
+        byte type = mBuf.get(node);
+        if (type == T_LONG) {
+            return BigDecimal.valueOf(mBuf.getLong(node + 1));
+        }
+        checkType(node, T_NUMBER, "number");
+        return new BigDecimal(entryString(node + 1));
+    }
+
+    /**
+     *number の値を long として返す. {@link JsonNumber#longValue()} と同じ値を返す.
+     *long の範囲の整数の場合は, オブジェクトを生成しない.
+     *@throws UnsupportedOperationException node が number のノードでない場合
+     */
+    public long longValue(int node) {
+        if (mBuf.get(node) == T_LONG) {
+            return mBuf.getLong(node + 1);
+        }
+        return numberValue(node).longValue();
+    }
+
+    /**
+     *number の値を double として返す. {@link JsonNumber#doubleValue()} と同じ値を返す.
+     *@throws UnsupportedOperationException node が number のノードでない場合
+     */
+    public double doubleValue(int node) {
+        byte type = mBuf.get(node);
+        if (type == T_LONG) {
+            return mBuf.getLong(node + 1);
+        }
+        checkType(node, T_NUMBER, "number");
+        return Double.parseDouble(entryString(node + 1));
+    }
+
+    /**
+     *true または false の値を返す.
+     *@throws UnsupportedOperationException node が true または false のノードでない場合
+     */
+    public boolean booleanValue(int node) {
+        byte type = mBuf.get(node);
+        if (type != T_TRUE && type != T_FALSE) {
+            throw unsupported(node, "boolean");
+        }
+        return type == T_TRUE;
+    }
+
+    /**
+     *指定のノード以下を, JsonObject などから成る JSON オブジェクトの木構造に変換する.
+     *@param node ノードのハンドル
+     *@return 変換結果の JSON オブジェクト
+     */
+    public JsonValue toJsonValue(int node) {
+        switch (mBuf.get(node)) {
+            case T_NULL:
+                return JsonNull.VALUE;
+            case T_TRUE:
+                return JsonBoolean.TRUE;
+            case T_FALSE:
+                return JsonBoolean.FALSE;
+            case T_LONG:
+                return new JsonNumber(mBuf.getLong(node + 1));
+            case T_NUMBER:
+                // JsonParser の結果と同じく, 表記を保持する
+                return JsonNumber.fromNonLongText(entryString(node + 1));
+            case T_STRING:
+                return new JsonString(stringValue(node));
+            case T_ARRAY: {
+                int size = mBuf.getInt(node + 1);
+                JsonValue[] elements = new JsonValue[size];
+                for (int i = 0; i < size; i++) {
+                    elements[i] = toJsonValue(mBuf.getInt(node + 5 + i * 4));
+                }
+                return new JsonArray(elements, size);
+            }
+            default: {
+                int size = mBuf.getInt(node + 1);
+                JsonObject jobject = new JsonObject(size);
+                for (int i = 0; i < size; i++) {
+                    jobject.put(entryString(mBuf.getInt(node + 5 + i * 8)), toJsonValue(mBuf.getInt(node + 9 + i * 8)));
+                }
+                return jobject;
+            }
+        }
+    }
+
+    private void checkType(int node, byte expected, String name) {
+        if (mBuf.get(node) != expected) {
+            throw unsupported(node, name);
+        }
+    }
+
+    private UnsupportedOperationException unsupported(int node, String expected) {
+        return new UnsupportedOperationException(
+                "The node at " + node + " is not " + expected + " but " + valueType(node));
+    }
+
+    private void checkIndex(int node, int index) {
+        int size = mBuf.getInt(node + 1);
+        if (index < 0 || size <= index) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /** 文字列エントリーを String オブジェクトに変換する. */
+    private String entryString(int entry) {
+        int length = mBuf.getInt(entry);
+        int pos = entry + 4;
+        int end = pos + length;
+        // UTF-16 の長さは UTF-8 のバイト数を超えない
+        char[] chars = JsonBuffers.acquireTokenChars();
+        if (chars.length < length) chars = new char[length];
+        int n = 0;
+        while (pos < end) {
+            int b = mBuf.get(pos++);
+            if (b >= 0) {
+                chars[n++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | (mBuf.get(pos++) & 0x3F));
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[n++] = (char) (((b & 0x0F) << 12) | ((mBuf.get(pos++) & 0x3F) << 6) | (mBuf.get(pos++) & 0x3F));
+            } else {
+                int cp = ((b & 0x07) << 18) | ((mBuf.get(pos++) & 0x3F) << 12) |
+                        ((mBuf.get(pos++) & 0x3F) << 6) | (mBuf.get(pos++) & 0x3F);
+                n += Character.toChars(cp, chars, n);
+            }
+        }
+        String str = new String(chars, 0, n);
+        JsonBuffers.releaseTokenChars(chars);
+        return str;
+    }
+
+    /** 文字列エントリーが指定の文字列と等しいかどうかを判定する. */
+    private boolean entryEquals(int entry, String str) {
+        int pos = entry + 4;
+        int end = pos + mBuf.getInt(entry);
+        int len = str.length();
+        int i = 0;
+        while (pos < end) {
+            int b = mBuf.get(pos++);
+            int c;
+            if (b >= 0) {
+                c = b;
+            } else if ((b & 0xE0) == 0xC0) {
+                c = ((b & 0x1F) << 6) | (mBuf.get(pos++) & 0x3F);
+            } else if ((b & 0xF0) == 0xE0) {
+                c = ((b & 0x0F) << 12) | ((mBuf.get(pos++) & 0x3F) << 6) | (mBuf.get(pos++) & 0x3F);
+            } else {
+                int cp = ((b & 0x07) << 18) | ((mBuf.get(pos++) & 0x3F) << 12) |
+                        ((mBuf.get(pos++) & 0x3F) << 6) | (mBuf.get(pos++) & 0x3F);
+                if (len <= i || str.charAt(i++) != (char) ((cp >>> 10) + HIGH_SURROGATE_OFFSET)) return false;
+                c = Character.MIN_LOW_SURROGATE + (cp & 0x3FF);
+            }
+            if (len <= i || str.charAt(i++) != c) return false;
+        }
+        return i == len;
+    }
+
+    /** 文字列を文字列エントリーの形式で表した場合のバイト数を返す. */
+    private static int utf8Length(String str) {
+        int len = str.length();
+        int n = len;
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                n += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                n += 2;
+                i++;
+            } else {
+                n += 2;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * トークンを読みながら JsonTape の内容を組み立てる. {@link JsonParser} が使用する.
+     * 組み立て中はヒープ上の配列に書き込み, 最後に direct buffer にコピーする.
+     */
+    static final class Builder {
+        private byte[] mBytes = new byte[1024];
+        private int mPos = HEADER_SIZE;
+        /** 組み立て中の array の要素や object のメンバーを溜めておくスタック */
+        private int[] mStack = new int[64];
+        private int mStackSize;
+        /** 格納済みのキーの文字列エントリーの位置 */
+        private final Map<String,Integer> mKeyEntries = new HashMap<String,Integer>();
+
+        /**
+         * 現在のトークンから始まる値を読み, そのノードのハンドルを返す.
+         */
+        int value(JsonTokenizer t, TokenType type) {
+            switch (type) {
+                case BEGIN_ARRAY:
+                    return array(t);
+                case BEGIN_OBJECT:
+                    return object(t);
+                case STRING: {
+                    int node = mPos;
+                    putByte(T_STRING);
+                    putEntry(t.getTextBuffer(), t.getTextLength());
+                    return node;
+                }
+                case NUMBER:
+                    return number(t.getTextBuffer(), t.getTextLength());
+                case TRUE:
+                    return putNode(T_TRUE);
+                case FALSE:
+                    return putNode(T_FALSE);
+                case NULL:
+                    return putNode(T_NULL);
+                default:
+                    throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+            }
+        }
+
+        /**
+         * 組み立てを終え, 内容を direct buffer にコピーした JsonTape オブジェクトを返す.
+         */
+        JsonTape build(int root) {
+            putInt(0, MAGIC);
+            putInt(4, mPos);
+            putInt(8, root);
+            ByteBuffer buf = ByteBuffer.allocateDirect(mPos);
+            buf.put(mBytes, 0, mPos);
+            buf.clear();
+            return new JsonTape(buf);
+        }
+
+        private int array(JsonTokenizer t) {
+            int base = mStackSize;
+            TokenType type = JsonParser.nextToken(t);
+            if (type != TokenType.END_ARRAY) {
+                while (true) {
+                    push(value(t, type));
+                    // "," or "]"?
+                    type = JsonParser.nextToken(t);
+                    if (type == TokenType.END_ARRAY) {
+                        break;
+                    } else if (type == TokenType.VALUE_SEPARATER) {
+                        type = JsonParser.nextToken(t);
+                    } else {
+                        throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+                    }
+                }
+            }
+            return putContainer(T_ARRAY, base, mStackSize - base);
+        }
+
+        private int object(JsonTokenizer t) {
+            int base = mStackSize;
+            TokenType type = JsonParser.nextToken(t);
+            if (type != TokenType.END_OBJECT) {
+                while (true) {
+                    // string
+                    if (type != TokenType.STRING)
+                        throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+                    push(keyEntry(t));
+                    // name separater
+                    type = JsonParser.nextToken(t);
+                    if (type != TokenType.NAME_SEPARATER)
+                        throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+                    // value
+                    push(value(t, JsonParser.nextToken(t)));
+                    // "," or "}"?
+                    type = JsonParser.nextToken(t);
+                    if (type == TokenType.END_OBJECT) {
+                        break;
+                    } else if (type == TokenType.VALUE_SEPARATER) {
+                        type = JsonParser.nextToken(t);
+                    } else {
+                        throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+                    }
+                }
+            }
+            return putContainer(T_OBJECT, base, (mStackSize - base) / 2);
+        }
+
+        /** キーの文字列エントリーの位置を返す. 初めて現れたキーの場合は文字列エントリーを書き込む. */
+        private int keyEntry(JsonTokenizer t) {
+            String key = t.getKeyText();
+            Integer entry = mKeyEntries.get(key);
+            if (entry == null) {
+                entry = Integer.valueOf(mPos);
+                putEntry(t.getTextBuffer(), t.getTextLength());
+                mKeyEntries.put(key, entry);
+            }
+            return entry.intValue();
+        }
+
+        /** スタックの base 以降に溜めた値を内容とする array または object のノードを書き込む. */
+        private int putContainer(byte type, int base, int size) {
+            int words = mStackSize - base;
+            ensure(5 + words * 4);
+            int node = mPos;
+            mBytes[mPos++] = type;
+            putInt(mPos, size);
+            mPos += 4;
+            for (int i = base; i < mStackSize; i++) {
+                putInt(mPos, mStack[i]);
+                mPos += 4;
+            }
+            mStackSize = base;
+            return node;
+        }
+
+        /**
+         * number のノードを書き込む. {@link JsonNumber} と同様に,
+         * 整数で long の範囲に収まる場合は long の値として, それ以外の場合は表記を格納する.
+         */
+        private int number(char[] text, int length) {
+            int i = 0;
+            boolean negative = (text[0] == '-');
+            if (negative) i++;
+            long v = 0;
+            for (; i < length; i++) {
+                int d = text[i] - '0';
+                if (d < 0 || 9 < d || (Long.MAX_VALUE - d) / 10 < v) break;
+                v = v * 10 + d;
+            }
+            int node = mPos;
+            if (i == length) {
+                ensure(9);
+                mBytes[mPos++] = T_LONG;
+                long l = negative ? -v : v;
+                for (int shift = 56; shift >= 0; shift -= 8) mBytes[mPos++] = (byte) (l >> shift);
+            } else {
+                putByte(T_NUMBER);
+                putEntry(text, length);
+            }
+            return node;
+        }
+
+        private int putNode(byte type) {
+            int node = mPos;
+            putByte(type);
+            return node;
+        }
+
+        private void push(int v) {
+            if (mStackSize == mStack.length) {
+                mStack = Arrays.copyOf(mStack, mStackSize * 2);
+            }
+            mStack[mStackSize++] = v;
+        }
+
+        private void ensure(int n) {
+            if (mBytes.length - mPos < n) {
+                long len = Math.max(mBytes.length * 2L, (long) mPos + n);
+                if (Integer.MAX_VALUE - 8 < len) {
+                    if (Integer.MAX_VALUE - 8 < (long) mPos + n) {
+                        throw new OutOfMemoryError("JsonTape can't exceed 2 GB");
+                    }
+                    len = Integer.MAX_VALUE - 8;
+                }
+                mBytes = Arrays.copyOf(mBytes, (int) len);
+            }
+        }
+
+        private void putByte(byte b) {
+            ensure(1);
+            mBytes[mPos++] = b;
+        }
+
+        private void putInt(int pos, int v) {
+            mBytes[pos] = (byte) (v >> 24);
+            mBytes[pos + 1] = (byte) (v >> 16);
+            mBytes[pos + 2] = (byte) (v >> 8);
+            mBytes[pos + 3] = (byte) v;
+        }
+
+        /** 文字列エントリーを書き込む. */
+        private void putEntry(char[] text, int length) {
+            // 1 文字は最大 3 バイト (サロゲートペアは 2 文字で 4 バイト)
+            ensure(4 + length * 3);
+            int start = mPos + 4;
+            int pos = start;
+            byte[] bytes = mBytes;
+            for (int i = 0; i < length; i++) {
+                char c = text[i];
+                if (c < 0x80) {
+                    bytes[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text[i + 1])) {
+                    int cp = Character.toCodePoint(c, text[++i]);
+                    bytes[pos++] = (byte) (0xF0 | (cp >> 18));
+                    bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    // 対になっていないサロゲートも含む
+                    bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                    bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            putInt(mPos, pos - start);
+            mPos = pos;
+        }
+    }
+
+}
@@ -0,0 +1,396 @@
+package info.vividcode.util.json;
+
+/**
+ * JSON テキストをトークンに分割するクラス.
+ * {@link JsonParser} と {@link JsonEventReader} が使用する.
+ * <p>
+ * トークンごとにオブジェクトを生成せず, カーソルのように現在のトークンの種類だけを返す.
+ * string と number のトークンの内容 (string の場合はエスケープを解除した文字列,
+ * number の場合は JSON テキスト上の表記) は再利用されるバッファ上に書き込まれ,
+ * {@link #getTextBuffer()} の 0 から {@link #getTextLength()} までの範囲として参照できる.
+ * バッファの内容は次に {@link #next()} を呼ぶまで有効である.
+ * String オブジェクトが必要な場合にのみ {@link #getText()} を呼ぶ.
+ */
+class JsonTokenizer {
+
+    enum TokenType {
+        BEGIN_ARRAY, // "["
+        END_ARRAY, // "]"
+        BEGIN_OBJECT, // "{"
+        END_OBJECT, // "}"
+        NAME_SEPARATER, // ":"
+        VALUE_SEPARATER, // ","
+        STRING,
+        NUMBER,
+        FALSE,
+        TRUE,
+        NULL,
+    }
+
+    private CodePointIterator cpi;
+    private TokenType mType;
+    private char[] mText;
+    private int mTextLength;
+    /** object のキーに使用するキャッシュ. 使用しない場合は null */
+    private final JsonKeyCache mKeyCache;
+    /** {@link #skipContainer()} で使用する入れ子の状態のスタック. 必要になるまで生成しない */
+    private boolean[] mSkipStack;
+
+    JsonTokenizer(CodePointIterator cpi) {
+        this(cpi, null);
+    }
+
+    JsonTokenizer(CodePointIterator cpi, JsonKeyCache keyCache) {
+        this(cpi, keyCache, new char[64]);
+    }
+
+    /**
+     * トークンの内容を書き込むバッファを指定して生成する.
+     * バッファは必要に応じて大きなものに置き換えられるため, 使い終わったら {@link #getTextBuffer()} で取得しなおす.
+     */
+    JsonTokenizer(CodePointIterator cpi, JsonKeyCache keyCache, char[] textBuffer) {
+        this.cpi = cpi;
+        this.mKeyCache = keyCache;
+        this.mText = textBuffer;
+    }
+
+    /**
+     * 別の入力を読むように状態を初期化する. バッファはそのまま再利用する.
+     */
+    void reset(CodePointIterator cpi) {
+        this.cpi = cpi;
+        mType = null;
+        mTextLength = 0;
+    }
+
+    /**
+     * 次のトークンに進み, その種類を返す.
+     * @return 次のトークンの種類. 次のトークンがない場合は null
+     */
+    TokenType next() {
+        mTextLength = 0;
+        mType = readNextToken();
+        return mType;
+    }
+
+    /**
+     * 次のトークンを読み, その種類を返す.
+     * string と number の場合は内容をバッファに追加しておく.
+     * 入力の読み方が異なる派生クラスはこのメソッドをオーバーライドする.
+     */
+    TokenType readNextToken() {
+        return getNextTokenInternal(cpi);
+    }
+
+    /**
+     * 現在のトークンが "[" または "{" の場合に, 対応する終わりの括弧までを読み飛ばす.
+     * 読み飛ばす部分はトークンに分割するだけで, 値のオブジェクトは生成しない
+     * (字句としての正しさと括弧の対応だけを検証する).
+     * 次の {@link #next()} は終わりの括弧の次のトークンを返す.
+     */
+    void skipContainer() {
+        // 入れ子の状態のスタック. object の場合は true, array の場合は false
+        boolean[] stack = mSkipStack;
+        if (stack == null) {
+            stack = mSkipStack = new boolean[16];
+        }
+        int depth = 0;
+        stack[depth++] = (mType == TokenType.BEGIN_OBJECT);
+        while (depth > 0) {
+            TokenType type = next();
+            if (type == null) {
+                throw new InvalidJsonException("unexpected end of JSON text");
+            }
+            switch (type) {
+                case BEGIN_ARRAY:
+                case BEGIN_OBJECT:
+                    if (depth == stack.length) {
+                        boolean[] newStack = new boolean[depth * 2];
+                        System.arraycopy(stack, 0, newStack, 0, depth);
+                        stack = mSkipStack = newStack;
+                    }
+                    stack[depth++] = (type == TokenType.BEGIN_OBJECT);
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    if (stack[--depth] != (type == TokenType.END_OBJECT)) {
+                        throw new InvalidJsonException("unexpected token [token type:" + type + "]");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /** 現在のトークンの種類を返す. */
+    TokenType getTokenType() {
+        return mType;
+    }
+
+    /** 現在のトークンの内容が書き込まれたバッファを返す. */
+    char[] getTextBuffer() {
+        return mText;
+    }
+
+    /** 現在のトークンの内容の長さを返す. */
+    int getTextLength() {
+        return mTextLength;
+    }
+
+    /** 現在のトークンの内容を String オブジェクトとして返す. */
+    String getText() {
+        return new String(mText, 0, mTextLength);
+    }
+
+    /**
+     * 現在の string トークンを object のキーとして String オブジェクトで返す.
+     * キーのキャッシュが指定されている場合はキャッシュから返す.
+     */
+    String getKeyText() {
+        return (mKeyCache != null ? mKeyCache.get(mText, 0, mTextLength) : getText());
+    }
+
+    static final private int[] FALSE_FOLLOWING_CPS = { 0x61, 0x6c, 0x73, 0x65 };
+    static final private int[] TRUE_FOLLOWING_CPS  = { 0x72, 0x75, 0x65  };
+    static final private int[] NULL_FOLLOWING_CPS  = { 0x75, 0x6c, 0x6c  };
+
+    private TokenType getNextTokenInternal(CodePointIterator cpi) {
+        // 最初の文字の Code point を取得
+        int firstCharCP = -1;
+        while (cpi.hasNext()) {
+            int cp = cpi.next();
+            if (!isWS(cp)) {
+                firstCharCP = cp;
+                break;
+            }
+        }
+        // 次のトークンがない場合
+        if (firstCharCP == -1) {
+            return null;
+        }
+        // 最初の文字の CP によって処理を変える
+        switch (firstCharCP) {
+            case 0x5B /* [ */:
+                return TokenType.BEGIN_ARRAY;
+            case 0x7B /* { */:
+                return TokenType.BEGIN_OBJECT;
+            case 0x5D /* ] */:
+                return TokenType.END_ARRAY;
+            case 0x7D /* } */:
+                return TokenType.END_OBJECT;
+            case 0x3A /* : */:
+                return TokenType.NAME_SEPARATER;
+            case 0x2C /* , */:
+                return TokenType.VALUE_SEPARATER;
+            case 0x22 /* " */:
+                readString(cpi);
+                return TokenType.STRING;
+            case 0x66 /* f */:
+                checkNextLiteralToken( cpi, FALSE_FOLLOWING_CPS );
+                return TokenType.FALSE;
+            case 0x6E /* n */:
+                checkNextLiteralToken( cpi, NULL_FOLLOWING_CPS );
+                return TokenType.NULL;
+            case 0x74 /* t */:
+                checkNextLiteralToken( cpi, TRUE_FOLLOWING_CPS );
+                return TokenType.TRUE;
+        }
+
+        /* -, 0-9 */
+        if (firstCharCP == 0x2D || (0x30 <= firstCharCP && firstCharCP <= 0x39)) {
+            readNumber(cpi, firstCharCP);
+            return TokenType.NUMBER;
+        }
+
+        throw new InvalidJsonException("unexpected character [code point:" + firstCharCP + "]");
+    }
+
+    private void readString(CodePointIterator cpi) {
+        while (true) {
+            // エスケープされていない文字の並びはまとめてコピーする
+            int num = cpi.plainCharsLength();
+            if (num != 0) {
+                if (mText.length - mTextLength < num) growText(num);
+                cpi.readPlainChars(mText, mTextLength, num);
+                mTextLength += num;
+            }
+            if (!cpi.hasNext()) break;
+            int cp = cpi.next();
+            if (cp == 0x22 /* " */) {
+                // end
+                return;
+            }
+            if (cp != 0x5C) {
+                // unescaped
+                appendCodePoint(cp);
+            } else {
+                // escaped
+                if (!cpi.hasNext()) break;
+                cp = cpi.next();
+                /*
+                %x22 /          ; "    quotation mark  U+0022
+                %x5C /          ; \    reverse solidus U+005C
+                %x2F /          ; /    solidus         U+002F
+                %x62 /          ; b    backspace       U+0008
+                %x66 /          ; f    form feed       U+000C
+                %x6E /          ; n    line feed       U+000A
+                %x72 /          ; r    carriage return U+000D
+                %x74 /          ; t    tab             U+0009
+                %x75 4HEXDIG )  ; uXXXX                U+XXXX
+                */
+                switch (cp) {
+                    case 0x22:
+                    case 0x5C:
+                    case 0x2F:
+                        appendChar((char) cp); break;
+                    case 0x62:
+                        appendChar('\b'); break;
+                    case 0x66:
+                        appendChar('\f'); break;
+                    case 0x6E:
+                        appendChar('\n'); break;
+                    case 0x72:
+                        appendChar('\r'); break;
+                    case 0x74:
+                        appendChar('\t'); break;
+                    case 0x75:
+                        // サロゲートペアは \\uXXXX が 2 つ続く形で表されるので, char 単位で追加すればよい
+                        int c = 0;
+                        for (int i = 0; i < 4; i++) c = (c << 4) | hexDigitValue(cpi.next());
+                        appendChar((char) c);
+                        break;
+                    default:
+                        throw new InvalidJsonException("invalid escape sequence [code point:" + cp + "]");
+                }
+            }
+        }
+        throw new InvalidJsonException("string の終端 (\") が見つかりません");
+    }
+
+    static int hexDigitValue(int cp) {
+        if (0x30 <= cp && cp <= 0x39) return cp - 0x30; // 0-9
+        if (0x41 <= cp && cp <= 0x46) return cp - 0x41 + 10; // A-F
+        if (0x61 <= cp && cp <= 0x66) return cp - 0x61 + 10; // a-f
+        throw new InvalidJsonException("invalid hexadecimal digit in \\u escape [code point:" + cp + "]");
+    }
+
+    private void readNumber(CodePointIterator cpi, int cp) {
+        // number = [minus] int [frac] [exp]
+        // minus  = U+002D ; -
+        // plus   = U+002B ; +
+        // int    = zero | non-zero-digit digit*
+        // zero   = U+0030 ; 0
+        // non-zero-digit = U+0031 - U+0039 ; 1 - 9
+        // digit  = zero | non-zero-digit
+        // frac   = decimal-point digit+
+        // decimal-point = U+002E ; .
+        // exp    = e [ minus | plus ] digit+
+        // e      = U+0065 | 0x0045 ; e | E
+        // 先頭が - の場合の処理
+        if (cp == 0x2D) {
+            appendChar((char) cp);
+            cp = cpi.next();
+        }
+        // cp は int の先頭
+        if (cp == 0x30 /* 0 */) {
+            appendChar((char) cp);
+            // 0 が先頭ならば, 続くのは数字ではない
+            cp = cpi.next();
+            if (0x30 <= cp && cp <= 0x39) throw new InvalidJsonException("unexpected character");
+        } else if (0x31 /* 1 */ <= cp && cp <= 0x39 /* 9 */) {
+            cp = readDigits(cpi, cp);
+        } else {
+            throw new InvalidJsonException("unexpected character");
+        }
+        // cp は decimal-point か e か number ではない次のトークンの開始のはず
+        if (cp == 0x2E) {
+            appendChar((char) cp);
+            cp = cpi.next();
+            // cp は数字のはず
+            if (cp < 0x30 || 0x39 < cp) throw new InvalidJsonException("unexpected character");
+            cp = readDigits(cpi, cp);
+        }
+        // cp は e か number ではない次のトークンの開始のはず
+        if (cp == 0x45 || cp == 0x65) {
+            appendChar((char) cp);
+            cp = cpi.next();
+            // minus or plus?
+            if (cp == 0x2B || cp == 0x2D) {
+                appendChar((char) cp);
+                cp = cpi.next();
+            }
+            // cp は数字のはず
+            if (cp < 0x30 || 0x39 < cp) throw new InvalidJsonException("unexpected character");
+            cp = readDigits(cpi, cp);
+        }
+        // cp は number ではない次のトークンの開始のはず
+        cpi.prev(cp);
+    }
+
+    /**
+     * cp から始まる数字の並びをバッファに追加する.
+     * @return 数字の並びの次の code point
+     */
+    private int readDigits(CodePointIterator cpi, int cp) {
+        while (0x30 <= cp && cp <= 0x39) {
+            appendChar((char) cp);
+            cp = cpi.next();
+        }
+        return cp;
+    }
+
+    private void checkNextLiteralToken(CodePointIterator cpi, int[] cps) {
+        for (int cp : cps) {
+            if (cp != cpi.next()) throw new InvalidJsonException("unexpected token");
+        }
+        // 続く文字が空白か "]", "}", "," のいずれかであればよい
+        int cp = cpi.viewNext();
+        if (!isWS(cp)) {
+            switch (cp) {
+                case 0x5D /* ] */:
+                case 0x7D /* } */:
+                case 0x2C /* , */:
+                    // ok
+                    break;
+                default:
+                    throw new InvalidJsonException("unexpected character [code point:" + cp + "]");
+            }
+        }
+    }
+
+    private boolean isWS(int cp) {
+        return cp == 0x20 || cp == 0x09 || cp == 0x0A || cp == 0x0D;
+    }
+
+    void appendChar(char c) {
+        if (mTextLength == mText.length) growText(1);
+        mText[mTextLength++] = c;
+    }
+
+    void appendCodePoint(int cp) {
+        if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            appendChar((char) cp);
+        } else {
+            if (mText.length - mTextLength < 2) growText(2);
+            Character.toChars(cp, mText, mTextLength);
+            mTextLength += 2;
+        }
+    }
+
+    /** ASCII のバイト列をそのまま char としてバッファに追加する. */
+    void appendAscii(byte[] bytes, int offset, int length) {
+        if (mText.length - mTextLength < length) growText(length);
+        for (int i = 0; i < length; i++) {
+            mText[mTextLength + i] = (char) bytes[offset + i];
+        }
+        mTextLength += length;
+    }
+
+    private void growText(int num) {
+        char[] text = new char[Math.max(mText.length * 2, mTextLength + num)];
+        System.arraycopy(mText, 0, text, 0, mTextLength);
+        mText = text;
+    }
+
+}
@@ -0,0 +1,284 @@
+package info.vividcode.util.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+import info.vividcode.util.json.JsonValue.ValueType;
+
+/**
+ *JSON テキストをトークンごとに書き出すストリーミングジェネレーター.
+ *<p>
+ *JsonObject や JsonArray の木構造を作らずに, 独自のオブジェクトの内容を直接 JSON テキストとして書き出すために使用する.
+ *string のエスケープと number の表記は {@link JsonSerializer} と同じであり, インデントは行わない.
+ *<pre><code>  JsonWriter w = new JsonWriter( writer );
+ *  w.beginObject();
+ *  w.name( "id" ).value( 10 );
+ *  w.name( "tags" ).beginArray().value( "a" ).value( "b" ).endArray();
+ *  w.endObject();
+ *      // {"id":10,"tags":["a","b"]}</code></pre>
+ *書き出す内容は内部のバッファに溜められ, 最上位の値を書き終えた時点か {@link #flush()} を呼んだ時点で
+ *書き出し先に書き出される. 書き出し先の flush や close は行わない.
+ *<p>
+ *構造に合わない順序でメソッドを呼んだ場合 (object の中で名前の前に値を書こうとした場合など) は
+ *{@link IllegalStateException} が投げられる. このクラスのオブジェクトはスレッドセーフではない.
+ */
+public class JsonWriter {
+
+    /* 次に書くものについての状態 */
+    private static final int STATE_ROOT = 0;
+    private static final int STATE_ARRAY_START = 1;
+    private static final int STATE_ARRAY_VALUE_DONE = 2;
+    private static final int STATE_OBJECT_START = 3;
+    private static final int STATE_OBJECT_NAME_DONE = 4;
+    private static final int STATE_OBJECT_VALUE_DONE = 5;
+    private static final int STATE_ROOT_DONE = 6;
+
+    private final JsonSerializer mSerializer = new JsonSerializer();
+    /** 入れ子の状態のスタック. object の場合は true, array の場合は false. */
+    private boolean[] mContainerStack = new boolean[16];
+    private int mDepth;
+    private int mState = STATE_ROOT;
+
+    /**
+     * 指定の Appendable (Writer や StringBuilder など) に書き出す JsonWriter オブジェクトを生成する.
+     * @param out 書き出し先
+     */
+    public JsonWriter(Appendable out) {
+        mSerializer.beginWriting(out);
+    }
+
+    /**
+     * 指定の OutputStream に UTF-8 でエンコードして書き出す JsonWriter オブジェクトを生成する.
+     * @param out 書き出し先
+     */
+    public JsonWriter(OutputStream out) {
+        mSerializer.beginWriting(out);
+    }
+
+    /**
+     * object を開始する.
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter beginObject() throws IOException {
+        beforeValue(true);
+        mSerializer.writeToken('{');
+        pushContainer(true);
+        mState = STATE_OBJECT_START;
+        return this;
+    }
+
+    /**
+     * object を終了する.
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter endObject() throws IOException {
+        if (mState != STATE_OBJECT_START && mState != STATE_OBJECT_VALUE_DONE) {
+            throw new IllegalStateException("Not in an object or a value is expected");
+        }
+        mSerializer.writeToken('}');
+        popContainer();
+        return this;
+    }
+
+    /**
+     * array を開始する.
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter beginArray() throws IOException {
+        beforeValue(true);
+        mSerializer.writeToken('[');
+        pushContainer(false);
+        mState = STATE_ARRAY_START;
+        return this;
+    }
+
+    /**
+     * array を終了する.
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter endArray() throws IOException {
+        if (mState != STATE_ARRAY_START && mState != STATE_ARRAY_VALUE_DONE) {
+            throw new IllegalStateException("Not in an array");
+        }
+        mSerializer.writeToken(']');
+        popContainer();
+        return this;
+    }
+
+    /**
+     * object のメンバーの名前を書き出す. 続けて値を書き出さなければならない.
+     * @param name メンバーの名前
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter name(String name) throws IOException {
+        if (mState == STATE_OBJECT_VALUE_DONE) {
+            mSerializer.writeToken(',');
+        } else if (mState != STATE_OBJECT_START) {
+            throw new IllegalStateException("A name is not expected here");
+        }
+        mSerializer.writeStringToken(name);
+        mSerializer.writeToken(':');
+        mState = STATE_OBJECT_NAME_DONE;
+        return this;
+    }
+
+    /**
+     * string を書き出す.
+     * @param value 書き出す値. null の場合は JSON の null を書き出す
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue(false);
+        mSerializer.writeStringToken(value);
+        afterValue();
+        return this;
+    }
+
+    /**
+     * number を書き出す.
+     * @param value 書き出す値
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter value(long value) throws IOException {
+        beforeValue(false);
+        mSerializer.writeNumberToken(value);
+        afterValue();
+        return this;
+    }
+
+    /**
+     * number を書き出す.
+     * @param value 書き出す値
+     * @return このオブジェクト
+     * @throws InvalidJsonException value が無限大か NaN の場合
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter value(double value) throws IOException {
+        beforeValue(false);
+        mSerializer.writeNumberToken(value);
+        afterValue();
+        return this;
+    }
+
+    /**
+     * number を書き出す.
+     * @param value 書き出す値. null の場合は JSON の null を書き出す
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter value(BigDecimal value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue(false);
+        mSerializer.writeToken(value.toString());
+        afterValue();
+        return this;
+    }
+
+    /**
+     * true または false を書き出す.
+     * @param value 書き出す値
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue(false);
+        mSerializer.writeToken(value ? "true" : "false");
+        afterValue();
+        return this;
+    }
+
+    /**
+     * null を書き出す.
+     * @return このオブジェクト
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter nullValue() throws IOException {
+        beforeValue(false);
+        mSerializer.writeToken("null");
+        afterValue();
+        return this;
+    }
+
+    /**
+     * JSON オブジェクトを書き出す. object や array の場合はその内容全体を書き出す.
+     * @param value 書き出す値. null の場合は JSON の null を書き出す
+     * @return このオブジェクト
+     * @throws InvalidJsonException value が再帰的な構造を持つ場合
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public JsonWriter value(JsonValue value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        ValueType type = value.valueType();
+        beforeValue(type == ValueType.OBJECT_VALUE || type == ValueType.ARRAY_VALUE);
+        mSerializer.writeValueToken(value);
+        afterValue();
+        return this;
+    }
+
+    /**
+     * 内部のバッファに溜まっている内容を書き出し先に書き出す. 書き出し先の flush は行わない.
+     * @throws IOException 書き出しに失敗した場合
+     */
+    public void flush() throws IOException {
+        mSerializer.flushWriting();
+    }
+
+    private void beforeValue(boolean isContainer) throws IOException {
+        switch (mState) {
+            case STATE_ROOT:
+                if (!isContainer) {
+                    throw new IllegalStateException("The top-level value must be an object or an array");
+                }
+                break;
+            case STATE_ARRAY_START:
+            case STATE_OBJECT_NAME_DONE:
+                break;
+            case STATE_ARRAY_VALUE_DONE:
+                mSerializer.writeToken(',');
+                break;
+            case STATE_ROOT_DONE:
+                throw new IllegalStateException("The top-level value has already been written");
+            default:
+                throw new IllegalStateException("A name is expected in an object");
+        }
+    }
+
+    private void afterValue() throws IOException {
+        if (mDepth == 0) {
+            mState = STATE_ROOT_DONE;
+            mSerializer.endWriting();
+        } else {
+            mState = mContainerStack[mDepth - 1] ? STATE_OBJECT_VALUE_DONE : STATE_ARRAY_VALUE_DONE;
+        }
+    }
+
+    private void pushContainer(boolean isObject) {
+        if (mDepth == mContainerStack.length) {
+            boolean[] stack = new boolean[mDepth * 2];
+            System.arraycopy(mContainerStack, 0, stack, 0, mDepth);
+            mContainerStack = stack;
+        }
+        mContainerStack[mDepth++] = isObject;
+    }
+
+    private void popContainer() throws IOException {
+        --mDepth;
+        afterValue();
+    }
+
+}
@@ -0,0 +1,47 @@
+package info.vividcode.util.json;
+
+/**
+ * 内容を最初に参照した時点でパースする JsonObject.
+ * {@link JsonParser#parseLazy(byte[], int, int)} が生成する.
+ * <p>
+ * 生成時には構造インデックスと開始の "{" の一覧上の位置だけを保持する.
+ * いずれかのメソッドで要素を参照 (または変更) した時点でこの階層のメンバーだけをパースし,
+ * 値に含まれる object や array は, 同様に内容を読まずに LazyJsonObject または
+ * {@link LazyJsonArray} として保持する. 読み込み後は通常の JsonObject と同じように振る舞う.
+ */
+final class LazyJsonObject extends JsonObject {
+
+    private static final long serialVersionUID = -3148062257921630742L;
+
+    /** まだ読み込んでいない場合の構造インデックス. 読み込み後は null */
+    private transient JsonStructuralIndex mIndex;
+    /** 開始の "{" の一覧上の位置 */
+    private transient int mBegin;
+
+    LazyJsonObject(JsonStructuralIndex index, int begin) {
+        super();
+        mIndex = index;
+        mBegin = begin;
+    }
+
+    @Override
+    void ensureLoaded() {
+        JsonStructuralIndex index = mIndex;
+        if (index == null) {
+            return;
+        }
+        // 読み込み中の put で再び読み込まないよう, 先に読み込み済みにする
+        mIndex = null;
+        try {
+            IndexedJsonTokenizer t = new IndexedJsonTokenizer(index);
+            t.seek(mBegin + 1);
+            JsonParser.loadLazyObject(t, this);
+        } catch (RuntimeException err) {
+            // 不正な内容の場合は, 次に参照した際にも同じ例外が投げられるよう未読の状態に戻す
+            clear();
+            mIndex = index;
+            throw err;
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package info.vividcode.util.json;
+
+import info.vividcode.util.json.CodePointIterator.ByteArrayUtf8CodePointIterator;
+import info.vividcode.util.json.CodePointIterator.StringCodePointIterator;
+
+import java.nio.ByteBuffer;
+
+/**
+ *繰り返し使用することを前提とした JSON パーサー.
+ *<p>
+ *{@link JsonParser} の static メソッドと同じ結果を返すが, 入力を読み進めるためのオブジェクトと
+ *トークン用のバッファをインスタンスに保持して再利用するため, 小さな JSON テキストを大量にパースする場合に
+ *パースの結果以外のオブジェクトがほとんど生成されない.
+ *<pre><code>  ReusableJsonParser parser = new ReusableJsonParser( new JsonKeyCache() );
+ *  for ( String response : responses ) {
+ *      JsonValue v = parser.parse( response );
+ *      ...
+ *  }</code></pre>
+ *パースに失敗した場合も, 同じインスタンスで続けて別の JSON テキストをパースできる.
+ *<p>
+ *このクラスのオブジェクトはスレッドセーフではない. スレッドごとにインスタンスを生成すること.
+ */
+public final class ReusableJsonParser {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final StringCodePointIterator mStringIterator = new StringCodePointIterator("", 0, 0);
+    private final ByteArrayUtf8CodePointIterator mBytesIterator =
+            new ByteArrayUtf8CodePointIterator(EMPTY_BYTES, 0, 0);
+    private final JsonTokenizer mTokenizer;
+
+    /**
+     *キーのキャッシュを使用しない ReusableJsonParser オブジェクトを生成する.
+     */
+    public ReusableJsonParser() {
+        this(null);
+    }
+
+    /**
+     *キーのキャッシュを使用する ReusableJsonParser オブジェクトを生成する.
+     *@param keyCache object のキーに使用するキャッシュ. null の場合はキャッシュを使用しない
+     *@see JsonParser#parse(String, JsonKeyCache)
+     */
+    public ReusableJsonParser(JsonKeyCache keyCache) {
+        mTokenizer = new JsonTokenizer(null, keyCache);
+    }
+
+    /**
+     *JSON 文字列をパースして, 結果を JsonValue として返す.
+     *@param jsonStr パース対象の JSON 文字列
+     *@return jsonStr をパースした結果の JSON オブジェクト
+     *@see JsonParser#parse(String)
+     */
+    public JsonValue parse(String jsonStr) {
+        mStringIterator.reset(jsonStr, 0, jsonStr.length());
+        return parse(mStringIterator, jsonStr);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を JsonValue として返す.
+     *@param bytes パース対象の JSON テキストを含むバイト配列
+     *@param offset パース対象の先頭の位置
+     *@param length パース対象のバイト数
+     *@return パースした結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正な JSON テキストまたは不正な UTF-8 のバイト列の場合
+     *@see JsonParser#parse(byte[], int, int)
+     */
+    public JsonValue parse(byte[] bytes, int offset, int length) {
+        CodePointIterator.checkRange(bytes, offset, length);
+        mBytesIterator.reset(bytes, offset, offset + length);
+        return parse(mBytesIterator, null);
+    }
+
+    /**
+     *UTF-8 でエンコードされた JSON テキストをパースして, 結果を JsonValue として返す.
+     *バッファの position から limit までのバイト列をパースする. バッファの position や limit は変更されない.
+     *direct buffer の場合は, 読み進めるためのオブジェクトをパースのたびに生成する.
+     *@param buf パース対象の JSON テキストを含むバッファ
+     *@return パースした結果の JSON オブジェクト
+     *@throws InvalidJsonException 不正な JSON テキストまたは不正な UTF-8 のバイト列の場合
+     *@see JsonParser#parse(ByteBuffer)
+     */
+    public JsonValue parse(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            int offset = buf.arrayOffset();
+            mBytesIterator.reset(buf.array(), offset + buf.position(), offset + buf.limit());
+            return parse(mBytesIterator, null);
+        }
+        return parse(CodePointIterator.forUtf8(buf), null);
+    }
+
+    private JsonValue parse(CodePointIterator cpi, String jsonStr) {
+        mTokenizer.reset(cpi);
+        try {
+            return JsonParser.parse(mTokenizer, jsonStr, false);
+        } finally {
+            // パースした入力への参照を残さない
+            mTokenizer.reset(null);
+            mStringIterator.reset("", 0, 0);
+            mBytesIterator.reset(EMPTY_BYTES, 0, 0);
+        }
+    }
+
+}
@@ -20,6 +20,13 @@
  *  // 現在は JsonArray であることがわかっているので, JsonArray として扱う
  *  BigDecimal num1 = jsonObj.arrayValue().get( 0 ).numberValue();
  *  BigDecimal num2 = jsonObj.arrayValue().get( 1 ).numberValue();</code></pre>
+ *巨大な JSON テキストを木構造を生成せずに先頭から順に処理するためには,
+ *ストリーミングパーサーである JsonEventReader を使用する.
+ *ノンブロッキング I/O などで JSON テキストが断片として届く場合は, 断片を受け取るたびに
+ *イベントを通知するプッシュ型のパーサーである JsonPushParser を使用する.
+ *JSON テキストから一部の値だけを取り出す場合は, JSON Pointer (JsonPointer) を指定して
+ *JsonParser.extract を使用すると, 不要な部分のオブジェクトを生成せずに済む.
+ *複数の値を取り出す場合は, JsonProjection を使用すると 1 度の走査でまとめて取り出せる.
  *JSON オブジェクトを JSON 文字列に変換するためには JsonSerializer を使用する.
  *<pre><code>  // シリアライズ対象の JSON オブジェクト
  *  JsonArray jsonArray = new JsonArray();
@@ -27,5 +34,12 @@
  *  // シリアライズして出力
  *  System.out.println( JsonSerializer.serialize( jsonArray ) );
  *      // ["テスト\t改行も\n"]</code></pre>
+ *Writer や OutputStream に直接書き出すこともでき, その場合は結果全体の文字列は生成されない.
+ *独自のクラスのオブジェクトと JSON テキストを JsonObject などを介さずに直接相互に変換するためには
+ *JsonBinder を使用する. クラスに JsonCodec アノテーションを付けると, 同じ変換をリフレクションなしで行う
+ *クラスをコンパイル時に生成することもできる. 木構造を作らずにトークンごとに書き出すためには JsonWriter を使用する.
+ *キャッシュなどのために JSON オブジェクトをコンパクトなバイナリ形式 (CBOR) で保存するためには JsonCbor を使用する.
+ *大量のパース結果をメモリ上に保持する場合は, JsonParser.parseTape で JsonObject などの代わりに
+ *ヒープ外のバッファ上の読み取り専用の文書 (JsonTape) を生成すると, GC の対象になるオブジェクトを減らせる.
  */
 package info.vividcode.util.json;
@@ -0,0 +1,120 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ImmutableJsonObjectTest {
+
+    private static final String JSON_STRING =
+            "{ \"id\" : 1, \"user\" : { \"name\" : \"nobuoka\" }, \"tags\" : [ \"a\", [], {} ] }";
+
+    /**
+     * 変更できない JSON オブジェクトとしてパースした結果が, 通常のパース結果と等しいことを確認する.
+     */
+    @Test
+    public void testParseImmutable() {
+        JsonObject jobj = JsonParser.parseImmutable(JSON_STRING).objectValue();
+        assertEquals( JsonParser.parse(JSON_STRING), jobj );
+        assertTrue( jobj instanceof ImmutableJsonObject );
+        assertTrue( jobj.get("user") instanceof ImmutableJsonObject );
+        assertTrue( jobj.get("tags") instanceof ImmutableJsonArray );
+        assertTrue( jobj.get("tags").arrayValue().get(1) instanceof ImmutableJsonArray );
+        assertEquals( JsonSerializer.serialize(JsonParser.parse(JSON_STRING)), JsonSerializer.serialize(jobj) );
+    }
+
+    /**
+     * 直接の変更だけでなく, 反復子や Map.Entry を介した変更もできないことを確認する.
+     */
+    @Test
+    public void testUnmodifiable() {
+        JsonObject jobj = JsonParser.parseImmutable(JSON_STRING).objectValue();
+        try {
+            jobj.put( "id", JsonNull.VALUE );
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            jobj.entrySet().iterator().next().setValue( JsonNull.VALUE );
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            Iterator<String> it = jobj.keySet().iterator();
+            it.next();
+            it.remove();
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        JsonArray jarray = jobj.get("tags").arrayValue();
+        try {
+            jarray.add( JsonNull.VALUE );
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            jarray.listIterator().next();
+            jarray.subList(0, 2).clear();
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        assertEquals( 3, jobj.size() );
+        assertEquals( 3, jarray.size() );
+    }
+
+    /**
+     * with, without 操作で元のオブジェクトが変わらず, 値が共有されることを確認する.
+     */
+    @Test
+    public void testWithAndWithout() {
+        ImmutableJsonObject jobj = (ImmutableJsonObject) JsonParser.parseImmutable(JSON_STRING);
+        ImmutableJsonObject jobj2 = jobj.with("id", new JsonNumber(2)).with("new", new JsonArray());
+        assertEquals( new JsonNumber(1), jobj.get("id") );
+        assertEquals( new JsonNumber(2), jobj2.get("id") );
+        assertSame( jobj.get("user"), jobj2.get("user") );
+        assertTrue( jobj2.get("new") instanceof ImmutableJsonArray );
+        assertEquals( "id", jobj2.keySet().iterator().next() );
+        assertEquals( "{\"id\":2,\"user\":{\"name\":\"nobuoka\"},\"tags\":[\"a\",[],{}],\"new\":[]}",
+                JsonSerializer.serialize(jobj2) );
+
+        ImmutableJsonObject jobj3 = jobj2.without("user");
+        assertFalse( jobj3.containsKey("user") );
+        assertTrue( jobj2.containsKey("user") );
+        assertSame( jobj3, jobj3.without("user") );
+
+        ImmutableJsonArray tags = (ImmutableJsonArray) jobj.get("tags");
+        ImmutableJsonArray tags2 = tags.withAdded(new JsonString("b")).with(0, new JsonString("c")).without(1);
+        assertEquals( "[\"c\",{},\"b\"]", JsonSerializer.serialize(tags2) );
+        assertSame( tags.get(2), tags2.get(1) );
+        assertEquals( 3, tags.size() );
+    }
+
+    /**
+     * 変更可能な JSON オブジェクトから, 再帰的に変更できないものに変換できることを確認する.
+     */
+    @Test
+    public void testCopyOf() {
+        JsonObject jobj = JsonParser.parse(JSON_STRING).objectValue();
+        ImmutableJsonObject copy = ImmutableJsonObject.copyOf(jobj);
+        assertEquals( jobj, copy );
+        assertSame( copy, ImmutableJsonObject.copyOf(copy) );
+        for (Map.Entry<String,JsonValue> e : copy.entrySet()) {
+            JsonValue v = e.getValue();
+            assertFalse( v instanceof JsonObject && !(v instanceof ImmutableJsonObject) );
+            assertFalse( v instanceof JsonArray && !(v instanceof ImmutableJsonArray) );
+        }
+        // 元のオブジェクトを変更しても影響を受けない
+        jobj.get("tags").arrayValue().clear();
+        assertEquals( 3, copy.get("tags").arrayValue().size() );
+    }
+
+}
@@ -3,6 +3,8 @@ package info.vividcode.util.json;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -52,4 +54,43 @@ public class JsonArrayTest {
         mJsonArray.stringValue();
     }
 
+    /**
+     * List としての要素の追加, 挿入, 置換, 削除をテストする.
+     */
+    @Test
+    public void testListOperations() {
+        for (int i = 0; i < 20; i++) mJsonArray.add( new JsonNumber(i) );
+        mJsonArray.add( 0, JsonNull.VALUE );
+        assertEquals( 21, mJsonArray.size() );
+        assertEquals( JsonNull.VALUE, mJsonArray.get(0) );
+        assertEquals( new JsonNumber(19), mJsonArray.get(20) );
+        assertEquals( new JsonNumber(0), mJsonArray.set(1, JsonBoolean.TRUE) );
+        assertEquals( JsonNull.VALUE, mJsonArray.remove(0) );
+        assertEquals( JsonBoolean.TRUE, mJsonArray.get(0) );
+        mJsonArray.subList(1, 19).clear();
+        assertEquals( "[true,19]", JsonSerializer.serialize(mJsonArray) );
+        JsonArray copy = (JsonArray) mJsonArray.clone();
+        copy.add( JsonNull.VALUE );
+        assertEquals( 2, mJsonArray.size() );
+        try {
+            mJsonArray.get(2);
+            fail();
+        } catch (IndexOutOfBoundsException err) {
+            // ok
+        }
+    }
+
+    /**
+     * ArrayList を継承していたときと同様に, 容量を操作するメソッドが使用できることをテストする.
+     */
+    @Test
+    public void testCapacityMethods() {
+        mJsonArray.ensureCapacity(100);
+        for (int i = 0; i < 3; i++) mJsonArray.add( new JsonNumber(i) );
+        mJsonArray.trimToSize();
+        mJsonArray.add( JsonNull.VALUE );
+        assertEquals( "[0,1,2,null]", JsonSerializer.serialize(mJsonArray) );
+        assertEquals( mJsonArray, new ArrayList<JsonValue>(mJsonArray) );
+    }
+
 }
@@ -0,0 +1,226 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class JsonBinderTest {
+
+    enum Kind { USER, BOT }
+
+    static class Base {
+        long id;
+    }
+
+    static class User extends Base {
+        String name;
+        int age;
+        double score;
+        boolean active;
+        Integer rank;
+        BigDecimal balance;
+        BigInteger big;
+        Kind kind;
+        int[] codes;
+        List<String> tags;
+        Set<Long> ids;
+        Map<String, User> friends;
+        User parent;
+        JsonValue extra;
+        transient String ignored = "ignored";
+
+        private User() {
+        }
+    }
+
+    static class NoDefaultConstructor {
+        NoDefaultConstructor(int a) {
+        }
+    }
+
+    static class UnsupportedField {
+        Object any;
+    }
+
+    /**
+     * JSON テキストの各メンバーが対応するフィールドに設定されることを確認する.
+     */
+    @Test
+    public void testRead() {
+        String json = "{ \"unknown\" : { \"x\" : [1, 2] }, \"name\" : \"あ\\n\", \"age\" : 20, \"score\" : 1.5e1," +
+                " \"active\" : true, \"rank\" : null, \"balance\" : 1.50, \"big\" : 123456789012345678901234567890," +
+                " \"kind\" : \"BOT\", \"codes\" : [ 3, 1 ], \"tags\" : [ \"a\", null ], \"ids\" : [ 1, 1, 2 ]," +
+                " \"friends\" : { \"f\" : { \"name\" : \"F\" } }, \"parent\" : { \"id\" : 2, \"ignored\" : \"x\" }," +
+                " \"extra\" : { \"k\" : [ true ] }, \"id\" : -9223372036854775808 }";
+        User u = JsonBinder.of(User.class).read(json);
+        assertEquals( Long.MIN_VALUE, u.id );
+        assertEquals( "あ\n", u.name );
+        assertEquals( 20, u.age );
+        assertEquals( 15.0, u.score, 0.0 );
+        assertTrue( u.active );
+        assertNull( u.rank );
+        assertEquals( new BigDecimal("1.50"), u.balance );
+        assertEquals( new BigInteger("123456789012345678901234567890"), u.big );
+        assertEquals( Kind.BOT, u.kind );
+        assertArrayEquals( new int[] { 3, 1 }, u.codes );
+        assertEquals( Arrays.asList("a", null), u.tags );
+        assertEquals( 2, u.ids.size() );
+        assertEquals( "F", u.friends.get("f").name );
+        assertEquals( 2, u.parent.id );
+        assertEquals( "ignored", u.parent.ignored );
+        assertEquals( "{\"k\":[true]}", JsonSerializer.serialize(u.extra) );
+
+        // null はプリミティブ型のフィールドの値を変更しない
+        User empty = JsonBinder.of(User.class).read("{ \"age\" : null, \"name\" : null }");
+        assertEquals( 0, empty.age );
+        assertNull( empty.name );
+
+        // バイト列からも読める
+        byte[] bytes = "{\"name\":\"あ\"}".getBytes(java.nio.charset.Charset.forName("UTF-8"));
+        assertEquals( "あ", JsonBinder.of(User.class).read(bytes, 0, bytes.length).name );
+    }
+
+    /**
+     * JsonEventReader から array の要素をひとつずつオブジェクトとして読めることを確認する.
+     */
+    @Test
+    public void testReadFromEventReader() throws IOException {
+        JsonEventReader reader = new JsonEventReader(new StringReader("[ { \"age\" : 1 }, null, { \"age\" : 3 } ]"));
+        JsonBinder<User> binder = JsonBinder.of(User.class);
+        reader.next();
+        int sum = 0;
+        int count = 0;
+        while (reader.next() != JsonEventReader.Event.END_ARRAY) {
+            User u = binder.read(reader);
+            if (u != null) sum += u.age;
+            count++;
+        }
+        assertEquals( 4, sum );
+        assertEquals( 3, count );
+        assertNull( reader.next() );
+    }
+
+    /**
+     * 書き出した結果を読み戻すと同じ内容になることを確認する.
+     */
+    @Test
+    public void testWrite() throws IOException {
+        JsonBinder<User> binder = JsonBinder.of(User.class);
+        User u = binder.read("{ \"id\" : 1, \"name\" : \"a\\\"b\", \"age\" : 2, \"score\" : 0.25, \"kind\" : \"USER\"," +
+                " \"codes\" : [], \"tags\" : [ \"t\" ], \"parent\" : { \"id\" : 3 } }");
+        String json = binder.toJson(u);
+        assertEquals( "{\"id\":1,\"name\":\"a\\\"b\",\"age\":2,\"score\":0.25,\"active\":false,\"rank\":null," +
+                "\"balance\":null,\"big\":null,\"kind\":\"USER\",\"codes\":[],\"tags\":[\"t\"],\"ids\":null," +
+                "\"friends\":null,\"parent\":{\"id\":3,\"name\":null,\"age\":0,\"score\":0.0,\"active\":false," +
+                "\"rank\":null,\"balance\":null,\"big\":null,\"kind\":null,\"codes\":null,\"tags\":null," +
+                "\"ids\":null,\"friends\":null,\"parent\":null,\"extra\":null},\"extra\":null}", json );
+        assertEquals( json, binder.toJson(binder.read(json)) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u.name = "あ";
+        binder.write(u, out);
+        assertEquals( "あ", binder.read(out.toByteArray(), 0, out.size()).name );
+    }
+
+    /**
+     * 値の型がフィールドの型と合わない場合や, 使用できないクラスの場合の例外発生をテストする.
+     */
+    @Test
+    public void testInvalid() {
+        String[] invalidJsons = {
+                "{ \"age\" : \"1\" }", "{ \"age\" : 2147483648 }", "{ \"age\" : 1.5 }", "{ \"active\" : 1 }",
+                "{ \"kind\" : \"NONE\" }", "{ \"tags\" : {} }", "{ \"codes\" : [ null ] }", "[]", "{} {}",
+        };
+        for (String json : invalidJsons) {
+            try {
+                JsonBinder.of(User.class).read(json);
+                fail( json );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+        Class<?>[] invalidClasses = { NoDefaultConstructor.class, UnsupportedField.class, Runnable.class };
+        for (Class<?> c : invalidClasses) {
+            try {
+                JsonBinder.of(c);
+                fail( c.getName() );
+            } catch (IllegalArgumentException err) {
+                // ok
+            }
+        }
+    }
+
+    /**
+     * 最上位の値として null を書き出そうとすると NullPointerException が発生し,
+     * 入れ子の値の null は JSON の null として書き出されることを確認する.
+     */
+    @Test
+    public void testWriteNull() throws IOException {
+        JsonBinder<User> binder = JsonBinder.of(User.class);
+        try {
+            binder.toJson(null);
+            fail();
+        } catch (NullPointerException err) {
+            // ok
+        }
+        try {
+            binder.write(null, new StringBuilder());
+            fail();
+        } catch (NullPointerException err) {
+            // ok
+        }
+        try {
+            binder.write(null, new ByteArrayOutputStream());
+            fail();
+        } catch (NullPointerException err) {
+            // ok
+        }
+        StringBuilder sb = new StringBuilder();
+        JsonWriter w = new JsonWriter(sb);
+        w.beginArray();
+        binder.write(null, w);
+        w.endArray();
+        assertEquals( "[null]", sb.toString() );
+    }
+
+    /**
+     * JsonBinder のキャッシュが, 破棄されたクラスローダーのクラスを保持し続けないことを確認する.
+     */
+    @Test
+    public void testCacheDoesNotRetainClasses() throws Exception {
+        assertSame( JsonBinder.of(User.class), JsonBinder.of(User.class) );
+
+        URL classes = JsonBinderTest.class.getProtectionDomain().getCodeSource().getLocation();
+        URLClassLoader loader = new URLClassLoader(new URL[] { classes }, null);
+        Class<?> c = loader.loadClass(Base.class.getName());
+        assertNotSame( Base.class, c );
+        assertEquals( "{\"id\":0}", readAndWrite(JsonBinder.of(c), "{}") );
+        WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        c = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull( ref.get() );
+    }
+
+    private static <T> String readAndWrite(JsonBinder<T> binder, String json) {
+        return binder.toJson(binder.read(json));
+    }
+
+}
@@ -0,0 +1,272 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class JsonCborTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) bytes[i] = (byte) values[i];
+        return bytes;
+    }
+
+    private static JsonValue roundTrip(JsonValue v) {
+        return JsonCbor.decode(JsonCbor.encode(v));
+    }
+
+    /**
+     * エンコード結果のバイト列が CBOR の仕様どおりであることを確認する.
+     */
+    @Test
+    public void testEncodedBytes() {
+        JsonValue v = JsonParser.parse("[0,23,24,-1,-25,\"abc\",\"abc\",\"ab\",1.5,true,false,null,{}]");
+        assertArrayEquals( bytes(
+                0xD9, 0x01, 0x00, // tag 256 (stringref namespace)
+                0x8D,             // array (13)
+                0x00, 0x17, 0x18, 0x18, 0x20, 0x38, 0x18,
+                0x63, 'a', 'b', 'c',
+                0xD8, 0x19, 0x00, // stringref 0
+                0x62, 'a', 'b',   // 短いので参照しない
+                0xC4, 0x82, 0x20, 0x0F, // decimal fraction [-1, 15]
+                0xF5, 0xF4, 0xF6, 0xA0), JsonCbor.encode(v) );
+
+        JsonArray a = new JsonArray();
+        a.add(new JsonNumber(1.5));
+        assertArrayEquals( bytes(0xD9, 0x01, 0x00, 0x81, 0xFB, 0x3F, 0xF8, 0, 0, 0, 0, 0, 0),
+                JsonCbor.encode(a) );
+    }
+
+    /**
+     * 各種の値を変換して戻した結果が元の値と等しいことを確認する.
+     */
+    @Test
+    public void testRoundTrip() {
+        String json = "{\"id\":1234567890123,\"neg\":-9223372036854775808,\"max\":9223372036854775807," +
+                "\"big\":123456789012345678901234567890,\"nbig\":-18446744073709551617," +
+                "\"dec\":-0.00123,\"exp\":1.0E+10,\"bigdec\":1234567890123456789012.5," +
+                "\"str\":\"\\u3042\\uD83D\\uDE00\\\"\\n\",\"empty\":\"\",\"arr\":[[],{},[null,true,false]]," +
+                "\"nested\":{\"id\":2,\"str\":\"\\u3042\\uD83D\\uDE00\\\"\\n\"}}";
+        JsonValue v = JsonParser.parse(json);
+        JsonValue decoded = roundTrip(v);
+        assertEquals( v, decoded );
+        assertEquals( JsonSerializer.serialize(v), JsonSerializer.serialize(decoded) );
+        // scale も保たれる
+        assertEquals( new BigDecimal("1.0E+10").scale(), decoded.objectValue().get("exp").numberValue().scale() );
+
+        JsonArray a = new JsonArray();
+        a.add(new JsonNumber(0.1));
+        a.add(new JsonNumber(-1e300));
+        a.add(new JsonNumber(Long.MIN_VALUE));
+        a.add(new JsonNumber(new BigDecimal("-1e-400")));
+        JsonValue d = roundTrip(a);
+        assertEquals( 0.1, d.arrayValue().get(0).numberValue().doubleValue(), 0 );
+        assertEquals( a, d );
+
+        // 最上位が object や array でなくてもよい
+        assertEquals( new JsonString("top"), roundTrip(new JsonString("top")) );
+        assertEquals( JsonNull.VALUE, roundTrip(JsonNull.VALUE) );
+    }
+
+    /**
+     * 繰り返し現れる string が参照として格納され, decode 結果で同じ String オブジェクトが使われることを確認する.
+     */
+    @Test
+    public void testStringRef() {
+        StringBuilder sb = new StringBuilder("[");
+        // 表の大きさが 24 や 256 を超えて参照の条件が変わる場合も確認する
+        for (int i = 0; i < 600; i++) {
+            if (i != 0) sb.append(',');
+            sb.append("{\"key_name\":\"v").append(i % 300).append("\",\"k").append(i % 300).append("\":").append(i).append('}');
+        }
+        sb.append(']');
+        JsonValue v = JsonParser.parse(sb.toString());
+        byte[] cbor = JsonCbor.encode(v);
+        JsonValue decoded = JsonCbor.decode(cbor);
+        assertEquals( v, decoded );
+        assertTrue( cbor.length < sb.length() );
+
+        JsonArray a = decoded.arrayValue();
+        String key0 = a.get(0).objectValue().keyAt(0);
+        String key1 = a.get(1).objectValue().keyAt(0);
+        assertEquals( "key_name", key0 );
+        assertSame( key0, key1 );
+        assertSame( a.get(11).objectValue().get("key_name").stringValue(),
+                a.get(311).objectValue().get("key_name").stringValue() );
+    }
+
+    /**
+     * OutputStream への書き出しや ByteBuffer からの読み込みが, バイト配列の場合と同じ結果になることを確認する.
+     */
+    @Test
+    public void testStreamAndBuffer() throws IOException {
+        StringBuilder longStr = new StringBuilder();
+        for (int i = 0; i < 10000; i++) longStr.append(i % 2 == 0 ? "\u3042" : "\uD83D\uDE00");
+        JsonArray a = new JsonArray();
+        for (int i = 0; i < 3000; i++) {
+            a.add(new JsonNumber(i * 1000L));
+        }
+        a.add(new JsonString(longStr.toString()));
+        a.add(new JsonNumber(new BigDecimal("1e5000").add(BigDecimal.ONE)));
+        byte[] expected = JsonCbor.encode(a);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonCbor.encode(a, out);
+        assertArrayEquals( expected, out.toByteArray() );
+        assertEquals( a, JsonCbor.decode(expected) );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(expected.length + 2);
+        direct.put((byte) 0).put(expected).flip().position(1);
+        assertEquals( a, JsonCbor.decode(direct) );
+        assertEquals( 1, direct.position() );
+        byte[] padded = new byte[expected.length + 4];
+        System.arraycopy(expected, 0, padded, 2, expected.length);
+        assertEquals( a, JsonCbor.decode(padded, 2, expected.length) );
+        assertEquals( a, JsonCbor.decode(ByteBuffer.wrap(padded, 2, expected.length)) );
+    }
+
+    /**
+     * 他の CBOR エンコーダーが生成する形式 (長さを前置しない array や map, 半精度の浮動小数点数, タグなど) を読めることを確認する.
+     */
+    @Test
+    public void testDecodeOtherForms() {
+        // 55799({_ "a": [_ 1.5 (half), 2.5 (single)], "b": 2(h'010000000000000000')})
+        JsonValue v = JsonCbor.decode(bytes(0xD9, 0xD9, 0xF7, 0xBF,
+                0x61, 'a', 0x9F, 0xF9, 0x3E, 0x00, 0xFA, 0x40, 0x20, 0x00, 0x00, 0xFF,
+                0x61, 'b', 0xC2, 0x49, 0x01, 0, 0, 0, 0, 0, 0, 0, 0,
+                0xFF));
+        assertEquals( JsonParser.parse("{\"a\":[1.5,2.5],\"b\":18446744073709551616}"), v );
+        // 符号なしの 64 ビット整数
+        assertEquals( new JsonNumber(new BigDecimal("18446744073709551615")),
+                JsonCbor.decode(bytes(0x1B, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF)) );
+        assertEquals( new JsonNumber(new BigDecimal("-18446744073709551616")),
+                JsonCbor.decode(bytes(0x3B, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF)) );
+        // キーが重複している場合は後のものを使用する
+        assertEquals( JsonParser.parse("{\"a\":2}"), JsonCbor.decode(bytes(0xA2, 0x61, 'a', 0x01, 0x61, 'a', 0x02)) );
+    }
+
+    /**
+     * 不正なバイト列や JSON の値として表せない値の場合に例外が発生することを確認する.
+     */
+    @Test
+    public void testInvalidData() {
+        byte[][] invalids = {
+            bytes(),
+            bytes(0x82, 0x01),                    // 要素が足りない
+            bytes(0x01, 0x02),                    // 余分なデータ
+            bytes(0x41, 0x00),                    // byte string
+            bytes(0xA1, 0x01, 0x02),              // キーが整数
+            bytes(0x62, 0xC3, 0x28),              // 不正な UTF-8
+            bytes(0x63, 0xED, 0xA0, 0x80),        // サロゲートの code point
+            bytes(0x7F, 0x61, 'a', 0xFF),         // 長さを前置しない string
+            bytes(0xF9, 0x7C, 0x00),              // Infinity
+            bytes(0xF7),                          // undefined
+            bytes(0xFF),                          // break
+            bytes(0xD8, 0x19, 0x00),              // 名前空間の外の stringref
+            bytes(0x9B, 0x7F, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF), // 巨大な要素数
+            bytes(0xC4, 0x82, 0x01, 0xF9, 0x3E, 0x00), // 仮数が整数でない decimal fraction
+        };
+        for (byte[] invalid : invalids) {
+            try {
+                JsonCbor.decode(invalid);
+                fail( "Must throw an exception: " + Arrays.toString(invalid) );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+    }
+
+    /**
+     * 対になっていないサロゲートを含む string は, 値を変えて書き出さずに例外が発生することを確認する.
+     */
+    @Test
+    public void testUnpairedSurrogate() throws IOException {
+        String[] invalids = { "a\uD800b", "\uDC00", "a\uD800", "\uDC00\uD800" };
+        for (String invalid : invalids) {
+            JsonArray a = new JsonArray();
+            a.add(new JsonString(invalid));
+            try {
+                JsonCbor.encode(a);
+                fail( invalid );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+            JsonObject o = new JsonObject();
+            o.put(invalid, JsonNull.VALUE);
+            try {
+                JsonCbor.encode(o, new ByteArrayOutputStream());
+                fail( invalid );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+        try {
+            JsonCbor.encode(JsonParser.parse("[\"a\\ud800b\"]"));
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+        // サロゲートペアは 4 バイトの UTF-8 になる
+        JsonValue pair = JsonParser.parse("[\"\\uD83D\\uDE00\"]");
+        assertEquals( pair, roundTrip(pair) );
+    }
+
+    /**
+     * 入れ子が深すぎるデータの場合に, スタックオーバーフローではなく例外が発生することを確認する.
+     */
+    @Test
+    public void testDeepNesting() {
+        int[] heads = { 0x81, 0x9F, 0xA1, 0xC6, 0xD9 };
+        for (int head : heads) {
+            byte[] deep = new byte[100000];
+            for (int i = 0; i < deep.length; i++) {
+                // map の場合はキーと値の組, stringref の名前空間の場合はタグ番号が続く
+                deep[i] = (byte) (head == 0xA1 ? (i % 3 == 0 ? 0xA1 : i % 3 == 1 ? 0x61 : 'k') :
+                        head == 0xD9 ? (i % 3 == 0 ? 0xD9 : i % 3 == 1 ? 0x01 : 0x00) : head);
+            }
+            try {
+                JsonCbor.decode(deep);
+                fail( "Must throw an exception: " + Integer.toHexString(head) );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+
+        // 上限までの深さなら読める (最上位の stringref の名前空間のタグを含む)
+        JsonArray root = new JsonArray();
+        JsonArray leaf = root;
+        for (int i = 1; i < JsonCbor.MAX_NESTING_DEPTH - 1; i++) {
+            JsonArray child = new JsonArray();
+            leaf.add(child);
+            leaf = child;
+        }
+        assertEquals( root, roundTrip(root) );
+        leaf.add(new JsonArray());
+        try {
+            roundTrip(root);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 再帰的な構造を持つ場合に例外が発生することを確認する.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testRecursiveStructure() {
+        JsonArray a = new JsonArray();
+        JsonArray b = new JsonArray();
+        a.add(b);
+        b.add(a);
+        JsonCbor.encode(a);
+    }
+
+}
@@ -0,0 +1,105 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import info.vividcode.util.json.JsonEventReader.Event;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class JsonEventReaderTest {
+
+    /**
+     * イベントの列が JSON テキストの構造に対応することをテストする.
+     */
+    @Test
+    public void testEvents() throws IOException {
+        JsonEventReader r = new JsonEventReader(new StringReader(
+                "{ \"a\" : [ 1, \"str\", true, false, null ], \"b\" : {} }"));
+        assertEquals( Event.START_OBJECT, r.next() );
+        assertEquals( 1, r.getDepth() );
+        assertEquals( Event.FIELD_NAME, r.next() );
+        assertEquals( "a", r.getString() );
+        assertEquals( Event.START_ARRAY, r.next() );
+        assertEquals( 2, r.getDepth() );
+        assertEquals( Event.VALUE_NUMBER, r.next() );
+        assertEquals( new BigDecimal(1), r.getNumber() );
+        assertEquals( Event.VALUE_STRING, r.next() );
+        assertEquals( "str", r.getString() );
+        assertEquals( Event.VALUE_TRUE, r.next() );
+        assertEquals( Event.VALUE_FALSE, r.next() );
+        assertEquals( Event.VALUE_NULL, r.next() );
+        assertEquals( Event.END_ARRAY, r.next() );
+        assertEquals( Event.FIELD_NAME, r.next() );
+        assertEquals( "b", r.getString() );
+        assertEquals( Event.START_OBJECT, r.next() );
+        assertEquals( Event.END_OBJECT, r.next() );
+        assertEquals( Event.END_OBJECT, r.next() );
+        assertEquals( 0, r.getDepth() );
+        assertNull( r.next() );
+        assertNull( r.next() );
+    }
+
+    /**
+     * 要素をひとつずつ JsonValue として読めることと, 読み飛ばせることをテストする.
+     */
+    @Test
+    public void testReadValueAndSkipValue() throws IOException {
+        String jsonString = "[ { \"id\" : 1, \"tags\" : [ \"x\" ] }, [ [ 2 ] ], { \"id\" : 3 } ]";
+        JsonArray expected = JsonParser.parse(jsonString).arrayValue();
+        JsonEventReader r = new JsonEventReader(new StringReader(jsonString));
+        assertEquals( Event.START_ARRAY, r.next() );
+        assertEquals( Event.START_OBJECT, r.next() );
+        assertEquals( expected.get(0), r.readValue() );
+        assertEquals( Event.END_OBJECT, r.getEvent() );
+        assertEquals( Event.START_ARRAY, r.next() );
+        r.skipValue();
+        assertEquals( Event.END_ARRAY, r.getEvent() );
+        assertEquals( Event.START_OBJECT, r.next() );
+        assertEquals( expected.get(2), r.readValue() );
+        assertEquals( Event.END_ARRAY, r.next() );
+        assertNull( r.next() );
+    }
+
+    /**
+     * InputStream から UTF-8 の JSON テキストを読めることをテストする.
+     * 内部のバッファより長い文字列で, サロゲートペアがバッファの境界をまたぐ場合も確認する.
+     */
+    @Test
+    public void testInputStream() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) sb.append(i % 2 == 0 ? "𠮷" : "a");
+        String longString = sb.toString();
+        byte[] bytes = ("[ \"" + longString + "\", \"日本語\" ]").getBytes(Charset.forName("UTF-8"));
+        JsonEventReader r = new JsonEventReader(new ByteArrayInputStream(bytes));
+        JsonArray jarray = (r.next() == Event.START_ARRAY ? r.readValue().arrayValue() : null);
+        assertEquals( longString, jarray.get(0).stringValue() );
+        assertEquals( "日本語", jarray.get(1).stringValue() );
+        assertNull( r.next() );
+    }
+
+    /**
+     * 構造が不正な場合の例外発生をテストする.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testInvalidStructure() throws IOException {
+        JsonEventReader r = new JsonEventReader(new StringReader("{ \"a\" : 1 \"b\" : 2 }"));
+        while (r.next() != null);
+    }
+
+    /**
+     * 最上位の値の後に余計なトークンがある場合の例外発生をテストする.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testTrailingToken() throws IOException {
+        JsonEventReader r = new JsonEventReader(new StringReader("[] []"));
+        while (r.next() != null);
+    }
+
+}
@@ -0,0 +1,155 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class JsonNumberTest {
+
+    private static JsonNumber parseNumber(String s) {
+        return (JsonNumber) JsonParser.parse("[" + s + "]").arrayValue().get(0);
+    }
+
+    @Test
+    public void testValueType() {
+        assertEquals( JsonValue.ValueType.NUMBER_VALUE,
+                new JsonNumber(BigDecimal.ONE).valueType() );
+    }
+
+    /**
+     * パースした整数の値を BigDecimal を経由せずに取得できることをテストする.
+     */
+    @Test
+    public void testParsedIntegerAccessors() {
+        JsonNumber n = parseNumber("530000000000000000");
+        assertEquals( 530000000000000000L, n.longValue() );
+        assertEquals( 5.3e17, n.doubleValue(), 0.0 );
+        assertEquals( new BigDecimal("530000000000000000"), n.numberValue() );
+
+        assertEquals( Long.MAX_VALUE, parseNumber("9223372036854775807").longValue() );
+        assertEquals( -200, parseNumber("-200").intValue() );
+    }
+
+    /**
+     * long で表せない number の値の取得をテストする.
+     */
+    @Test
+    public void testParsedNonIntegerAccessors() {
+        JsonNumber n = parseNumber("8888.8888E-10");
+        assertEquals( new BigDecimal("8888.8888E-10"), n.numberValue() );
+        assertEquals( 8888.8888E-10, n.doubleValue(), 0.0 );
+        assertEquals( 0L, n.longValue() );
+
+        JsonNumber big = parseNumber("9223372036854775808");
+        assertEquals( new BigDecimal("9223372036854775808"), big.numberValue() );
+        assertEquals( 5, parseNumber("5.60").intValue() );
+    }
+
+    /**
+     * 表記から numberValue() で生成した BigDecimal オブジェクトが再利用されることをテストする.
+     */
+    @Test
+    public void testNumberValueIsCached() {
+        JsonNumber n = parseNumber("5.60");
+        assertSame( n.numberValue(), n.numberValue() );
+    }
+
+    /**
+     * 値の保持の仕方によらず, 同じ BigDecimal の値を持つ JsonNumber が等しいことをテストする.
+     */
+    @Test
+    public void testEquals() {
+        assertEquals( new JsonNumber(new BigDecimal(100)), parseNumber("100") );
+        assertEquals( parseNumber("100"), new JsonNumber(new BigDecimal(100)) );
+        assertEquals( parseNumber("-0"), parseNumber("0") );
+        assertEquals( new JsonNumber(new BigDecimal("5.60")), parseNumber("5.60") );
+        assertFalse( parseNumber("5.60").equals(parseNumber("5.6")) );
+        assertFalse( parseNumber("1").equals(parseNumber("2")) );
+        assertEquals( new JsonNumber(-0.0), new JsonNumber(0.0) );
+        assertEquals( new JsonNumber(1.5), parseNumber("1.5") );
+        assertEquals( new JsonNumber(100.0), new JsonNumber(100) );
+    }
+
+    /**
+     * double の値から生成した JsonNumber との比較が, 値を正確に比較した結果になることをテストする.
+     * (double に変換して比較すると推移律が成り立たない.)
+     */
+    @Test
+    public void testEqualsIsExact() {
+        JsonNumber l1 = new JsonNumber(9007199254740993L);
+        JsonNumber d = new JsonNumber(9007199254740992.0);
+        JsonNumber l2 = new JsonNumber(9007199254740992L);
+        assertFalse( l1.equals(d) );
+        assertFalse( d.equals(l1) );
+        assertEquals( d, l2 );
+        assertEquals( l2, d );
+
+        JsonNumber one = new JsonNumber(1.0);
+        assertFalse( one.equals(new JsonNumber(new BigDecimal("1.0"))) );
+        assertFalse( one.equals(new JsonNumber(new BigDecimal("1.00"))) );
+        assertEquals( one, new JsonNumber(BigDecimal.ONE) );
+        assertFalse( new JsonNumber(0.1).equals(parseNumber("0.1")) );
+        assertEquals( new JsonNumber(0.1), new JsonNumber(new BigDecimal(0.1)) );
+    }
+
+    /**
+     * long や double の値から生成した JsonNumber の値の取得をテストする.
+     */
+    @Test
+    public void testPrimitiveConstructors() {
+        JsonNumber l = new JsonNumber(-1234567890123L);
+        assertEquals( -1234567890123L, l.longValue() );
+        assertEquals( new BigDecimal(-1234567890123L), l.numberValue() );
+
+        JsonNumber d = new JsonNumber(0.1);
+        assertEquals( 0.1, d.doubleValue(), 0.0 );
+        assertEquals( new BigDecimal(0.1), d.numberValue() );
+        assertEquals( 0, d.longValue() );
+    }
+
+    /**
+     * 等しい JsonNumber どうしは, 値の保持の仕方によらず longValue() と intValue() も等しいことをテストする.
+     * (long の範囲に収まらない値の場合も含む.)
+     */
+    @Test
+    public void testLongValueOutOfRange() {
+        JsonNumber d = new JsonNumber(1e20);
+        JsonNumber parsed = parseNumber("100000000000000000000");
+        assertEquals( d, parsed );
+        assertEquals( parsed.longValue(), d.longValue() );
+        assertEquals( new BigDecimal("1e20").longValue(), d.longValue() );
+        assertEquals( parsed.intValue(), d.intValue() );
+        assertEquals( new BigDecimal(-1e30).longValue(), new JsonNumber(-1e30).longValue() );
+        assertEquals( Long.MIN_VALUE, new JsonNumber(-0x1p63).longValue() );
+        assertEquals( Long.MIN_VALUE, new JsonNumber(0x1p63).longValue() );
+        assertEquals( -12, new JsonNumber(-12.9).longValue() );
+    }
+
+    /**
+     * 無限大や NaN から JsonNumber を生成できないことをテストする.
+     */
+    @Test( expected = NumberFormatException.class )
+    public void testNaN() {
+        new JsonNumber(Double.NaN);
+    }
+
+    /**
+     * double の値から生成した JsonNumber をシリアライズしてパースした結果の doubleValue() が, 元の値と等しいことをテストする.
+     */
+    @Test
+    public void testDoubleRoundTrip() {
+        double[] values = { 0.1, -0.0, 1e10, 1.7976931348623157E308, 4.9E-324, -123.456 };
+        for (double v : values) {
+            JsonArray jarray = new JsonArray();
+            jarray.add(new JsonNumber(v));
+            String json = JsonSerializer.serialize(jarray);
+            JsonNumber n = (JsonNumber) JsonParser.parse(json).arrayValue().get(0);
+            assertEquals( json, v, n.doubleValue(), 0.0 );
+            assertEquals( json, new JsonNumber(v), new JsonNumber(n.doubleValue()) );
+        }
+    }
+
+}
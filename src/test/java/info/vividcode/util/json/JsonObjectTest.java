@@ -0,0 +1,121 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonObjectTest {
+
+    @Test
+    public void testValueType() {
+        assertEquals( JsonValue.ValueType.OBJECT_VALUE,
+                new JsonObject().valueType() );
+    }
+
+    /**
+     * 要素が追加した順に保持されることを, ハッシュ表を使用する要素数まで含めて確認する.
+     */
+    @Test
+    public void testInsertionOrder() {
+        JsonObject jobj = new JsonObject();
+        StringBuilder expected = new StringBuilder("{");
+        for (int i = 0; i < 40; i++) {
+            String key = "k" + (40 - i);
+            jobj.put( key, new JsonNumber(i) );
+            if (i != 0) expected.append(',');
+            expected.append('"').append(key).append("\":").append(i);
+        }
+        expected.append('}');
+        assertEquals( 40, jobj.size() );
+        assertEquals( expected.toString(), JsonSerializer.serialize(jobj) );
+        int i = 0;
+        for (String key : jobj.keySet()) {
+            assertEquals( "k" + (40 - i), key );
+            assertEquals( new JsonNumber(i), jobj.get(key) );
+            i++;
+        }
+        // 既存のキーへの put は値を置き換え, 順序は変えない
+        assertEquals( new JsonNumber(0), jobj.put( "k40", JsonNull.VALUE ) );
+        assertEquals( "k40", jobj.keySet().iterator().next() );
+        assertEquals( 40, jobj.size() );
+    }
+
+    /**
+     * 要素の削除をテストする. 削除後もキーで値を探せる.
+     */
+    @Test
+    public void testRemove() {
+        JsonObject jobj = new JsonObject();
+        for (int i = 0; i < 20; i++) jobj.put( "k" + i, new JsonNumber(i) );
+        for (int i = 0; i < 20; i += 2) assertEquals( new JsonNumber(i), jobj.remove("k" + i) );
+        assertNull( jobj.remove("k0") );
+        assertEquals( 10, jobj.size() );
+        for (int i = 0; i < 20; i++) {
+            assertEquals( i % 2 == 1, jobj.containsKey("k" + i) );
+        }
+        assertEquals( "k1", jobj.keySet().iterator().next() );
+
+        Iterator<Map.Entry<String,JsonValue>> it = jobj.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String,JsonValue> e = it.next();
+            if (e.getKey().equals("k3")) {
+                it.remove();
+            } else {
+                e.setValue( JsonBoolean.TRUE );
+            }
+        }
+        assertEquals( 9, jobj.size() );
+        assertFalse( jobj.containsKey("k3") );
+        assertEquals( JsonBoolean.TRUE, jobj.get("k19") );
+        jobj.clear();
+        assertTrue( jobj.isEmpty() );
+        assertNull( jobj.get("k1") );
+    }
+
+    /**
+     * 同じ要素を持つ他の Map と等しいことを確認する.
+     */
+    @Test
+    public void testEqualsAndHashCode() {
+        JsonObject jobj = new JsonObject();
+        Map<String,JsonValue> map = new HashMap<String,JsonValue>();
+        for (int i = 0; i < 10; i++) jobj.put( "k" + i, new JsonString("v" + i) );
+        for (int i = 9; 0 <= i; i--) map.put( "k" + i, jobj.get("k" + i) );
+        assertEquals( map, jobj );
+        assertEquals( jobj, map );
+        assertEquals( map.hashCode(), jobj.hashCode() );
+        assertEquals( jobj, new JsonObject(map) );
+        assertEquals( jobj, jobj.clone() );
+        jobj.put( "k0", new JsonNumber(new BigDecimal(0)) );
+        assertFalse( jobj.equals(map) );
+    }
+
+    /**
+     * Java の直列化で保存し, 復元できることを確認する.
+     */
+    @Test
+    public void testSerializable() throws IOException, ClassNotFoundException {
+        JsonObject jobj = new JsonObject();
+        for (int i = 0; i < 10; i++) jobj.put( "k" + i, new JsonObject() );
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(jobj);
+        out.close();
+        Object restored = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals( jobj, restored );
+        assertEquals( JsonSerializer.serialize(jobj), JsonSerializer.serialize((JsonObject) restored) );
+    }
+
+}
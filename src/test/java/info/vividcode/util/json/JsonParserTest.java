@@ -4,6 +4,10 @@ package info.vividcode.util.json;
 import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -29,6 +33,30 @@ public class JsonParserTest {
         JsonParser.parse(invalidJsonString);
     }
 
+    /**
+     * 無効な JSON 文字列のパージングの際の例外発生をテストする.
+     * 最上位の値の後に余計なトークンがある場合.
+     */
+    @Test
+    public void testInvalidStringTrailingToken() {
+        String[] invalidJsonStrings = { "[] 1", "{}{}", "[1]]" };
+        for (String invalidJsonString : invalidJsonStrings) {
+            try {
+                JsonParser.parse(invalidJsonString);
+                fail( invalidJsonString );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+            try {
+                byte[] bytes = invalidJsonString.getBytes(Charset.forName("UTF-8"));
+                JsonParser.parse(bytes, 0, bytes.length);
+                fail( invalidJsonString );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+    }
+
     /**
      * 空の JSON Array のパージングをテストする.
      */
@@ -66,4 +94,348 @@ public class JsonParserTest {
         }
     }
 
+    /**
+     * UTF-8 のバイト列のパージングをテストする.
+     * 配列の一部分だけをパースできることも確認する.
+     */
+    @Test
+    public void testUtf8BytesParsing() {
+        byte[] bytes = "xx{ \"テスト\" : [ \"𠮷野家\", 5.60, true ] }yy".getBytes(Charset.forName("UTF-8"));
+        JsonObject jobject = JsonParser.parse(bytes, 2, bytes.length - 4).objectValue();
+        JsonArray jarray = jobject.get("テスト").arrayValue();
+        assertEquals( "𠮷野家", jarray.get(0).stringValue() );
+        assertEquals( new BigDecimal("5.60"), jarray.get(1).numberValue() );
+        assertEquals( Boolean.TRUE, jarray.get(2).booleanValue() );
+    }
+
+    /**
+     * ByteBuffer (heap buffer, direct buffer) のパージングをテストする.
+     */
+    @Test
+    public void testByteBufferParsing() {
+        String jsonString = "[ \"日本語\", -0, { \"a\" : null } ]";
+        JsonValue expected = JsonParser.parse(jsonString);
+        byte[] bytes = jsonString.getBytes(Charset.forName("UTF-8"));
+
+        ByteBuffer heap = ByteBuffer.allocate(bytes.length + 4);
+        heap.put(new byte[] { 0x20, 0x20 }).put(bytes).flip();
+        heap.position(2);
+        assertEquals( expected, JsonParser.parse(heap) );
+        assertEquals( 2, heap.position() );
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals( expected, JsonParser.parse(direct) );
+        assertEquals( 0, direct.position() );
+    }
+
+    /**
+     * 不正な UTF-8 のバイト列のパージングの際の例外発生をテストする.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testInvalidUtf8Bytes() {
+        // 0xC0 0xA2 は '"' の冗長な表現
+        byte[] bytes = { 0x5B, 0x22, (byte) 0xC0, (byte) 0xA2, 0x22, 0x5D };
+        JsonParser.parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * エスケープを含む JSON String のパージングをテストする.
+     * サロゲートペアを表す 2 つの \\u エスケープも確認する.
+     */
+    @Test
+    public void testStringEscapeParsing() {
+        String jsonString = "[ \"\\\" \\\\ \\/ \\b \\f \\n \\r \\t \\u3042\\u00e9 \\uD842\\uDFB7\" ]";
+        JsonValue v = JsonParser.parse(jsonString).arrayValue().get(0);
+        assertEquals( "\" \\ / \b \f \n \r \t あé 𠮷", v.stringValue() );
+    }
+
+    /**
+     * 不正な \\u エスケープのパージングの際の例外発生をテストする.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testInvalidUnicodeEscape() {
+        JsonParser.parse("[ \"\\u30G2\" ]");
+    }
+
+    /**
+     * 途中で終わっている JSON 文字列のパージングの際の例外発生をテストする.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testInvalidStringUnterminated() {
+        JsonParser.parse("{ \"a\" : [ 1, 2 ");
+    }
+
+    /**
+     * キーのキャッシュを使用したパージングをテストする.
+     * 同じキーには同じ String オブジェクトが使われ, 長いキーはキャッシュされない.
+     */
+    @Test
+    public void testKeyCache() {
+        JsonKeyCache cache = new JsonKeyCache(16, 8);
+        String jsonString = "[ { \"id\" : 1, \"a\\u0062c\" : 2, \"long_key_name\" : 3 }, { \"id\" : 4, \"abc\" : 5 } ]";
+        JsonArray jarray = JsonParser.parse(jsonString, cache).arrayValue();
+        assertEquals( JsonParser.parse(jsonString), jarray );
+        String[] keys1 = jarray.get(0).objectValue().keySet().toArray(new String[0]);
+        String[] keys2 = jarray.get(1).objectValue().keySet().toArray(new String[0]);
+        assertSame( keys1[0], keys2[0] );
+        assertSame( keys1[1], keys2[1] );
+        byte[] bytes = jsonString.getBytes(Charset.forName("UTF-8"));
+        JsonArray jarray2 = JsonParser.parse(bytes, 0, bytes.length, cache).arrayValue();
+        String[] keys3 = jarray2.get(0).objectValue().keySet().toArray(new String[0]);
+        assertSame( keys1[0], keys3[0] );
+        assertNotSame( keys1[2], keys3[2] );
+        assertEquals( keys1[2], keys3[2] );
+    }
+
+    /**
+     * 最上位の array の要素を並列にパースした結果が, 1 つのスレッドでパースした結果と一致することを確認する.
+     * 要素の区切りを探す際に, string の中の括弧や "," やエスケープされた '"' に惑わされないことも確認する.
+     */
+    @Test
+    public void testParseParallel() throws InterruptedException {
+        StringBuilder sb = new StringBuilder(" [ ");
+        for (int i = 0; i < 5000; i++) {
+            if (i != 0) sb.append(", ");
+            sb.append("{ \"id\" : ").append(i).append(", \"text\" : \"],[\\\"}{,\\\\\", ")
+                    .append("\"nested\" : [ [ ], { \"a\" : [ 1, 2 ] } ], \"𠮷\" : null }");
+        }
+        sb.append(" ] ");
+        String jsonString = sb.toString();
+        assertTrue( 2 * JsonParser.MIN_PARALLEL_CHUNK_LENGTH < jsonString.length() );
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            JsonValue expected = JsonParser.parse(jsonString);
+            assertEquals( expected, JsonParser.parseParallel(jsonString, executor) );
+            assertEquals( JsonParser.parse("[]"), JsonParser.parseParallel("[]", executor) );
+            assertEquals( JsonParser.parse("{\"a\":[]}"), JsonParser.parseParallel("{\"a\":[]}", executor) );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 範囲の最後の要素が null, true, false のリテラルである場合も, 並列にパースできることを確認する.
+     */
+    @Test
+    public void testParseParallelLiterals() throws InterruptedException {
+        String[] literals = { "null", "true", "false", "0", "\"s\"" };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String literal : literals) {
+                StringBuilder sb = new StringBuilder("[");
+                for (int i = 0; i < 80000; i++) {
+                    if (i != 0) sb.append(i % 3 == 0 ? " , " : ",");
+                    sb.append(literal);
+                }
+                sb.append(" ]");
+                String jsonString = sb.toString();
+                assertTrue( 2 * JsonParser.MIN_PARALLEL_CHUNK_LENGTH < jsonString.length() );
+                JsonValue expected = JsonParser.parse(jsonString);
+                assertEquals( literal, expected, JsonParser.parseParallel(jsonString, executor) );
+            }
+            // 末尾の要素がリテラルで, "]" の直前に空白がない場合
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < 40000; i++) sb.append(i % 2 == 0 ? "true," : "false,");
+            sb.append("null]");
+            assertEquals( JsonParser.parse(sb.toString()), JsonParser.parseParallel(sb.toString(), executor) );
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 並列にパースする場合も, 不正な JSON 文字列で例外が発生することを確認する.
+     */
+    @Test
+    public void testParseParallelInvalid() throws InterruptedException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 50000; i++) sb.append(i).append(",");
+        String[] invalidJsonStrings = {
+            sb.toString() + "]",
+            sb.toString() + "0",
+            sb.toString() + "0] 1",
+            sb.toString() + "{ ] }",
+            sb.toString().replace("40000,", "40000,,") + "0]",
+            sb.toString() + "0}",                 // 最上位の array の閉じ括弧が "}"
+            sb.toString() + "0]}",
+            sb.toString() + "{ \"a\" : [ } ]",
+            sb.toString().replace("40000,", "40000 null,") + "0]",
+            sb.toString().replace("40000,", "nul,") + "0]",
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String invalidJsonString : invalidJsonStrings) {
+                try {
+                    JsonParser.parseParallel(invalidJsonString, executor);
+                    fail();
+                } catch (InvalidJsonException err) {
+                    // ok
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 構造インデックスを使用した 2 段階のパージングの結果が, 通常のパージングの結果と一致することを確認する.
+     */
+    @Test
+    public void testParseIndexed() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            sb.append("{ \"id\":").append(i * 7919).append(",\"score\" : -").append(i).append(".5e-3 ,")
+                    .append("\"text\":\"日本語 \\\"quoted\\\" \\\\ \\u3042\\uD842\\uDFB7 𠮷 ").append(i).append("\",")
+                    .append("\"flags\":[true,false,null],\"empty\":{ }}\n,");
+        }
+        sb.append("0]");
+        String jsonString = sb.toString();
+        byte[] bytes = jsonString.getBytes(Charset.forName("UTF-8"));
+        assertEquals( JsonParser.parse(jsonString), JsonParser.parseIndexed(bytes, 0, bytes.length) );
+        String[] smallJsonStrings = { "[]", "{}", " [ 0 ] ", "{\"a\":-0}", "[\"\"]", "[1E+2,\"\\/\"]" };
+        for (String str : smallJsonStrings) {
+            byte[] b = str.getBytes(Charset.forName("UTF-8"));
+            assertEquals( JsonParser.parse(str), JsonParser.parseIndexed(b, 0, b.length) );
+        }
+    }
+
+    /**
+     * 2 段階のパージングでも, 不正な JSON テキストで例外が発生することを確認する.
+     */
+    @Test
+    public void testParseIndexedInvalid() {
+        String[] invalidJsonStrings = {
+            "", "[", "[1,]", "[01]", "[1.]", "[-]", "[1e]", "[tru]", "[truex]", "[nul]", "[1 2]",
+            "[\"abc]", "[\"\\x\"]", "[\"\\u12\"]", "{\"a\" 1}", "{1:2}", "[1}", "[]]", "[\"a\"b]", "[+1]",
+        };
+        for (String str : invalidJsonStrings) {
+            byte[] b = str.getBytes(Charset.forName("UTF-8"));
+            try {
+                JsonParser.parseIndexed(b, 0, b.length);
+                fail( str );
+            } catch (InvalidJsonException err) {
+                // ok
+            } catch (RuntimeException err) {
+                // 最上位の値の後の余計な内容は (parse(String) と同様に) RuntimeException
+                assertEquals( "[]]", str );
+            }
+        }
+        byte[] invalidUtf8 = { '[', '"', (byte) 0xC0, (byte) 0xAF, '"', ']' };
+        try {
+            JsonParser.parseIndexed(invalidUtf8, 0, invalidUtf8.length);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 構造インデックスを使用して, array や object の内容を読み飛ばせることを確認する.
+     */
+    @Test
+    public void testIndexedTokenizerSkip() {
+        byte[] bytes = "[ { \"a\" : [ 1, \"]}\" ] }, 2 ]".getBytes(Charset.forName("UTF-8"));
+        IndexedJsonTokenizer t = new IndexedJsonTokenizer(JsonStructuralIndex.build(bytes, 0, bytes.length));
+        assertEquals( JsonTokenizer.TokenType.BEGIN_ARRAY, t.next() );
+        assertEquals( JsonTokenizer.TokenType.BEGIN_OBJECT, t.next() );
+        t.skipToContainerEnd();
+        assertEquals( JsonTokenizer.TokenType.END_OBJECT, t.next() );
+        assertEquals( JsonTokenizer.TokenType.VALUE_SEPARATER, t.next() );
+        assertEquals( JsonTokenizer.TokenType.NUMBER, t.next() );
+        assertEquals( "2", t.getText() );
+    }
+
+    /**
+     * 遅延パースの結果が, 参照した部分から順に読み込まれ, 通常のパース結果と等しくなることを確認する.
+     */
+    @Test
+    public void testParseLazy() {
+        String str = "{ \"id\" : 1, \"user\" : { \"name\" : \"\u3042\", \"tags\" : [ [], {}, \"x\" ] }, " +
+                "\"list\" : [ { \"a\" : null }, true ] }";
+        byte[] bytes = str.getBytes(Charset.forName("UTF-8"));
+        JsonObject jobj = JsonParser.parseLazy(bytes, 0, bytes.length).objectValue();
+        assertEquals( new JsonNumber(1), jobj.get("id") );
+        // 入れ子の object や array は参照されるまで読み込まれない
+        JsonValue user = jobj.get("user");
+        assertTrue( user instanceof LazyJsonObject );
+        assertEquals( "\u3042", user.objectValue().get("name").stringValue() );
+        assertTrue( user.objectValue().get("tags").arrayValue().get(0) instanceof LazyJsonArray );
+
+        assertEquals( JsonParser.parse(str), jobj );
+        assertEquals( JsonSerializer.serialize(JsonParser.parse(str)),
+                JsonSerializer.serialize(JsonParser.parseLazy(bytes, 0, bytes.length)) );
+
+        // 読み込み前に変更することもできる
+        JsonArray list = JsonParser.parseLazy(bytes, 0, bytes.length).objectValue().get("list").arrayValue();
+        list.add( JsonNull.VALUE );
+        assertEquals( "[{\"a\":null},true,null]", JsonSerializer.serialize(list) );
+    }
+
+    /**
+     * 遅延パースで, 未読の部分の不正な内容が参照した時点で報告されることを確認する.
+     */
+    @Test
+    public void testParseLazyInvalid() {
+        String[] invalidJsonStrings = { "", "1", "[", "[}", "[1,]]", "[] 1", "{\"a\":1 ]" };
+        for (String str : invalidJsonStrings) {
+            byte[] b = str.getBytes(Charset.forName("UTF-8"));
+            try {
+                JsonParser.parseLazy(b, 0, b.length).arrayValue().size();
+                fail( str );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+        byte[] bytes = "[ 1, { \"a\" : [ 01 ] } ]".getBytes(Charset.forName("UTF-8"));
+        JsonArray jarray = JsonParser.parseLazy(bytes, 0, bytes.length).arrayValue();
+        assertEquals( 2, jarray.size() );
+        JsonArray inner = jarray.get(1).objectValue().get("a").arrayValue();
+        for (int i = 0; i < 2; i++) {
+            try {
+                inner.get(0);
+                fail();
+            } catch (InvalidJsonException err) {
+                // 何度参照しても同じように報告される
+            }
+        }
+    }
+
+    /**
+     * JSON Pointer で指定した位置の値だけを取り出せることを確認する.
+     * 経路上にない部分は読み飛ばされ, 取り出した値より後ろの部分は読まれない.
+     */
+    @Test
+    public void testExtract() {
+        String str = "{ \"skip\" : { \"a\" : [ 1, { \"b\" : \"}]\" } ], \"c\" : null }, " +
+                "\"statuses\" : [ { \"id\" : 10, \"user\" : { \"name\" : \"\u3042\" } }, { \"id\" : 20 } ], " +
+                "\"x\" : [ ] }";
+        assertEquals( new JsonNumber(20), JsonParser.extract(str, "/statuses/1/id") );
+        assertEquals( "\u3042", JsonParser.extract(str, "/statuses/0/user/name").stringValue() );
+        assertEquals( JsonParser.parse(str), JsonParser.extract(str, "") );
+        assertEquals( JsonParser.parse(str).objectValue().get("statuses"), JsonParser.extract(str, "/statuses") );
+        assertNull( JsonParser.extract(str, "/statuses/2/id") );
+        assertNull( JsonParser.extract(str, "/statuses/0/id/x") );
+        assertNull( JsonParser.extract(str, "/none") );
+        assertNull( JsonParser.extract(str, "/x/0") );
+
+        byte[] bytes = str.getBytes(Charset.forName("UTF-8"));
+        JsonPointer pointer = JsonPointer.compile("/statuses/0/user");
+        assertEquals( "{\"name\":\"\u3042\"}",
+                JsonSerializer.serialize(JsonParser.extract(bytes, 0, bytes.length, pointer)) );
+
+        // 取り出した値より後ろの不正な内容は報告されない
+        assertEquals( new JsonNumber(1), JsonParser.extract("[ 1, ?", "/0") );
+        // 取り出した値より前の不正な内容は報告される
+        String[] invalidJsonStrings = { "", "1", "[ [ 1 ", "[ [ 1 } ?", "[ \"a\" \"b\", 2 ]", "{ 1 : 2, \"a\" : 3 }" };
+        for (String invalid : invalidJsonStrings) {
+            try {
+                JsonParser.extract(invalid, "/1");
+                fail( invalid );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+    }
+
 }
@@ -0,0 +1,58 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class JsonPointerTest {
+
+    private static final String JSON_STRING =
+            "{ \"foo\" : [ \"bar\", \"baz\" ], \"\" : 0, \"a/b\" : 1, \"c%d\" : 2, \"e^f\" : 3, " +
+            "\"g|h\" : 4, \"i\\\\j\" : 5, \"k\\\"l\" : 6, \" \" : 7, \"m~n\" : 8 }";
+
+    /**
+     * RFC 6901 の例の JSON Pointer がそれぞれの値を指すことを確認する.
+     */
+    @Test
+    public void testEvaluate() {
+        JsonValue root = JsonParser.parse(JSON_STRING);
+        assertSame( root, JsonPointer.compile("").evaluate(root) );
+        assertEquals( "[\"bar\",\"baz\"]", JsonSerializer.serialize(JsonPointer.compile("/foo").evaluate(root)) );
+        String[] pointers = { "/foo/0", "/", "/a~1b", "/c%d", "/e^f", "/g|h", "/i\\j", "/k\"l", "/ ", "/m~0n" };
+        Object[] expected = { "bar", 0, 1, 2, 3, 4, 5, 6, 7, 8 };
+        for (int i = 0; i < pointers.length; i++) {
+            JsonValue v = JsonPointer.compile(pointers[i]).evaluate(root);
+            if (expected[i] instanceof String) {
+                assertEquals( pointers[i], expected[i], v.stringValue() );
+            } else {
+                assertEquals( pointers[i], new JsonNumber((Integer) expected[i]), v );
+            }
+        }
+        assertNull( JsonPointer.compile("/foo/2").evaluate(root) );
+        assertNull( JsonPointer.compile("/foo/-").evaluate(root) );
+        assertNull( JsonPointer.compile("/foo/01").evaluate(root) );
+        assertNull( JsonPointer.compile("/foo/0/x").evaluate(root) );
+        assertNull( JsonPointer.compile("/none/x").evaluate(root) );
+    }
+
+    /**
+     * 不正な JSON Pointer の場合の例外発生をテストする.
+     */
+    @Test
+    public void testInvalidPointer() {
+        String[] invalidPointers = { "foo", "/a~", "/a~2", "#/a" };
+        for (String pointer : invalidPointers) {
+            try {
+                JsonPointer.compile(pointer);
+                fail( pointer );
+            } catch (IllegalArgumentException err) {
+                // ok
+            }
+        }
+        assertEquals( JsonPointer.compile("/a~1b/0"), JsonPointer.compile("/a~1b/0") );
+        assertEquals( "/a~1b/0", JsonPointer.compile("/a~1b/0").toString() );
+        assertFalse( JsonPointer.compile("/a~1b").equals(JsonPointer.compile("/a/b")) );
+    }
+
+}
@@ -0,0 +1,74 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JsonProjectionTest {
+
+    private static final String JSON_STRING =
+            "{ \"id\" : 10, \"skip\" : { \"id\" : 0, \"list\" : [ 1, [ 2 ], \"]}\" ] }, " +
+            "\"user\" : { \"name\" : \"\\u3042\", \"tags\" : [ \"a\", \"b\" ] }, " +
+            "\"list\" : [ { \"x\" : 1 }, { \"x\" : 2 }, { \"x\" : 3 } ] }";
+
+    /**
+     * 複数の位置の値を 1 度の走査で取り出し, 指定した順の JsonObject として返すことを確認する.
+     */
+    @Test
+    public void testProject() {
+        JsonProjection projection = JsonProjection.compile(
+                "/list/2/x", "/id", "/user/name", "/none", "/list/0/x", "/user", "/user/tags/1", "/id");
+        JsonObject result = projection.project(JSON_STRING);
+        assertEquals( "{\"/list/2/x\":3,\"/id\":10,\"/user/name\":\"\u3042\",\"/list/0/x\":1," +
+                "\"/user\":{\"name\":\"\u3042\",\"tags\":[\"a\",\"b\"]},\"/user/tags/1\":\"b\"}",
+                JsonSerializer.serialize(result) );
+
+        byte[] bytes = JSON_STRING.getBytes(Charset.forName("UTF-8"));
+        assertEquals( result, projection.project(bytes, 0, bytes.length) );
+
+        // 同じインスタンスを別の JSON テキストに使いまわせる
+        assertEquals( "{\"/id\":1}", JsonSerializer.serialize(projection.project("{ \"id\" : 1, \"list\" : 2 }")) );
+        assertEquals( "{}", JsonSerializer.serialize(projection.project("[ 1, 2 ]")) );
+    }
+
+    /**
+     * ハンドラーに出現順に値が渡され, すべての値が見つかった時点で読むのをやめることを確認する.
+     */
+    @Test
+    public void testProjectWithHandler() {
+        final List<String> found = new ArrayList<String>();
+        JsonProjection.Handler handler = new JsonProjection.Handler() {
+            @Override
+            public void value(JsonPointer pointer, JsonValue value) {
+                JsonArray wrapper = new JsonArray();
+                wrapper.add(value);
+                found.add(pointer + "=" + JsonSerializer.serialize(wrapper));
+            }
+        };
+        JsonProjection projection = JsonProjection.compile("/list/1/x", "/id");
+        projection.project(JSON_STRING + " ?", handler);
+        assertEquals( 2, found.size() );
+        assertEquals( "/id=[10]", found.get(0) );
+        assertEquals( "/list/1/x=[2]", found.get(1) );
+
+        // 最後の値が見つかるまでの部分の不正な内容は報告される
+        try {
+            projection.project("{ \"id\" : 1, \"skip\" : [ 1 2 }, \"list\" : [] }", handler);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+        try {
+            projection.project("{ \"id\" : 1, \"list\" : [ 1, ", handler);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+    }
+
+}
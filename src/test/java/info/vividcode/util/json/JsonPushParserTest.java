@@ -0,0 +1,161 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import info.vividcode.util.json.JsonEventReader.Event;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JsonPushParserTest {
+
+    private static final String JSON_STRING =
+            "{ \"a\" : [ 1, -0.5e+10, \"str\\n\\u3042\\uD842\\uDFB7\", true, false, null ], " +
+            "\"\u65e5\u672c\u8a9e\" : { \"\uD842\uDFB7\" : [ {}, [] ] }, \"n\" : 1234567890123 }";
+
+    /** イベントを文字列として記録するハンドラー */
+    private static class RecordingHandler implements JsonPushParser.Handler {
+        final List<String> records = new ArrayList<String>();
+        @Override
+        public void event(JsonPushParser parser, Event event) {
+            String text = "";
+            if (event == Event.FIELD_NAME || event == Event.VALUE_STRING || event == Event.VALUE_NUMBER) {
+                text = parser.getString();
+            }
+            records.add(event + ":" + text + ":" + parser.getDepth());
+        }
+        @Override
+        public void value(JsonPushParser parser, JsonValue value) {
+            records.add("value");
+        }
+    }
+
+    private static List<String> readAllEvents(String jsonString) throws IOException {
+        List<String> records = new ArrayList<String>();
+        JsonEventReader r = new JsonEventReader(new StringReader(jsonString));
+        Event event;
+        while ((event = r.next()) != null) {
+            String text = "";
+            if (event == Event.FIELD_NAME || event == Event.VALUE_STRING || event == Event.VALUE_NUMBER) {
+                text = r.getString();
+            }
+            records.add(event + ":" + text + ":" + r.getDepth());
+        }
+        return records;
+    }
+
+    /**
+     * どの位置で断片に分割しても (UTF-8 の文字やエスケープの途中を含む),
+     * JsonEventReader と同じイベントの列が通知されることを確認する.
+     */
+    @Test
+    public void testSplitAtEveryPosition() throws IOException {
+        List<String> expected = readAllEvents(JSON_STRING);
+        byte[] bytes = JSON_STRING.getBytes(Charset.forName("UTF-8"));
+        for (int split = 0; split <= bytes.length; split++) {
+            RecordingHandler h = new RecordingHandler();
+            JsonPushParser parser = new JsonPushParser(h);
+            parser.feed(ByteBuffer.wrap(bytes, 0, split));
+            parser.feed(ByteBuffer.wrap(bytes, split, bytes.length - split));
+            assertTrue( parser.isCompleted() );
+            parser.end();
+            assertEquals( "split at " + split, expected, h.records );
+        }
+        // 1 バイトずつ, direct buffer で渡す
+        RecordingHandler h = new RecordingHandler();
+        JsonPushParser parser = new JsonPushParser(h);
+        ByteBuffer buf = ByteBuffer.allocateDirect(1);
+        for (byte b : bytes) {
+            buf.clear();
+            buf.put(b);
+            buf.flip();
+            parser.feed(buf);
+            assertFalse( buf.hasRemaining() );
+        }
+        parser.end();
+        assertEquals( expected, h.records );
+    }
+
+    /**
+     * collectValue で指定した値が, 完成した時点で JsonValue として通知されることを確認する.
+     */
+    @Test
+    public void testCollectValue() {
+        String jsonString = "[ { \"id\" : 1, \"tags\" : [ \"x\", { \"y\" : null } ] }, 2, { \"id\" : 3 } ]";
+        final JsonArray expected = JsonParser.parse(jsonString).arrayValue();
+        final List<JsonValue> values = new ArrayList<JsonValue>();
+        final List<Event> events = new ArrayList<Event>();
+        JsonPushParser parser = new JsonPushParser(new JsonPushParser.Handler() {
+            @Override
+            public void event(JsonPushParser p, Event event) {
+                events.add(event);
+                if (p.getDepth() == 2 && event == Event.START_OBJECT || event == Event.VALUE_NUMBER) {
+                    p.collectValue();
+                }
+            }
+            @Override
+            public void value(JsonPushParser p, JsonValue value) {
+                values.add(value);
+            }
+        });
+        byte[] bytes = jsonString.getBytes(Charset.forName("UTF-8"));
+        for (int i = 0; i < bytes.length; i += 7) {
+            parser.feed(bytes, i, Math.min(7, bytes.length - i));
+            // 最初の要素は, 全体を受け取る前に通知される
+            if (i == 42) assertEquals( 1, values.size() );
+        }
+        parser.end();
+        assertEquals( expected, values );
+        assertEquals( 5, events.size() );
+        assertEquals( Event.END_ARRAY, events.get(4) );
+    }
+
+    /**
+     * 不正な JSON テキストの場合の例外発生をテストする.
+     */
+    @Test
+    public void testInvalid() {
+        String[] invalidJsonStrings = {
+            "", "1", "[", "[1,]", "[01]", "[1.]", "[-]", "[1e]", "[tru]", "[truex]", "[true1]", "[nul]",
+            "[1 2]", "[\"abc]", "[\"\\x\"]", "[\"\\u12\"]", "{\"a\" 1}", "{1:2}", "[1}", "[]]", "[] 1", "[+1]",
+        };
+        for (String str : invalidJsonStrings) {
+            byte[] b = str.getBytes(Charset.forName("UTF-8"));
+            JsonPushParser parser = new JsonPushParser(new RecordingHandler());
+            try {
+                parser.feed(b, 0, b.length);
+                parser.end();
+                fail( str );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+            try {
+                parser.end();
+                fail( str );
+            } catch (IllegalStateException err) {
+                // 失敗した後は使用できない
+            }
+        }
+        byte[][] invalidUtf8 = {
+            { '[', '"', (byte) 0xC0, (byte) 0xAF, '"', ']' },
+            { '[', '"', (byte) 0xE3, (byte) 0x81, '"', ']' },
+            { '[', '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"', ']' },
+        };
+        for (byte[] b : invalidUtf8) {
+            try {
+                new JsonPushParser(new RecordingHandler()).feed(b, 0, b.length);
+                fail();
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+    }
+
+}
@@ -3,7 +3,11 @@ package info.vividcode.util.json;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
 
 import org.junit.Test;
 
@@ -36,4 +40,162 @@ public class JsonSerializerTest {
         JsonParser.parse( JsonSerializer.serialize(sorc) );
     }
 
+    /**
+     * 再帰的な構造が深い位置にある場合や, 再帰的でない深い構造の場合をテストする.
+     * 先祖との比較は一定の深さを超えてから行われる.
+     */
+    @Test
+    public void testDeepStructure() {
+        JsonArray root = new JsonArray();
+        JsonArray leaf = root;
+        for (int i = 0; i < JsonSerializer.CYCLE_CHECK_DEPTH * 3; i++) {
+            JsonArray child = new JsonArray();
+            leaf.add( child );
+            leaf = child;
+        }
+        String json = JsonSerializer.serialize(root);
+        assertEquals( root, JsonParser.parse(json) );
+
+        leaf.add( root.get(0).arrayValue().get(0) );
+        try {
+            JsonSerializer.serialize(root);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 内部のバッファより長い出力を Writer, Appendable, OutputStream に書き出した結果が,
+     * 文字列としてシリアライズした結果と一致することを確認する.
+     */
+    @Test
+    public void testStreamingOutput() throws IOException {
+        JsonArray sorc = new JsonArray();
+        for (int i = 0; i < 1000; i++) {
+            JsonObject jobj = new JsonObject();
+            jobj.put( "name", new JsonString("テスト\t" + i) );
+            jobj.put( "value", new JsonNumber(i) );
+            sorc.add( jobj );
+        }
+        String expected = JsonSerializer.serialize(sorc, true);
+        assertTrue( 4096 < expected.length() );
+
+        StringWriter writer = new StringWriter();
+        JsonSerializer.serialize(sorc, true, writer);
+        assertEquals( expected, writer.toString() );
+
+        StringBuilder sb = new StringBuilder("prefix:");
+        JsonSerializer.serialize(sorc, true, (Appendable) sb);
+        assertEquals( "prefix:" + expected, sb.toString() );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonSerializer.serialize(sorc, true, out);
+        assertEquals( expected, new String(out.toByteArray(), Charset.forName("UTF-8")) );
+        assertEquals( sorc, JsonParser.parse(out.toByteArray(), 0, out.size()) );
+    }
+
+    /**
+     * string のエスケープをテストする.
+     * サロゲートペアはそのまま, ペアになっていないサロゲートは \\uXXXX の形で出力される.
+     */
+    @Test
+    public void testStringEscape() {
+        JsonArray sorc = new JsonArray();
+        sorc.add( new JsonString("\"\\/\b\f\n\r\t\u0000\u001F\u007F") );
+        sorc.add( new JsonString("あ𠮷い") );
+        sorc.add( new JsonString("a\uD842b\uDFB7") );
+        String str = JsonSerializer.serialize(sorc);
+        assertEquals(
+                "[\"\\\"\\\\/\\b\\f\\n\\r\\t\\u0000\\u001F\u007F\",\"あ𠮷い\",\"a\\uD842b\\uDFB7\"]", str );
+        assertEquals( sorc, JsonParser.parse(str) );
+    }
+
+    /**
+     * OutputStream に書き出す場合に, サロゲートペアが内部のバッファの境界をまたいでも
+     * 正しく UTF-8 でエンコードされることを確認する.
+     */
+    @Test
+    public void testSurrogatePairAcrossBuffer() throws IOException {
+        JsonArray sorc = new JsonArray();
+        for (int len = 4090; len < 4100; len++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < len; i++) sb.append('a');
+            sorc.add( new JsonString(sb.append("𠮷").toString()) );
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonSerializer.serialize(sorc, out);
+        assertEquals( JsonSerializer.serialize(sorc),
+                new String(out.toByteArray(), Charset.forName("UTF-8")) );
+    }
+
+    /**
+     * 同じオブジェクトが再帰的でない形で複数回現れる場合はシリアライズ可能であることを確認する.
+     */
+    @Test
+    public void testSharedJsonArray() {
+        JsonArray child = new JsonArray();
+        JsonArray sorc = new JsonArray();
+        sorc.add( child );
+        sorc.add( child );
+        assertEquals( "[[],[]]", JsonSerializer.serialize(sorc) );
+    }
+
+    /**
+     * 入れ子の深さの上限を指定した場合のシリアライズをテストする.
+     */
+    @Test
+    public void testMaxDepth() {
+        JsonArray sorc = new JsonArray();
+        JsonObject jobj = new JsonObject();
+        jobj.put( "a", new JsonArray() );
+        sorc.add( jobj );
+        assertEquals( "[{\"a\":[]}]", JsonSerializer.serialize(sorc, false, 3) );
+        try {
+            JsonSerializer.serialize(sorc, false, 2);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 入れ子の深さの上限を指定した場合も, 再帰的な構造では例外が発生することを確認する.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testRecursiveJsonArrayWithMaxDepth() {
+        JsonArray sorc = new JsonArray();
+        sorc.add( sorc );
+        JsonSerializer.serialize(sorc, false, 100);
+    }
+
+    /**
+     * シリアライザーのインスタンスを繰り返し使用できることを確認する.
+     * 例外で中断された後も正しくシリアライズできる.
+     */
+    @Test
+    public void testReuseInstance() throws IOException {
+        JsonSerializer serializer = new JsonSerializer(true);
+        JsonObject jobj = new JsonObject();
+        jobj.put( "a", new JsonArray() );
+        jobj.get("a").arrayValue().add( JsonBoolean.TRUE );
+        String expected = "{\n  \"a\" : [\n    true\n  ]\n}";
+        assertEquals( expected, serializer.toJsonString(jobj) );
+
+        JsonArray recursive = new JsonArray();
+        recursive.add( new JsonObject() );
+        recursive.get(0).objectValue().put( "r", recursive );
+        try {
+            serializer.toJsonString(recursive);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+
+        StringWriter writer = new StringWriter();
+        serializer.writeJson(jobj, writer);
+        assertEquals( expected, writer.toString() );
+        assertEquals( "[]", serializer.toJsonString(new JsonArray()) );
+    }
+
 }
@@ -0,0 +1,48 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class JsonStringTest {
+
+    @Test
+    public void testValueType() {
+        assertEquals( JsonValue.ValueType.STRING_VALUE,
+                new JsonString("a").valueType() );
+    }
+
+    /**
+     * toString() が JSON の string として (エスケープして) 表した文字列を返すことをテストする.
+     */
+    @Test
+    public void testToString() {
+        assertEquals( "[Json string : \"a\"]", new JsonString("a").toString() );
+        assertEquals( "[Json string : \"\\\"\\n\\u0001あ\"]", new JsonString("\"\n\u0001あ").toString() );
+
+        // 出力用のバッファより長い場合
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) sb.append((char) ('a' + i % 26));
+        assertEquals( "[Json string : \"" + sb + "\"]", new JsonString(sb.toString()).toString() );
+    }
+
+    /**
+     * 同じスレッドで JsonWriter による書き出しの途中でも, toString() が使用できることをテストする.
+     */
+    @Test
+    public void testToStringWhileWriting() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter w = new JsonWriter(out);
+        w.beginArray();
+        w.value("x");
+        assertEquals( "[Json string : \"b\"]", new JsonString("b").toString() );
+        w.value("y");
+        w.endArray();
+        assertEquals( "[\"x\",\"y\"]", out.toString() );
+    }
+
+}
@@ -0,0 +1,106 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JsonStructuralIndexTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 1 文字ずつ判定して構造上の区切りの位置を求める (比較用).
+     */
+    private static List<Integer> scanStructurals(byte[] bytes) {
+        List<Integer> positions = new ArrayList<Integer>();
+        boolean inString = false;
+        boolean prevScalar = false;
+        for (int i = 0; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            boolean scalar = false;
+            switch (b) {
+                case '"':
+                    inString = true;
+                    positions.add(i);
+                    break;
+                case '{': case '}': case '[': case ']': case ':': case ',':
+                    positions.add(i);
+                    break;
+                case ' ': case '\t': case '\n': case '\r':
+                    break;
+                default:
+                    if (!prevScalar) positions.add(i);
+                    scalar = true;
+            }
+            prevScalar = scalar;
+        }
+        return positions;
+    }
+
+    private static final String[] PIECES = {
+        "{", "}", "[", "]", ":", ",", " ", "\n", "\t ", "123", "-0.5e+3", "true", "null",
+        "\"\"", "\"abc\"", "\"\\\"\"", "\"\\\\\"", "\"\\\\\\\"\"", "\"a\\\\\\\\\\\"b\"", "\"\\n\\u3042\"",
+        "\"[{,:}]\"", "\"日本語𠮷\"", "\"\\\\\\\\\"",
+    };
+
+    /**
+     * ランダムに並べたトークン (string 中のエスケープを含む) について,
+     * 構造インデックスが 1 文字ずつ判定した結果と一致することを確認する.
+     * 64 バイトのブロックの境界をまたぐ '\' の並びや string も含まれる.
+     */
+    @Test
+    public void testRandomTokens() {
+        Random random = new Random(20141201L);
+        for (int n = 0; n < 500; n++) {
+            StringBuilder sb = new StringBuilder();
+            int numPieces = random.nextInt(100);
+            for (int i = 0; i < numPieces; i++) sb.append(PIECES[random.nextInt(PIECES.length)]);
+            byte[] bytes = sb.toString().getBytes(UTF_8);
+            // 前後に余分なバイトがある配列の一部としても確認する
+            byte[] padded = new byte[bytes.length + 10];
+            System.arraycopy(bytes, 0, padded, 3, bytes.length);
+            JsonStructuralIndex index = JsonStructuralIndex.build(padded, 3, bytes.length);
+            List<Integer> expected = scanStructurals(bytes);
+            assertEquals( sb.toString(), expected.size(), index.count );
+            for (int i = 0; i < index.count; i++) {
+                assertEquals( sb.toString(), expected.get(i).intValue(), index.positions[i] - 3 );
+            }
+        }
+    }
+
+    /**
+     * 対応する終わりの括弧を一覧だけを辿って探せることを確認する.
+     */
+    @Test
+    public void testFindMatchingEnd() {
+        byte[] bytes = "[ { \"a\" : [ 1, \"]\" ] }, [] ]".getBytes(UTF_8);
+        JsonStructuralIndex index = JsonStructuralIndex.build(bytes, 0, bytes.length);
+        assertEquals( index.count - 1, index.findMatchingEnd(0) );
+        assertEquals( '}', bytes[index.positions[index.findMatchingEnd(1)]] );
+        assertEquals( index.count - 2, index.findMatchingEnd(index.count - 3) );
+    }
+
+    /**
+     * 終わらない string の場合の例外発生をテストする.
+     */
+    @Test( expected = InvalidJsonException.class )
+    public void testUnterminatedString() {
+        byte[] bytes = "[ \"abc\\\" ]".getBytes(UTF_8);
+        JsonStructuralIndex.build(bytes, 0, bytes.length);
+    }
+
+}
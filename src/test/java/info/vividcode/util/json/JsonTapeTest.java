@@ -0,0 +1,192 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import info.vividcode.util.json.JsonValue.ValueType;
+
+public class JsonTapeTest {
+
+    private static final String JSON = "{\"id\":1234567890123,\"neg\":-5,\"big\":123456789012345678901234567890," +
+            "\"dec\":-1.50e3,\"str\":\"\\u3042\\uD83D\\uDE00\\\"\\n\",\"lone\":\"\\uD800x\",\"empty\":\"\"," +
+            "\"flags\":[true,false,null],\"arr\":[[],{},{\"id\":2,\"\\u3042\":\"b\"}],\"dup\":1,\"dup\":2}";
+
+    /**
+     * パース結果の各ノードを参照した結果が, JsonParser.parse の結果と等しいことを確認する.
+     */
+    @Test
+    public void testNavigation() {
+        JsonTape tape = JsonParser.parseTape(JSON);
+        int root = tape.root();
+        assertEquals( ValueType.OBJECT_VALUE, tape.valueType(root) );
+        assertEquals( 11, tape.size(root) );
+        assertEquals( "id", tape.key(root, 0) );
+        assertEquals( 1234567890123L, tape.longValue(tape.value(root, 0)) );
+
+        assertEquals( -5, tape.longValue(tape.member(root, "neg")) );
+        assertEquals( -5.0, tape.doubleValue(tape.member(root, "neg")), 0 );
+        int big = tape.member(root, "big");
+        assertEquals( new BigDecimal("123456789012345678901234567890"), tape.numberValue(big) );
+        assertEquals( new BigDecimal("123456789012345678901234567890").longValue(), tape.longValue(big) );
+        int dec = tape.member(root, "dec");
+        assertEquals( new BigDecimal("-1.50e3"), tape.numberValue(dec) );
+        assertEquals( -1500.0, tape.doubleValue(dec), 0 );
+
+        int str = tape.member(root, "str");
+        assertEquals( ValueType.STRING_VALUE, tape.valueType(str) );
+        assertEquals( "\u3042\uD83D\uDE00\"\n", tape.stringValue(str) );
+        assertTrue( tape.stringEquals(str, "\u3042\uD83D\uDE00\"\n") );
+        assertFalse( tape.stringEquals(str, "\u3042\uD83D\uDE00\"") );
+        assertFalse( tape.stringEquals(str, "\u3042\uD83D\uDE01\"\n") );
+        assertEquals( "\uD800x", tape.stringValue(tape.member(root, "lone")) );
+        assertEquals( "", tape.stringValue(tape.member(root, "empty")) );
+
+        int flags = tape.member(root, "flags");
+        assertEquals( 3, tape.size(flags) );
+        assertTrue( tape.booleanValue(tape.element(flags, 0)) );
+        assertFalse( tape.booleanValue(tape.element(flags, 1)) );
+        assertEquals( ValueType.NULL_VALUE, tape.valueType(tape.element(flags, 2)) );
+
+        int inner = tape.element(tape.member(root, "arr"), 2);
+        assertEquals( 2, tape.longValue(tape.member(inner, "id")) );
+        assertEquals( "b", tape.stringValue(tape.member(inner, "\u3042")) );
+        assertEquals( JsonTape.NONE, tape.member(inner, "\u3044") );
+        assertEquals( JsonTape.NONE, tape.member(root, "i") );
+        // キーが重複している場合は後のメンバーの値を返す
+        assertEquals( 2, tape.longValue(tape.member(root, "dup")) );
+
+        assertEquals( JsonParser.parse(JSON), tape.toJsonValue(root) );
+        assertEquals( JsonSerializer.serialize(JsonParser.parse(JSON)), JsonSerializer.serialize(tape.toJsonValue(root)) );
+    }
+
+    /**
+     * JSON Pointer で値を探せることを確認する.
+     */
+    @Test
+    public void testFind() {
+        JsonTape tape = JsonParser.parseTape(JSON);
+        assertEquals( tape.root(), tape.find(JsonPointer.compile("")) );
+        assertEquals( 2, tape.longValue(tape.find(JsonPointer.compile("/arr/2/id"))) );
+        assertTrue( tape.booleanValue(tape.find(JsonPointer.compile("/flags/0"))) );
+        assertEquals( JsonTape.NONE, tape.find(JsonPointer.compile("/arr/3")) );
+        assertEquals( JsonTape.NONE, tape.find(JsonPointer.compile("/arr/-")) );
+        assertEquals( JsonTape.NONE, tape.find(JsonPointer.compile("/id/0")) );
+        assertEquals( JsonTape.NONE, tape.find(JsonPointer.compile("/nothing/0")) );
+    }
+
+    /**
+     * バイト列や ByteBuffer からパースした結果が, 文字列からパースした結果と等しいことを確認する.
+     */
+    @Test
+    public void testParseBytes() {
+        byte[] bytes = ("  " + JSON).getBytes(Charset.forName("UTF-8"));
+        JsonValue expected = JsonParser.parse(JSON);
+        JsonTape tape = JsonParser.parseTape(bytes, 2, bytes.length - 2);
+        assertEquals( expected, tape.toJsonValue(tape.root()) );
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        tape = JsonParser.parseTape(direct);
+        assertEquals( expected, tape.toJsonValue(tape.root()) );
+        assertTrue( tape.asReadOnlyBuffer().isDirect() );
+    }
+
+    /**
+     * バッファの内容をコピーして wrap で開いた結果が, 元のものと等しいことを確認する.
+     */
+    @Test
+    public void testWrap() {
+        JsonTape tape = JsonParser.parseTape("[{\"a\":[1,\"x\"]},{\"a\":2}]");
+        ByteBuffer content = tape.asReadOnlyBuffer();
+        assertTrue( content.isReadOnly() );
+        ByteBuffer copy = ByteBuffer.allocate(content.remaining() + 3);
+        copy.put(new byte[3]).put(content).position(3);
+        JsonTape wrapped = JsonTape.wrap(copy);
+        assertEquals( 3, copy.position() );
+        assertEquals( tape.toJsonValue(tape.root()), wrapped.toJsonValue(wrapped.root()) );
+        assertEquals( "x", wrapped.stringValue(wrapped.find(JsonPointer.compile("/0/a/1"))) );
+
+        try {
+            JsonTape.wrap(ByteBuffer.wrap(new byte[16]));
+            fail();
+        } catch (IllegalArgumentException err) {
+            // ok
+        }
+        try {
+            ByteBuffer truncated = tape.asReadOnlyBuffer();
+            truncated.limit(truncated.limit() - 1);
+            JsonTape.wrap(truncated);
+            fail();
+        } catch (IllegalArgumentException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 値の種類に合わない操作や範囲外の位置の場合に例外が発生することを確認する.
+     */
+    @Test
+    public void testInvalidOperations() {
+        JsonTape tape = JsonParser.parseTape("[\"s\",1,{}]");
+        int root = tape.root();
+        int s = tape.element(root, 0);
+        try {
+            tape.longValue(s);
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            tape.stringValue(tape.element(root, 1));
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            tape.member(root, "a");
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            tape.size(s);
+            fail();
+        } catch (UnsupportedOperationException err) {
+            // ok
+        }
+        try {
+            tape.element(root, 3);
+            fail();
+        } catch (IndexOutOfBoundsException err) {
+            // ok
+        }
+        try {
+            tape.key(tape.element(root, 2), 0);
+            fail();
+        } catch (IndexOutOfBoundsException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 不正な JSON テキストの場合に例外が発生することを確認する.
+     */
+    @Test
+    public void testInvalidJson() {
+        String[] invalids = { "", "1", "[1,", "{\"a\" 1}", "[1]]", "{\"a\":}" };
+        for (String invalid : invalids) {
+            try {
+                JsonParser.parseTape(invalid);
+                fail( invalid );
+            } catch (InvalidJsonException err) {
+                // ok
+            }
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class JsonWriterTest {
+
+    /**
+     * 各種の値を書き出した結果が JsonSerializer と同じ表記になることを確認する.
+     */
+    @Test
+    public void testWrite() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        JsonWriter w = new JsonWriter(sb);
+        w.beginObject();
+        w.name("str").value("あ\"\\\n");
+        w.name("num").value(-12L);
+        w.name("dbl").value(1.5);
+        w.name("dec").value(new BigDecimal("1.0E+10"));
+        w.name("arr").beginArray().value(true).value(false).nullValue().beginObject().endObject().endArray();
+        w.name("json").value(JsonParser.parse("[1,{\"a\":\"b\"}]"));
+        w.name("nil").value((String) null);
+        w.endObject();
+        assertEquals( "{\"str\":\"あ\\\"\\\\\\n\",\"num\":-12,\"dbl\":1.5,\"dec\":1.0E+10," +
+                "\"arr\":[true,false,null,{}],\"json\":[1,{\"a\":\"b\"}],\"nil\":null}", sb.toString() );
+
+        // OutputStream には UTF-8 で書き出される
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonWriter(out).beginArray().value("あ").endArray();
+        assertEquals( "[\"あ\"]", new String(out.toByteArray(), "UTF-8") );
+    }
+
+    /**
+     * 構造に合わない順序でメソッドを呼んだ場合の例外発生をテストする.
+     */
+    @Test
+    public void testInvalidState() throws IOException {
+        try {
+            new JsonWriter(new StringBuilder()).value("top");
+            fail();
+        } catch (IllegalStateException err) {
+            // ok
+        }
+        try {
+            new JsonWriter(new StringBuilder()).beginObject().value(1L);
+            fail();
+        } catch (IllegalStateException err) {
+            // ok
+        }
+        try {
+            new JsonWriter(new StringBuilder()).beginArray().name("a");
+            fail();
+        } catch (IllegalStateException err) {
+            // ok
+        }
+        try {
+            new JsonWriter(new StringBuilder()).beginObject().name("a").endObject();
+            fail();
+        } catch (IllegalStateException err) {
+            // ok
+        }
+        try {
+            new JsonWriter(new StringBuilder()).beginArray().endArray().beginArray();
+            fail();
+        } catch (IllegalStateException err) {
+            // ok
+        }
+        try {
+            new JsonWriter(new StringBuilder()).beginArray().value(Double.NaN);
+            fail();
+        } catch (InvalidJsonException err) {
+            // ok
+        }
+    }
+
+    /**
+     * 書き出しの途中で同じスレッドから JsonSerializer を使用しても, 互いの出力が混ざらないことを確認する.
+     * (作業用のバッファはスレッドごとのプールから借りている.)
+     */
+    @Test
+    public void testNestedSerialization() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter w = new JsonWriter(sb);
+        JsonWriter wBytes = new JsonWriter(out);
+        w.beginArray().value("outer");
+        wBytes.beginArray().value("\u3042");
+        String inner = JsonSerializer.serialize(JsonParser.parse("[\"inner\"]"));
+        ByteArrayOutputStream innerOut = new ByteArrayOutputStream();
+        JsonSerializer.serialize(JsonParser.parse("[\"\u3044\"]"), innerOut);
+        w.value(inner).endArray();
+        wBytes.value(1L).endArray();
+        assertEquals( "[\"outer\",\"[\\\"inner\\\"]\"]", sb.toString() );
+        assertEquals( "[\"\u3042\",1]", new String(out.toByteArray(), "UTF-8") );
+        assertEquals( "[\"\u3044\"]", new String(innerOut.toByteArray(), "UTF-8") );
+
+        // 書き終えた後のシリアライズでもバッファが正しく再利用される
+        assertEquals( "[1]", JsonSerializer.serialize(JsonParser.parse("[1]")) );
+    }
+
+}
@@ -0,0 +1,85 @@
+package info.vividcode.util.json;
+
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class ReusableJsonParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] JSON_TEXTS = {
+        "[]",
+        "{\"id\":1,\"name\":\"\\u3042\\\"\",\"tags\":[\"a\",\"b\"],\"nested\":{\"x\":-1.5e3,\"y\":null}}",
+        "[true,false,\"" + repeat('z', 300) + "\",\"\\uD83D\\uDE00\"]",
+        "{\"id\":2}",
+    };
+
+    /**
+     * 同じインスタンスで繰り返しパースした結果が JsonParser.parse と同じになることを確認する.
+     */
+    @Test
+    public void testRepeatedParse() {
+        ReusableJsonParser parser = new ReusableJsonParser(new JsonKeyCache());
+        for (int i = 0; i < 3; i++) {
+            for (String json : JSON_TEXTS) {
+                String expected = JsonSerializer.serialize(JsonParser.parse(json));
+                byte[] bytes = json.getBytes(UTF_8);
+                assertEquals( expected, JsonSerializer.serialize(parser.parse(json)) );
+                assertEquals( expected, JsonSerializer.serialize(parser.parse(bytes, 0, bytes.length)) );
+                assertEquals( expected, JsonSerializer.serialize(parser.parse(ByteBuffer.wrap(bytes))) );
+                ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+                direct.put(bytes).flip();
+                assertEquals( expected, JsonSerializer.serialize(parser.parse(direct)) );
+            }
+        }
+    }
+
+    /**
+     * バイト配列の一部やバッファの position 以降をパースできることを確認する.
+     */
+    @Test
+    public void testParseRange() {
+        ReusableJsonParser parser = new ReusableJsonParser();
+        byte[] bytes = "xx[1,2]yy".getBytes(UTF_8);
+        assertEquals( "[1,2]", JsonSerializer.serialize(parser.parse(bytes, 2, 5)) );
+        ByteBuffer buf = ByteBuffer.wrap(bytes, 2, 5).slice();
+        assertEquals( "[1,2]", JsonSerializer.serialize(parser.parse(buf)) );
+        assertEquals( 0, buf.position() );
+        try {
+            parser.parse(bytes, 5, 5);
+            fail();
+        } catch (IndexOutOfBoundsException err) {
+            // ok
+        }
+    }
+
+    /**
+     * パースに失敗した後も, 同じインスタンスで正しくパースできることを確認する.
+     */
+    @Test
+    public void testParseAfterError() {
+        ReusableJsonParser parser = new ReusableJsonParser();
+        String[] invalids = { "", "1", "[1,", "{\"a\":\"unterminated", "[1]]" };
+        for (String invalid : invalids) {
+            try {
+                parser.parse(invalid);
+                fail();
+            } catch (RuntimeException err) {
+                // ok
+            }
+            assertEquals( "{\"a\":[1]}", JsonSerializer.serialize(parser.parse("{\"a\":[1]}")) );
+        }
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append(c);
+        return sb.toString();
+    }
+
+}